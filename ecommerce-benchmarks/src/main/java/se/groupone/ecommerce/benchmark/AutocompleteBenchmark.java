@@ -0,0 +1,59 @@
+package se.groupone.ecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.search.TitleAutocomplete;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of title autocomplete, from a single letter matching a large part
+ * of the catalogue to a prefix matching a handful of titles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AutocompleteBenchmark
+{
+	@Param({ "1000000" })
+	private int products;
+
+	@Param({ "s", "sm", "smoked sa", "organic tomato 12" })
+	private String prefix;
+
+	private TitleAutocomplete autocomplete;
+
+	@Setup
+	public void setUp()
+	{
+		final Random random = new Random(42);
+		final List<Product> catalogue = new ArrayList<>(products);
+		for (int i = 1; i <= products; i++)
+		{
+			catalogue.add(new Product(i, BenchmarkData.catalogProductParameters(random, i)));
+		}
+		autocomplete = new TitleAutocomplete(catalogue);
+	}
+
+	@Benchmark
+	public List<String> complete()
+	{
+		return autocomplete.complete(prefix, 10);
+	}
+}
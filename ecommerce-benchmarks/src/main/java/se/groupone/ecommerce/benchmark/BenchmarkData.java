@@ -0,0 +1,121 @@
+package se.groupone.ecommerce.benchmark;
+
+import se.groupone.ecommerce.model.Customer;
+import se.groupone.ecommerce.model.ProductParameters;
+import se.groupone.ecommerce.repository.memory.InMemoryCustomerRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryIdempotencyRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryOrderRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryProductRepository;
+import se.groupone.ecommerce.security.PasswordHasher;
+import se.groupone.ecommerce.service.ShopService;
+
+import java.util.Random;
+
+/**
+ * Deterministic test data shared by the benchmark suites.
+ */
+public final class BenchmarkData
+{
+	private static final String[] CATEGORIES = { "Vegetables", "Fruit", "Dairy", "Bakery",
+			"Beverages", "Frozen", "Pantry", "Household" };
+	private static final String[] MANUFACTURERS = { "Spain", "France", "Sweden", "Italy",
+			"Arla", "Pågen", "Felix", "Findus", "Zeta", "Eldorado" };
+
+	// Vocabulary for searchable catalogue text
+	private static final String[] ADJECTIVES = { "organic", "fresh", "smoked", "dried", "large",
+			"small", "sweet", "spicy", "classic", "crispy", "creamy", "whole", "sliced", "frozen",
+			"premium", "light", "red", "green", "golden", "wild" };
+	private static final String[] NOUNS = { "tomato", "tomatillo", "lettuce", "apple", "apricot",
+			"banana", "bread", "baguette", "butter", "cheese", "cheddar", "coffee", "cola", "cookie",
+			"cucumber", "juice", "milk", "mango", "pasta", "pepper", "pizza", "potato", "rice",
+			"salmon", "sausage", "soup", "strawberry", "tea", "yoghurt", "detergent" };
+	private static final String[] DESCRIPTION_WORDS = { "the", "a", "and", "with", "for",
+			"perfect", "everyday", "family", "pack", "taste", "quality", "sourced", "locally",
+			"grown", "harvested", "recipe", "traditional", "rich", "flavour", "natural" };
+
+	// Large enough that benchmarks never run out of stock
+	private static final int STOCK = Integer.MAX_VALUE / 2;
+
+	// Cheap hashing, suites other than LoginBenchmark only need the customers to exist
+	private static final int SEED_PASSWORD_ITERATIONS = 1_000;
+
+	private BenchmarkData()
+	{
+	}
+
+	public static ProductParameters productParameters(Random random, int index)
+	{
+		return new ProductParameters(
+				"Product " + index,
+				CATEGORIES[random.nextInt(CATEGORIES.length)],
+				MANUFACTURERS[random.nextInt(MANUFACTURERS.length)],
+				"Description of product number " + index,
+				"http://example.com/img/" + index + ".jpg",
+				1 + random.nextInt(10_000) / 100.0,
+				STOCK);
+	}
+
+	/**
+	 * Product with a title and description drawn from a small vocabulary, so
+	 * that search terms match realistic fractions of the catalogue.
+	 */
+	public static ProductParameters catalogProductParameters(Random random, int index)
+	{
+		final String noun = NOUNS[random.nextInt(NOUNS.length)];
+		final StringBuilder description = new StringBuilder();
+		for (int i = 0; i < 12; i++)
+		{
+			// Skewed towards the first words, like natural language
+			final int word = (int) (DESCRIPTION_WORDS.length * Math.pow(random.nextDouble(), 2));
+			description.append(DESCRIPTION_WORDS[word]).append(' ');
+		}
+		description.append(noun);
+
+		return new ProductParameters(
+				ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + noun + " " + index,
+				CATEGORIES[random.nextInt(CATEGORIES.length)],
+				MANUFACTURERS[random.nextInt(MANUFACTURERS.length)],
+				description.toString(),
+				"http://example.com/img/" + index + ".jpg",
+				1 + random.nextInt(10_000) / 100.0,
+				STOCK);
+	}
+
+	public static Customer customer(int index)
+	{
+		return new Customer("customer" + index, "password" + index,
+				"customer" + index + "@example.com", "First" + index, "Last" + index,
+				"Street " + index, "070" + index);
+	}
+
+	/**
+	 * Creates a ShopService over fresh in-memory repositories holding the
+	 * specified number of products and customers. Product ids start at 1.
+	 */
+	public static ShopService inMemoryShopService(int products, int customers)
+	{
+		return inMemoryShopService(products, customers, new PasswordHasher(SEED_PASSWORD_ITERATIONS,
+				1, PasswordHasher.DEFAULT_QUEUE_SIZE, PasswordHasher.DEFAULT_CACHE_MILLIS));
+	}
+
+	/**
+	 * As above, hashing customer passwords with the specified hasher.
+	 */
+	public static ShopService inMemoryShopService(int products, int customers, PasswordHasher passwordHasher)
+	{
+		final ShopService shopService = new ShopService(new InMemoryCustomerRepository(),
+				new InMemoryProductRepository(), new InMemoryOrderRepository(),
+				new InMemoryIdempotencyRepository(), passwordHasher);
+		final Random random = new Random(42);
+
+		for (int i = 1; i <= products; i++)
+		{
+			shopService.addProduct(productParameters(random, i));
+		}
+		for (int i = 0; i < customers; i++)
+		{
+			shopService.addCustomer(customer(i));
+		}
+		return shopService;
+	}
+}
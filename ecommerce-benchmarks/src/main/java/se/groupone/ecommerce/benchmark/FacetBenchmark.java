@@ -0,0 +1,66 @@
+package se.groupone.ecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.model.ProductFacets;
+import se.groupone.ecommerce.search.ProductFacetIndex;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Facet counts over the whole catalogue, unfiltered and with a filter on
+ * every facet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FacetBenchmark
+{
+	private static final List<String> NONE = Collections.emptyList();
+
+	@Param({ "100000", "1000000" })
+	private int products;
+
+	private ProductFacetIndex index;
+
+	@Setup
+	public void setUp()
+	{
+		final Random random = new Random(42);
+		index = new ProductFacetIndex();
+		for (int i = 1; i <= products; i++)
+		{
+			index.productAdded(new Product(i, BenchmarkData.catalogProductParameters(random, i)));
+		}
+	}
+
+	@Benchmark
+	public ProductFacets unfiltered()
+	{
+		return index.count(NONE, NONE, NONE, false);
+	}
+
+	@Benchmark
+	public ProductFacets filtered()
+	{
+		return index.count(Arrays.asList("Dairy", "Fruit"), Collections.singletonList("Arla"),
+				Collections.singletonList("25-50"), true);
+	}
+}
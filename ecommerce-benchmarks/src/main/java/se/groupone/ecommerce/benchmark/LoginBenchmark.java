@@ -0,0 +1,59 @@
+package se.groupone.ecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import se.groupone.ecommerce.security.PasswordHasher;
+import se.groupone.ecommerce.service.ShopService;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login throughput with more request threads than cores, as at peak traffic.
+ * With the cache off every login pays for the full hash on the hashing pool;
+ * with it on, customers logging in again within the cache time do not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class LoginBenchmark
+{
+	private static final int CUSTOMERS = 1000;
+
+	@Param({ "100000" })
+	private int iterations;
+
+	@Param({ "0", "60000" })
+	private long cacheMillis;
+
+	private ShopService shopService;
+
+	@Setup
+	public void setUp()
+	{
+		final PasswordHasher passwordHasher = new PasswordHasher(iterations,
+				Runtime.getRuntime().availableProcessors(), PasswordHasher.DEFAULT_QUEUE_SIZE, cacheMillis);
+		shopService = BenchmarkData.inMemoryShopService(0, CUSTOMERS, passwordHasher);
+	}
+
+	@Benchmark
+	public boolean login()
+	{
+		final int customer = ThreadLocalRandom.current().nextInt(CUSTOMERS);
+		return shopService.verifyPassword("customer" + customer, "password" + customer);
+	}
+}
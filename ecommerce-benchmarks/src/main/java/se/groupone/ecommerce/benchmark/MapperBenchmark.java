@@ -0,0 +1,151 @@
+package se.groupone.ecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.groupone.ecommerce.model.Customer;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.webservice.util.CustomerMapper;
+import se.groupone.ecommerce.webservice.util.OrderListMapper;
+import se.groupone.ecommerce.webservice.util.OrderMapper;
+import se.groupone.ecommerce.webservice.util.ProductListMapper;
+import se.groupone.ecommerce.webservice.util.ProductMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and deserialization cost of the Gson based message body
+ * mappers, measured directly against in-memory streams.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark
+{
+	@Param({ "10", "100", "1000" })
+	private int listSize;
+
+	private final ProductMapper productMapper = new ProductMapper();
+	private final ProductListMapper productListMapper = new ProductListMapper();
+	private final CustomerMapper customerMapper = new CustomerMapper();
+	private final OrderMapper orderMapper = new OrderMapper();
+	private final OrderListMapper orderListMapper = new OrderListMapper();
+
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+
+	private Product product;
+	private ArrayList<Product> products;
+	private Customer customer;
+	private Order order;
+	private ArrayList<Order> orders;
+	private byte[] productJson;
+	private byte[] customerJson;
+	private byte[] orderJson;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		final Random random = new Random(42);
+		products = new ArrayList<>();
+		for (int i = 1; i <= listSize; i++)
+		{
+			products.add(new Product(i, BenchmarkData.productParameters(random, i)));
+		}
+		product = products.get(0);
+
+		customer = BenchmarkData.customer(1);
+		final ArrayList<Integer> productIds = new ArrayList<>();
+		for (int i = 0; i < 5; i++)
+		{
+			productIds.add(1 + random.nextInt(listSize));
+		}
+		orders = new ArrayList<>();
+		for (int i = 1; i <= listSize; i++)
+		{
+			orders.add(new Order(i, customer.getUsername(), productIds));
+		}
+		order = orders.get(0);
+
+		productJson = writeProduct().toByteArray();
+		customerJson = writeCustomer().toByteArray();
+		orderJson = writeOrder().toByteArray();
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream writeProduct() throws IOException
+	{
+		out.reset();
+		productMapper.writeTo(product, Product.class, Product.class, null, null, null, out);
+		return out;
+	}
+
+	@Benchmark
+	public Product readProduct() throws IOException
+	{
+		return productMapper.readFrom(Product.class, Product.class, null, null, null,
+				new ByteArrayInputStream(productJson));
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream writeProductList() throws IOException
+	{
+		out.reset();
+		productListMapper.writeTo(products, ArrayList.class, null, null, null, null, out);
+		return out;
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream writeCustomer() throws IOException
+	{
+		out.reset();
+		customerMapper.writeTo(customer, Customer.class, Customer.class, null, null, null, out);
+		return out;
+	}
+
+	@Benchmark
+	public Customer readCustomer() throws IOException
+	{
+		return customerMapper.readFrom(Customer.class, Customer.class, null, null, null,
+				new ByteArrayInputStream(customerJson));
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream writeOrder() throws IOException
+	{
+		out.reset();
+		orderMapper.writeTo(order, Order.class, Order.class, null, null, null, out);
+		return out;
+	}
+
+	@Benchmark
+	public Order readOrder() throws IOException
+	{
+		return orderMapper.readFrom(Order.class, Order.class, null, null, null,
+				new ByteArrayInputStream(orderJson));
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream writeOrderList() throws IOException
+	{
+		out.reset();
+		orderListMapper.writeTo(orders, ArrayList.class, null, null, null, null, out);
+		return out;
+	}
+}
@@ -0,0 +1,59 @@
+package se.groupone.ecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.groupone.ecommerce.analytics.CoPurchaseRecommender;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk build of the co-purchase recommender over an order history where a
+ * few products are bought far more often than the rest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RecommendationBenchmark
+{
+	@Param({ "1000000" })
+	private int orders;
+
+	@Param({ "100000" })
+	private int products;
+
+	private int[][] baskets;
+
+	@Setup
+	public void setUp()
+	{
+		final Random random = new Random(42);
+		baskets = new int[orders][];
+		for (int i = 0; i < orders; i++)
+		{
+			baskets[i] = new int[1 + random.nextInt(6)];
+			for (int j = 0; j < baskets[i].length; j++)
+			{
+				baskets[i][j] = 1 + (int) Math.pow(products, random.nextDouble());
+			}
+		}
+	}
+
+	@Benchmark
+	public CoPurchaseRecommender build()
+	{
+		return new CoPurchaseRecommender(baskets);
+	}
+}
@@ -0,0 +1,58 @@
+package se.groupone.ecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.search.ProductSearchIndex;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of the product search index. The queries go from a rare
+ * title word to a stop word that matches nearly every product, plus a prefix
+ * that expands to several terms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark
+{
+	@Param({ "1000000" })
+	private int products;
+
+	@Param({ "tomatillo", "smoked salmon", "organic straw", "the", "to" })
+	private String query;
+
+	private ProductSearchIndex index;
+
+	@Setup
+	public void setUp()
+	{
+		final Random random = new Random(42);
+		index = new ProductSearchIndex();
+		for (int i = 1; i <= products; i++)
+		{
+			index.productAdded(new Product(i, BenchmarkData.catalogProductParameters(random, i)));
+		}
+	}
+
+	@Benchmark
+	public List<Product> search()
+	{
+		return index.search(query, 20);
+	}
+}
@@ -0,0 +1,102 @@
+package se.groupone.ecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.groupone.ecommerce.model.Customer;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.service.ShopService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShopService hot paths over the in-memory repositories. The in-memory
+ * repositories are not thread safe, so every benchmark thread gets its own
+ * ShopService.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShopServiceBenchmark
+{
+	private static final int CUSTOMERS = 100;
+
+	@Param({ "1000" })
+	private int catalogSize;
+
+	@Param({ "1", "5", "20" })
+	private int cartSize;
+
+	@Param({ "10" })
+	private int ordersPerCustomer;
+
+	private ShopService shopService;
+	private Customer buyer;
+	private int nextProductId;
+	private int nextCustomer;
+
+	@Setup(Level.Iteration)
+	public void setUp()
+	{
+		shopService = BenchmarkData.inMemoryShopService(catalogSize, CUSTOMERS);
+
+		// Order history for getOrders
+		for (int c = 0; c < CUSTOMERS; c++)
+		{
+			final String username = BenchmarkData.customer(c).getUsername();
+			for (int o = 0; o < ordersPerCustomer; o++)
+			{
+				shopService.addProductToCustomer(1 + (c + o) % catalogSize, username, cartSize);
+				shopService.createOrder(username);
+			}
+		}
+
+		buyer = shopService.getCustomer(BenchmarkData.customer(0).getUsername());
+		nextProductId = 1;
+		nextCustomer = 0;
+	}
+
+	@Benchmark
+	public Customer addProductToCustomer()
+	{
+		if (buyer.getShoppingCart().size() >= cartSize)
+		{
+			buyer.getShoppingCart().clear();
+		}
+		shopService.addProductToCustomer(nextProductId(), buyer.getUsername());
+		return buyer;
+	}
+
+	@Benchmark
+	public Order createOrder()
+	{
+		shopService.addProductToCustomer(nextProductId(), buyer.getUsername(), cartSize);
+		return shopService.createOrder(buyer.getUsername());
+	}
+
+	@Benchmark
+	public List<Order> getOrders()
+	{
+		nextCustomer = (nextCustomer + 1) % CUSTOMERS;
+		return shopService.getOrders(BenchmarkData.customer(nextCustomer).getUsername());
+	}
+
+	private int nextProductId()
+	{
+		nextProductId = nextProductId % catalogSize + 1;
+		return nextProductId;
+	}
+}
@@ -0,0 +1,96 @@
+package se.groupone.ecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.groupone.ecommerce.exception.ModelException;
+import se.groupone.ecommerce.model.ShoppingCart;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShoppingCart operations at realistic cart sizes. Every operation leaves the
+ * cart at its original size so that iterations stay comparable.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShoppingCartBenchmark
+{
+	// Number of distinct products a cart is filled from
+	private static final int CATALOG_SIZE = 200;
+
+	@Param({ "1", "5", "20", "100" })
+	private int cartSize;
+
+	private ShoppingCart shoppingCart;
+	private int[] cartContents;
+	private int next;
+
+	@Setup(Level.Iteration)
+	public void setUp()
+	{
+		final Random random = new Random(42);
+		shoppingCart = new ShoppingCart();
+		cartContents = new int[cartSize];
+		for (int i = 0; i < cartSize; i++)
+		{
+			cartContents[i] = random.nextInt(CATALOG_SIZE);
+			shoppingCart.addProduct(cartContents[i]);
+		}
+	}
+
+	@Benchmark
+	public ShoppingCart addAndRemoveProduct() throws ModelException
+	{
+		final int productId = cartContents[next++ % cartSize];
+		shoppingCart.addProduct(productId);
+		shoppingCart.removeProduct(productId);
+		return shoppingCart;
+	}
+
+	@Benchmark
+	public boolean removeAllProductsWithId() throws ModelException
+	{
+		final int productId = cartContents[next++ % cartSize];
+		int occurrences = 0;
+		for (int cartProductId : cartContents)
+		{
+			if (cartProductId == productId)
+			{
+				occurrences++;
+			}
+		}
+
+		final boolean removed = shoppingCart.removeAllProductsWithId(productId);
+		for (int i = 0; i < occurrences; i++)
+		{
+			shoppingCart.addProduct(productId);
+		}
+		return removed;
+	}
+
+	@Benchmark
+	public ShoppingCart fillAndClear()
+	{
+		shoppingCart.clear();
+		for (int productId : cartContents)
+		{
+			shoppingCart.addProduct(productId);
+		}
+		return shoppingCart;
+	}
+}
@@ -0,0 +1,144 @@
+package se.groupone.ecommerce.loadtest;
+
+import se.groupone.ecommerce.model.Customer;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.seed.SyntheticDataset;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Seeds the embedded database with the same generated customers, products,
+ * order history and shopping carts as the admin seed command. Uses plain
+ * batches, which the embedded database takes as well as MySQL.
+ */
+final class DataSeeder
+{
+	private static final int BATCH_SIZE = 500;
+
+	private final long seed;
+
+	DataSeeder(long seed)
+	{
+		this.seed = seed;
+	}
+
+	static String username(int index)
+	{
+		return SyntheticDataset.username(index);
+	}
+
+	void seed(Connection con, int customers, int products, int orders) throws SQLException
+	{
+		final SyntheticDataset dataset = new SyntheticDataset(customers, products, orders, seed);
+		con.setAutoCommit(false);
+		seedProducts(con, dataset);
+		seedCustomers(con, dataset);
+		seedOrders(con, dataset);
+		con.commit();
+		con.setAutoCommit(true);
+	}
+
+	private void seedCustomers(Connection con, SyntheticDataset dataset) throws SQLException
+	{
+		try (PreparedStatement ps = con.prepareStatement("INSERT INTO customer "
+				+ "(user_name, password, email, first_name, last_name, address, phone) "
+				+ "VALUES(?, ?, ?, ?, ?, ?, ?)");
+			 PreparedStatement psCart = con.prepareStatement(
+					 "INSERT INTO customer_cart (id_product, user_name) VALUES(?, ?)"))
+		{
+			for (int i = 0; i < dataset.getCustomers(); i++)
+			{
+				final Customer customer = dataset.customer(i);
+				ps.setString(1, customer.getUsername());
+				ps.setString(2, customer.getPassword());
+				ps.setString(3, customer.getEmail());
+				ps.setString(4, customer.getFirstName());
+				ps.setString(5, customer.getLastName());
+				ps.setString(6, customer.getAddress());
+				ps.setString(7, customer.getPhoneNumber());
+				ps.addBatch();
+
+				for (int productId : customer.getShoppingCart())
+				{
+					psCart.setInt(1, productId);
+					psCart.setString(2, customer.getUsername());
+					psCart.addBatch();
+				}
+
+				// Customers are flushed before their carts to satisfy the foreign key
+				if ((i + 1) % BATCH_SIZE == 0)
+				{
+					ps.executeBatch();
+					psCart.executeBatch();
+				}
+			}
+			ps.executeBatch();
+			psCart.executeBatch();
+		}
+	}
+
+	private void seedProducts(Connection con, SyntheticDataset dataset) throws SQLException
+	{
+		try (PreparedStatement ps = con.prepareStatement("INSERT INTO product "
+				+ "(id_product, title, category, manufacturer, description, img, price, quantity) "
+				+ "VALUES(?, ?, ?, ?, ?, ?, ?, ?)"))
+		{
+			for (int id = 1; id <= dataset.getProducts(); id++)
+			{
+				final Product product = dataset.product(id);
+				ps.setInt(1, product.getId());
+				ps.setString(2, product.getTitle());
+				ps.setString(3, product.getCategory());
+				ps.setString(4, product.getManufacturer());
+				ps.setString(5, product.getDescription());
+				ps.setString(6, product.getImg());
+				ps.setDouble(7, product.getPrice());
+				ps.setInt(8, product.getQuantity());
+				ps.addBatch();
+				if (id % BATCH_SIZE == 0)
+				{
+					ps.executeBatch();
+				}
+			}
+			ps.executeBatch();
+		}
+	}
+
+	private void seedOrders(Connection con, SyntheticDataset dataset) throws SQLException
+	{
+		try (PreparedStatement psOrder = con.prepareStatement(
+				"INSERT INTO `order` (id_order, customer_name, created) VALUES(?, ?, ?)");
+			 PreparedStatement psOrderItem = con.prepareStatement(
+					 "INSERT INTO product_order (id_order, id_product) VALUES(?, ?)"))
+		{
+			for (int id = 1; id <= dataset.getOrders(); id++)
+			{
+				final Order order = dataset.order(id);
+				psOrder.setInt(1, id);
+				psOrder.setString(2, order.getUsername());
+				psOrder.setDate(3, new Date(order.getDateCreated().getTime()));
+				psOrder.addBatch();
+
+				for (int productId : order.getProductIds())
+				{
+					psOrderItem.setInt(1, id);
+					psOrderItem.setInt(2, productId);
+					psOrderItem.addBatch();
+				}
+
+				// Orders are flushed before their items to satisfy the foreign key
+				if (id % BATCH_SIZE == 0)
+				{
+					psOrder.executeBatch();
+					psOrderItem.executeBatch();
+				}
+			}
+			psOrder.executeBatch();
+			psOrderItem.executeBatch();
+		}
+	}
+}
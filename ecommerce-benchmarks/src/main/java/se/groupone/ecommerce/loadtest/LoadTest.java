@@ -0,0 +1,160 @@
+package se.groupone.ecommerce.loadtest;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import se.groupone.ecommerce.webservice.ShopApplication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Self-contained load test: starts the Jersey application in-process against
+ * an embedded H2 database in MySQL compatibility mode, seeds it and drives a
+ * mixed traffic profile at a target rate.
+ *
+ * Options (all optional): --rate=200 --duration=60 --concurrency=64
+ * --customers=1000 --products=500 --orders=5000 --seed=42 --port=9998
+ * --schema=path/to/sql_db_structure.sql --warmup=true
+ * --mix=browse_product:55,browse_catalog:5,view_cart:10,add_to_cart:20,checkout:10
+ */
+public final class LoadTest
+{
+	private static final String JDBC_URL = "jdbc:h2:mem:ecomm;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+			+ "CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1";
+	private static final String LOOPBACK_ADDRESSES = "127.0.0.1,0:0:0:0:0:0:0:1";
+
+	private LoadTest()
+	{
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		final Map<String, String> options = parseOptions(args);
+		final double rate = Double.parseDouble(options.getOrDefault("rate", "200"));
+		final int duration = Integer.parseInt(options.getOrDefault("duration", "60"));
+		final int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+		final int customers = Integer.parseInt(options.getOrDefault("customers", "1000"));
+		final int products = Integer.parseInt(options.getOrDefault("products", "500"));
+		final int orders = Integer.parseInt(options.getOrDefault("orders", "5000"));
+		final long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+		final int port = Integer.parseInt(options.getOrDefault("port", "9998"));
+
+		// Must be set before the repositories touch DBConfig
+		System.setProperty("ecommerce.jdbc.url", JDBC_URL);
+		System.setProperty("ecommerce.jdbc.username", "sa");
+		System.setProperty("ecommerce.jdbc.password", "");
+		System.setProperty("ecommerce.warmup.enabled", options.getOrDefault("warmup", "true"));
+		// The driver stands in for a proxy in front of many customers, each sent as X-Forwarded-For
+		System.setProperty("ecommerce.ratelimit.trustedProxies", LOOPBACK_ADDRESSES);
+
+		try (Connection con = DriverManager.getConnection(JDBC_URL, "sa", ""))
+		{
+			SchemaLoader.load(con, findSchema(options.get("schema")));
+			new DataSeeder(seed).seed(con, customers, products, orders);
+			System.out.println(String.format("Seeded %d customers, %d products, %d orders",
+					customers, products, orders));
+
+			final URI baseUri = URI.create("http://localhost:" + port + "/ecommerce-webservice/");
+			final long startNanos = System.nanoTime();
+			final HttpServer server = GrizzlyHttpServerFactory.createHttpServer(baseUri,
+					new ShopApplication());
+			try
+			{
+				while (status(baseUri + "admin/health/ready") != 200)
+				{
+					Thread.sleep(10);
+				}
+				final long readyNanos = System.nanoTime();
+				final int firstStatus = status(baseUri + "products/1");
+				System.out.println(String.format("Ready after %d ms, first request took %.1f ms (%d)",
+						(readyNanos - startNanos) / 1_000_000, (System.nanoTime() - readyNanos) / 1e6,
+						firstStatus));
+
+				final TrafficDriver driver = new TrafficDriver(baseUri.toString(), customers,
+						products, parseMix(options.getOrDefault("mix",
+								"browse_product:55,browse_catalog:5,view_cart:10,"
+										+ "add_to_cart:20,checkout:10")));
+
+				System.out.println(String.format("Driving %.0f req/s for %d s", rate, duration));
+				final long elapsed = driver.run(rate, duration, concurrency);
+				driver.printReport(System.out, elapsed);
+			}
+			finally
+			{
+				server.shutdownNow();
+			}
+		}
+	}
+
+	private static int status(String url) throws IOException
+	{
+		final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		final int status = connection.getResponseCode();
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream())
+		{
+			if (in != null)
+			{
+				while (in.read() != -1)
+				{
+					// Drain so that the connection can be reused
+				}
+			}
+		}
+		return status;
+	}
+
+	private static Path findSchema(String schemaOption)
+	{
+		if (schemaOption != null)
+		{
+			return Paths.get(schemaOption);
+		}
+		for (String candidate : new String[] { "sql_db_structure.sql", "../sql_db_structure.sql" })
+		{
+			if (Files.exists(Paths.get(candidate)))
+			{
+				return Paths.get(candidate);
+			}
+		}
+		throw new IllegalArgumentException("Could not find sql_db_structure.sql, use --schema=");
+	}
+
+	private static Map<String, String> parseOptions(String[] args)
+	{
+		final Map<String, String> options = new HashMap<>();
+		for (String arg : args)
+		{
+			if (!arg.startsWith("--") || !arg.contains("="))
+			{
+				throw new IllegalArgumentException("Expected --option=value, got: " + arg);
+			}
+			final int split = arg.indexOf('=');
+			options.put(arg.substring(2, split), arg.substring(split + 1));
+		}
+		return options;
+	}
+
+	private static Map<TrafficDriver.Operation, Integer> parseMix(String mix)
+	{
+		final Map<TrafficDriver.Operation, Integer> weights =
+				new EnumMap<>(TrafficDriver.Operation.class);
+		for (String entry : mix.split(","))
+		{
+			final String[] parts = entry.split(":");
+			weights.put(TrafficDriver.Operation.valueOf(parts[0].trim().toUpperCase()),
+					Integer.parseInt(parts[1].trim()));
+		}
+		return weights;
+	}
+}
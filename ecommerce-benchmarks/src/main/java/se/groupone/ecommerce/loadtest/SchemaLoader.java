@@ -0,0 +1,116 @@
+package se.groupone.ecommerce.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loads the MySQL dump in sql_db_structure.sql into an embedded database
+ * running in MySQL compatibility mode. The dump relies on a few MySQL-only
+ * constructs, so every CREATE TABLE is rewritten: collations and table
+ * options are dropped, inline keys become CREATE INDEX statements with
+ * schema-unique names, and foreign keys are added once all tables exist.
+ */
+final class SchemaLoader
+{
+	private static final Pattern CREATE_TABLE =
+			Pattern.compile("CREATE TABLE `(\\w+)` \\((.*)\\)[^)]*", Pattern.DOTALL);
+	private static final Pattern KEY =
+			Pattern.compile("(UNIQUE )?KEY `(\\w+)` (\\(.*\\))");
+	private static final Pattern COLLATE = Pattern.compile(" COLLATE \\w+");
+
+	private SchemaLoader()
+	{
+	}
+
+	static void load(Connection con, Path dump) throws IOException, SQLException
+	{
+		final List<String> tables = new ArrayList<>();
+		final List<String> indexes = new ArrayList<>();
+		final List<String> foreignKeys = new ArrayList<>();
+		final Set<String> indexNames = new HashSet<>();
+
+		for (String statement : readStatements(dump))
+		{
+			final Matcher table = CREATE_TABLE.matcher(statement);
+			if (!table.matches())
+			{
+				continue;
+			}
+
+			final String tableName = table.group(1);
+			final List<String> columns = new ArrayList<>();
+			for (String line : table.group(2).split(",\n"))
+			{
+				line = line.trim();
+				final Matcher key = KEY.matcher(line);
+				if (line.startsWith("CONSTRAINT"))
+				{
+					foreignKeys.add("ALTER TABLE `" + tableName + "` ADD " + line);
+				}
+				else if (key.matches())
+				{
+					String indexName = key.group(2);
+					if (!indexNames.add(indexName))
+					{
+						indexName = tableName + "_" + indexName;
+						indexNames.add(indexName);
+					}
+					indexes.add("CREATE " + (key.group(1) != null ? "UNIQUE " : "") + "INDEX `"
+							+ indexName + "` ON `" + tableName + "` " + key.group(3));
+				}
+				else
+				{
+					columns.add(COLLATE.matcher(line).replaceAll(""));
+				}
+			}
+			tables.add("CREATE TABLE `" + tableName + "` (\n  " + String.join(",\n  ", columns)
+					+ "\n)");
+		}
+
+		try (Statement statement = con.createStatement())
+		{
+			for (List<String> statements : java.util.Arrays.asList(tables, indexes, foreignKeys))
+			{
+				for (String sql : statements)
+				{
+					statement.execute(sql);
+				}
+			}
+		}
+	}
+
+	private static List<String> readStatements(Path dump) throws IOException
+	{
+		final StringBuilder script = new StringBuilder();
+		for (String line : Files.readAllLines(dump, StandardCharsets.UTF_8))
+		{
+			// Skip comments and MySQL version-specific directives
+			if (line.startsWith("#") || line.startsWith("/*!"))
+			{
+				continue;
+			}
+			script.append(line).append('\n');
+		}
+
+		final List<String> statements = new ArrayList<>();
+		for (String statement : script.toString().split(";\n"))
+		{
+			if (!statement.trim().isEmpty())
+			{
+				statements.add(statement.trim());
+			}
+		}
+		return statements;
+	}
+}
@@ -0,0 +1,239 @@
+package se.groupone.ecommerce.loadtest;
+
+import se.groupone.ecommerce.webservice.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mix of browse, cart and checkout traffic at a fixed arrival rate.
+ * The driver is open loop: requests are scheduled on a fixed timeline and
+ * latency is measured from the scheduled start, so a slow server shows up as
+ * queueing delay instead of silently lowering the offered load.
+ */
+final class TrafficDriver
+{
+	enum Operation
+	{
+		BROWSE_PRODUCT, BROWSE_CATALOG, VIEW_CART, ADD_TO_CART, CHECKOUT
+	}
+
+	private final String baseUrl;
+	private final int customers;
+	private final int products;
+	private final Map<Operation, Integer> mix;
+	private final int totalWeight;
+	private final Map<Operation, OperationStatistics> statistics = new EnumMap<>(Operation.class);
+	private final LongAdder dropped = new LongAdder();
+
+	TrafficDriver(String baseUrl, int customers, int products, Map<Operation, Integer> mix)
+	{
+		this.baseUrl = baseUrl;
+		this.customers = customers;
+		this.products = products;
+		this.mix = mix;
+
+		int weight = 0;
+		for (Operation operation : Operation.values())
+		{
+			weight += mix.getOrDefault(operation, 0);
+			statistics.put(operation, new OperationStatistics());
+		}
+		totalWeight = weight;
+	}
+
+	/**
+	 * Runs the traffic mix and blocks until all requests have completed.
+	 *
+	 * @param ratePerSecond target arrival rate
+	 * @param durationSeconds how long to keep scheduling requests
+	 * @param concurrency maximum number of requests in flight
+	 * @return wall clock time of the run in nanoseconds
+	 */
+	long run(double ratePerSecond, int durationSeconds, int concurrency) throws InterruptedException
+	{
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency,
+				0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(concurrency * 10));
+
+		final long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+		final long start = System.nanoTime();
+		final long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+		for (long scheduled = start; scheduled < end; scheduled += intervalNanos)
+		{
+			final long delay = scheduled - System.nanoTime();
+			if (delay > 0)
+			{
+				LockSupport.parkNanos(delay);
+			}
+
+			final long scheduledStart = scheduled;
+			final Operation operation = pickOperation();
+			try
+			{
+				executor.execute(() -> execute(operation, scheduledStart));
+			}
+			catch (RejectedExecutionException e)
+			{
+				dropped.increment();
+			}
+		}
+
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		return System.nanoTime() - start;
+	}
+
+	void printReport(PrintStream out, long elapsedNanos)
+	{
+		final double seconds = elapsedNanos / 1e9;
+		long totalRequests = 0;
+		long totalErrors = 0;
+
+		out.println(String.format(Locale.ROOT, "%-16s %9s %8s %7s %9s %9s %9s %9s %9s %9s",
+				"operation", "count", "errors", "err%", "ops/s",
+				"p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms"));
+		for (Operation operation : Operation.values())
+		{
+			final OperationStatistics stats = statistics.get(operation);
+			final long count = stats.latency.getCount();
+			final long errors = stats.errors.sum();
+			final long[] percentiles = stats.latency.getValuesAtQuantiles(0.5, 0.9, 0.99, 0.999);
+			totalRequests += count;
+			totalErrors += errors;
+
+			out.println(String.format(Locale.ROOT,
+					"%-16s %9d %8d %6.2f%% %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f",
+					operation, count, errors, count == 0 ? 0 : 100.0 * errors / count,
+					count / seconds, millis(percentiles[0]), millis(percentiles[1]),
+					millis(percentiles[2]), millis(percentiles[3]),
+					millis(stats.latency.getMaxNanos())));
+		}
+		out.println(String.format(Locale.ROOT,
+				"total: %d requests in %.1f s, %.1f ops/s, %d errors (%.2f%%), %d dropped",
+				totalRequests, seconds, totalRequests / seconds, totalErrors,
+				totalRequests == 0 ? 0 : 100.0 * totalErrors / totalRequests, dropped.sum()));
+	}
+
+	private Operation pickOperation()
+	{
+		int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+		for (Operation operation : Operation.values())
+		{
+			pick -= mix.getOrDefault(operation, 0);
+			if (pick < 0)
+			{
+				return operation;
+			}
+		}
+		return Operation.BROWSE_PRODUCT;
+	}
+
+	private void execute(Operation operation, long scheduledStart)
+	{
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final int customer = random.nextInt(customers);
+		final String username = DataSeeder.username(customer);
+		// Every customer browses from an address of their own, as seen by the rate limiter
+		final String client = "10." + (customer >>> 16 & 0xff) + "." + (customer >>> 8 & 0xff) + "."
+				+ (customer & 0xff);
+		final String productId = Integer.toString(1 + random.nextInt(products));
+		boolean success;
+
+		try
+		{
+			switch (operation)
+			{
+			case BROWSE_PRODUCT:
+				success = request("GET", "products/" + productId, null, client) == 200;
+				break;
+			case BROWSE_CATALOG:
+				success = request("GET", "products", null, client) == 200;
+				break;
+			case VIEW_CART:
+				success = request("GET", "customers/" + username + "/cart", null, client) == 200;
+				break;
+			case ADD_TO_CART:
+				success = request("POST", "customers/" + username + "/cart", productId, client) == 201;
+				break;
+			case CHECKOUT:
+				success = request("POST", "customers/" + username + "/cart", productId, client) == 201
+						&& request("POST", "orders", username, client) == 201;
+				break;
+			default:
+				success = false;
+			}
+		}
+		catch (IOException e)
+		{
+			success = false;
+		}
+
+		final OperationStatistics stats = statistics.get(operation);
+		stats.latency.record(System.nanoTime() - scheduledStart);
+		if (!success)
+		{
+			stats.errors.increment();
+		}
+	}
+
+	private int request(String method, String path, String body, String client) throws IOException
+	{
+		final HttpURLConnection connection =
+				(HttpURLConnection) new URL(baseUrl + path).openConnection();
+		connection.setRequestMethod(method);
+		connection.setRequestProperty("Accept", "application/json");
+		connection.setRequestProperty("X-Forwarded-For", client);
+
+		if (body != null)
+		{
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream out = connection.getOutputStream())
+			{
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		final int status = connection.getResponseCode();
+		// Drain the body so that the connection can be reused
+		try (InputStream in = status < 400 ? connection.getInputStream()
+				: connection.getErrorStream())
+		{
+			if (in != null)
+			{
+				final byte[] buffer = new byte[8192];
+				while (in.read(buffer) != -1)
+				{
+				}
+			}
+		}
+		return status;
+	}
+
+	private static double millis(long nanos)
+	{
+		return nanos / 1e6;
+	}
+
+	private static final class OperationStatistics
+	{
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final LongAdder errors = new LongAdder();
+	}
+}
@@ -0,0 +1,354 @@
+package se.groupone.ecommerce.analytics;
+
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.service.ShopServiceListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * "Customers also bought": for every product, the products most often in the
+ * same order. Pair counts over the order history are aggregated in parallel
+ * once, then every new order adds its pairs and updates the neighbour lists
+ * of the products in it. Neighbour lists are immutable arrays swapped in
+ * whole, so readers never wait for writers. A removed product's pairs are
+ * dropped and the lists that named it are built again, so an id that is used
+ * again starts without history.
+ */
+public final class CoPurchaseRecommender implements ShopServiceListener
+{
+	public static final int MAX_NEIGHBOURS = 20;
+
+	// Very large orders would add pairs quadratically without saying much about any of them
+	private static final int MAX_BASKET_SIZE = 64;
+	private static final int BASKETS_PER_TASK = 8192;
+
+	private final PairCountMap pairCounts;
+	private final Map<Integer, Neighbours> neighboursByProductId = new ConcurrentHashMap<>();
+
+	public CoPurchaseRecommender()
+	{
+		pairCounts = new PairCountMap();
+	}
+
+	/**
+	 * @param baskets the product ids of every order so far, one array per order
+	 */
+	public CoPurchaseRecommender(int[][] baskets)
+	{
+		pairCounts = ForkJoinPool.commonPool().invoke(new CountPairs(baskets, 0, baskets.length));
+
+		// Product ids are dense, so the lists being built are indexed by id
+		int maxProductId = 0;
+		for (int[] basket : baskets)
+		{
+			for (int productId : basket)
+			{
+				maxProductId = Math.max(maxProductId, productId);
+			}
+		}
+		final TopNeighbours[] top = new TopNeighbours[maxProductId + 1];
+		pairCounts.forEach((first, second, count) ->
+		{
+			topNeighbours(top, first).offer(second, count);
+			topNeighbours(top, second).offer(first, count);
+		});
+		for (int productId = 0; productId < top.length; productId++)
+		{
+			if (top[productId] != null)
+			{
+				neighboursByProductId.put(productId, top[productId].toNeighbours());
+			}
+		}
+	}
+
+	/**
+	 * Ids of the products most often bought together with the product, most
+	 * frequent first.
+	 */
+	public List<Integer> getRelated(int productId, int limit)
+	{
+		final Neighbours neighbours = neighboursByProductId.get(productId);
+		if (neighbours == null)
+		{
+			return Collections.emptyList();
+		}
+		final List<Integer> related = new ArrayList<>(Math.min(limit, neighbours.ids.length));
+		for (int i = 0; i < neighbours.ids.length && related.size() < limit; i++)
+		{
+			related.add(neighbours.ids[i]);
+		}
+		return related;
+	}
+
+	public synchronized void clear()
+	{
+		pairCounts.clear();
+		neighboursByProductId.clear();
+	}
+
+	@Override
+	public synchronized void productAdded(Product product)
+	{
+		// Only orders of an earlier product with the same id can have left pairs
+		if (neighboursByProductId.containsKey(product.getId()))
+		{
+			removePairs(product.getId());
+		}
+	}
+
+	@Override
+	public synchronized void productRemoved(int productId)
+	{
+		removePairs(productId);
+	}
+
+	@Override
+	public synchronized void orderCreated(Order order)
+	{
+		addPairs(distinct(order.getProductIds()));
+	}
+
+	/**
+	 * Counts an order that did not go through the shop service, such as one
+	 * restored from a snapshot.
+	 */
+	public synchronized void addBasket(int[] productIds)
+	{
+		addPairs(distinct(productIds));
+	}
+
+	private void addPairs(int[] basket)
+	{
+		for (int i = 0; i < basket.length; i++)
+		{
+			for (int j = i + 1; j < basket.length; j++)
+			{
+				final int count = pairCounts.add(basket[i], basket[j], 1);
+				offer(basket[i], basket[j], count);
+				offer(basket[j], basket[i], count);
+			}
+		}
+	}
+
+	private void removePairs(int productId)
+	{
+		neighboursByProductId.remove(productId);
+		final Map<Integer, TopNeighbours> rebuilt = new HashMap<>();
+		pairCounts.removeAll(productId, partner -> rebuilt.put(partner, new TopNeighbours()));
+		if (rebuilt.isEmpty())
+		{
+			return;
+		}
+
+		// The lists that named it may now have room for pairs they had no place for
+		pairCounts.forEach((first, second, count) ->
+		{
+			final TopNeighbours firstTop = rebuilt.get(first);
+			if (firstTop != null)
+			{
+				firstTop.offer(second, count);
+			}
+			final TopNeighbours secondTop = rebuilt.get(second);
+			if (secondTop != null)
+			{
+				secondTop.offer(first, count);
+			}
+		});
+		for (Map.Entry<Integer, TopNeighbours> entry : rebuilt.entrySet())
+		{
+			if (entry.getValue().size == 0)
+			{
+				neighboursByProductId.remove(entry.getKey());
+			}
+			else
+			{
+				neighboursByProductId.put(entry.getKey(), entry.getValue().toNeighbours());
+			}
+		}
+	}
+
+	// Counts only grow, so a product can only enter a list when its own count changes
+	private void offer(int productId, int neighbourId, int count)
+	{
+		final Neighbours current = neighboursByProductId.get(productId);
+		final TopNeighbours top = new TopNeighbours(current);
+		if (top.offer(neighbourId, count))
+		{
+			neighboursByProductId.put(productId, top.toNeighbours());
+		}
+	}
+
+	private static TopNeighbours topNeighbours(TopNeighbours[] top, int productId)
+	{
+		if (top[productId] == null)
+		{
+			top[productId] = new TopNeighbours();
+		}
+		return top[productId];
+	}
+
+	private static int[] distinct(List<Integer> productIds)
+	{
+		final int[] basket = new int[productIds.size()];
+		for (int i = 0; i < basket.length; i++)
+		{
+			basket[i] = productIds.get(i);
+		}
+		return distinct(basket);
+	}
+
+	private static int[] distinct(int[] productIds)
+	{
+		final int[] basket = productIds.clone();
+		Arrays.sort(basket);
+		int size = 0;
+		for (int i = 0; i < basket.length && size < MAX_BASKET_SIZE; i++)
+		{
+			if (size == 0 || basket[size - 1] != basket[i])
+			{
+				basket[size++] = basket[i];
+			}
+		}
+		return Arrays.copyOf(basket, size);
+	}
+
+	private static final class CountPairs extends RecursiveTask<PairCountMap>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int[][] baskets;
+		private final int from;
+		private final int to;
+
+		private CountPairs(int[][] baskets, int from, int to)
+		{
+			this.baskets = baskets;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected PairCountMap compute()
+		{
+			if (to - from > BASKETS_PER_TASK)
+			{
+				final int middle = (from + to) >>> 1;
+				final CountPairs left = new CountPairs(baskets, from, middle);
+				left.fork();
+				final PairCountMap right = new CountPairs(baskets, middle, to).compute();
+				final PairCountMap merged = left.join();
+
+				// Add the smaller map into the larger one
+				if (merged.size() < right.size())
+				{
+					right.addAll(merged);
+					return right;
+				}
+				merged.addAll(right);
+				return merged;
+			}
+
+			final PairCountMap counts = new PairCountMap((to - from) * 2);
+			for (int b = from; b < to; b++)
+			{
+				final int[] basket = distinct(baskets[b]);
+				for (int i = 0; i < basket.length; i++)
+				{
+					for (int j = i + 1; j < basket.length; j++)
+					{
+						counts.add(basket[i], basket[j], 1);
+					}
+				}
+			}
+			return counts;
+		}
+	}
+
+	private static final class Neighbours
+	{
+		private final int[] ids;
+		private final int[] counts;
+
+		private Neighbours(int[] ids, int[] counts)
+		{
+			this.ids = ids;
+			this.counts = counts;
+		}
+	}
+
+	/**
+	 * The MAX_NEIGHBOURS highest counts seen so far, kept sorted, most
+	 * frequent first and lowest id first between equal counts.
+	 */
+	private static final class TopNeighbours
+	{
+		private final int[] ids = new int[MAX_NEIGHBOURS];
+		private final int[] counts = new int[MAX_NEIGHBOURS];
+		private int size;
+
+		private TopNeighbours()
+		{
+		}
+
+		private TopNeighbours(Neighbours neighbours)
+		{
+			if (neighbours != null)
+			{
+				size = neighbours.ids.length;
+				System.arraycopy(neighbours.ids, 0, ids, 0, size);
+				System.arraycopy(neighbours.counts, 0, counts, 0, size);
+			}
+		}
+
+		// Returns whether the list changed
+		private boolean offer(int id, int count)
+		{
+			int position = -1;
+			for (int i = 0; i < size; i++)
+			{
+				if (ids[i] == id)
+				{
+					position = i;
+					break;
+				}
+			}
+			if (position < 0)
+			{
+				if (size == MAX_NEIGHBOURS && !ranksBefore(id, count, size - 1))
+				{
+					return false;
+				}
+				position = size < MAX_NEIGHBOURS ? size++ : size - 1;
+			}
+			// Move towards the front past every entry it now outranks
+			while (position > 0 && ranksBefore(id, count, position - 1))
+			{
+				ids[position] = ids[position - 1];
+				counts[position] = counts[position - 1];
+				position--;
+			}
+			ids[position] = id;
+			counts[position] = count;
+			return true;
+		}
+
+		private boolean ranksBefore(int id, int count, int position)
+		{
+			return count > counts[position] || count == counts[position] && id < ids[position];
+		}
+
+		private Neighbours toNeighbours()
+		{
+			return new Neighbours(Arrays.copyOf(ids, size), Arrays.copyOf(counts, size));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package se.groupone.ecommerce.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Approximate counts per product id in a fixed amount of memory. Every id is
+ * counted in one cell of each row and the estimate is the smallest of those
+ * cells, which never undercounts and overcounts by at most a small fraction
+ * of the total. Sketches of the same shape can be added and subtracted.
+ */
+final class CountMinSketch
+{
+	// Odd multipliers for multiply-shift hashing, one per row
+	private static final long[] SEEDS = {
+			0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+
+	private final int shift;
+	private final int width;
+	private final int[] cells;
+	private long total;
+
+	CountMinSketch(int widthBits)
+	{
+		shift = 64 - widthBits;
+		width = 1 << widthBits;
+		cells = new int[SEEDS.length * width];
+	}
+
+	void add(int productId, int count)
+	{
+		for (int row = 0; row < SEEDS.length; row++)
+		{
+			cells[cell(row, productId)] += count;
+		}
+		total += count;
+	}
+
+	int estimate(int productId)
+	{
+		int estimate = Integer.MAX_VALUE;
+		for (int row = 0; row < SEEDS.length; row++)
+		{
+			estimate = Math.min(estimate, cells[cell(row, productId)]);
+		}
+		return estimate;
+	}
+
+	long getTotal()
+	{
+		return total;
+	}
+
+	void subtract(CountMinSketch other)
+	{
+		for (int i = 0; i < cells.length; i++)
+		{
+			cells[i] -= other.cells[i];
+		}
+		total -= other.total;
+	}
+
+	void clear()
+	{
+		Arrays.fill(cells, 0);
+		total = 0;
+	}
+
+	private int cell(int row, int productId)
+	{
+		return row * width + (int) ((productId * SEEDS[row]) >>> shift);
+	}
+}
@@ -0,0 +1,167 @@
+package se.groupone.ecommerce.analytics;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Counts per unordered pair of product ids, in open addressed primitive
+ * arrays: a pair costs 12 bytes plus slack instead of a boxed entry.
+ * Not thread safe.
+ */
+final class PairCountMap
+{
+	interface PairConsumer
+	{
+		void accept(int first, int second, int count);
+	}
+
+	// No pair of ids from the database has both halves at -1
+	private static final long EMPTY = -1L;
+
+	private long[] keys;
+	private int[] counts;
+	private int size;
+
+	PairCountMap()
+	{
+		this(64);
+	}
+
+	PairCountMap(int expectedSize)
+	{
+		final int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+		keys = new long[capacity];
+		counts = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Adds to the count of the pair and returns the new count.
+	 */
+	int add(int a, int b, int count)
+	{
+		return addKey(a < b ? key(a, b) : key(b, a), count);
+	}
+
+	void addAll(PairCountMap other)
+	{
+		for (int slot = 0; slot < other.keys.length; slot++)
+		{
+			if (other.keys[slot] != EMPTY)
+			{
+				addKey(other.keys[slot], other.counts[slot]);
+			}
+		}
+	}
+
+	void clear()
+	{
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+
+	/**
+	 * Removes every pair the id is part of, passing the other id of each to
+	 * the consumer. Rebuilds the table, which is fine for something as rare
+	 * as a product being removed.
+	 */
+	void removeAll(int id, IntConsumer partners)
+	{
+		final long[] oldKeys = keys;
+		final int[] oldCounts = counts;
+		keys = new long[oldKeys.length];
+		counts = new int[oldCounts.length];
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+		for (int slot = 0; slot < oldKeys.length; slot++)
+		{
+			if (oldKeys[slot] == EMPTY)
+			{
+				continue;
+			}
+			final int first = (int) (oldKeys[slot] >>> 32);
+			final int second = (int) oldKeys[slot];
+			if (first == id)
+			{
+				partners.accept(second);
+			}
+			else if (second == id)
+			{
+				partners.accept(first);
+			}
+			else
+			{
+				addKey(oldKeys[slot], oldCounts[slot]);
+			}
+		}
+	}
+
+	void forEach(PairConsumer consumer)
+	{
+		for (int slot = 0; slot < keys.length; slot++)
+		{
+			if (keys[slot] != EMPTY)
+			{
+				consumer.accept((int) (keys[slot] >>> 32), (int) keys[slot], counts[slot]);
+			}
+		}
+	}
+
+	private int addKey(long key, int count)
+	{
+		int slot = slot(key, keys.length);
+		while (keys[slot] != EMPTY)
+		{
+			if (keys[slot] == key)
+			{
+				return counts[slot] += count;
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		keys[slot] = key;
+		counts[slot] = count;
+		if (++size > keys.length / 2)
+		{
+			grow();
+		}
+		return count;
+	}
+
+	private void grow()
+	{
+		final long[] oldKeys = keys;
+		final int[] oldCounts = counts;
+		keys = new long[oldKeys.length * 2];
+		counts = new int[oldCounts.length * 2];
+		Arrays.fill(keys, EMPTY);
+		for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++)
+		{
+			if (oldKeys[oldSlot] != EMPTY)
+			{
+				int slot = slot(oldKeys[oldSlot], keys.length);
+				while (keys[slot] != EMPTY)
+				{
+					slot = (slot + 1) & (keys.length - 1);
+				}
+				keys[slot] = oldKeys[oldSlot];
+				counts[slot] = oldCounts[oldSlot];
+			}
+		}
+	}
+
+	private static long key(int low, int high)
+	{
+		return ((long) low << 32) | (high & 0xFFFFFFFFL);
+	}
+
+	private static int slot(long key, int capacity)
+	{
+		final long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & (capacity - 1);
+	}
+}
@@ -0,0 +1,181 @@
+package se.groupone.ecommerce.analytics;
+
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.service.ShopServiceListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Best sellers over the last week and products trending over the last hour,
+ * counted from orders as they are created. Memory does not grow with the
+ * number of products or orders: sales are counted in Count-Min sketches per
+ * time bucket and only a bounded set of candidate products is ranked.
+ * <p>
+ * The lists are recomputed at most once per refresh interval, readers in
+ * between share the same snapshot.
+ */
+public final class SalesTracker implements ShopServiceListener
+{
+	public static final long DEFAULT_REFRESH_MILLIS = TimeUnit.SECONDS.toMillis(10);
+	public static final int MAX_LIST_SIZE = 100;
+
+	private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+	private static final long WEEK_MILLIS = TimeUnit.DAYS.toMillis(7);
+	// 4 x 4096 counters per sketch, overcounting by at most 0.07% of the sales in the window
+	private static final int SKETCH_WIDTH_BITS = 12;
+	private static final int CANDIDATES = 4 * MAX_LIST_SIZE;
+
+	private final LongSupplier clock;
+	private final SalesWindow lastHour = new SalesWindow(HOUR_MILLIS / 12, 12, SKETCH_WIDTH_BITS, CANDIDATES);
+	private final SalesWindow lastWeek = new SalesWindow(WEEK_MILLIS / 28, 28, SKETCH_WIDTH_BITS, CANDIDATES);
+	private volatile long refreshMillis = DEFAULT_REFRESH_MILLIS;
+	private volatile Snapshot snapshot = new Snapshot(Long.MIN_VALUE, new int[0], new int[0]);
+
+	public SalesTracker()
+	{
+		this(System::currentTimeMillis);
+	}
+
+	public SalesTracker(LongSupplier clock)
+	{
+		this.clock = clock;
+	}
+
+	public void setRefreshMillis(long refreshMillis)
+	{
+		if (refreshMillis < 0)
+		{
+			throw new IllegalArgumentException("Refresh interval can not be negative");
+		}
+		this.refreshMillis = refreshMillis;
+	}
+
+	/**
+	 * Ids of the most sold products over the last week, best seller first.
+	 */
+	public List<Integer> getTopSellers(int limit)
+	{
+		return head(snapshot().topSellers, limit);
+	}
+
+	/**
+	 * Ids of the products selling most above their weekly average over the
+	 * last hour, fastest rising first.
+	 */
+	public List<Integer> getTrending(int limit)
+	{
+		return head(snapshot().trending, limit);
+	}
+
+	public synchronized void clear()
+	{
+		lastHour.clear();
+		lastWeek.clear();
+		snapshot = new Snapshot(Long.MIN_VALUE, new int[0], new int[0]);
+	}
+
+	@Override
+	public synchronized void orderCreated(Order order)
+	{
+		final long now = clock.getAsLong();
+		for (int productId : order.getProductIds())
+		{
+			lastHour.add(now, productId, 1);
+			lastWeek.add(now, productId, 1);
+		}
+	}
+
+	@Override
+	public synchronized void productRemoved(int productId)
+	{
+		lastHour.remove(productId);
+		lastWeek.remove(productId);
+	}
+
+	private Snapshot snapshot()
+	{
+		Snapshot current = snapshot;
+		final long now = clock.getAsLong();
+		if (current.createdAt == Long.MIN_VALUE || now - current.createdAt >= refreshMillis)
+		{
+			synchronized (this)
+			{
+				current = snapshot;
+				if (current.createdAt == Long.MIN_VALUE || now - current.createdAt >= refreshMillis)
+				{
+					current = new Snapshot(now, topSellers(now), trending(now));
+					snapshot = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	private int[] topSellers(long now)
+	{
+		final int[][] candidates = lastWeek.candidates(now);
+		return rank(candidates[0], candidates[1]);
+	}
+
+	private int[] trending(long now)
+	{
+		final int[][] candidates = lastHour.candidates(now);
+		final int[] ids = candidates[0];
+		final int[] scores = candidates[1];
+		for (int i = 0; i < ids.length; i++)
+		{
+			// What the product would sell in an hour at its weekly rate
+			final long expected = lastWeek.estimate(now, ids[i]) * HOUR_MILLIS / WEEK_MILLIS;
+			scores[i] = (int) Math.max(0, scores[i] - expected);
+		}
+		return rank(ids, scores);
+	}
+
+	// Ids with a positive score, highest first, at most MAX_LIST_SIZE of them
+	private static int[] rank(int[] ids, int[] scores)
+	{
+		final Integer[] order = new Integer[ids.length];
+		for (int i = 0; i < order.length; i++)
+		{
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> scores[a] != scores[b] ? Integer.compare(scores[b], scores[a])
+				: Integer.compare(ids[a], ids[b]));
+
+		int size = 0;
+		final int[] ranked = new int[Math.min(ids.length, MAX_LIST_SIZE)];
+		for (int i = 0; i < order.length && size < ranked.length && scores[order[i]] > 0; i++)
+		{
+			ranked[size++] = ids[order[i]];
+		}
+		return Arrays.copyOf(ranked, size);
+	}
+
+	private static List<Integer> head(int[] ids, int limit)
+	{
+		final List<Integer> head = new ArrayList<>(Math.min(ids.length, limit));
+		for (int i = 0; i < ids.length && i < limit; i++)
+		{
+			head.add(ids[i]);
+		}
+		return head;
+	}
+
+	private static final class Snapshot
+	{
+		private final long createdAt;
+		private final int[] topSellers;
+		private final int[] trending;
+
+		private Snapshot(long createdAt, int[] topSellers, int[] trending)
+		{
+			this.createdAt = createdAt;
+			this.topSellers = topSellers;
+			this.trending = trending;
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package se.groupone.ecommerce.analytics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sales over the last bucketCount * bucketMillis milliseconds. Every bucket
+ * has its own sketch and a running sum of all of them answers for the whole
+ * window; a bucket sliding out is subtracted from the sum and reused. The ids
+ * most likely to be among the top sellers are kept in a bounded min-heap on
+ * their estimates, so a product only enters it by outselling the weakest one.
+ * Not thread safe.
+ */
+final class SalesWindow
+{
+	private final long bucketMillis;
+	private final CountMinSketch[] buckets;
+	private final CountMinSketch sum;
+	private long currentSlot = Long.MIN_VALUE;
+
+	// Min-heap of candidate ids on their estimated sales
+	private final int[] heapIds;
+	private final int[] heapCounts;
+	private final Map<Integer, Integer> heapPositions = new HashMap<>();
+	private int heapSize;
+
+	SalesWindow(long bucketMillis, int bucketCount, int sketchWidthBits, int candidates)
+	{
+		this.bucketMillis = bucketMillis;
+		buckets = new CountMinSketch[bucketCount];
+		for (int i = 0; i < bucketCount; i++)
+		{
+			buckets[i] = new CountMinSketch(sketchWidthBits);
+		}
+		sum = new CountMinSketch(sketchWidthBits);
+		heapIds = new int[candidates];
+		heapCounts = new int[candidates];
+	}
+
+	void add(long now, int productId, int count)
+	{
+		advance(now);
+		buckets[(int) Math.floorMod(currentSlot, (long) buckets.length)].add(productId, count);
+		sum.add(productId, count);
+		offer(productId, sum.estimate(productId));
+	}
+
+	int estimate(long now, int productId)
+	{
+		advance(now);
+		return sum.estimate(productId);
+	}
+
+	long getTotal(long now)
+	{
+		advance(now);
+		return sum.getTotal();
+	}
+
+	/**
+	 * The candidate ids, with their estimates in the same positions.
+	 */
+	int[][] candidates(long now)
+	{
+		advance(now);
+		return new int[][] { Arrays.copyOf(heapIds, heapSize), Arrays.copyOf(heapCounts, heapSize) };
+	}
+
+	void remove(int productId)
+	{
+		final Integer position = heapPositions.get(productId);
+		if (position != null)
+		{
+			removeAt(position);
+		}
+	}
+
+	void clear()
+	{
+		for (CountMinSketch bucket : buckets)
+		{
+			bucket.clear();
+		}
+		sum.clear();
+		heapPositions.clear();
+		heapSize = 0;
+		currentSlot = Long.MIN_VALUE;
+	}
+
+	private void advance(long now)
+	{
+		final long slot = Math.floorDiv(now, bucketMillis);
+		if (slot <= currentSlot)
+		{
+			return;
+		}
+		if (currentSlot == Long.MIN_VALUE || slot - currentSlot >= buckets.length)
+		{
+			for (CountMinSketch bucket : buckets)
+			{
+				bucket.clear();
+			}
+			sum.clear();
+		}
+		else
+		{
+			for (long expired = currentSlot + 1; expired <= slot; expired++)
+			{
+				final CountMinSketch bucket = buckets[(int) Math.floorMod(expired, (long) buckets.length)];
+				sum.subtract(bucket);
+				bucket.clear();
+			}
+		}
+		currentSlot = slot;
+		rescoreCandidates();
+	}
+
+	// Estimates only fall as buckets expire, so the heap is rebuilt from scratch
+	private void rescoreCandidates()
+	{
+		int kept = 0;
+		for (int i = 0; i < heapSize; i++)
+		{
+			final int count = sum.estimate(heapIds[i]);
+			if (count > 0)
+			{
+				heapIds[kept] = heapIds[i];
+				heapCounts[kept] = count;
+				kept++;
+			}
+		}
+		heapSize = kept;
+		heapPositions.clear();
+		for (int i = 0; i < heapSize; i++)
+		{
+			heapPositions.put(heapIds[i], i);
+		}
+		for (int i = heapSize / 2 - 1; i >= 0; i--)
+		{
+			siftDown(i);
+		}
+	}
+
+	private void offer(int productId, int count)
+	{
+		final Integer position = heapPositions.get(productId);
+		if (position != null)
+		{
+			heapCounts[position] = count;
+			siftDown(position);
+		}
+		else if (heapSize < heapIds.length)
+		{
+			heapIds[heapSize] = productId;
+			heapCounts[heapSize] = count;
+			heapPositions.put(productId, heapSize);
+			siftUp(heapSize++);
+		}
+		else if (count > heapCounts[0])
+		{
+			heapPositions.remove(heapIds[0]);
+			heapIds[0] = productId;
+			heapCounts[0] = count;
+			heapPositions.put(productId, 0);
+			siftDown(0);
+		}
+	}
+
+	private void removeAt(int position)
+	{
+		heapPositions.remove(heapIds[position]);
+		heapSize--;
+		if (position < heapSize)
+		{
+			move(heapSize, position);
+			siftDown(position);
+			siftUp(position);
+		}
+	}
+
+	private void siftUp(int position)
+	{
+		while (position > 0)
+		{
+			final int parent = (position - 1) / 2;
+			if (heapCounts[parent] <= heapCounts[position])
+			{
+				return;
+			}
+			swap(parent, position);
+			position = parent;
+		}
+	}
+
+	private void siftDown(int position)
+	{
+		while (true)
+		{
+			final int left = 2 * position + 1;
+			if (left >= heapSize)
+			{
+				return;
+			}
+			final int smallest = left + 1 < heapSize && heapCounts[left + 1] < heapCounts[left]
+					? left + 1 : left;
+			if (heapCounts[position] <= heapCounts[smallest])
+			{
+				return;
+			}
+			swap(position, smallest);
+			position = smallest;
+		}
+	}
+
+	private void swap(int a, int b)
+	{
+		final int id = heapIds[a];
+		final int count = heapCounts[a];
+		move(b, a);
+		heapIds[b] = id;
+		heapCounts[b] = count;
+		heapPositions.put(id, b);
+	}
+
+	private void move(int from, int to)
+	{
+		heapIds[to] = heapIds[from];
+		heapCounts[to] = heapCounts[from];
+		heapPositions.put(heapIds[to], to);
+	}
+}
@@ -0,0 +1,303 @@
+package se.groupone.ecommerce.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+/**
+ * Settings for the shop, looked up in order from runtime overrides, system
+ * properties, environment variables (ecommerce.sql.poolSize is read from
+ * ECOMMERCE_SQL_POOLSIZE), the file named by ecommerce.config and finally
+ * ecommerce.properties on the classpath.
+ *
+ * Keys with registered listeners are reloadable: they can be overridden at
+ * runtime and are re-applied when the configuration file is reloaded. All
+ * other keys are read once by their owners and need a restart.
+ */
+public final class Configuration
+{
+	private static final Logger LOG = Logger.getLogger(Configuration.class.getName());
+	private static final Configuration INSTANCE = new Configuration();
+
+	public static final String CONFIG_FILE_KEY = "ecommerce.config";
+	private static final String CLASSPATH_RESOURCE = "/ecommerce.properties";
+	private static final String MASKED_VALUE = "****";
+	private static final String[] SECRET_NAMES = { "password", "secret", "token", "credential" };
+
+	private final ConcurrentHashMap<String, String> overrides = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, String> defaults = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, List<ConfigurationListener>> listeners =
+			new ConcurrentHashMap<>();
+	private volatile Properties fileProperties;
+
+	private Configuration()
+	{
+		fileProperties = loadProperties();
+	}
+
+	public static Configuration getInstance()
+	{
+		return INSTANCE;
+	}
+
+	public String getString(String key, String defaultValue)
+	{
+		if (defaultValue != null)
+		{
+			defaults.putIfAbsent(key, defaultValue);
+		}
+		final String value = lookup(key);
+		return value != null ? value : defaultValue;
+	}
+
+	public int getInt(String key, int defaultValue)
+	{
+		return Integer.parseInt(getString(key, Integer.toString(defaultValue)).trim());
+	}
+
+	public long getLong(String key, long defaultValue)
+	{
+		return Long.parseLong(getString(key, Long.toString(defaultValue)).trim());
+	}
+
+	public double getDouble(String key, double defaultValue)
+	{
+		return Double.parseDouble(getString(key, Double.toString(defaultValue)).trim());
+	}
+
+	public boolean getBoolean(String key, boolean defaultValue)
+	{
+		return Boolean.parseBoolean(getString(key, Boolean.toString(defaultValue)).trim());
+	}
+
+	/**
+	 * Registers a listener for a key, which makes the key reloadable.
+	 */
+	public void addListener(String key, ConfigurationListener listener)
+	{
+		listeners.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(listener);
+	}
+
+	public boolean isReloadable(String key)
+	{
+		return listeners.containsKey(key);
+	}
+
+	/**
+	 * Overrides a reloadable key until restart. A null value removes the
+	 * override.
+	 *
+	 * @throws IllegalArgumentException if the key is not reloadable or a
+	 *         listener rejects the value
+	 */
+	public synchronized void set(String key, String value)
+	{
+		if (!isReloadable(key))
+		{
+			throw new IllegalArgumentException(
+					"Setting " + key + " can not be changed without a restart");
+		}
+
+		final String previous = overrides.get(key);
+		final String previousValue = lookup(key);
+		putOverride(key, value);
+		if (Objects.equals(previousValue, lookup(key)))
+		{
+			return;
+		}
+
+		try
+		{
+			notifyListeners(key);
+		}
+		catch (IllegalArgumentException e)
+		{
+			putOverride(key, previous);
+			notifyListeners(key);
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+		}
+	}
+
+	/**
+	 * Re-reads the configuration file and applies changed reloadable keys.
+	 * Keys a listener rejects keep their previous value.
+	 *
+	 * @return the keys whose value changed
+	 */
+	public synchronized List<String> reload()
+	{
+		final Properties previousProperties = fileProperties;
+		final Map<String, String> previousValues = new TreeMap<>();
+		for (String key : listeners.keySet())
+		{
+			previousValues.put(key, lookup(key));
+		}
+
+		fileProperties = loadProperties();
+
+		final List<String> changed = new ArrayList<>();
+		for (String key : previousProperties.stringPropertyNames())
+		{
+			if (!Objects.equals(previousProperties.getProperty(key),
+					fileProperties.getProperty(key)) && !isReloadable(key))
+			{
+				LOG.warning("Setting " + key + " changed on disk but needs a restart to apply");
+			}
+		}
+
+		for (Map.Entry<String, String> previous : previousValues.entrySet())
+		{
+			final String key = previous.getKey();
+			if (Objects.equals(previous.getValue(), lookup(key)))
+			{
+				continue;
+			}
+
+			try
+			{
+				notifyListeners(key);
+				changed.add(key);
+			}
+			catch (IllegalArgumentException e)
+			{
+				LOG.warning("Rejected reloaded value for " + key + ": " + e.getMessage());
+				// Pin the old value, or the default, so that the rest of the reload still applies
+				putOverride(key, previous.getValue() != null ? previous.getValue() : defaults.get(key));
+				notifyListeners(key);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * @return every known key with its current value, secrets masked
+	 */
+	public Map<String, String> getValues()
+	{
+		final TreeSet<String> keys = new TreeSet<>(defaults.keySet());
+		keys.addAll(fileProperties.stringPropertyNames());
+		keys.addAll(overrides.keySet());
+		for (String key : System.getProperties().stringPropertyNames())
+		{
+			if (key.startsWith("ecommerce."))
+			{
+				keys.add(key);
+			}
+		}
+
+		final Map<String, String> values = new TreeMap<>();
+		for (String key : keys)
+		{
+			final String value = lookup(key);
+			values.put(key, isSecret(key) && value != null
+					? MASKED_VALUE : value != null ? value : defaults.get(key));
+		}
+		return values;
+	}
+
+	// Judged by the last part of the key, so ecommerce.jdbc.password is a secret but ecommerce.password.iterations is not
+	private static boolean isSecret(String key)
+	{
+		final String name = key.substring(key.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+		if (name.endsWith("key"))
+		{
+			return true;
+		}
+		for (String secretName : SECRET_NAMES)
+		{
+			if (name.contains(secretName))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String lookup(String key)
+	{
+		String value = overrides.get(key);
+		if (value == null)
+		{
+			value = System.getProperty(key);
+		}
+		if (value == null)
+		{
+			value = System.getenv(key.toUpperCase().replace('.', '_'));
+		}
+		if (value == null)
+		{
+			value = fileProperties.getProperty(key);
+		}
+		return value;
+	}
+
+	private void putOverride(String key, String value)
+	{
+		if (value == null)
+		{
+			overrides.remove(key);
+		}
+		else
+		{
+			overrides.put(key, value);
+		}
+	}
+
+	private void notifyListeners(String key)
+	{
+		for (ConfigurationListener listener : listeners.get(key))
+		{
+			listener.configurationChanged(key);
+		}
+	}
+
+	private static Properties loadProperties()
+	{
+		final Properties properties = new Properties();
+		try (InputStream in = Configuration.class.getResourceAsStream(CLASSPATH_RESOURCE))
+		{
+			if (in != null)
+			{
+				properties.load(in);
+			}
+		}
+		catch (IOException e)
+		{
+			LOG.warning("Could not read " + CLASSPATH_RESOURCE + ": " + e.getMessage());
+		}
+
+		String file = System.getProperty(CONFIG_FILE_KEY);
+		if (file == null)
+		{
+			file = System.getenv("ECOMMERCE_CONFIG");
+		}
+		if (file != null)
+		{
+			final Path path = Paths.get(file);
+			try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8))
+			{
+				properties.load(reader);
+			}
+			catch (IOException e)
+			{
+				LOG.warning("Could not read configuration file " + path + ": " + e.getMessage());
+			}
+		}
+		return properties;
+	}
+}
@@ -0,0 +1,11 @@
+package se.groupone.ecommerce.config;
+
+/**
+ * Applies a changed setting. Implementations should re-read the value through
+ * {@link Configuration} and throw IllegalArgumentException to reject it, in
+ * which case the change is rolled back.
+ */
+public interface ConfigurationListener
+{
+	public void configurationChanged(String key);
+}
@@ -10,6 +10,7 @@ public final class Order
 	private final String customerUsername;
 	private final SimpleDateFormat sqlDateFormat = new SimpleDateFormat("yyyy-MM-dd");
 	private Date dateCreated, dateShipped = null;
+	private OrderStatus status = OrderStatus.CREATED;
 	private ArrayList<Integer> productIds = new ArrayList<>();
 
 	@SuppressWarnings("unchecked")
@@ -35,6 +36,18 @@ public final class Order
 		this.dateCreated = dateCreated;
 	}
 
+	public Order(int id,
+			String customerUsername,
+			ArrayList<Integer> shoppingCartProductIds,
+			Date dateCreated,
+			OrderStatus status,
+			Date dateShipped)
+	{
+		this(id, customerUsername, shoppingCartProductIds, dateCreated);
+		this.status = status;
+		this.dateShipped = dateShipped;
+	}
+
 	public int getId()
 	{
 		return id;
@@ -42,9 +55,15 @@ public final class Order
 
 	public void shipIt()
 	{
+		status = OrderStatus.SHIPPED;
 		dateShipped = new Date(System.currentTimeMillis());
 	}
 
+	public OrderStatus getStatus()
+	{
+		return status;
+	}
+
 	public boolean isShipped()
 	{
 		if (dateShipped != null)
@@ -78,6 +97,7 @@ public final class Order
 	public String toString()
 	{
 		return "Order [userName=" + customerUsername
+				+ ", status=" + status.getName()
 				+ ", dateCreated=" + dateCreated + ", dateShipped="
 				+ dateShipped + ", products=" + productIds + "]";
 	}
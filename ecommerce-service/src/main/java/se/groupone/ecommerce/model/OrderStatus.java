@@ -0,0 +1,43 @@
+package se.groupone.ecommerce.model;
+
+import java.util.Locale;
+
+/**
+ * Where an order is in its life. An order is created, then paid and shipped,
+ * and can be cancelled until it has been shipped. Stored by its lower case
+ * name.
+ */
+public enum OrderStatus
+{
+	CREATED, PAID, SHIPPED, CANCELLED;
+
+	public boolean canChangeTo(OrderStatus next)
+	{
+		switch (this)
+		{
+			case CREATED:
+				return next == PAID || next == CANCELLED;
+			case PAID:
+				return next == SHIPPED || next == CANCELLED;
+			default:
+				return false;
+		}
+	}
+
+	public String getName()
+	{
+		return name().toLowerCase(Locale.ROOT);
+	}
+
+	public static OrderStatus parse(String name)
+	{
+		try
+		{
+			return valueOf(name.trim().toUpperCase(Locale.ROOT));
+		}
+		catch (IllegalArgumentException | NullPointerException e)
+		{
+			throw new IllegalArgumentException("Unknown order status: " + name, e);
+		}
+	}
+}
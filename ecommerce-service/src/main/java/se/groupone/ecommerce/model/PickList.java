@@ -0,0 +1,32 @@
+package se.groupone.ecommerce.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the warehouse has to pick for a batch of paid orders: the orders, and
+ * how many of each product they hold together, by product id.
+ */
+public final class PickList
+{
+	private final List<Integer> orderIds;
+	private final Map<Integer, Integer> quantities;
+
+	public PickList(List<Integer> orderIds, Map<Integer, Integer> quantities)
+	{
+		this.orderIds = Collections.unmodifiableList(orderIds);
+		this.quantities = Collections.unmodifiableMap(quantities);
+	}
+
+	// Oldest first
+	public List<Integer> getOrderIds()
+	{
+		return orderIds;
+	}
+
+	public Map<Integer, Integer> getQuantities()
+	{
+		return quantities;
+	}
+}
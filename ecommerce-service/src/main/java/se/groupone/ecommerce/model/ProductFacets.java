@@ -0,0 +1,57 @@
+package se.groupone.ecommerce.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Number of products per category, manufacturer and price band. Each facet is
+ * counted with the filters on the other facets applied but not its own, so a
+ * sidebar can show how many products every alternative selection would give.
+ */
+public final class ProductFacets
+{
+	private final int total;
+	private final int inStock;
+	private final Map<String, Integer> categories;
+	private final Map<String, Integer> manufacturers;
+	private final Map<String, Integer> priceBands;
+
+	public ProductFacets(int total,
+			int inStock,
+			Map<String, Integer> categories,
+			Map<String, Integer> manufacturers,
+			Map<String, Integer> priceBands)
+	{
+		this.total = total;
+		this.inStock = inStock;
+		this.categories = Collections.unmodifiableMap(categories);
+		this.manufacturers = Collections.unmodifiableMap(manufacturers);
+		this.priceBands = Collections.unmodifiableMap(priceBands);
+	}
+
+	// Products matching every filter
+	public int getTotal()
+	{
+		return total;
+	}
+
+	public int getInStock()
+	{
+		return inStock;
+	}
+
+	public Map<String, Integer> getCategories()
+	{
+		return categories;
+	}
+
+	public Map<String, Integer> getManufacturers()
+	{
+		return manufacturers;
+	}
+
+	public Map<String, Integer> getPriceBands()
+	{
+		return priceBands;
+	}
+}
@@ -0,0 +1,128 @@
+package se.groupone.ecommerce.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets for many clients in a fixed amount of memory. Each bucket is
+ * kept as the time at which it will be full again (the generic cell rate
+ * algorithm), packed together with a fingerprint of its key into one slot of
+ * an array, so admitting a request is a compare-and-set on that slot and a
+ * rejected request writes nothing.
+ * <p>
+ * A key may live in either of two slots. When both are taken by other keys
+ * the one that will be full soonest is given up, so under more active keys
+ * than slots some clients get a fresh bucket early; no client is ever held
+ * back by another.
+ */
+public final class RateLimiter
+{
+	public static final int DEFAULT_SLOTS = 1 << 16;
+
+	private static final int MAX_SLOTS = 1 << 20;
+	private static final int TIME_BITS = 40;
+	private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+
+	private final AtomicLongArray slots;
+	private final int mask;
+	private final LongSupplier clock;
+	private final long origin;
+
+	public RateLimiter()
+	{
+		this(DEFAULT_SLOTS, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param slots number of buckets, rounded up to a power of two
+	 * @param clock current time in milliseconds
+	 */
+	public RateLimiter(int slots, LongSupplier clock)
+	{
+		if (slots < 2 || slots > MAX_SLOTS)
+		{
+			throw new IllegalArgumentException("Slots must be between 2 and " + MAX_SLOTS);
+		}
+		final int size = Integer.highestOneBit(slots - 1) << 1;
+		this.slots = new AtomicLongArray(size);
+		this.mask = size - 1;
+		this.clock = clock;
+		// Times are kept relative to this so that they fit in the slot, 0 marks an empty slot
+		this.origin = clock.getAsLong() - 1;
+	}
+
+	/**
+	 * Takes one token from the bucket of the key.
+	 *
+	 * @param key identifies the bucket, callers should combine client and route
+	 * @param permitsPerSecond rate at which the bucket fills
+	 * @param burst bucket size, the number of requests admitted at once after a pause
+	 * @return 0 if the request is admitted, otherwise the milliseconds until it would be
+	 */
+	public long tryAcquire(long key, double permitsPerSecond, int burst)
+	{
+		final long interval = Math.max(1, Math.round(1000 / permitsPerSecond));
+		final long tolerance = interval * Math.max(1, burst);
+		final long hash = mix(key);
+		final long fingerprint = hash >>> TIME_BITS;
+		final int first = (int) hash & mask;
+		final int second = (int) (hash >>> 20) & mask;
+
+		while (true)
+		{
+			final long now = clock.getAsLong() - origin;
+			final long firstSlot = slots.get(first);
+			final long secondSlot = slots.get(second);
+
+			final int index;
+			final long current;
+			final long full;
+			if (firstSlot != 0 && firstSlot >>> TIME_BITS == fingerprint)
+			{
+				index = first;
+				current = firstSlot;
+				full = firstSlot & TIME_MASK;
+			}
+			else if (secondSlot != 0 && secondSlot >>> TIME_BITS == fingerprint)
+			{
+				index = second;
+				current = secondSlot;
+				full = secondSlot & TIME_MASK;
+			}
+			else
+			{
+				// A new key starts with a full bucket in whichever slot frees up first
+				index = (firstSlot & TIME_MASK) <= (secondSlot & TIME_MASK) ? first : second;
+				current = index == first ? firstSlot : secondSlot;
+				full = 0;
+			}
+
+			final long next = Math.max(full, now) + interval;
+			final long wait = next - now - tolerance;
+			if (wait > 0)
+			{
+				return wait;
+			}
+			if (slots.compareAndSet(index, current, fingerprint << TIME_BITS | next & TIME_MASK))
+			{
+				return 0;
+			}
+		}
+	}
+
+	public void clear()
+	{
+		for (int i = 0; i < slots.length(); i++)
+		{
+			slots.set(i, 0);
+		}
+	}
+
+	// Finalizer of SplitMix64, spreads similar keys over the whole table
+	private static long mix(long key)
+	{
+		key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+		key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+		return key ^ (key >>> 31);
+	}
+}
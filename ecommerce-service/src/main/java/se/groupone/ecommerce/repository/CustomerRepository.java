@@ -17,6 +17,24 @@ public interface CustomerRepository
 
 	public Customer getCustomer(String customerUsername) throws RepositoryException;
 
+	/**
+	 * Only the stored password of the customer, without loading the shopping
+	 * cart.
+	 *
+	 * @param customerUsername
+	 * @throws RepositoryException if there is no such customer
+	 */
+	public String getPassword(String customerUsername) throws RepositoryException;
+
+	/**
+	 * Replaces only the stored password of the customer.
+	 *
+	 * @param customerUsername
+	 * @param password
+	 * @throws RepositoryException if there is no such customer
+	 */
+	public void setPassword(String customerUsername, String password) throws RepositoryException;
+
 	public List<Customer> getCustomers() throws RepositoryException;
 
 	public void updateCustomer(Customer customer) throws RepositoryException;
@@ -0,0 +1,32 @@
+package se.groupone.ecommerce.repository;
+
+import se.groupone.ecommerce.exception.RepositoryException;
+
+public interface IdempotencyRepository
+{
+	/**
+	 * Returns the id of the resource created under the specified key, or null
+	 * if the key is unknown or has expired.
+	 *
+	 * @param key
+	 * @throws RepositoryException
+	 */
+	public Integer getResult(String key) throws RepositoryException;
+
+	/**
+	 * Records the id of the resource created under the specified key. Keys that
+	 * are already recorded keep their original result.
+	 *
+	 * @param key
+	 * @param resultId
+	 * @throws RepositoryException
+	 */
+	public void addResult(String key, int resultId) throws RepositoryException;
+
+	/**
+	 * Forgets every key, for when the resources they point to are removed.
+	 *
+	 * @throws RepositoryException
+	 */
+	public void clear() throws RepositoryException;
+}
@@ -2,7 +2,10 @@ package se.groupone.ecommerce.repository;
 
 import se.groupone.ecommerce.exception.RepositoryException;
 import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.OrderStatus;
+import se.groupone.ecommerce.model.PickList;
 
+import java.util.Date;
 import java.util.List;
 
 public interface OrderRepository
@@ -18,4 +21,39 @@ public interface OrderRepository
 	public int getHighestId() throws RepositoryException;
 	
 	public void updateOrder(Order newOrder) throws RepositoryException;
+
+	/**
+	 * The product ids of every order, one array per order, in no particular
+	 * order. Meant for building aggregates over the whole order history.
+	 */
+	public int[][] getOrderBaskets() throws RepositoryException;
+
+	/**
+	 * Changes the status of an order, provided it still has the expected
+	 * status. Shipping also records today as the shipped date.
+	 */
+	public void updateOrderStatus(int orderId, OrderStatus expected, OrderStatus status)
+			throws RepositoryException;
+
+	/**
+	 * Up to limit orders with the given status, ordered by creation date and
+	 * id: first those created on fromDate with an id above afterId, then those
+	 * created after fromDate up to and including toDate. Pass the date and id
+	 * of the last order returned to get the next page.
+	 */
+	public List<Order> getOrdersByStatus(OrderStatus status, Date fromDate, int afterId, Date toDate,
+			int limit) throws RepositoryException;
+
+	/**
+	 * Changes the status of every order in one transaction, provided they all
+	 * still have the expected status. Otherwise none is changed.
+	 */
+	public void updateOrderStatuses(List<Integer> orderIds, OrderStatus expected, OrderStatus status)
+			throws RepositoryException;
+
+	/**
+	 * The oldest paid orders created from fromDate up to and including toDate,
+	 * at most limit of them, with the quantity of every product they hold.
+	 */
+	public PickList getPickList(Date fromDate, Date toDate, int limit) throws RepositoryException;
 }
\ No newline at end of file
@@ -0,0 +1,168 @@
+package se.groupone.ecommerce.repository.cache;
+
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.repository.ProductRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the products read from another repository, so that browsing the
+ * catalogue does not reach the database. Writes go straight through and drop
+ * what they change. A read that overlaps a write is not cached, so a product
+ * is never served older than the last write made through this repository.
+ * Writes made elsewhere, by another instance of the web service, are seen
+ * once the cached copy is older than the time to live.
+ */
+public final class CachingProductRepository implements ProductRepository
+{
+	public static final long DEFAULT_TTL_MILLIS = 5000;
+	public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+	private final ProductRepository repository;
+	private final int maxEntries;
+	private final LongSupplier clock;
+	private final ConcurrentHashMap<Integer, Cached<Product>> products = new ConcurrentHashMap<>();
+	// Counts writes, a read only caches what it loaded if there was none meanwhile
+	private final AtomicLong writes = new AtomicLong();
+	private volatile Cached<List<Product>> allProducts;
+	private volatile long ttlMillis;
+
+	public CachingProductRepository(ProductRepository repository)
+	{
+		this(repository, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, System::currentTimeMillis);
+	}
+
+	public CachingProductRepository(ProductRepository repository, int maxEntries, long ttlMillis,
+			LongSupplier clock)
+	{
+		this.repository = repository;
+		this.maxEntries = maxEntries;
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+	}
+
+	public void setTtlMillis(long ttlMillis)
+	{
+		this.ttlMillis = ttlMillis;
+	}
+
+	@Override
+	public void addProduct(Product product) throws RepositoryException
+	{
+		try
+		{
+			repository.addProduct(product);
+		}
+		finally
+		{
+			invalidate(product.getId());
+		}
+	}
+
+	@Override
+	public Product getProduct(int id) throws RepositoryException
+	{
+		final long now = clock.getAsLong();
+		final Cached<Product> cached = products.get(id);
+		if (cached != null && now - cached.loadedMillis < ttlMillis)
+		{
+			return cached.value;
+		}
+
+		final long writesBefore = writes.get();
+		final Product product = repository.getProduct(id);
+		if (writes.get() == writesBefore)
+		{
+			if (products.size() >= maxEntries)
+			{
+				products.clear();
+			}
+			products.put(id, new Cached<>(product, now));
+		}
+		return product;
+	}
+
+	@Override
+	public List<Product> getProducts() throws RepositoryException
+	{
+		final long now = clock.getAsLong();
+		final Cached<List<Product>> cached = allProducts;
+		if (cached != null && now - cached.loadedMillis < ttlMillis)
+		{
+			return new ArrayList<>(cached.value);
+		}
+
+		final long writesBefore = writes.get();
+		final List<Product> loaded = repository.getProducts();
+		if (writes.get() == writesBefore)
+		{
+			allProducts = new Cached<>(Collections.unmodifiableList(new ArrayList<>(loaded)), now);
+		}
+		return loaded;
+	}
+
+	@Override
+	public void removeProduct(int id) throws RepositoryException
+	{
+		try
+		{
+			repository.removeProduct(id);
+		}
+		finally
+		{
+			invalidate(id);
+		}
+	}
+
+	@Override
+	public void updateProduct(Product product) throws RepositoryException
+	{
+		try
+		{
+			repository.updateProduct(product);
+		}
+		finally
+		{
+			invalidate(product.getId());
+		}
+	}
+
+	// Ids are handed out from this, so it is always read from the repository
+	@Override
+	public int getHighestId() throws RepositoryException
+	{
+		return repository.getHighestId();
+	}
+
+	public void clear()
+	{
+		writes.incrementAndGet();
+		products.clear();
+		allProducts = null;
+	}
+
+	private void invalidate(int id)
+	{
+		writes.incrementAndGet();
+		products.remove(id);
+		allProducts = null;
+	}
+
+	private static final class Cached<T>
+	{
+		private final T value;
+		private final long loadedMillis;
+
+		private Cached(T value, long loadedMillis)
+		{
+			this.value = value;
+			this.loadedMillis = loadedMillis;
+		}
+	}
+}
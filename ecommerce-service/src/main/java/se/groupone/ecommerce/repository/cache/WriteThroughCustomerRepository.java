@@ -0,0 +1,80 @@
+package se.groupone.ecommerce.repository.cache;
+
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.model.Customer;
+import se.groupone.ecommerce.repository.CustomerRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryCustomerRepository;
+
+import java.util.List;
+
+/**
+ * Serves every read from memory and writes to the durable repository before
+ * memory, so nothing is acknowledged that a restart would lose. The customers
+ * are read into memory once, by {@link #load()}.
+ */
+public final class WriteThroughCustomerRepository implements CustomerRepository
+{
+	private final InMemoryCustomerRepository memory;
+	private final CustomerRepository durable;
+
+	public WriteThroughCustomerRepository(InMemoryCustomerRepository memory, CustomerRepository durable)
+	{
+		this.memory = memory;
+		this.durable = durable;
+	}
+
+	public synchronized void load() throws RepositoryException
+	{
+		memory.clear();
+		for (Customer customer : durable.getCustomers())
+		{
+			memory.addCustomer(customer);
+		}
+	}
+
+	@Override
+	public synchronized void addCustomer(Customer customer) throws RepositoryException
+	{
+		durable.addCustomer(customer);
+		memory.addCustomer(customer);
+	}
+
+	@Override
+	public Customer getCustomer(String customerUsername) throws RepositoryException
+	{
+		return memory.getCustomer(customerUsername);
+	}
+
+	@Override
+	public String getPassword(String customerUsername) throws RepositoryException
+	{
+		return memory.getPassword(customerUsername);
+	}
+
+	@Override
+	public synchronized void setPassword(String customerUsername, String password) throws RepositoryException
+	{
+		durable.setPassword(customerUsername, password);
+		memory.setPassword(customerUsername, password);
+	}
+
+	@Override
+	public List<Customer> getCustomers()
+	{
+		return memory.getCustomers();
+	}
+
+	@Override
+	public synchronized void updateCustomer(Customer customer) throws RepositoryException
+	{
+		durable.updateCustomer(customer);
+		memory.updateCustomer(customer);
+	}
+
+	@Override
+	public synchronized void removeCustomer(String username) throws RepositoryException
+	{
+		durable.removeCustomer(username);
+		memory.removeCustomer(username);
+	}
+}
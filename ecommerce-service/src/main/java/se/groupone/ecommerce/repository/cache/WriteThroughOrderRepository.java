@@ -0,0 +1,130 @@
+package se.groupone.ecommerce.repository.cache;
+
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.model.Customer;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.OrderStatus;
+import se.groupone.ecommerce.model.PickList;
+import se.groupone.ecommerce.repository.CustomerRepository;
+import se.groupone.ecommerce.repository.OrderRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryOrderRepository;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Serves every read from memory and writes to the durable repository before
+ * memory, so nothing is acknowledged that a restart would lose. The orders
+ * are read into memory once, customer by customer, by
+ * {@link #load(CustomerRepository)}.
+ */
+public final class WriteThroughOrderRepository implements OrderRepository
+{
+	private final InMemoryOrderRepository memory;
+	private final OrderRepository durable;
+	// Orders of removed customers are not loaded, but their ids stay taken
+	private volatile int durableHighestId;
+
+	public WriteThroughOrderRepository(InMemoryOrderRepository memory, OrderRepository durable)
+	{
+		this.memory = memory;
+		this.durable = durable;
+	}
+
+	public synchronized void load(CustomerRepository customers) throws RepositoryException
+	{
+		memory.clear();
+		durableHighestId = durable.getHighestId();
+		for (Customer customer : customers.getCustomers())
+		{
+			final List<Order> orders;
+			try
+			{
+				orders = durable.getOrders(customer.getUsername());
+			}
+			catch (RepositoryException e)
+			{
+				// No orders for this customer
+				continue;
+			}
+			for (Order order : orders)
+			{
+				memory.addOrder(order);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void addOrder(Order order) throws RepositoryException
+	{
+		durable.addOrder(order);
+		memory.addOrder(order);
+	}
+
+	@Override
+	public Order getOrder(int id) throws RepositoryException
+	{
+		return memory.getOrder(id);
+	}
+
+	@Override
+	public synchronized void removeOrder(int id) throws RepositoryException
+	{
+		durable.removeOrder(id);
+		memory.removeOrder(id);
+	}
+
+	@Override
+	public List<Order> getOrders(String customerUsername) throws RepositoryException
+	{
+		return memory.getOrders(customerUsername);
+	}
+
+	@Override
+	public int getHighestId()
+	{
+		return Math.max(durableHighestId, memory.getHighestId());
+	}
+
+	@Override
+	public synchronized void updateOrder(Order newOrder) throws RepositoryException
+	{
+		durable.updateOrder(newOrder);
+		memory.updateOrder(newOrder);
+	}
+
+	@Override
+	public int[][] getOrderBaskets()
+	{
+		return memory.getOrderBaskets();
+	}
+
+	@Override
+	public synchronized void updateOrderStatus(int orderId, OrderStatus expected, OrderStatus status)
+			throws RepositoryException
+	{
+		durable.updateOrderStatus(orderId, expected, status);
+		memory.updateOrderStatus(orderId, expected, status);
+	}
+
+	@Override
+	public List<Order> getOrdersByStatus(OrderStatus status, Date fromDate, int afterId, Date toDate,
+			int limit)
+	{
+		return memory.getOrdersByStatus(status, fromDate, afterId, toDate, limit);
+	}
+
+	@Override
+	public synchronized void updateOrderStatuses(List<Integer> orderIds, OrderStatus expected,
+			OrderStatus status) throws RepositoryException
+	{
+		durable.updateOrderStatuses(orderIds, expected, status);
+		memory.updateOrderStatuses(orderIds, expected, status);
+	}
+
+	@Override
+	public PickList getPickList(Date fromDate, Date toDate, int limit)
+	{
+		return memory.getPickList(fromDate, toDate, limit);
+	}
+}
@@ -0,0 +1,73 @@
+package se.groupone.ecommerce.repository.cache;
+
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.repository.ProductRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryProductRepository;
+
+import java.util.List;
+
+/**
+ * Serves every read from memory and writes to the durable repository before
+ * memory, so nothing is acknowledged that a restart would lose. The products
+ * are read into memory once, by {@link #load()}.
+ */
+public final class WriteThroughProductRepository implements ProductRepository
+{
+	private final InMemoryProductRepository memory;
+	private final ProductRepository durable;
+
+	public WriteThroughProductRepository(InMemoryProductRepository memory, ProductRepository durable)
+	{
+		this.memory = memory;
+		this.durable = durable;
+	}
+
+	public synchronized void load() throws RepositoryException
+	{
+		memory.clear();
+		for (Product product : durable.getProducts())
+		{
+			memory.addProduct(product);
+		}
+	}
+
+	@Override
+	public synchronized void addProduct(Product product) throws RepositoryException
+	{
+		durable.addProduct(product);
+		memory.addProduct(product);
+	}
+
+	@Override
+	public Product getProduct(int id) throws RepositoryException
+	{
+		return memory.getProduct(id);
+	}
+
+	@Override
+	public List<Product> getProducts()
+	{
+		return memory.getProducts();
+	}
+
+	@Override
+	public synchronized void removeProduct(int id) throws RepositoryException
+	{
+		durable.removeProduct(id);
+		memory.removeProduct(id);
+	}
+
+	@Override
+	public synchronized void updateProduct(Product product) throws RepositoryException
+	{
+		durable.updateProduct(product);
+		memory.updateProduct(product);
+	}
+
+	@Override
+	public int getHighestId()
+	{
+		return memory.getHighestId();
+	}
+}
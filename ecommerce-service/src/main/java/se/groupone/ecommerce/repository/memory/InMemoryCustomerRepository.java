@@ -13,7 +13,7 @@ public class InMemoryCustomerRepository implements CustomerRepository
 	private HashMap<String, Customer> customers = new HashMap<String, Customer>();
 
 	@Override
-	public void addCustomer(Customer customer) throws RepositoryException
+	public synchronized void addCustomer(Customer customer) throws RepositoryException
 	{
 		if (customers.containsKey(customer.getUsername()))
 		{
@@ -23,7 +23,7 @@ public class InMemoryCustomerRepository implements CustomerRepository
 	}
 
 	@Override
-	public Customer getCustomer(String username) throws RepositoryException
+	public synchronized Customer getCustomer(String username) throws RepositoryException
 	{
 		if (customers.containsKey(username))
 		{
@@ -33,13 +33,25 @@ public class InMemoryCustomerRepository implements CustomerRepository
 	}
 
 	@Override
-	public List<Customer> getCustomers()
+	public synchronized String getPassword(String username) throws RepositoryException
+	{
+		return getCustomer(username).getPassword();
+	}
+
+	@Override
+	public synchronized void setPassword(String username, String password) throws RepositoryException
+	{
+		getCustomer(username).setPassword(password);
+	}
+
+	@Override
+	public synchronized List<Customer> getCustomers()
 	{
 		return new ArrayList<Customer>(customers.values());
 	}
 
 	@Override
-	public void updateCustomer(Customer customer) throws RepositoryException
+	public synchronized void updateCustomer(Customer customer) throws RepositoryException
 	{
 		if (customers.containsKey(customer.getUsername()))
 		{
@@ -52,7 +64,7 @@ public class InMemoryCustomerRepository implements CustomerRepository
 	}
 
 	@Override
-	public void removeCustomer(String username) throws RepositoryException
+	public synchronized void removeCustomer(String username) throws RepositoryException
 	{
 		if (customers.containsKey(username))
 		{
@@ -61,4 +73,9 @@ public class InMemoryCustomerRepository implements CustomerRepository
 		}
 		throw new RepositoryException("Could not remove customer: customer does not exist.");
 	}
+
+	public synchronized void clear()
+	{
+		customers.clear();
+	}
 }
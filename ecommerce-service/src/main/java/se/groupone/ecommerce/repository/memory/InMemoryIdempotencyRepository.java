@@ -0,0 +1,111 @@
+package se.groupone.ecommerce.repository.memory;
+
+import se.groupone.ecommerce.repository.IdempotencyRepository;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, expiring idempotency key store. Every key has the same time to live,
+ * so insertion order is also expiry order and eviction only ever has to look
+ * at the head of the queue.
+ */
+public class InMemoryIdempotencyRepository implements IdempotencyRepository
+{
+	public static final int DEFAULT_MAX_ENTRIES = 100_000;
+	public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+	private final ConcurrentHashMap<String, Entry> results = new ConcurrentHashMap<>();
+	private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+	private final int maxEntries;
+	private volatile long ttlMillis;
+
+	public InMemoryIdempotencyRepository()
+	{
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+	}
+
+	public InMemoryIdempotencyRepository(int maxEntries, long ttlMillis)
+	{
+		this.maxEntries = maxEntries;
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Applies to keys added from now on, existing keys keep their expiry.
+	 */
+	public void setTtlMillis(long ttlMillis)
+	{
+		if (ttlMillis < 0)
+		{
+			throw new IllegalArgumentException("TTL can not be negative");
+		}
+		this.ttlMillis = ttlMillis;
+	}
+
+	@Override
+	public Integer getResult(String key)
+	{
+		final Entry entry = results.get(key);
+		if (entry == null || entry.expires < System.currentTimeMillis())
+		{
+			return null;
+		}
+		return entry.resultId;
+	}
+
+	@Override
+	public void addResult(String key, int resultId)
+	{
+		final long now = System.currentTimeMillis();
+		final Entry entry = new Entry(key, resultId, now + ttlMillis);
+		// An expired entry not evicted yet gives way, its place in the queue is skipped when reached
+		final Entry existing = results.get(key);
+		if (existing != null && existing.expires < now)
+		{
+			results.remove(key, existing);
+		}
+		if (results.putIfAbsent(key, entry) == null)
+		{
+			insertionOrder.add(entry);
+			evict(now);
+		}
+	}
+
+	@Override
+	public void clear()
+	{
+		results.clear();
+		insertionOrder.clear();
+	}
+
+	private void evict(long now)
+	{
+		Entry oldest;
+		while ((oldest = insertionOrder.peek()) != null
+				&& (oldest.expires < now || results.size() > maxEntries))
+		{
+			oldest = insertionOrder.poll();
+			if (oldest != null)
+			{
+				results.remove(oldest.key, oldest);
+			}
+		}
+	}
+
+	private static final class Entry
+	{
+		private final String key;
+		private final int resultId;
+		private final long expires;
+
+		private Entry(String key, int resultId, long expires)
+		{
+			this.key = key;
+			this.resultId = resultId;
+			this.expires = expires;
+		}
+	}
+}
@@ -2,34 +2,45 @@ package se.groupone.ecommerce.repository.memory;
 
 import se.groupone.ecommerce.exception.RepositoryException;
 import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.OrderStatus;
+import se.groupone.ecommerce.model.PickList;
 import se.groupone.ecommerce.repository.OrderRepository;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
+import java.util.TimeZone;
+import java.util.TreeMap;
 
 public class InMemoryOrderRepository implements OrderRepository
 {
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
 	private HashMap<Integer, Order> orders = new HashMap<Integer, Order>();
+	private int highestId = 0;
+	// Per status, by creation day and id like the (status, created) index of the order table
+	private final EnumMap<OrderStatus, TreeMap<Long, Order>> ordersByStatus = new EnumMap<>(OrderStatus.class);
 
 	@Override
-	public void addOrder(Order order) throws RepositoryException
+	public synchronized void addOrder(Order order) throws RepositoryException
 	{
 		if (orders.containsKey(order.getId()))
 		{
 			throw new RepositoryException("Could not add order: order already exists in repository.");
 		}
 		orders.put(order.getId(), order);
-		System.out.println("Order added: " + order.getUsername() + " : "
-				+ order.getId() + " : " + order.getProductIds().toString());
+		index(order);
+		highestId = Math.max(highestId, order.getId());
 	}
 
 	@Override
-	public void removeOrder(int id) throws RepositoryException
+	public synchronized void removeOrder(int id) throws RepositoryException
 	{
 		if (orders.containsKey(id))
 		{
-			orders.remove(id);
+			unindex(orders.remove(id));
 		}
 		else
 		{
@@ -38,18 +49,21 @@ public class InMemoryOrderRepository implements OrderRepository
 	}
 
 	@Override
-	public Order getOrder(int orderId) throws RepositoryException
+	public synchronized Order getOrder(int orderId) throws RepositoryException
 	{
 		if (orders.containsKey(orderId))
 		{
-			return orders.get(orderId);
+			// A copy, so that shipping it does not move the stored order out of its status index
+			final Order order = orders.get(orderId);
+			return new Order(order.getId(), order.getUsername(), order.getProductIds(), order.getDateCreated(),
+					order.getStatus(), order.getDateShipped());
 		}
 		throw new RepositoryException("Cannot get order: order does not exist in repository.");
 	}
 
 	// Get orders for a specific user
 	@Override
-	public List<Order> getOrders(String customerUsername) throws RepositoryException
+	public synchronized List<Order> getOrders(String customerUsername) throws RepositoryException
 	{
 		ArrayList<Order> orderList = new ArrayList<Order>();
 		for (Order order : orders.values())
@@ -67,21 +81,167 @@ public class InMemoryOrderRepository implements OrderRepository
 	}
 
 	@Override
-	public int getHighestId()
+	public synchronized int getHighestId()
 	{
-		return 0;
+		return highestId;
 	}
 
 	@Override
-	public void updateOrder(Order order) throws RepositoryException
+	public synchronized void updateOrder(Order order) throws RepositoryException
 	{
-		if (orders.containsKey(order.getId()))
+		final Order existing = orders.get(order.getId());
+		if (existing != null)
 		{
+			unindex(existing);
 			orders.replace(order.getId(), order);
+			index(order);
 		}
 		else
 		{
 			throw new RepositoryException("No order with this ID exists in repository");
 		}
 	}
-}
\ No newline at end of file
+
+	@Override
+	public synchronized int[][] getOrderBaskets()
+	{
+		final int[][] baskets = new int[orders.size()][];
+		int i = 0;
+		for (Order order : orders.values())
+		{
+			final ArrayList<Integer> productIds = order.getProductIds();
+			baskets[i] = new int[productIds.size()];
+			for (int j = 0; j < productIds.size(); j++)
+			{
+				baskets[i][j] = productIds.get(j);
+			}
+			i++;
+		}
+		return baskets;
+	}
+
+	@Override
+	public synchronized void updateOrderStatus(int orderId, OrderStatus expected, OrderStatus status)
+			throws RepositoryException
+	{
+		checkStatus(orderId, expected);
+		setStatus(orders.get(orderId), status);
+	}
+
+	@Override
+	public synchronized void updateOrderStatuses(List<Integer> orderIds, OrderStatus expected,
+			OrderStatus status) throws RepositoryException
+	{
+		// All are checked before any is changed
+		for (int orderId : orderIds)
+		{
+			checkStatus(orderId, expected);
+		}
+		for (int orderId : orderIds)
+		{
+			setStatus(orders.get(orderId), status);
+		}
+	}
+
+	@Override
+	public synchronized PickList getPickList(Date fromDate, Date toDate, int limit)
+	{
+		final List<Integer> orderIds = new ArrayList<>();
+		final TreeMap<Integer, Integer> quantities = new TreeMap<>();
+		for (Order order : getOrdersByStatus(OrderStatus.PAID, fromDate, 0, toDate, limit))
+		{
+			orderIds.add(order.getId());
+			for (int productId : order.getProductIds())
+			{
+				quantities.merge(productId, 1, Integer::sum);
+			}
+		}
+		return new PickList(orderIds, quantities);
+	}
+
+	private void checkStatus(int orderId, OrderStatus expected) throws RepositoryException
+	{
+		final Order order = orders.get(orderId);
+		if (order == null)
+		{
+			throw new RepositoryException("No order with ID " + orderId + " exists in repository");
+		}
+		if (order.getStatus() != expected)
+		{
+			throw new RepositoryException("Order " + orderId + " is " + order.getStatus().getName()
+					+ ", not " + expected.getName());
+		}
+	}
+
+	private void setStatus(Order order, OrderStatus status)
+	{
+		final int orderId = order.getId();
+		final Order updated = new Order(orderId, order.getUsername(), order.getProductIds(),
+				order.getDateCreated(), status,
+				status == OrderStatus.SHIPPED ? new Date(System.currentTimeMillis()) : order.getDateShipped());
+		unindex(order);
+		orders.replace(orderId, updated);
+		index(updated);
+	}
+
+	@Override
+	public synchronized List<Order> getOrdersByStatus(OrderStatus status, Date fromDate, int afterId,
+			Date toDate, int limit)
+	{
+		final List<Order> page = new ArrayList<>();
+		final TreeMap<Long, Order> index = ordersByStatus.get(status);
+		if (index == null || day(fromDate) > day(toDate))
+		{
+			return page;
+		}
+		for (Order order : index.subMap(key(day(fromDate), afterId), false,
+				key(day(toDate), Integer.MAX_VALUE), true).values())
+		{
+			if (page.size() == limit)
+			{
+				break;
+			}
+			page.add(order);
+		}
+		return page;
+	}
+
+	public synchronized void clear()
+	{
+		orders.clear();
+		ordersByStatus.clear();
+		highestId = 0;
+	}
+
+	private void index(Order order)
+	{
+		ordersByStatus.computeIfAbsent(order.getStatus(), status -> new TreeMap<>())
+				.put(key(order), order);
+	}
+
+	private void unindex(Order order)
+	{
+		final TreeMap<Long, Order> index = ordersByStatus.get(order.getStatus());
+		if (index != null)
+		{
+			index.remove(key(order));
+		}
+	}
+
+	private static long key(Order order)
+	{
+		return key(day(order.getDateCreated()), order.getId());
+	}
+
+	private static long key(long day, int id)
+	{
+		return (day << 32) + id;
+	}
+
+	// Orders are stored by date only, so they are ordered by the day in the local time zone
+	private static long day(Date date)
+	{
+		final long millis = date.getTime();
+		return Math.floorDiv(millis + TimeZone.getDefault().getOffset(millis), MILLIS_PER_DAY);
+	}
+}
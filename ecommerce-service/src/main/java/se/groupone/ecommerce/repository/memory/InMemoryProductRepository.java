@@ -11,19 +11,21 @@ import java.util.List;
 public class InMemoryProductRepository implements ProductRepository
 {
 	private HashMap<Integer, Product> products = new HashMap<Integer, Product>();
+	private int highestId = 0;
 
 	@Override
-	public void addProduct(Product product) throws RepositoryException
+	public synchronized void addProduct(Product product) throws RepositoryException
 	{
 		if (products.containsKey(product.getId()))
 		{
 			throw new RepositoryException("Cannot get add: product with this id already exist in repository");
 		}
 		products.put(product.getId(), product);
+		highestId = Math.max(highestId, product.getId());
 	}
 
 	@Override
-	public Product getProduct(int id) throws RepositoryException
+	public synchronized Product getProduct(int id) throws RepositoryException
 	{
 		if (products.containsKey(id))
 		{
@@ -33,26 +35,32 @@ public class InMemoryProductRepository implements ProductRepository
 	}
 
 	@Override
-	public List<Product> getProducts()
+	public synchronized List<Product> getProducts()
 	{
 		return new ArrayList<Product>(products.values());
 	}
 
 	@Override
-	public void removeProduct(int productId)
+	public synchronized void removeProduct(int productId)
 	{
 		products.remove(productId);
 	}
 
 	@Override
-	public void updateProduct(Product product)
+	public synchronized void updateProduct(Product product)
 	{
 		products.replace(product.getId(), product);
 	}
 
 	@Override
-	public int getHighestId()
+	public synchronized int getHighestId()
 	{
-		return 0;
+		return highestId;
+	}
+
+	public synchronized void clear()
+	{
+		products.clear();
+		highestId = 0;
 	}
 }
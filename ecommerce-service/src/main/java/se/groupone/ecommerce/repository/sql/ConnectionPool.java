@@ -0,0 +1,486 @@
+package se.groupone.ecommerce.repository.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of JDBC connections. Closing a leased connection returns it to
+ * the pool with auto-commit restored and any open transaction rolled back.
+ * Each pooled connection keeps its own {@link StatementCache}, so a template
+ * is only parsed once per physical connection.
+ */
+public final class ConnectionPool
+{
+	// Idle connections older than this are validated before being handed out
+	private static final long VALIDATION_INTERVAL_MILLIS = 30_000;
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+	// The recent wait is reported as 0 once nobody has asked for a connection for this long
+	private static final long RECENT_WAIT_EXPIRY_MILLIS = 1000;
+
+	private final String name;
+	private final String url;
+	private final String username;
+	private final String password;
+	private volatile int maxSize;
+	private volatile int statementCacheSize;
+	private volatile long acquireTimeoutMillis;
+
+	private final ResizableSemaphore permits;
+	// Used as a stack so that the warmest connections and caches are reused first
+	private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final LongAdder waits = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	// Moving average of the permit wait over roughly the last 16 acquisitions
+	private final AtomicLong recentWaitMicros = new AtomicLong();
+	private volatile long lastAcquireMillis;
+
+	public ConnectionPool(String name, String url, String username, String password, int maxSize,
+			int statementCacheSize, long acquireTimeoutMillis)
+	{
+		this.name = name;
+		this.url = url;
+		this.username = username;
+		this.password = password;
+		this.maxSize = maxSize;
+		this.statementCacheSize = statementCacheSize;
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+		this.permits = new ResizableSemaphore(maxSize);
+	}
+
+	public Connection getConnection() throws SQLException
+	{
+		final long start = System.nanoTime();
+		acquirePermit();
+
+		try
+		{
+			PooledConnection pooled;
+			do
+			{
+				pooled = idle.pollFirst();
+			}
+			while (pooled != null && !pooled.validate());
+
+			if (pooled == null)
+			{
+				pooled = new PooledConnection(InstrumentedConnection.wrap(
+						DriverManager.getConnection(url, username, password)));
+			}
+
+			active.incrementAndGet();
+			QueryStatistics.getInstance().recordConnectionAcquired(System.nanoTime() - start);
+			return pooled.lease();
+		}
+		catch (SQLException | RuntimeException e)
+		{
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Changes the pool size. When shrinking, surplus connections are closed as
+	 * they are returned.
+	 */
+	public synchronized void setMaxSize(int newMaxSize)
+	{
+		if (newMaxSize < 1)
+		{
+			throw new IllegalArgumentException("Pool size must be at least 1");
+		}
+
+		final int delta = newMaxSize - maxSize;
+		if (delta > 0)
+		{
+			permits.release(delta);
+		}
+		else
+		{
+			permits.reducePermits(-delta);
+		}
+		maxSize = newMaxSize;
+
+		PooledConnection surplus;
+		while (idle.size() + active.get() > newMaxSize && (surplus = idle.pollLast()) != null)
+		{
+			surplus.discard();
+		}
+	}
+
+	public void setAcquireTimeoutMillis(long acquireTimeoutMillis)
+	{
+		if (acquireTimeoutMillis < 0)
+		{
+			throw new IllegalArgumentException("Timeout can not be negative");
+		}
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+	}
+
+	/**
+	 * Takes effect for each connection on its next cache miss.
+	 */
+	public void setStatementCacheSize(int statementCacheSize)
+	{
+		if (statementCacheSize < 0)
+		{
+			throw new IllegalArgumentException("Cache size can not be negative");
+		}
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	public int getActive()
+	{
+		return active.get();
+	}
+
+	public int getIdle()
+	{
+		return idle.size();
+	}
+
+	/**
+	 * @return threads currently blocked waiting for a connection
+	 */
+	public int getWaiting()
+	{
+		return waiting.get();
+	}
+
+	/**
+	 * @return number of acquisitions that had to wait for a connection
+	 */
+	public long getWaits()
+	{
+		return waits.sum();
+	}
+
+	public long getTimeouts()
+	{
+		return timeouts.sum();
+	}
+
+	/**
+	 * @return average time recent acquisitions waited for a connection, in
+	 *         milliseconds, including those that did not have to wait
+	 */
+	public double getRecentWaitMillis()
+	{
+		if (waiting.get() == 0
+				&& System.currentTimeMillis() - lastAcquireMillis > RECENT_WAIT_EXPIRY_MILLIS)
+		{
+			return 0;
+		}
+		return recentWaitMicros.get() / 1000.0;
+	}
+
+	private void acquirePermit() throws SQLException
+	{
+		if (permits.tryAcquire())
+		{
+			recordWait(0);
+			return;
+		}
+
+		final long start = System.nanoTime();
+		waits.increment();
+		waiting.incrementAndGet();
+		try
+		{
+			final boolean acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+			recordWait(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+			if (!acquired)
+			{
+				timeouts.increment();
+				throw new SQLException("Timed out after " + acquireTimeoutMillis
+						+ " ms waiting for a connection from pool " + name);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for a connection from pool " + name, e);
+		}
+		finally
+		{
+			waiting.decrementAndGet();
+		}
+	}
+
+	private void recordWait(long micros)
+	{
+		long average;
+		while ((average = recentWaitMicros.get()) != 0 || micros != 0)
+		{
+			if (recentWaitMicros.compareAndSet(average, (average * 15 + micros) / 16))
+			{
+				lastAcquireMillis = System.currentTimeMillis();
+				return;
+			}
+		}
+	}
+
+	private void release(PooledConnection pooled, boolean reusable)
+	{
+		active.decrementAndGet();
+		if (reusable && idle.size() + active.get() < maxSize)
+		{
+			pooled.lastUsed = System.currentTimeMillis();
+			idle.offerFirst(pooled);
+		}
+		else
+		{
+			pooled.discard();
+		}
+		permits.release();
+	}
+
+	private static final class ResizableSemaphore extends Semaphore
+	{
+		private static final long serialVersionUID = 1L;
+
+		private ResizableSemaphore(int permits)
+		{
+			super(permits, true);
+		}
+
+		@Override
+		protected void reducePermits(int reduction)
+		{
+			super.reducePermits(reduction);
+		}
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable
+	{
+		try
+		{
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw e.getCause();
+		}
+	}
+
+	private final class PooledConnection
+	{
+		private final Connection connection;
+		private final StatementCache statementCache;
+		private long lastUsed = System.currentTimeMillis();
+
+		private PooledConnection(Connection connection)
+		{
+			this.connection = connection;
+			this.statementCache = new StatementCache(connection,
+					() -> ConnectionPool.this.statementCacheSize);
+		}
+
+		private Connection lease()
+		{
+			final LeaseHandler handler = new LeaseHandler(this);
+			handler.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, handler);
+			return handler.proxy;
+		}
+
+		private boolean validate()
+		{
+			try
+			{
+				if (System.currentTimeMillis() - lastUsed < VALIDATION_INTERVAL_MILLIS
+						|| connection.isValid(VALIDATION_TIMEOUT_SECONDS))
+				{
+					return true;
+				}
+			}
+			catch (SQLException e)
+			{
+				// Treated as invalid
+			}
+			discard();
+			return false;
+		}
+
+		private void discard()
+		{
+			statementCache.closeAll();
+			try
+			{
+				connection.close();
+			}
+			catch (SQLException e)
+			{
+				// Nothing more to do with a broken connection
+			}
+		}
+	}
+
+	/**
+	 * The connection handed to the repositories. Only valid until closed.
+	 */
+	private final class LeaseHandler implements InvocationHandler
+	{
+		private final PooledConnection pooled;
+		private final List<StatementCache.CachedStatement> checkedOut = new ArrayList<>();
+		private final List<Statement> uncached = new ArrayList<>();
+		private Connection proxy;
+		private boolean closed;
+		private boolean broken;
+
+		private LeaseHandler(PooledConnection pooled)
+		{
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			final String name = method.getName();
+			if (name.equals("close"))
+			{
+				close();
+				return null;
+			}
+			if (name.equals("isClosed"))
+			{
+				return closed || pooled.connection.isClosed();
+			}
+			if (closed)
+			{
+				throw new SQLException("Connection has been returned to the pool");
+			}
+
+			try
+			{
+				if (name.equals("prepareStatement") && args.length == 1)
+				{
+					final StatementCache.CachedStatement cached =
+							pooled.statementCache.checkOut((String) args[0]);
+					if (cached != null)
+					{
+						checkedOut.add(cached);
+						return Proxy.newProxyInstance(Connection.class.getClassLoader(),
+								new Class<?>[] { PreparedStatement.class },
+								new CachedStatementHandler(cached));
+					}
+				}
+
+				final Object result = ConnectionPool.invoke(pooled.connection, method, args);
+				if (result instanceof Statement)
+				{
+					uncached.add((Statement) result);
+				}
+				return result;
+			}
+			catch (SQLException e)
+			{
+				// SQL state class 08 is a connection exception
+				if (e.getSQLState() != null && e.getSQLState().startsWith("08"))
+				{
+					broken = true;
+				}
+				throw e;
+			}
+		}
+
+		private void close()
+		{
+			if (closed)
+			{
+				return;
+			}
+			closed = true;
+
+			try
+			{
+				for (Statement statement : uncached)
+				{
+					statement.close();
+				}
+				for (StatementCache.CachedStatement cached : checkedOut)
+				{
+					if (cached.inUse)
+					{
+						pooled.statementCache.checkIn(cached);
+					}
+				}
+				if (!pooled.connection.getAutoCommit())
+				{
+					pooled.connection.rollback();
+					pooled.connection.setAutoCommit(true);
+				}
+			}
+			catch (SQLException e)
+			{
+				broken = true;
+			}
+			release(pooled, !broken);
+		}
+
+		private final class CachedStatementHandler implements InvocationHandler
+		{
+			private final StatementCache.CachedStatement cached;
+			private boolean statementClosed;
+
+			private CachedStatementHandler(StatementCache.CachedStatement cached)
+			{
+				this.cached = cached;
+			}
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+			{
+				final String name = method.getName();
+				if (name.equals("close"))
+				{
+					if (!statementClosed)
+					{
+						statementClosed = true;
+						pooled.statementCache.checkIn(cached);
+					}
+					return null;
+				}
+				if (name.equals("isClosed"))
+				{
+					return statementClosed || closed;
+				}
+				if (name.equals("getConnection"))
+				{
+					return LeaseHandler.this.proxy;
+				}
+				if (statementClosed)
+				{
+					throw new SQLException("Statement has been closed");
+				}
+				return ConnectionPool.invoke(cached.statement, method, args);
+			}
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package se.groupone.ecommerce.repository.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes reads to a replica pool and everything else to the primary pool.
+ * A session, normally the customer a request acts for, that has written to
+ * the primary keeps reading from the primary for a short window afterwards,
+ * so that customers always see their own changes despite replication lag.
+ * At most MAX_TRACKED_SESSIONS sessions are tracked; while that many have all
+ * written within the window, every read goes to the primary instead. Threads
+ * that read in order to write, such as those handling a request that changes
+ * something, can send all their reads to the primary with
+ * {@link #setPrimaryReads(boolean)}.
+ */
+public final class ConnectionRouter
+{
+	// Keeps the stickiness map from growing without bound
+	private static final int MAX_TRACKED_SESSIONS = 100_000;
+
+	private static final ThreadLocal<String> session = new ThreadLocal<>();
+	private static final ThreadLocal<Boolean> primaryReads = new ThreadLocal<>();
+
+	private final ConnectionPool primary;
+	private final ConnectionPool replica;
+	private volatile long stickyMillis;
+	private final ConcurrentHashMap<String, Long> lastWrites = new ConcurrentHashMap<>();
+	// Until when every read goes to the primary, because a session could not be tracked
+	private volatile long untrackedUntil;
+
+	/**
+	 * @param replica may be null, in which case all reads go to the primary
+	 * @param stickyMillis how long a session reads from the primary after a write
+	 */
+	public ConnectionRouter(ConnectionPool primary, ConnectionPool replica, long stickyMillis)
+	{
+		this.primary = primary;
+		this.replica = replica;
+		this.stickyMillis = stickyMillis;
+	}
+
+	public void setStickyMillis(long stickyMillis)
+	{
+		if (stickyMillis < 0)
+		{
+			throw new IllegalArgumentException("Stickiness window can not be negative");
+		}
+		this.stickyMillis = stickyMillis;
+	}
+
+	/**
+	 * Sets the session that connections on the current thread are used for,
+	 * or clears it when null.
+	 */
+	public static void setSession(String sessionKey)
+	{
+		if (sessionKey == null)
+		{
+			session.remove();
+		}
+		else
+		{
+			session.set(sessionKey);
+		}
+	}
+
+	/**
+	 * Sends every read on the current thread to the primary, or stops doing so.
+	 */
+	public static void setPrimaryReads(boolean primary)
+	{
+		if (primary)
+		{
+			primaryReads.set(Boolean.TRUE);
+		}
+		else
+		{
+			primaryReads.remove();
+		}
+	}
+
+	public Connection getWriteConnection() throws SQLException
+	{
+		final String sessionKey = session.get();
+		if (sessionKey != null && replica != null)
+		{
+			final long now = System.currentTimeMillis();
+			if (lastWrites.size() >= MAX_TRACKED_SESSIONS && !lastWrites.containsKey(sessionKey))
+			{
+				purgeExpired();
+			}
+			if (lastWrites.size() < MAX_TRACKED_SESSIONS || lastWrites.containsKey(sessionKey))
+			{
+				lastWrites.put(sessionKey, now);
+			}
+			else
+			{
+				untrackedUntil = now + stickyMillis;
+			}
+		}
+		return primary.getConnection();
+	}
+
+	public Connection getReadConnection() throws SQLException
+	{
+		return readsFromReplica() ? replica.getConnection() : primary.getConnection();
+	}
+
+	/**
+	 * Runs a lookup on a read connection. A lookup that finds nothing on the
+	 * replica is retried on the primary, since the row may not have been
+	 * replicated yet.
+	 */
+	public <T> T read(Lookup<T> lookup) throws SQLException
+	{
+		final boolean fromReplica = readsFromReplica();
+		try (Connection con = fromReplica ? replica.getConnection() : primary.getConnection())
+		{
+			final T result = lookup.find(con);
+			if (result != null || !fromReplica)
+			{
+				return result;
+			}
+		}
+
+		try (Connection con = primary.getConnection())
+		{
+			return lookup.find(con);
+		}
+	}
+
+	public List<ConnectionPool> getPools()
+	{
+		return replica == null ? Collections.singletonList(primary)
+				: Arrays.asList(primary, replica);
+	}
+
+	private boolean readsFromReplica()
+	{
+		if (replica == null || primaryReads.get() != null)
+		{
+			return false;
+		}
+
+		final long now = System.currentTimeMillis();
+		if (now < untrackedUntil)
+		{
+			return false;
+		}
+		final String sessionKey = session.get();
+		if (sessionKey == null)
+		{
+			return true;
+		}
+
+		final Long lastWrite = lastWrites.get(sessionKey);
+		return lastWrite == null || now - lastWrite >= stickyMillis;
+	}
+
+	private void purgeExpired()
+	{
+		final long expired = System.currentTimeMillis() - stickyMillis;
+		lastWrites.values().removeIf(lastWrite -> lastWrite < expired);
+	}
+
+	public interface Lookup<T>
+	{
+		/**
+		 * @return the result, or null if nothing was found
+		 */
+		T find(Connection con) throws SQLException;
+	}
+}
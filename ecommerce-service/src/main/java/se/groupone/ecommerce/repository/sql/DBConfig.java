@@ -1,10 +1,65 @@
 package se.groupone.ecommerce.repository.sql;
 
+import se.groupone.ecommerce.config.Configuration;
+
 public class DBConfig
 {
-	public final static String HOST = "localhost";
-	public final static String PORT = "3306";
-	public final static String USERNAME = "root";
-	public final static String PASSWORD = "password";
-	public final static String DATABASE = "ecomm";
+	private static final Configuration config = Configuration.getInstance();
+
+	public final static String HOST = config.getString("ecommerce.jdbc.host", "localhost");
+	public final static String PORT = config.getString("ecommerce.jdbc.port", "3306");
+	public final static String USERNAME = config.getString("ecommerce.jdbc.username", "root");
+	public final static String PASSWORD = config.getString("ecommerce.jdbc.password", "password");
+	public final static String DATABASE = config.getString("ecommerce.jdbc.database", "ecomm");
+
+	// Overridable so that tools can run the repositories against an embedded database.
+	// Server side prepares let the pooled statement caches skip parsing entirely.
+	public final static String URL = config.getString("ecommerce.jdbc.url",
+			"jdbc:mysql://" + HOST + ":" + PORT + "/" + DATABASE + "?useServerPrepStmts=true");
+
+	// Reads are only split off when a replica URL is given
+	public final static String REPLICA_URL = config.getString("ecommerce.jdbc.replica.url", null);
+	public final static String REPLICA_USERNAME =
+			config.getString("ecommerce.jdbc.replica.username", USERNAME);
+	public final static String REPLICA_PASSWORD =
+			config.getString("ecommerce.jdbc.replica.password", PASSWORD);
+
+	// Reloadable at runtime, see SQLConnector
+	public final static String POOL_SIZE_KEY = "ecommerce.sql.poolSize";
+	public final static String POOL_TIMEOUT_MILLIS_KEY = "ecommerce.sql.poolTimeoutMillis";
+	public final static String STATEMENT_CACHE_SIZE_KEY = "ecommerce.sql.statementCacheSize";
+	public final static String REPLICA_STICKY_MILLIS_KEY = "ecommerce.sql.replicaStickyMillis";
+	public final static String SLOW_QUERY_MILLIS_KEY = "ecommerce.sql.slowQueryMillis";
+	public final static String SLOW_QUERY_SAMPLE_RATE_KEY = "ecommerce.sql.slowQuerySampleRate";
+
+	public static int getPoolSize()
+	{
+		return config.getInt(POOL_SIZE_KEY, 20);
+	}
+
+	public static long getPoolTimeoutMillis()
+	{
+		return config.getLong(POOL_TIMEOUT_MILLIS_KEY, 5000);
+	}
+
+	public static int getStatementCacheSize()
+	{
+		return config.getInt(STATEMENT_CACHE_SIZE_KEY, 64);
+	}
+
+	// Should comfortably exceed the normal replication lag
+	public static long getReplicaStickyMillis()
+	{
+		return config.getLong(REPLICA_STICKY_MILLIS_KEY, 5000);
+	}
+
+	public static long getSlowQueryMillis()
+	{
+		return config.getLong(SLOW_QUERY_MILLIS_KEY, 200);
+	}
+
+	public static int getSlowQuerySampleRate()
+	{
+		return config.getInt(SLOW_QUERY_SAMPLE_RATE_KEY, 1);
+	}
 }
@@ -0,0 +1,149 @@
+package se.groupone.ecommerce.repository.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Wraps a JDBC connection so that every statement it creates reports its
+ * execution and result set iteration times to {@link QueryStatistics}.
+ * Prepared statements are timed under the SQL they were prepared with, which
+ * in the repositories is always a parameterized template.
+ */
+final class InstrumentedConnection
+{
+	private static final QueryStatistics statistics = QueryStatistics.getInstance();
+
+	private InstrumentedConnection()
+	{
+	}
+
+	static Connection wrap(Connection connection)
+	{
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new ConnectionHandler(connection));
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable
+	{
+		try
+		{
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw e.getCause();
+		}
+	}
+
+	private static final class ConnectionHandler implements InvocationHandler
+	{
+		private final Connection connection;
+
+		private ConnectionHandler(Connection connection)
+		{
+			this.connection = connection;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			final String name = method.getName();
+			final Object result = InstrumentedConnection.invoke(connection, method, args);
+
+			if (result instanceof PreparedStatement && name.startsWith("prepare"))
+			{
+				final Class<?> type = result instanceof java.sql.CallableStatement
+						? java.sql.CallableStatement.class : PreparedStatement.class;
+				return Proxy.newProxyInstance(Connection.class.getClassLoader(),
+						new Class<?>[] { type },
+						new StatementHandler((Statement) result, (String) args[0]));
+			}
+			if (result instanceof Statement)
+			{
+				return Proxy.newProxyInstance(Connection.class.getClassLoader(),
+						new Class<?>[] { Statement.class },
+						new StatementHandler((Statement) result, null));
+			}
+			if (name.equals("commit") || name.equals("rollback"))
+			{
+				statistics.recordRoundTrip();
+			}
+			return result;
+		}
+	}
+
+	private static final class StatementHandler implements InvocationHandler
+	{
+		private final Statement statement;
+		private final String preparedSql;
+
+		private StatementHandler(Statement statement, String preparedSql)
+		{
+			this.statement = statement;
+			this.preparedSql = preparedSql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			if (!method.getName().startsWith("execute"))
+			{
+				return InstrumentedConnection.invoke(statement, method, args);
+			}
+
+			final String sql = preparedSql != null || args == null || args.length == 0
+					? preparedSql : (String) args[0];
+			final long start = System.nanoTime();
+			final Object result = InstrumentedConnection.invoke(statement, method, args);
+			final long elapsed = System.nanoTime() - start;
+
+			statistics.recordRoundTrip();
+			if (sql != null)
+			{
+				final QueryStatistics.TemplateStatistics template = statistics.getTemplate(sql);
+				template.recordExecution(elapsed);
+				SlowQueryLog.record(sql, elapsed);
+
+				if (result instanceof ResultSet)
+				{
+					return Proxy.newProxyInstance(Connection.class.getClassLoader(),
+							new Class<?>[] { ResultSet.class },
+							new ResultSetHandler((ResultSet) result, template));
+				}
+			}
+			return result;
+		}
+	}
+
+	private static final class ResultSetHandler implements InvocationHandler
+	{
+		private final ResultSet resultSet;
+		private final QueryStatistics.TemplateStatistics template;
+
+		private ResultSetHandler(ResultSet resultSet, QueryStatistics.TemplateStatistics template)
+		{
+			this.resultSet = resultSet;
+			this.template = template;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			if (!method.getName().equals("next"))
+			{
+				return InstrumentedConnection.invoke(resultSet, method, args);
+			}
+
+			final long start = System.nanoTime();
+			final Object hasRow = InstrumentedConnection.invoke(resultSet, method, args);
+			template.recordResultSetIteration(System.nanoTime() - start, (Boolean) hasRow);
+			return hasRow;
+		}
+	}
+}
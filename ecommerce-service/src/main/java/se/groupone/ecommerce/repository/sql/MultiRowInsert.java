@@ -0,0 +1,125 @@
+package se.groupone.ecommerce.repository.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Collects rows into multi-row INSERT statements on one connection. The
+ * connection goes back to the pool with its checks turned on again.
+ */
+final class MultiRowInsert implements AutoCloseable
+{
+	private final Connection con;
+	private final String table;
+	private final String columns;
+	private final int columnCount;
+	private final int rowsPerStatement;
+	private final Object[] values;
+	private final PreparedStatement fullStatement;
+	private int rows;
+	private long written;
+
+	MultiRowInsert(Connection con, String table, String columns, int columnCount, int rowsPerStatement)
+			throws SQLException
+	{
+		this.con = con;
+		this.table = table;
+		this.columns = columns;
+		this.columnCount = columnCount;
+		this.rowsPerStatement = rowsPerStatement;
+		this.values = new Object[rowsPerStatement * columnCount];
+		try (Statement statement = con.createStatement())
+		{
+			statement.execute("SET FOREIGN_KEY_CHECKS = 0");
+			statement.execute("SET UNIQUE_CHECKS = 0");
+			con.setAutoCommit(false);
+			fullStatement = con.prepareStatement(sql(rowsPerStatement));
+		}
+		catch (SQLException e)
+		{
+			restoreChecks();
+			throw e;
+		}
+	}
+
+	void add(Object... row) throws SQLException
+	{
+		System.arraycopy(row, 0, values, rows * columnCount, columnCount);
+		if (++rows == rowsPerStatement)
+		{
+			execute(fullStatement);
+		}
+	}
+
+	long finish() throws SQLException
+	{
+		if (rows > 0)
+		{
+			try (PreparedStatement lastStatement = con.prepareStatement(sql(rows)))
+			{
+				execute(lastStatement);
+			}
+		}
+		return written;
+	}
+
+	private void execute(PreparedStatement statement) throws SQLException
+	{
+		for (int i = 0; i < rows * columnCount; i++)
+		{
+			statement.setObject(i + 1, values[i]);
+		}
+		statement.executeUpdate();
+		con.commit();
+		written += rows;
+		rows = 0;
+	}
+
+	private String sql(int rowCount)
+	{
+		final StringBuilder row = new StringBuilder("(?");
+		for (int i = 1; i < columnCount; i++)
+		{
+			row.append(", ?");
+		}
+		row.append(')');
+
+		final StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+				.append(" (").append(columns).append(") VALUES ").append(row);
+		for (int i = 1; i < rowCount; i++)
+		{
+			sql.append(", ").append(row);
+		}
+		return sql.toString();
+	}
+
+	// Anything not committed yet is from a statement that failed
+	@Override
+	public void close() throws SQLException
+	{
+		try
+		{
+			fullStatement.close();
+		}
+		finally
+		{
+			restoreChecks();
+		}
+	}
+
+	private void restoreChecks() throws SQLException
+	{
+		if (!con.getAutoCommit())
+		{
+			con.rollback();
+			con.setAutoCommit(true);
+		}
+		try (Statement statement = con.createStatement())
+		{
+			statement.execute("SET UNIQUE_CHECKS = 1");
+			statement.execute("SET FOREIGN_KEY_CHECKS = 1");
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package se.groupone.ecommerce.repository.sql;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timing statistics for the SQL layer: connection acquisition, prepared
+ * statement cache efficiency, and execution and result set iteration per
+ * statement template. Also counts the database
+ * round trips made by the current thread so that the webservice can report
+ * them per request.
+ */
+public final class QueryStatistics
+{
+	private static final QueryStatistics INSTANCE = new QueryStatistics();
+
+	private final ConcurrentHashMap<String, TemplateStatistics> templates = new ConcurrentHashMap<>();
+	private final LongAdder connectionAcquisitions = new LongAdder();
+	private final LongAdder connectionAcquireNanos = new LongAdder();
+	private final AtomicLong maxConnectionAcquireNanos = new AtomicLong();
+	private final LongAdder statementCacheHits = new LongAdder();
+	private final LongAdder statementCacheMisses = new LongAdder();
+	private final LongAdder statementCacheEvictions = new LongAdder();
+	private final ThreadLocal<int[]> roundTrips = new ThreadLocal<int[]>()
+	{
+		@Override
+		protected int[] initialValue()
+		{
+			return new int[1];
+		}
+	};
+
+	private QueryStatistics()
+	{
+	}
+
+	public static QueryStatistics getInstance()
+	{
+		return INSTANCE;
+	}
+
+	public Collection<TemplateStatistics> getTemplates()
+	{
+		return templates.values();
+	}
+
+	public long getConnectionAcquisitions()
+	{
+		return connectionAcquisitions.sum();
+	}
+
+	public long getConnectionAcquireNanos()
+	{
+		return connectionAcquireNanos.sum();
+	}
+
+	public long getMaxConnectionAcquireNanos()
+	{
+		return maxConnectionAcquireNanos.get();
+	}
+
+	public long getStatementCacheHits()
+	{
+		return statementCacheHits.sum();
+	}
+
+	public long getStatementCacheMisses()
+	{
+		return statementCacheMisses.sum();
+	}
+
+	public long getStatementCacheEvictions()
+	{
+		return statementCacheEvictions.sum();
+	}
+
+	/**
+	 * Starts a new round trip count for the current thread, typically at the
+	 * start of an HTTP request.
+	 */
+	public void resetRoundTrips()
+	{
+		roundTrips.get()[0] = 0;
+	}
+
+	/**
+	 * @return number of round trips made by the current thread since the last
+	 *         reset
+	 */
+	public int getRoundTrips()
+	{
+		return roundTrips.get()[0];
+	}
+
+	void recordConnectionAcquired(long nanos)
+	{
+		connectionAcquisitions.increment();
+		connectionAcquireNanos.add(nanos);
+		updateMax(maxConnectionAcquireNanos, nanos);
+	}
+
+	void recordStatementCacheHit()
+	{
+		statementCacheHits.increment();
+	}
+
+	void recordStatementCacheMiss()
+	{
+		statementCacheMisses.increment();
+	}
+
+	void recordStatementCacheEviction()
+	{
+		statementCacheEvictions.increment();
+	}
+
+	void recordRoundTrip()
+	{
+		roundTrips.get()[0]++;
+	}
+
+	TemplateStatistics getTemplate(String sql)
+	{
+		TemplateStatistics template = templates.get(sql);
+		if (template == null)
+		{
+			final TemplateStatistics newTemplate = new TemplateStatistics(sql);
+			template = templates.putIfAbsent(sql, newTemplate);
+			if (template == null)
+			{
+				template = newTemplate;
+			}
+		}
+		return template;
+	}
+
+	private static void updateMax(AtomicLong max, long value)
+	{
+		long currentMax;
+		while (value > (currentMax = max.get()))
+		{
+			if (max.compareAndSet(currentMax, value))
+			{
+				return;
+			}
+		}
+	}
+
+	public static final class TemplateStatistics
+	{
+		private final String sql;
+		private final LongAdder executions = new LongAdder();
+		private final LongAdder executeNanos = new LongAdder();
+		private final AtomicLong maxExecuteNanos = new AtomicLong();
+		private final LongAdder rowsRead = new LongAdder();
+		private final LongAdder resultSetNanos = new LongAdder();
+
+		private TemplateStatistics(String sql)
+		{
+			this.sql = sql;
+		}
+
+		void recordExecution(long nanos)
+		{
+			executions.increment();
+			executeNanos.add(nanos);
+			updateMax(maxExecuteNanos, nanos);
+		}
+
+		void recordResultSetIteration(long nanos, boolean rowRead)
+		{
+			resultSetNanos.add(nanos);
+			if (rowRead)
+			{
+				rowsRead.increment();
+			}
+		}
+
+		public String getSql()
+		{
+			return sql;
+		}
+
+		public long getExecutions()
+		{
+			return executions.sum();
+		}
+
+		public long getExecuteNanos()
+		{
+			return executeNanos.sum();
+		}
+
+		public long getMaxExecuteNanos()
+		{
+			return maxExecuteNanos.get();
+		}
+
+		public long getRowsRead()
+		{
+			return rowsRead.sum();
+		}
+
+		public long getResultSetNanos()
+		{
+			return resultSetNanos.sum();
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package se.groupone.ecommerce.repository.sql;
+
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.model.Customer;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.seed.SyntheticDataset;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes a generated dataset straight into empty tables, one table per
+ * connection and thread. Rows are sent many to an INSERT and committed a
+ * statement at a time, with foreign key and unique checks off, which is the
+ * fastest way in through plain JDBC.
+ */
+public final class SQLBulkLoader
+{
+	public static final int DEFAULT_ROWS_PER_STATEMENT = 1000;
+	public static final int TABLES = 5;
+
+	private final int rowsPerStatement;
+	private final int threads;
+
+	public SQLBulkLoader()
+	{
+		this(DEFAULT_ROWS_PER_STATEMENT, TABLES);
+	}
+
+	public SQLBulkLoader(int rowsPerStatement, int threads)
+	{
+		this.rowsPerStatement = Math.max(1, rowsPerStatement);
+		this.threads = Math.max(1, Math.min(TABLES, threads));
+	}
+
+	/**
+	 * @return the number of rows written, over all tables
+	 */
+	public long load(SyntheticDataset dataset) throws RepositoryException
+	{
+		final AtomicInteger threadNumber = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable ->
+		{
+			final Thread thread = new Thread(runnable, "bulk-load-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try
+		{
+			final List<Future<Long>> tables = new ArrayList<>();
+			tables.add(executor.submit(() -> loadCustomers(dataset)));
+			tables.add(executor.submit(() -> loadCarts(dataset)));
+			tables.add(executor.submit(() -> loadProducts(dataset)));
+			tables.add(executor.submit(() -> loadOrders(dataset)));
+			tables.add(executor.submit(() -> loadOrderItems(dataset)));
+
+			long rows = 0;
+			for (Future<Long> table : tables)
+			{
+				rows += table.get();
+			}
+			return rows;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RepositoryException("Interrupted while loading the dataset", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RepositoryException)
+			{
+				throw (RepositoryException) e.getCause();
+			}
+			throw new RepositoryException("Could not load the dataset", e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private long loadCustomers(SyntheticDataset dataset) throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection();
+			 MultiRowInsert insert = new MultiRowInsert(con, "customer",
+					 "user_name, password, email, first_name, last_name, address, phone", 7,
+					 rowsPerStatement))
+		{
+			for (int i = 0; i < dataset.getCustomers(); i++)
+			{
+				final Customer customer = dataset.customer(i);
+				insert.add(customer.getUsername(), customer.getPassword(), customer.getEmail(),
+						customer.getFirstName(), customer.getLastName(), customer.getAddress(),
+						customer.getPhoneNumber());
+			}
+			return insert.finish();
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not load customers", e);
+		}
+	}
+
+	private long loadCarts(SyntheticDataset dataset) throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection();
+			 MultiRowInsert insert = new MultiRowInsert(con, "customer_cart", "id_product, user_name", 2,
+					 rowsPerStatement))
+		{
+			for (int i = 0; i < dataset.getCustomers(); i++)
+			{
+				final Customer customer = dataset.customer(i);
+				for (int productId : customer.getShoppingCart())
+				{
+					insert.add(productId, customer.getUsername());
+				}
+			}
+			return insert.finish();
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not load shopping carts", e);
+		}
+	}
+
+	private long loadProducts(SyntheticDataset dataset) throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection();
+			 MultiRowInsert insert = new MultiRowInsert(con, "product",
+					 "id_product, title, category, manufacturer, description, img, price, quantity", 8,
+					 rowsPerStatement))
+		{
+			for (int id = 1; id <= dataset.getProducts(); id++)
+			{
+				final Product product = dataset.product(id);
+				insert.add(product.getId(), product.getTitle(), product.getCategory(),
+						product.getManufacturer(), product.getDescription(), product.getImg(),
+						product.getPrice(), product.getQuantity());
+			}
+			return insert.finish();
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not load products", e);
+		}
+	}
+
+	private long loadOrders(SyntheticDataset dataset) throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection();
+			 MultiRowInsert insert = new MultiRowInsert(con, "`order`",
+					 "id_order, customer_name, created, status, shipped", 5, rowsPerStatement))
+		{
+			for (int id = 1; id <= dataset.getOrders(); id++)
+			{
+				final Order order = dataset.order(id);
+				insert.add(order.getId(), order.getUsername(),
+						new java.sql.Date(order.getDateCreated().getTime()), order.getStatus().getName(),
+						order.getDateShipped() == null ? null : new java.sql.Date(order.getDateShipped().getTime()));
+			}
+			return insert.finish();
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not load orders", e);
+		}
+	}
+
+	private long loadOrderItems(SyntheticDataset dataset) throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection();
+			 MultiRowInsert insert = new MultiRowInsert(con, "product_order", "id_order, id_product", 2,
+					 rowsPerStatement))
+		{
+			for (int id = 1; id <= dataset.getOrders(); id++)
+			{
+				for (int productId : dataset.order(id).getProductIds())
+				{
+					insert.add(id, productId);
+				}
+			}
+			return insert.finish();
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not load order items", e);
+		}
+	}
+}
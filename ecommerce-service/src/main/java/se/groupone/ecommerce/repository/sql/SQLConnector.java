@@ -1,36 +1,143 @@
 package se.groupone.ecommerce.repository.sql;
 
+import se.groupone.ecommerce.config.Configuration;
 import se.groupone.ecommerce.exception.RepositoryException;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
 
 public final class SQLConnector
 {
 	private static final String sqlDriver = "com.mysql.jdbc.Driver";
 
+	private static volatile ConnectionRouter router;
+
+	static
+	{
+		final Configuration config = Configuration.getInstance();
+		config.addListener(DBConfig.POOL_SIZE_KEY, key -> {
+			for (ConnectionPool pool : getPools())
+			{
+				pool.setMaxSize(DBConfig.getPoolSize());
+			}
+		});
+		config.addListener(DBConfig.POOL_TIMEOUT_MILLIS_KEY, key -> {
+			for (ConnectionPool pool : getPools())
+			{
+				pool.setAcquireTimeoutMillis(DBConfig.getPoolTimeoutMillis());
+			}
+		});
+		config.addListener(DBConfig.STATEMENT_CACHE_SIZE_KEY, key -> {
+			for (ConnectionPool pool : getPools())
+			{
+				pool.setStatementCacheSize(DBConfig.getStatementCacheSize());
+			}
+		});
+		config.addListener(DBConfig.REPLICA_STICKY_MILLIS_KEY, key -> {
+			if (router != null)
+			{
+				router.setStickyMillis(DBConfig.getReplicaStickyMillis());
+			}
+		});
+		config.addListener(DBConfig.SLOW_QUERY_MILLIS_KEY,
+				key -> SlowQueryLog.setThresholdMillis(DBConfig.getSlowQueryMillis()));
+		config.addListener(DBConfig.SLOW_QUERY_SAMPLE_RATE_KEY,
+				key -> SlowQueryLog.setSampleRate(DBConfig.getSlowQuerySampleRate()));
+	}
+
+	/**
+	 * @return a connection to the primary, for writes and reads that must see
+	 *         the latest data
+	 */
 	public static Connection getConnection() throws RepositoryException
 	{
 		try
 		{
-			Class.forName(sqlDriver);
+			return getRouter().getWriteConnection();
 		}
-		catch (ClassNotFoundException e)
+		catch (SQLException e)
 		{
-			throw new RepositoryException("Could not load database driver: " + e.getMessage());
+			throw new RepositoryException(
+					"Could not getConnection() from connection pool", e);
 		}
+	}
 
+	/**
+	 * @return a connection to a replica, or to the primary if there is none or
+	 *         the current session has written recently
+	 */
+	public static Connection getReadConnection() throws RepositoryException
+	{
 		try
 		{
-			return DriverManager
-					.getConnection("jdbc:mysql://" + DBConfig.HOST + ":" + DBConfig.PORT + "/"
-							+ DBConfig.DATABASE, DBConfig.USERNAME, DBConfig.PASSWORD);
+			return getRouter().getReadConnection();
 		}
 		catch (SQLException e)
 		{
 			throw new RepositoryException(
-					"Could not getConnection() from DriverManager", e);
+					"Could not getReadConnection() from connection pool", e);
+		}
+	}
+
+	/**
+	 * Runs a lookup on a read connection, retrying it on the primary if the
+	 * replica has no match.
+	 */
+	public static <T> T read(ConnectionRouter.Lookup<T> lookup)
+			throws RepositoryException, SQLException
+	{
+		return getRouter().read(lookup);
+	}
+
+	public static List<ConnectionPool> getPools()
+	{
+		return router == null ? Collections.<ConnectionPool>emptyList() : router.getPools();
+	}
+
+	private static ConnectionRouter getRouter() throws RepositoryException
+	{
+		if (router == null)
+		{
+			synchronized (SQLConnector.class)
+			{
+				if (router == null)
+				{
+					loadDriver(DBConfig.URL);
+					final ConnectionPool primary = new ConnectionPool("primary", DBConfig.URL,
+							DBConfig.USERNAME, DBConfig.PASSWORD, DBConfig.getPoolSize(),
+							DBConfig.getStatementCacheSize(), DBConfig.getPoolTimeoutMillis());
+
+					ConnectionPool replica = null;
+					if (DBConfig.REPLICA_URL != null)
+					{
+						loadDriver(DBConfig.REPLICA_URL);
+						replica = new ConnectionPool("replica", DBConfig.REPLICA_URL,
+								DBConfig.REPLICA_USERNAME, DBConfig.REPLICA_PASSWORD,
+								DBConfig.getPoolSize(), DBConfig.getStatementCacheSize(),
+								DBConfig.getPoolTimeoutMillis());
+					}
+					router = new ConnectionRouter(primary, replica,
+							DBConfig.getReplicaStickyMillis());
+				}
+			}
+		}
+		return router;
+	}
+
+	private static void loadDriver(String url) throws RepositoryException
+	{
+		if (url.startsWith("jdbc:mysql:"))
+		{
+			try
+			{
+				Class.forName(sqlDriver);
+			}
+			catch (ClassNotFoundException e)
+			{
+				throw new RepositoryException("Could not load database driver: " + e.getMessage());
+			}
 		}
 	}
 }
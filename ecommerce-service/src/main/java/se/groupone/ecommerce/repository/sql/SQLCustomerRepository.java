@@ -11,19 +11,39 @@ import java.util.List;
 
 public final class SQLCustomerRepository implements CustomerRepository
 {
-	private final String customerTableName = "customer";
-	private final String customerCartTableName = "customer_cart";
+	private static final String CUSTOMER_TABLE = "customer";
+	private static final String CUSTOMER_CART_TABLE = "customer_cart";
+
+	private static final String ADD_CUSTOMER_QUERY =
+			"INSERT INTO " + CUSTOMER_TABLE + " "
+				+ "(user_name, password, email, first_name, last_name, address, phone) "
+				+ "VALUES(?, ?, ?, ?, ?, ?, ?);";
+	private static final String GET_CUSTOMER_QUERY =
+			"SELECT * FROM " + CUSTOMER_TABLE + " WHERE user_name = ?;";
+	private static final String GET_PASSWORD_QUERY =
+			"SELECT password FROM " + CUSTOMER_TABLE + " WHERE user_name = ?;";
+	private static final String SET_PASSWORD_QUERY =
+			"UPDATE " + CUSTOMER_TABLE + " SET password = ? WHERE user_name = ?;";
+	private static final String GET_CART_ITEMS_QUERY =
+			"SELECT * FROM " + CUSTOMER_CART_TABLE + " WHERE user_name = ?;";
+	private static final String GET_ALL_CUSTOMERS_QUERY =
+			"SELECT * FROM " + CUSTOMER_TABLE + ";";
+	private static final String UPDATE_CUSTOMER_QUERY =
+			"UPDATE " + CUSTOMER_TABLE
+				+ " SET password = ?, email = ?, first_name = ?, "
+				+ "last_name = ?, address = ? , phone = ? WHERE user_name = ?;";
+	private static final String DELETE_OLD_CART_QUERY =
+			"DELETE FROM " + CUSTOMER_CART_TABLE + " WHERE user_name = ?;";
+	private static final String INSERT_NEW_CART_ITEM_QUERY =
+			"INSERT INTO " + CUSTOMER_CART_TABLE + " (id_product, user_name) VALUES (?, ?)";
+	private static final String REMOVE_CUSTOMER_QUERY =
+			"DELETE FROM " + CUSTOMER_TABLE + " WHERE user_name = ?;";
 
 	@Override
 	public void addCustomer(final Customer customer) throws RepositoryException
 	{
-		final String addProductQuery =
-				"INSERT INTO " + customerTableName + " "
-						+ "(user_name, password, email, first_name, last_name, address, phone) "
-						+ "VALUES(?, ?, ?, ?, ?, ?, ?);";
-
 		try (Connection con = SQLConnector.getConnection();
-			 PreparedStatement ps = con.prepareStatement(addProductQuery))
+			 PreparedStatement ps = con.prepareStatement(ADD_CUSTOMER_QUERY))
 		{
 			ps.setString(1, customer.getUsername());
 			ps.setString(2, customer.getPassword());
@@ -45,9 +65,8 @@ public final class SQLCustomerRepository implements CustomerRepository
 	public Customer getCustomer(final String username) throws RepositoryException
 	{
 		Customer customer;
-		String getCustomerQuery = "SELECT * FROM " + customerTableName + " WHERE user_name = ?;";
-		try (Connection con = SQLConnector.getConnection();
-			 PreparedStatement ps = con.prepareStatement(getCustomerQuery))
+		try (Connection con = SQLConnector.getReadConnection();
+			 PreparedStatement ps = con.prepareStatement(GET_CUSTOMER_QUERY))
 		{
 			ps.setString(1, username);
 			ResultSet resultSet = ps.executeQuery();
@@ -56,7 +75,7 @@ public final class SQLCustomerRepository implements CustomerRepository
 			{
 				customer = makeCustomerFromResultSet(resultSet);
 
-				ShoppingCart shoppingCartFromDB = getCustomerCartFromDB(customer.getUsername());
+				ShoppingCart shoppingCartFromDB = getCustomerCartFromDB(con, customer.getUsername());
 				customer.replaceShoppingCart(shoppingCartFromDB);
 
 				return customer;
@@ -73,6 +92,53 @@ public final class SQLCustomerRepository implements CustomerRepository
 		}
 	}
 
+	@Override
+	public String getPassword(final String username) throws RepositoryException
+	{
+		// Read from the primary, a replica may not have a customer who just signed up
+		try (Connection con = SQLConnector.getConnection();
+			 PreparedStatement ps = con.prepareStatement(GET_PASSWORD_QUERY))
+		{
+			ps.setString(1, username);
+			ResultSet resultSet = ps.executeQuery();
+
+			if (resultSet.next())
+			{
+				return resultSet.getString(1);
+			}
+
+			throw new RepositoryException(
+					"No matches for customer with username: " + username + " found in database!");
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException(
+					"Failed to retrieve password of customer with username: " + username
+							+ " from database!", e);
+		}
+	}
+
+	@Override
+	public void setPassword(final String username, final String password) throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection();
+			 PreparedStatement ps = con.prepareStatement(SET_PASSWORD_QUERY))
+		{
+			ps.setString(1, password);
+			ps.setString(2, username);
+			if (ps.executeUpdate() == 0)
+			{
+				throw new RepositoryException(
+						"No matches for customer with username: " + username + " found in database!");
+			}
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException(
+					"Failed to update password of customer with username: " + username, e);
+		}
+	}
+
 	private Customer makeCustomerFromResultSet(ResultSet resultSet)
 			throws SQLException, RepositoryException
 	{
@@ -86,14 +152,12 @@ public final class SQLCustomerRepository implements CustomerRepository
 		return customer;
 	}
 
-	private ShoppingCart getCustomerCartFromDB(String username) throws RepositoryException
+	// Uses the caller's connection, so a bounded pool is never waited on while holding one
+	private ShoppingCart getCustomerCartFromDB(Connection con, String username) throws RepositoryException
 	{
-		String getCartItemsQuery =
-				"SELECT * FROM " + customerCartTableName + " WHERE user_name = ?;";
 		ShoppingCart shoppingCart = new ShoppingCart();
 
-		try (Connection con = SQLConnector.getConnection();
-			 PreparedStatement ps = con.prepareStatement(getCartItemsQuery))
+		try (PreparedStatement ps = con.prepareStatement(GET_CART_ITEMS_QUERY))
 		{
 			ps.setString(1, username);
 			ResultSet resultSet = ps.executeQuery();
@@ -116,13 +180,12 @@ public final class SQLCustomerRepository implements CustomerRepository
 	@Override
 	public List<Customer> getCustomers() throws RepositoryException
 	{
-		String getAllCustomersQuery = "SELECT * FROM " + customerTableName + ";";
 		List<Customer> customerList = new ArrayList<>();
 
-		try (Connection con = SQLConnector.getConnection();
-			 Statement statement = con.createStatement())
+		try (Connection con = SQLConnector.getReadConnection();
+			 PreparedStatement statement = con.prepareStatement(GET_ALL_CUSTOMERS_QUERY))
 		{
-			ResultSet resultSet = statement.executeQuery(getAllCustomersQuery);
+			ResultSet resultSet = statement.executeQuery();
 
 			boolean resultSetIsEmpty = true;
 			while (resultSet.next())
@@ -130,7 +193,7 @@ public final class SQLCustomerRepository implements CustomerRepository
 				resultSetIsEmpty = false;
 				Customer customer = makeCustomerFromResultSet(resultSet);
 
-				ShoppingCart shoppingCartFromDB = getCustomerCartFromDB(customer.getUsername());
+				ShoppingCart shoppingCartFromDB = getCustomerCartFromDB(con, customer.getUsername());
 				customer.replaceShoppingCart(shoppingCartFromDB);
 
 				customerList.add(customer);
@@ -151,26 +214,15 @@ public final class SQLCustomerRepository implements CustomerRepository
 	@Override
 	public void updateCustomer(final Customer customer) throws RepositoryException
 	{
-		final String updateCustomerQuery =
-				"UPDATE " + customerTableName
-						+ " SET password = ?, email = ?, first_name = ?, "
-						+ "last_name = ?, address = ? , phone = ? WHERE user_name = ?;";
-
-		final String deleteOldCartQuery =
-				"DELETE FROM " + customerCartTableName + " WHERE user_name = ?;";
-
-		final String insertNewCartItemQuery =
-				"INSERT INTO " + customerCartTableName + " (id_product, user_name) VALUES (?, ?)";
-
 		try (Connection con = SQLConnector.getConnection())
 		{
 			con.setAutoCommit(false);
 			try (PreparedStatement prepStmtUpdateCustomer = con
-					.prepareStatement(updateCustomerQuery);
+					.prepareStatement(UPDATE_CUSTOMER_QUERY);
 				 PreparedStatement prepStmtDeleteOldCart =
-						 con.prepareStatement(deleteOldCartQuery);
+						 con.prepareStatement(DELETE_OLD_CART_QUERY);
 				 PreparedStatement prepStmtInsertCartItem = con
-						 .prepareStatement(insertNewCartItemQuery))
+						 .prepareStatement(INSERT_NEW_CART_ITEM_QUERY))
 			{
 				prepStmtUpdateCustomer.setString(1, customer.getPassword());
 				prepStmtUpdateCustomer.setString(2, customer.getEmail());
@@ -213,11 +265,8 @@ public final class SQLCustomerRepository implements CustomerRepository
 	@Override
 	public void removeCustomer(final String username) throws RepositoryException
 	{
-
-		final String removeQuery = "DELETE FROM " + customerTableName + " WHERE user_name = ?;";
-
 		try (Connection con = SQLConnector.getConnection();
-			 PreparedStatement prepStmtRemoveCustomer = con.prepareStatement(removeQuery))
+			 PreparedStatement prepStmtRemoveCustomer = con.prepareStatement(REMOVE_CUSTOMER_QUERY))
 		{
 			prepStmtRemoveCustomer.setString(1, username);
 			prepStmtRemoveCustomer.executeUpdate();
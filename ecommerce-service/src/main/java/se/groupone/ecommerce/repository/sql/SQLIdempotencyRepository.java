@@ -0,0 +1,141 @@
+package se.groupone.ecommerce.repository.sql;
+
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.repository.IdempotencyRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryIdempotencyRepository;
+
+import java.sql.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SQLIdempotencyRepository implements IdempotencyRepository
+{
+	// Expired keys are purged once every this many inserts
+	public static final int DEFAULT_PURGE_INTERVAL = 1000;
+
+	private static final String IDEMPOTENCY_TABLE = "idempotency_key";
+
+	private static final String GET_RESULT_QUERY =
+			"SELECT id_result FROM " + IDEMPOTENCY_TABLE
+				+ " WHERE idem_key = ? AND created > ?;";
+	// A key that has expired but not been purged yet is taken over, a live one is kept
+	private static final String ADD_RESULT_QUERY =
+			"INSERT INTO " + IDEMPOTENCY_TABLE
+				+ " (idem_key, id_result, created) VALUES(?, ?, ?)"
+				+ " ON DUPLICATE KEY UPDATE"
+				+ " id_result = CASE WHEN created <= ? THEN VALUES(id_result) ELSE id_result END,"
+				+ " created = CASE WHEN created <= ? THEN VALUES(created) ELSE created END;";
+	private static final String PURGE_QUERY =
+			"DELETE FROM " + IDEMPOTENCY_TABLE + " WHERE created < ?;";
+	private static final String CLEAR_QUERY =
+			"TRUNCATE TABLE " + IDEMPOTENCY_TABLE + ";";
+
+	private volatile long ttlMillis;
+	private volatile int purgeInterval = DEFAULT_PURGE_INTERVAL;
+	private final AtomicInteger insertsSincePurge = new AtomicInteger();
+
+	public SQLIdempotencyRepository()
+	{
+		this(InMemoryIdempotencyRepository.DEFAULT_TTL_MILLIS);
+	}
+
+	public SQLIdempotencyRepository(long ttlMillis)
+	{
+		this.ttlMillis = ttlMillis;
+	}
+
+	public void setTtlMillis(long ttlMillis)
+	{
+		if (ttlMillis < 0)
+		{
+			throw new IllegalArgumentException("TTL can not be negative");
+		}
+		this.ttlMillis = ttlMillis;
+	}
+
+	public void setPurgeInterval(int purgeInterval)
+	{
+		if (purgeInterval < 1)
+		{
+			throw new IllegalArgumentException("Purge interval must be at least 1");
+		}
+		this.purgeInterval = purgeInterval;
+	}
+
+	@Override
+	public Integer getResult(final String key) throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection();
+			 PreparedStatement prepStmtGetResult = con.prepareStatement(GET_RESULT_QUERY))
+		{
+			prepStmtGetResult.setString(1, key);
+			prepStmtGetResult.setTimestamp(2, new Timestamp(System.currentTimeMillis() - ttlMillis));
+			ResultSet resultSet = prepStmtGetResult.executeQuery();
+
+			if (resultSet.next())
+			{
+				return resultSet.getInt(1);
+			}
+			return null;
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not get result for idempotency key: " + key, e);
+		}
+	}
+
+	@Override
+	public void addResult(final String key, final int resultId) throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection();
+			 PreparedStatement prepStmtAddResult = con.prepareStatement(ADD_RESULT_QUERY))
+		{
+			final long now = System.currentTimeMillis();
+			final Timestamp expired = new Timestamp(now - ttlMillis);
+			prepStmtAddResult.setString(1, key);
+			prepStmtAddResult.setInt(2, resultId);
+			prepStmtAddResult.setTimestamp(3, new Timestamp(now));
+			// id_result is assigned first, so both see the old created
+			prepStmtAddResult.setTimestamp(4, expired);
+			prepStmtAddResult.setTimestamp(5, expired);
+			prepStmtAddResult.executeUpdate();
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not add result for idempotency key: " + key, e);
+		}
+
+		if (insertsSincePurge.incrementAndGet() >= purgeInterval)
+		{
+			insertsSincePurge.set(0);
+			purgeExpired();
+		}
+	}
+
+	@Override
+	public void clear() throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection();
+			 PreparedStatement prepStmtClear = con.prepareStatement(CLEAR_QUERY))
+		{
+			prepStmtClear.executeUpdate();
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not clear idempotency keys!", e);
+		}
+	}
+
+	private void purgeExpired() throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection();
+			 PreparedStatement prepStmtPurge = con.prepareStatement(PURGE_QUERY))
+		{
+			prepStmtPurge.setTimestamp(1, new Timestamp(System.currentTimeMillis() - ttlMillis));
+			prepStmtPurge.executeUpdate();
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not purge expired idempotency keys!", e);
+		}
+	}
+}
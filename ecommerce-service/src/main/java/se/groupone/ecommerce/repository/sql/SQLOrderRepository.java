@@ -2,51 +2,102 @@ package se.groupone.ecommerce.repository.sql;
 
 import se.groupone.ecommerce.exception.RepositoryException;
 import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.OrderStatus;
+import se.groupone.ecommerce.model.PickList;
 import se.groupone.ecommerce.repository.OrderRepository;
 
 import java.sql.*;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.TreeMap;
 
 public class SQLOrderRepository implements OrderRepository
 {
-	private final String orderTableName = "`order`";
-	private final String productTableName = "product";
-	private final String productOrderTableName = "product_order";
+	private static final String ORDER_TABLE = "`order`";
+	private static final String PRODUCT_TABLE = "product";
+	private static final String PRODUCT_ORDER_TABLE = "product_order";
+
+	private static final String ADD_ORDER_QUERY =
+			"INSERT INTO " + ORDER_TABLE + " (id_order, customer_name, created, status, shipped) "
+				+ "VALUES(?, ?, ?, ?, ?);";
+	private static final String ADD_PRODUCTS_TO_ORDER_QUERY =
+			"INSERT INTO " + PRODUCT_ORDER_TABLE + " (id_order, id_product) "
+				+ "VALUES(?, ?);";
+	private static final String UPDATE_QUANTITY_QUERY =
+			"UPDATE " + PRODUCT_TABLE + " SET quantity = quantity + ? WHERE id_product = ?;";
+	private static final String GET_ORDER_QUERY =
+			"SELECT customer_name, created, status, shipped FROM " + ORDER_TABLE
+				+ " WHERE id_order = ?;";
+	private static final String GET_PRODUCTS_FOR_ORDER_QUERY =
+			"SELECT id_product FROM " + PRODUCT_ORDER_TABLE
+				+ " WHERE id_order = ?;";
+	private static final String REMOVE_ORDER_QUERY =
+			"DELETE FROM " + ORDER_TABLE + " WHERE id_order = ?;";
+	private static final String GET_ORDER_IDS_QUERY =
+			"SELECT id_order FROM " + ORDER_TABLE
+				+ " WHERE customer_name = ?;";
+	private static final String UPDATE_ORDER_QUERY =
+			"UPDATE " + ORDER_TABLE + " SET "
+				+ "created = ?, status = ?, shipped = ? WHERE id_order = ?;";
+	private static final String DELETE_ORDER_ITEMS_QUERY =
+			"DELETE FROM " + PRODUCT_ORDER_TABLE + " WHERE id_order = ?;";
+	private static final String ADD_ORDER_ITEM_QUERY =
+			"INSERT INTO " + PRODUCT_ORDER_TABLE + "(id_order, id_product) "
+				+ "VALUES(?, ?);";
+	private static final String HIGHEST_ID_QUERY =
+			"SELECT MAX(id_order) FROM " + ORDER_TABLE;
+	private static final String GET_ORDER_BASKETS_QUERY =
+			"SELECT id_order, id_product FROM " + PRODUCT_ORDER_TABLE
+				+ " ORDER BY id_order;";
+	private static final String UPDATE_ORDER_STATUS_QUERY =
+			"UPDATE " + ORDER_TABLE + " SET status = ?, shipped = ? "
+				+ "WHERE id_order = ? AND status = ?;";
+	// Keyset pages over the (status, created) index, which ends in id_order like every InnoDB index
+	private static final String GET_ORDERS_BY_STATUS_QUERY =
+			"SELECT id_order, customer_name, created, shipped FROM " + ORDER_TABLE
+				+ " WHERE status = ? AND ((created = ? AND id_order > ?) OR (created > ? AND created <= ?))"
+				+ " ORDER BY created, id_order LIMIT ?;";
+	// The orders of one page, bounded by its first and last key
+	private static final String ORDER_PAGE_JOIN =
+			" FROM " + ORDER_TABLE + " o JOIN " + PRODUCT_ORDER_TABLE + " po ON po.id_order = o.id_order"
+				+ " WHERE o.status = ? AND (o.created > ? OR (o.created = ? AND o.id_order > ?))"
+				+ " AND (o.created < ? OR (o.created = ? AND o.id_order <= ?))";
+	private static final String GET_PRODUCTS_FOR_ORDER_PAGE_QUERY =
+			"SELECT o.id_order, po.id_product" + ORDER_PAGE_JOIN + ";";
+	private static final String GET_PICK_LIST_QUERY =
+			"SELECT po.id_product, COUNT(*)" + ORDER_PAGE_JOIN
+				+ " GROUP BY po.id_product ORDER BY po.id_product;";
+	// Rows fetched per round trip when reading every order
+	private static final int BASKET_FETCH_SIZE = 10_000;
+
 	private final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
 
 	@Override
 	public void addOrder(final Order order) throws RepositoryException
 	{
-		final String addOrderQuery =
-				"INSERT INTO " + orderTableName + " (id_order, customer_name, created) "
-						+ "VALUES(?, ?, ?);";
-		final String addProductsToOrderQuery =
-				"INSERT INTO " + productOrderTableName + " (id_order, id_product) "
-						+ "VALUES(?, ?);";
-		final String updateQuantityQuery =
-				"UPDATE " + productTableName + " SET quantity = quantity + ? WHERE id_product = "
-						+ "?;";
-
 		try (Connection con = SQLConnector.getConnection())
 		{
 			con.setAutoCommit(false);
 
 			try (PreparedStatement prepStmtAddOrder
-						 = con.prepareStatement(addOrderQuery);
+						 = con.prepareStatement(ADD_ORDER_QUERY);
 
 				 PreparedStatement prepStmtAddProductsToOrder =
-						 con.prepareStatement(addProductsToOrderQuery);
+						 con.prepareStatement(ADD_PRODUCTS_TO_ORDER_QUERY);
 
 				 PreparedStatement prepStmtDecreaseProductQuantity =
-						 con.prepareStatement(updateQuantityQuery))
+						 con.prepareStatement(UPDATE_QUANTITY_QUERY))
 
 			{
 				prepStmtAddOrder.setInt(1, order.getId());
 				prepStmtAddOrder.setString(2, order.getUsername());
 				prepStmtAddOrder.setString(3, sdf.format(order.getDateCreated()));
+				prepStmtAddOrder.setString(4, order.getStatus().getName());
+				prepStmtAddOrder.setDate(5, toSqlDate(order.getDateShipped()));
 				prepStmtAddOrder.executeUpdate();
 
 				ArrayList<Integer> orderProductList = order.getProductIds();
@@ -79,18 +130,41 @@ public class SQLOrderRepository implements OrderRepository
 	@Override
 	public Order getOrder(final int orderId) throws RepositoryException
 	{
-		final String getOrderQuery = "SELECT customer_name, created FROM " + orderTableName
-				+ " WHERE id_order = ?;";
-		final String getProductsForOrderQuery = "SELECT id_product FROM " + productOrderTableName
-				+ " WHERE id_order = ?;";
+		final Order order;
+		try
+		{
+			order = SQLConnector.read(con -> findOrder(con, orderId));
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException(
+					"Failed to retrieve order data for product with id: " + orderId
+							+ " from database!", e);
+		}
+
+		if (order == null)
+		{
+			throw new RepositoryException(
+					"No matches for order with id: " + orderId + " found in database!");
+		}
+		if (order.getProductIds().isEmpty())
+		{
+			throw new RepositoryException("No products in order with id: " + orderId);
+		}
+		return order;
+	}
+
+	private static Order findOrder(final Connection con, final int orderId) throws SQLException
+	{
 		final String customerName;
 		final Date dateCreated;
+		final OrderStatus status;
+		final Date dateShipped;
 		ArrayList<Integer> productIds = new ArrayList<>();
 
-		try (Connection con = SQLConnector.getConnection();
-			 PreparedStatement prepStmtGetOrder = con.prepareStatement(getOrderQuery);
+		try (PreparedStatement prepStmtGetOrder = con.prepareStatement(GET_ORDER_QUERY);
 			 PreparedStatement prepStmtGetProductsForOrder =
-					 con.prepareStatement(getProductsForOrderQuery))
+					 con.prepareStatement(GET_PRODUCTS_FOR_ORDER_QUERY))
 		{
 			ResultSet resultSet;
 
@@ -98,48 +172,30 @@ public class SQLOrderRepository implements OrderRepository
 			resultSet = prepStmtGetOrder.executeQuery();
 			if (!resultSet.next())
 			{
-				throw new RepositoryException(
-						"No matches for order with id: " + orderId + " found in database!");
-			}
-			else
-			{
-				customerName = resultSet.getString("customer_name");
-				dateCreated = resultSet.getDate("created");
+				return null;
 			}
+			customerName = resultSet.getString("customer_name");
+			dateCreated = resultSet.getDate("created");
+			status = OrderStatus.parse(resultSet.getString("status"));
+			dateShipped = resultSet.getDate("shipped");
 
 			prepStmtGetProductsForOrder.setInt(1, orderId);
 			resultSet = prepStmtGetProductsForOrder.executeQuery();
 
-			boolean resultSetIsEmpty = true;
-
 			while (resultSet.next())
 			{
-				resultSetIsEmpty = false;
 				productIds.add(resultSet.getInt(1));
 			}
 
-			if (resultSetIsEmpty)
-			{
-				throw new RepositoryException("No products in order with id: " + orderId);
-			}
-
-			return new Order(orderId, customerName, productIds, dateCreated);
-		}
-		catch (SQLException e)
-		{
-			throw new RepositoryException(
-					"Failed to retrieve order data for product with id: " + orderId
-							+ " from database!", e);
+			return new Order(orderId, customerName, productIds, dateCreated, status, dateShipped);
 		}
 	}
 
 	@Override
 	public void removeOrder(final int orderId) throws RepositoryException
 	{
-		final String removeOrderQuery = "DELETE FROM " + orderTableName + " WHERE id_order = ?;";
-
 		try (Connection con = SQLConnector.getConnection();
-			 PreparedStatement prepStmtRemoveOrder = con.prepareStatement(removeOrderQuery))
+			 PreparedStatement prepStmtRemoveOrder = con.prepareStatement(REMOVE_ORDER_QUERY))
 		{
 			prepStmtRemoveOrder.setInt(1, orderId);
 			prepStmtRemoveOrder.executeUpdate();
@@ -153,11 +209,8 @@ public class SQLOrderRepository implements OrderRepository
 	@Override
 	public List<Order> getOrders(final String customerUsername) throws RepositoryException
 	{
-		final String getOrderIdsQuery = "SELECT id_order FROM " + orderTableName
-				+ "WHERE customer_name = ?;";
-
-		try (Connection con = SQLConnector.getConnection();
-			 PreparedStatement prepStmtGetOrderIdsQuery = con.prepareStatement(getOrderIdsQuery))
+		try (Connection con = SQLConnector.getReadConnection();
+			 PreparedStatement prepStmtGetOrderIdsQuery = con.prepareStatement(GET_ORDER_IDS_QUERY))
 		{
 			ResultSet resultSet;
 			ArrayList<Order> orderList = new ArrayList<>();
@@ -169,7 +222,13 @@ public class SQLOrderRepository implements OrderRepository
 			while (resultSet.next())
 			{
 				resultSetIsEmpty = false;
-				Order retrievedOrder = getOrder(resultSet.getInt(1));
+				// On the same connection, so a bounded pool is never waited on while holding one
+				final int orderId = resultSet.getInt(1);
+				Order retrievedOrder = findOrder(con, orderId);
+				if (retrievedOrder == null || retrievedOrder.getProductIds().isEmpty())
+				{
+					throw new RepositoryException("No products in order with id: " + orderId);
+				}
 				orderList.add(retrievedOrder);
 			}
 			if (resultSetIsEmpty)
@@ -191,29 +250,22 @@ public class SQLOrderRepository implements OrderRepository
 	{
 		final String dateCreatedString = sdf.format(order.getDateCreated());
 
-		final String updateOrderQuery = "UPDATE " + orderTableName + " SET "
-				+ "created = ? WHERE id_order = ?;";
-		final String deleteOrderItemsQuery =
-				"DELETE FROM " + productOrderTableName + " WHERE id_order = ?;";
-		final String addOrderItemQuery =
-				"INSERT INTO " + productOrderTableName + "(id_order, id_product) "
-				+ "VALUES(?, ?);";
-
 		try (Connection con = SQLConnector.getConnection())
 		{
 			con.setAutoCommit(false);
 
-			try (PreparedStatement prepStmtUpdateOrder = con.prepareStatement(updateOrderQuery);
+			try (PreparedStatement prepStmtUpdateOrder = con.prepareStatement(UPDATE_ORDER_QUERY);
 				 PreparedStatement prepStmtDeleteOrderItems =
-						 con.prepareStatement(deleteOrderItemsQuery);
-				 PreparedStatement prepStmtAddOrderItem = con.prepareStatement(addOrderItemQuery))
+						 con.prepareStatement(DELETE_ORDER_ITEMS_QUERY);
+				 PreparedStatement prepStmtAddOrderItem = con.prepareStatement(ADD_ORDER_ITEM_QUERY))
 			{
-
 				int orderId = order.getId();
 				ArrayList<Integer> orderProductList = order.getProductIds();
 
 				prepStmtUpdateOrder.setString(1, dateCreatedString);
-				prepStmtUpdateOrder.setInt(2, orderId);
+				prepStmtUpdateOrder.setString(2, order.getStatus().getName());
+				prepStmtUpdateOrder.setDate(3, toSqlDate(order.getDateShipped()));
+				prepStmtUpdateOrder.setInt(4, orderId);
 				prepStmtUpdateOrder.executeUpdate();
 
 				prepStmtDeleteOrderItems.setInt(1, orderId);
@@ -245,13 +297,10 @@ public class SQLOrderRepository implements OrderRepository
 	@Override
 	public int getHighestId() throws RepositoryException
 	{
-		final String highestIdQuery =
-				"SELECT MAX(id_order) FROM " + orderTableName;
-
 		try (Connection con = SQLConnector.getConnection();
-			 Statement stmtGetHighestId = con.createStatement())
+			 PreparedStatement stmtGetHighestId = con.prepareStatement(HIGHEST_ID_QUERY))
 		{
-			ResultSet resultSet = stmtGetHighestId.executeQuery(highestIdQuery);
+			ResultSet resultSet = stmtGetHighestId.executeQuery();
 
 			if (!resultSet.next())
 			{
@@ -268,4 +317,260 @@ public class SQLOrderRepository implements OrderRepository
 			throw new RepositoryException("Could not get highest order id!", e);
 		}
 	}
+
+	@Override
+	public int[][] getOrderBaskets() throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getReadConnection();
+			 PreparedStatement stmtGetOrderBaskets = con.prepareStatement(GET_ORDER_BASKETS_QUERY))
+		{
+			stmtGetOrderBaskets.setFetchSize(BASKET_FETCH_SIZE);
+			ResultSet resultSet = stmtGetOrderBaskets.executeQuery();
+
+			final List<int[]> baskets = new ArrayList<>();
+			int[] basket = new int[8];
+			int basketSize = 0;
+			int basketOrderId = 0;
+			while (resultSet.next())
+			{
+				final int orderId = resultSet.getInt(1);
+				if (basketSize > 0 && orderId != basketOrderId)
+				{
+					baskets.add(Arrays.copyOf(basket, basketSize));
+					basketSize = 0;
+				}
+				if (basketSize == basket.length)
+				{
+					basket = Arrays.copyOf(basket, basketSize * 2);
+				}
+				basketOrderId = orderId;
+				basket[basketSize++] = resultSet.getInt(2);
+			}
+			if (basketSize > 0)
+			{
+				baskets.add(Arrays.copyOf(basket, basketSize));
+			}
+			return baskets.toArray(new int[baskets.size()][]);
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not read the products of every order!", e);
+		}
+	}
+
+	@Override
+	public void updateOrderStatus(final int orderId, final OrderStatus expected, final OrderStatus status)
+			throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection();
+			 PreparedStatement stmtUpdateStatus = con.prepareStatement(UPDATE_ORDER_STATUS_QUERY))
+		{
+			stmtUpdateStatus.setString(1, status.getName());
+			stmtUpdateStatus.setDate(2, status == OrderStatus.SHIPPED
+					? new java.sql.Date(System.currentTimeMillis()) : null);
+			stmtUpdateStatus.setInt(3, orderId);
+			stmtUpdateStatus.setString(4, expected.getName());
+			if (stmtUpdateStatus.executeUpdate() == 0)
+			{
+				throw new RepositoryException("Order " + orderId + " does not exist or is no longer "
+						+ expected.getName());
+			}
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not update status of order with id: " + orderId, e);
+		}
+	}
+
+	@Override
+	public List<Order> getOrdersByStatus(final OrderStatus status, final Date fromDate, final int afterId,
+			final Date toDate, final int limit) throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getReadConnection())
+		{
+			// Both queries see the same orders
+			con.setAutoCommit(false);
+
+			try (PreparedStatement stmtGetOrders = con.prepareStatement(GET_ORDERS_BY_STATUS_QUERY);
+				 PreparedStatement stmtGetProducts = con.prepareStatement(GET_PRODUCTS_FOR_ORDER_PAGE_QUERY))
+			{
+				final java.sql.Date from = toSqlDate(fromDate);
+				stmtGetOrders.setString(1, status.getName());
+				stmtGetOrders.setDate(2, from);
+				stmtGetOrders.setInt(3, afterId);
+				stmtGetOrders.setDate(4, from);
+				stmtGetOrders.setDate(5, toSqlDate(toDate));
+				stmtGetOrders.setInt(6, limit);
+
+				final List<Order> page = new ArrayList<>();
+				final HashMap<Integer, ArrayList<Integer>> productIds = new HashMap<>();
+				ResultSet resultSet = stmtGetOrders.executeQuery();
+				while (resultSet.next())
+				{
+					final int orderId = resultSet.getInt("id_order");
+					productIds.put(orderId, new ArrayList<>());
+					// Rebuilt with its products below
+					page.add(new Order(orderId, resultSet.getString("customer_name"), new ArrayList<>(),
+							resultSet.getDate("created"), status, resultSet.getDate("shipped")));
+				}
+
+				final List<Order> orders = new ArrayList<>(page.size());
+				if (!page.isEmpty())
+				{
+					final Order last = page.get(page.size() - 1);
+					setPageBounds(stmtGetProducts, status, from, afterId, last.getDateCreated(), last.getId());
+					resultSet = stmtGetProducts.executeQuery();
+					while (resultSet.next())
+					{
+						final ArrayList<Integer> orderProductIds = productIds.get(resultSet.getInt(1));
+						if (orderProductIds != null)
+						{
+							orderProductIds.add(resultSet.getInt(2));
+						}
+					}
+
+					for (Order order : page)
+					{
+						orders.add(new Order(order.getId(), order.getUsername(), productIds.get(order.getId()),
+								order.getDateCreated(), status, order.getDateShipped()));
+					}
+				}
+				con.commit();
+				return orders;
+			}
+			catch (SQLException e)
+			{
+				con.rollback();
+				throw e;
+			}
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not get " + status.getName() + " orders!", e);
+		}
+	}
+
+	@Override
+	public void updateOrderStatuses(final List<Integer> orderIds, final OrderStatus expected,
+			final OrderStatus status) throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection())
+		{
+			con.setAutoCommit(false);
+
+			try (PreparedStatement stmtUpdateStatus = con.prepareStatement(UPDATE_ORDER_STATUS_QUERY))
+			{
+				final java.sql.Date shipped = status == OrderStatus.SHIPPED
+						? new java.sql.Date(System.currentTimeMillis()) : null;
+				for (int orderId : orderIds)
+				{
+					stmtUpdateStatus.setString(1, status.getName());
+					stmtUpdateStatus.setDate(2, shipped);
+					stmtUpdateStatus.setInt(3, orderId);
+					stmtUpdateStatus.setString(4, expected.getName());
+					stmtUpdateStatus.addBatch();
+				}
+
+				final int[] updateCounts = stmtUpdateStatus.executeBatch();
+				for (int i = 0; i < updateCounts.length; i++)
+				{
+					if (updateCounts[i] == 0)
+					{
+						con.rollback();
+						throw new RepositoryException("Order " + orderIds.get(i)
+								+ " does not exist or is no longer " + expected.getName());
+					}
+				}
+				con.commit();
+			}
+			catch (SQLException e)
+			{
+				con.rollback();
+				throw new RepositoryException("Could not update status of " + orderIds.size() + " orders!", e);
+			}
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException(
+					"Could not get SQL connection when trying to update order statuses!", e);
+		}
+	}
+
+	@Override
+	public PickList getPickList(final Date fromDate, final Date toDate, final int limit)
+			throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getReadConnection())
+		{
+			// Both queries see the same orders
+			con.setAutoCommit(false);
+
+			try (PreparedStatement stmtGetOrders = con.prepareStatement(GET_ORDERS_BY_STATUS_QUERY);
+				 PreparedStatement stmtGetPickList = con.prepareStatement(GET_PICK_LIST_QUERY))
+			{
+				final java.sql.Date from = toSqlDate(fromDate);
+				stmtGetOrders.setString(1, OrderStatus.PAID.getName());
+				stmtGetOrders.setDate(2, from);
+				stmtGetOrders.setInt(3, 0);
+				stmtGetOrders.setDate(4, from);
+				stmtGetOrders.setDate(5, toSqlDate(toDate));
+				stmtGetOrders.setInt(6, limit);
+
+				final List<Integer> orderIds = new ArrayList<>();
+				final TreeMap<Integer, Integer> quantities = new TreeMap<>();
+				ResultSet resultSet = stmtGetOrders.executeQuery();
+				Date lastCreated = null;
+				while (resultSet.next())
+				{
+					orderIds.add(resultSet.getInt("id_order"));
+					lastCreated = resultSet.getDate("created");
+				}
+
+				if (!orderIds.isEmpty())
+				{
+					setPageBounds(stmtGetPickList, OrderStatus.PAID, from, 0, lastCreated,
+							orderIds.get(orderIds.size() - 1));
+					resultSet = stmtGetPickList.executeQuery();
+					while (resultSet.next())
+					{
+						quantities.put(resultSet.getInt(1), resultSet.getInt(2));
+					}
+				}
+				con.commit();
+				return new PickList(orderIds, quantities);
+			}
+			catch (SQLException e)
+			{
+				con.rollback();
+				throw e;
+			}
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not get pick list!", e);
+		}
+	}
+
+	// Parameters of ORDER_PAGE_JOIN for a page after (from, afterId) up to and including (lastCreated, lastId)
+	private static void setPageBounds(final PreparedStatement statement, final OrderStatus status,
+			final java.sql.Date from, final int afterId, final Date lastCreated, final int lastId)
+			throws SQLException
+	{
+		statement.setString(1, status.getName());
+		statement.setDate(2, from);
+		statement.setDate(3, from);
+		statement.setInt(4, afterId);
+		statement.setDate(5, toSqlDate(lastCreated));
+		statement.setDate(6, toSqlDate(lastCreated));
+		statement.setInt(7, lastId);
+	}
+
+	private static java.sql.Date toSqlDate(final Date date)
+	{
+		if (date == null)
+		{
+			return null;
+		}
+		return date instanceof java.sql.Date ? (java.sql.Date) date : new java.sql.Date(date.getTime());
+	}
 }
@@ -11,19 +11,32 @@ import java.util.List;
 
 public class SQLProductRepository implements ProductRepository
 {
-	private final String productTableName = "product";
+	private static final String PRODUCT_TABLE = "product";
+
+	private static final String ADD_PRODUCT_QUERY =
+			"INSERT INTO " + PRODUCT_TABLE + " "
+				+ "(id_product, title, category, manufacturer, description, img, price, "
+				+ "quantity) " + "VALUES(?, ?, ?, ?, ?, ?, ?, ?);";
+	private static final String GET_PRODUCT_QUERY =
+			"SELECT * FROM " + PRODUCT_TABLE + " WHERE id_product = ?;";
+	private static final String GET_ALL_PRODUCTS_QUERY =
+			"SELECT * FROM " + PRODUCT_TABLE + ";";
+	private static final String REMOVE_PRODUCT_QUERY =
+			"DELETE FROM " + PRODUCT_TABLE + " WHERE id_product = ?;";
+	private static final String UPDATE_PRODUCT_QUERY =
+			"UPDATE " + PRODUCT_TABLE
+				+ " SET title= ?, category = ?, manufacturer = ?, description = ?,"
+				+ " img = ?, price = ?, quantity = ? WHERE id_product = ?;";
+	private static final String HIGHEST_ID_QUERY =
+			"SELECT MAX(id_product) FROM " + PRODUCT_TABLE;
+	private static final String UPDATE_QUANTITY_QUERY =
+			"UPDATE " + PRODUCT_TABLE + " SET quantity = quantity + ? WHERE id_product = ?;";
 
 	@Override
 	public void addProduct(final Product product) throws RepositoryException
 	{
-
-		final String addProductQuery =
-				"INSERT INTO " + productTableName + " "
-						+ "(id_product, title, category, manufacturer, description, img, price, "
-						+ "quantity) " + "VALUES(?, ?, ?, ?, ?, ?, ?, ?);";
-
 		try (Connection con = SQLConnector.getConnection();
-			 PreparedStatement prepStmtAddProduct = con.prepareStatement(addProductQuery))
+			 PreparedStatement prepStmtAddProduct = con.prepareStatement(ADD_PRODUCT_QUERY))
 		{
 			prepStmtAddProduct.setInt(1, product.getId());
 			prepStmtAddProduct.setString(2, product.getTitle());
@@ -45,51 +58,62 @@ public class SQLProductRepository implements ProductRepository
 	@Override
 	public Product getProduct(final int productId) throws RepositoryException
 	{
-		String getProductQuery = "SELECT * FROM " + productTableName + " WHERE id_product = ?;";
-		try (Connection con = SQLConnector.getConnection();
-			 PreparedStatement prepStmtGetProduct = con.prepareStatement(getProductQuery))
+		final Product product;
+		try
+		{
+			product = SQLConnector.read(con -> findProduct(con, productId));
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException(
+					"Failed to retrieve product data for product with id: " + productId
+							+ " from database!", e);
+		}
+
+		if (product == null)
+		{
+			throw new RepositoryException(
+					"No matches for product with id: " + productId + " found in "
+							+ "database!");
+		}
+		return product;
+	}
+
+	private static Product findProduct(final Connection con, final int productId)
+			throws SQLException
+	{
+		try (PreparedStatement prepStmtGetProduct = con.prepareStatement(GET_PRODUCT_QUERY))
 		{
 			prepStmtGetProduct.setInt(1, productId);
 			ResultSet resultSet = prepStmtGetProduct.executeQuery();
 
 			if (!resultSet.next())
 			{
-				throw new RepositoryException(
-						"No matches for product with id: " + productId + " found in "
-								+ "database!");
+				return null;
 			}
-			else
-			{
-				final ProductParameters productParams = new ProductParameters(
-						resultSet.getString("title"),
-						resultSet.getString("category"),
-						resultSet.getString("manufacturer"),
-						resultSet.getString("description"),
-						resultSet.getString("img"),
-						resultSet.getDouble("price"),
-						resultSet.getInt("quantity"));
 
-				return new Product(productId, productParams);
-			}
-		}
-		catch (SQLException e)
-		{
-			throw new RepositoryException(
-					"Failed to retrieve product data for product with id: " + productId
-							+ " from database!", e);
+			final ProductParameters productParams = new ProductParameters(
+					resultSet.getString("title"),
+					resultSet.getString("category"),
+					resultSet.getString("manufacturer"),
+					resultSet.getString("description"),
+					resultSet.getString("img"),
+					resultSet.getDouble("price"),
+					resultSet.getInt("quantity"));
+
+			return new Product(productId, productParams);
 		}
 	}
 
 	@Override
 	public List<Product> getProducts() throws RepositoryException
 	{
-		String getAllProductsQuery = "SELECT * FROM " + productTableName + ";";
 		List<Product> productList = new ArrayList<>();
 
-		try (Connection con = SQLConnector.getConnection();
-			 Statement stmtGetProducts = con.createStatement())
+		try (Connection con = SQLConnector.getReadConnection();
+			 PreparedStatement stmtGetProducts = con.prepareStatement(GET_ALL_PRODUCTS_QUERY))
 		{
-			ResultSet resultSet = stmtGetProducts.executeQuery(getAllProductsQuery);
+			ResultSet resultSet = stmtGetProducts.executeQuery();
 
 			boolean resultSetIsEmpty = true;
 
@@ -126,10 +150,8 @@ public class SQLProductRepository implements ProductRepository
 	@Override
 	public void removeProduct(final int productID) throws RepositoryException
 	{
-		final String removeProductQuery = "DELETE FROM " + productTableName + " WHERE id_product = ?;";
-
 		try (Connection con = SQLConnector.getConnection();
-			 PreparedStatement prepStmtRemoveProduct = con.prepareStatement(removeProductQuery))
+			 PreparedStatement prepStmtRemoveProduct = con.prepareStatement(REMOVE_PRODUCT_QUERY))
 		{
 			prepStmtRemoveProduct.setInt(1, productID);
 			prepStmtRemoveProduct.executeUpdate();
@@ -143,13 +165,8 @@ public class SQLProductRepository implements ProductRepository
 	@Override
 	public void updateProduct(Product product) throws RepositoryException
 	{
-		final String addProductQuery =
-				"UPDATE " + productTableName
-						+ " SET title= ?, category = ?, manufacturer = ?, description = ?,"
-						+ " img = ?, price = ?, quantity = ? WHERE id_product = ?;";
-
 		try (Connection con = SQLConnector.getConnection();
-			 PreparedStatement ps = con.prepareStatement(addProductQuery))
+			 PreparedStatement ps = con.prepareStatement(UPDATE_PRODUCT_QUERY))
 		{
 			ps.setString(1, product.getTitle());
 			ps.setString(2, product.getCategory());
@@ -171,13 +188,10 @@ public class SQLProductRepository implements ProductRepository
 	@Override
 	public int getHighestId() throws RepositoryException
 	{
-		final String highestIdQuery =
-				"SELECT MAX(id_product) FROM " + productTableName;
-
 		try (Connection con = SQLConnector.getConnection();
-			 Statement stmtGetHighestId = con.createStatement())
+			 PreparedStatement stmtGetHighestId = con.prepareStatement(HIGHEST_ID_QUERY))
 		{
-			ResultSet resultSet = stmtGetHighestId.executeQuery(highestIdQuery);
+			ResultSet resultSet = stmtGetHighestId.executeQuery();
 
 			if (!resultSet.next())
 			{
@@ -199,11 +213,8 @@ public class SQLProductRepository implements ProductRepository
 	private void productsQuantityChange(final List<Integer> ids, final int quantityChange)
 			throws RepositoryException
 	{
-		final String updateQuantityQuery =
-				"UPDATE " + productTableName + " SET quantity = quantity + ? WHERE id_product = ?;";
-
 		try (Connection con = SQLConnector.getConnection();
-			 PreparedStatement prepStmtUpdateQuantity = con.prepareStatement(updateQuantityQuery))
+			 PreparedStatement prepStmtUpdateQuantity = con.prepareStatement(UPDATE_QUANTITY_QUERY))
 		{
 			for (int id : ids)
 			{
@@ -0,0 +1,401 @@
+package se.groupone.ecommerce.repository.sql;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import se.groupone.ecommerce.exception.RepositoryException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Copies the shop tables to and from a gzipped stream of JSON lines: a format
+ * line, then for each table a line naming it and its columns followed by one
+ * array per row, and last a line with the number of rows. Neither direction
+ * holds more than a few statements' worth of rows in memory.
+ * <p>
+ * The export reads every table in one transaction, so the snapshot is
+ * consistent, and has the driver stream rows rather than fetch whole tables.
+ * The import reads the stream on the calling thread and hands rows in chunks
+ * to a few threads that write them as multi-row INSERTs with foreign key and
+ * unique checks off. It expects empty tables.
+ */
+public final class SQLSnapshot
+{
+	public static final String FORMAT = "ecommerce-snapshot-1";
+	public static final int DEFAULT_THREADS = 4;
+
+	// Parents before children
+	private static final String[] TABLES = { "customer", "product", "customer_cart", "order",
+			"product_order" };
+	private static final Pattern COLUMN_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+	// Connector/J only streams rows one at a time with this fetch size, other drivers refuse it
+	private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+	private static final int FETCH_SIZE = 10_000;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final int rowsPerStatement;
+	private final int threads;
+
+	public SQLSnapshot()
+	{
+		this(SQLBulkLoader.DEFAULT_ROWS_PER_STATEMENT, DEFAULT_THREADS);
+	}
+
+	public SQLSnapshot(int rowsPerStatement, int threads)
+	{
+		this.rowsPerStatement = Math.max(1, rowsPerStatement);
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Writes the snapshot to the stream, which is left open.
+	 *
+	 * @return the number of rows written
+	 */
+	public long exportTo(OutputStream out) throws RepositoryException, IOException
+	{
+		final GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8),
+				BUFFER_SIZE);
+		long rows = 0;
+		try (Connection con = SQLConnector.getReadConnection())
+		{
+			con.setAutoCommit(false);
+			final JsonWriter format = line(writer).beginObject();
+			format.name("format").value(FORMAT).endObject();
+			writer.write('\n');
+
+			for (String table : TABLES)
+			{
+				rows += exportTable(con, table, writer);
+			}
+			con.commit();
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not export the database", e);
+		}
+
+		line(writer).beginObject().name("rows").value(rows).endObject();
+		writer.write('\n');
+		writer.flush();
+		gzip.finish();
+		return rows;
+	}
+
+	/**
+	 * Reads a snapshot written by {@link #exportTo(OutputStream)} into empty
+	 * tables.
+	 *
+	 * @return the number of rows read
+	 */
+	public long importFrom(InputStream in) throws RepositoryException, IOException
+	{
+		final JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(in, BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE));
+		// One JSON value per line
+		reader.setLenient(true);
+
+		final AtomicReference<Exception> failure = new AtomicReference<>();
+		final AtomicLong written = new AtomicLong();
+		final AtomicInteger threadNumber = new AtomicInteger();
+		// When every thread is busy and the queue is full the reading thread writes, which bounds memory
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(threads * 2), runnable ->
+				{
+					final Thread thread = new Thread(runnable, "snapshot-import-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+
+		long rows = 0;
+		try
+		{
+			readFormat(reader);
+			String table = null;
+			String columns = null;
+			int columnCount = 0;
+			Object[][] chunk = null;
+			int chunkSize = 0;
+			while (reader.peek() != JsonToken.END_DOCUMENT && failure.get() == null)
+			{
+				if (reader.peek() == JsonToken.BEGIN_ARRAY)
+				{
+					if (table == null)
+					{
+						throw new RepositoryException("Snapshot row before any table");
+					}
+					chunk[chunkSize++] = readRow(reader, columnCount);
+					rows++;
+					if (chunkSize == rowsPerStatement)
+					{
+						executor.execute(new Insert(table, columns, chunk, chunkSize, written, failure));
+						chunk = new Object[rowsPerStatement][];
+						chunkSize = 0;
+					}
+					continue;
+				}
+
+				if (chunkSize > 0)
+				{
+					executor.execute(new Insert(table, columns, chunk, chunkSize, written, failure));
+					chunk = new Object[rowsPerStatement][];
+					chunkSize = 0;
+				}
+				reader.beginObject();
+				final String name = reader.nextName();
+				if (name.equals("rows"))
+				{
+					final long expected = reader.nextLong();
+					reader.endObject();
+					if (expected != rows)
+					{
+						throw new RepositoryException("Snapshot says " + expected + " rows, but has " + rows);
+					}
+					return awaitInserts(executor, failure, written, rows);
+				}
+				if (!name.equals("table"))
+				{
+					throw new RepositoryException("Unexpected line in snapshot: " + name);
+				}
+				table = reader.nextString();
+				if (!Arrays.asList(TABLES).contains(table))
+				{
+					throw new RepositoryException("Unknown table in snapshot: " + table);
+				}
+				final StringBuilder columnList = new StringBuilder();
+				columnCount = 0;
+				reader.nextName();
+				reader.beginArray();
+				while (reader.hasNext())
+				{
+					final String column = reader.nextString();
+					if (!COLUMN_NAME.matcher(column).matches())
+					{
+						throw new RepositoryException("Invalid column in snapshot: " + column);
+					}
+					columnList.append(columnCount++ == 0 ? "`" : ", `").append(column).append('`');
+				}
+				reader.endArray();
+				reader.endObject();
+				columns = columnList.toString();
+				chunk = new Object[rowsPerStatement][];
+			}
+			awaitInserts(executor, failure, written, rows);
+			throw new RepositoryException("Snapshot ends early, after " + rows + " rows");
+		}
+		catch (IllegalStateException | NumberFormatException e)
+		{
+			throw new RepositoryException("Malformed snapshot after " + rows + " rows", e);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private long exportTable(Connection con, String table, Writer writer) throws SQLException, IOException
+	{
+		try (Statement statement = con.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY))
+		{
+			try
+			{
+				statement.setFetchSize(STREAMING_FETCH_SIZE);
+			}
+			catch (SQLException e)
+			{
+				statement.setFetchSize(FETCH_SIZE);
+			}
+			final ResultSet resultSet = statement.executeQuery("SELECT * FROM `" + table + "`");
+			final ResultSetMetaData metaData = resultSet.getMetaData();
+			final int columnCount = metaData.getColumnCount();
+
+			final JsonWriter header = line(writer).beginObject();
+			header.name("table").value(table).name("columns").beginArray();
+			for (int i = 1; i <= columnCount; i++)
+			{
+				header.value(metaData.getColumnName(i));
+			}
+			header.endArray().endObject();
+			writer.write('\n');
+
+			long rows = 0;
+			while (resultSet.next())
+			{
+				final JsonWriter row = line(writer).beginArray();
+				for (int i = 1; i <= columnCount; i++)
+				{
+					final Object value = resultSet.getObject(i);
+					if (value == null)
+					{
+						row.nullValue();
+					}
+					else if (value instanceof Number)
+					{
+						row.value((Number) value);
+					}
+					else if (value instanceof Boolean)
+					{
+						row.value((Boolean) value);
+					}
+					else
+					{
+						// Strings, and dates as yyyy-MM-dd
+						row.value(value.toString());
+					}
+				}
+				row.endArray();
+				writer.write('\n');
+				rows++;
+			}
+			return rows;
+		}
+	}
+
+	// A writer per line, since a JsonWriter only takes one value
+	private static JsonWriter line(Writer writer)
+	{
+		return new JsonWriter(writer);
+	}
+
+	private static void readFormat(JsonReader reader) throws IOException, RepositoryException
+	{
+		reader.beginObject();
+		if (!reader.nextName().equals("format"))
+		{
+			throw new RepositoryException("Not a snapshot");
+		}
+		final String format = reader.nextString();
+		if (!format.equals(FORMAT))
+		{
+			throw new RepositoryException("Unsupported snapshot format: " + format);
+		}
+		reader.endObject();
+	}
+
+	private static Object[] readRow(JsonReader reader, int columnCount) throws IOException, RepositoryException
+	{
+		final Object[] row = new Object[columnCount];
+		reader.beginArray();
+		for (int i = 0; i < columnCount; i++)
+		{
+			switch (reader.peek())
+			{
+				case NULL:
+					reader.nextNull();
+					break;
+				case NUMBER:
+					final String number = reader.nextString();
+					row[i] = number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0
+							? (Object) Long.valueOf(number) : (Object) Double.valueOf(number);
+					break;
+				case BOOLEAN:
+					row[i] = reader.nextBoolean();
+					break;
+				default:
+					row[i] = reader.nextString();
+			}
+		}
+		if (reader.hasNext())
+		{
+			throw new RepositoryException("Snapshot row has more than " + columnCount + " columns");
+		}
+		reader.endArray();
+		return row;
+	}
+
+	private static long awaitInserts(ThreadPoolExecutor executor, AtomicReference<Exception> failure,
+			AtomicLong written, long rows) throws RepositoryException
+	{
+		executor.shutdown();
+		try
+		{
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS))
+			{
+				// Chunks still being written
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RepositoryException("Interrupted while importing the snapshot", e);
+		}
+		if (failure.get() != null)
+		{
+			throw new RepositoryException("Could not import the snapshot", failure.get());
+		}
+		if (written.get() != rows)
+		{
+			throw new RepositoryException("Only " + written.get() + " of " + rows + " rows were written");
+		}
+		return rows;
+	}
+
+	private static final class Insert implements Runnable
+	{
+		private final String table;
+		private final String columns;
+		private final Object[][] rows;
+		private final int rowCount;
+		private final AtomicLong written;
+		private final AtomicReference<Exception> failure;
+
+		private Insert(String table, String columns, Object[][] rows, int rowCount, AtomicLong written,
+				AtomicReference<Exception> failure)
+		{
+			this.table = table;
+			this.columns = columns;
+			this.rows = rows;
+			this.rowCount = rowCount;
+			this.written = written;
+			this.failure = failure;
+		}
+
+		@Override
+		public void run()
+		{
+			if (failure.get() != null)
+			{
+				return;
+			}
+			try (Connection con = SQLConnector.getConnection();
+				 MultiRowInsert insert = new MultiRowInsert(con, "`" + table + "`", columns,
+						 rows[0].length, rowCount))
+			{
+				for (int i = 0; i < rowCount; i++)
+				{
+					insert.add(rows[i]);
+				}
+				written.addAndGet(insert.finish());
+			}
+			catch (RepositoryException | SQLException | RuntimeException e)
+			{
+				failure.compareAndSet(null, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package se.groupone.ecommerce.repository.sql;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Logs statements whose execution exceeds a threshold. Only every n:th slow
+ * statement is written so that a database stall does not flood the log.
+ */
+public final class SlowQueryLog
+{
+	private static final Logger LOG = Logger.getLogger(SlowQueryLog.class.getName());
+
+	private static volatile long thresholdNanos =
+			TimeUnit.MILLISECONDS.toNanos(DBConfig.getSlowQueryMillis());
+	private static volatile int sampleRate = Math.max(1, DBConfig.getSlowQuerySampleRate());
+
+	private static final AtomicLong slowQueries = new AtomicLong();
+
+	private SlowQueryLog()
+	{
+	}
+
+	public static void setThresholdMillis(long thresholdMillis)
+	{
+		if (thresholdMillis < 0)
+		{
+			throw new IllegalArgumentException("Threshold can not be negative");
+		}
+		thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+	}
+
+	public static void setSampleRate(int rate)
+	{
+		sampleRate = Math.max(1, rate);
+	}
+
+	public static long getSlowQueries()
+	{
+		return slowQueries.get();
+	}
+
+	static void record(String sql, long nanos)
+	{
+		if (nanos < thresholdNanos)
+		{
+			return;
+		}
+		if (slowQueries.incrementAndGet() % sampleRate == 0)
+		{
+			LOG.warning(String.format("Slow query (%d ms): %s",
+					TimeUnit.NANOSECONDS.toMillis(nanos), sql));
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package se.groupone.ecommerce.repository.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by the
+ * SQL template. Only used by the thread currently leasing the connection, so
+ * it is not thread safe.
+ */
+final class StatementCache
+{
+	private static final QueryStatistics statistics = QueryStatistics.getInstance();
+
+	private final Connection connection;
+	private final IntSupplier capacity;
+	private final LinkedHashMap<String, CachedStatement> statements;
+
+	StatementCache(Connection connection, IntSupplier capacity)
+	{
+		this.connection = connection;
+		this.capacity = capacity;
+		this.statements = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns a cached statement for the template, or prepares and caches a new
+	 * one. Returns null when the template's statement is already checked out
+	 * or the cache is turned off, in which case the caller should prepare an
+	 * uncached statement.
+	 */
+	CachedStatement checkOut(String sql) throws SQLException
+	{
+		CachedStatement cached = statements.get(sql);
+		if (cached != null)
+		{
+			if (cached.inUse)
+			{
+				return null;
+			}
+			statistics.recordStatementCacheHit();
+		}
+		else
+		{
+			statistics.recordStatementCacheMiss();
+			if (capacity.getAsInt() <= 0)
+			{
+				evictOverflow();
+				return null;
+			}
+			cached = new CachedStatement(connection.prepareStatement(sql));
+			cached.inUse = true;
+			statements.put(sql, cached);
+			evictOverflow();
+			return cached;
+		}
+
+		cached.inUse = true;
+		return cached;
+	}
+
+	void checkIn(CachedStatement cached) throws SQLException
+	{
+		cached.inUse = false;
+		if (cached.evicted)
+		{
+			cached.statement.close();
+			return;
+		}
+
+		// Free the result set now instead of at the next execution
+		if (cached.statement.getResultSet() != null)
+		{
+			cached.statement.getResultSet().close();
+		}
+		cached.statement.clearParameters();
+		cached.resetSettings();
+	}
+
+	int size()
+	{
+		return statements.size();
+	}
+
+	void closeAll()
+	{
+		for (CachedStatement cached : statements.values())
+		{
+			try
+			{
+				cached.statement.close();
+			}
+			catch (SQLException e)
+			{
+				// The connection is being discarded anyway
+			}
+		}
+		statements.clear();
+	}
+
+	private void evictOverflow() throws SQLException
+	{
+		final List<CachedStatement> evicted = new ArrayList<>();
+		final Iterator<Map.Entry<String, CachedStatement>> eldest = statements.entrySet().iterator();
+		while (statements.size() > capacity.getAsInt() && eldest.hasNext())
+		{
+			final CachedStatement cached = eldest.next().getValue();
+			eldest.remove();
+			evicted.add(cached);
+		}
+
+		for (CachedStatement cached : evicted)
+		{
+			statistics.recordStatementCacheEviction();
+			if (cached.inUse)
+			{
+				cached.evicted = true;
+			}
+			else
+			{
+				cached.statement.close();
+			}
+		}
+	}
+
+	/**
+	 * A cached statement and the settings it was prepared with, which are put
+	 * back on check in so a borrower never inherits the fetch size or row limit
+	 * of the one before.
+	 */
+	static final class CachedStatement
+	{
+		final PreparedStatement statement;
+		private final int fetchSize;
+		private final int maxRows;
+		private final int maxFieldSize;
+		private final int queryTimeout;
+		boolean inUse;
+		boolean evicted;
+
+		private CachedStatement(PreparedStatement statement) throws SQLException
+		{
+			this.statement = statement;
+			this.fetchSize = statement.getFetchSize();
+			this.maxRows = statement.getMaxRows();
+			this.maxFieldSize = statement.getMaxFieldSize();
+			this.queryTimeout = statement.getQueryTimeout();
+		}
+
+		private void resetSettings() throws SQLException
+		{
+			if (statement.getFetchSize() != fetchSize)
+			{
+				statement.setFetchSize(fetchSize);
+			}
+			if (statement.getMaxRows() != maxRows)
+			{
+				statement.setMaxRows(maxRows);
+			}
+			if (statement.getMaxFieldSize() != maxFieldSize)
+			{
+				statement.setMaxFieldSize(maxFieldSize);
+			}
+			if (statement.getQueryTimeout() != queryTimeout)
+			{
+				statement.setQueryTimeout(queryTimeout);
+			}
+		}
+	}
+}
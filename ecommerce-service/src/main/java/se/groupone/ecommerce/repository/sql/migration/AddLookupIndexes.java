@@ -0,0 +1,37 @@
+package se.groupone.ecommerce.repository.sql.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Covering indexes for the repository lookups. The composite indexes on
+ * product_order and customer_cart replace the single column keys they
+ * start with, which are then dropped. The foreign keys are still backed
+ * by the composite index.
+ */
+class AddLookupIndexes extends Migration
+{
+	AddLookupIndexes()
+	{
+		super(2, "Add covering indexes for order, cart and product lookups");
+	}
+
+	@Override
+	public void migrate(Connection con) throws SQLException
+	{
+		// SQLOrderRepository.getOrders
+		createIndex(con, "order", "customer_name_id_order", "customer_name", "id_order");
+
+		// SQLOrderRepository.getOrder
+		createIndex(con, "product_order", "id_order_id_product", "id_order", "id_product");
+		dropIndex(con, "product_order", "id_order");
+
+		// SQLCustomerRepository.getCustomer
+		createIndex(con, "customer_cart", "user_name_id_product", "user_name", "id_product");
+		dropIndex(con, "customer_cart", "user_name");
+
+		// Catalogue filtering
+		createIndex(con, "product", "category", "category");
+		createIndex(con, "product", "manufacturer", "manufacturer");
+	}
+}
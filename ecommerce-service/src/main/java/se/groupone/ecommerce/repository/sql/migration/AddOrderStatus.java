@@ -0,0 +1,37 @@
+package se.groupone.ecommerce.repository.sql.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Orders get a status (created, paid, shipped or cancelled) and an index to
+ * list them by status and creation date. Orders that already have a shipped
+ * date are marked shipped.
+ */
+class AddOrderStatus extends Migration
+{
+	AddOrderStatus()
+	{
+		super(4, "Add order.status with an index on status and created");
+	}
+
+	@Override
+	public void migrate(Connection con) throws SQLException
+	{
+		try (Statement statement = con.createStatement())
+		{
+			if (!columnExists(con, "order", "status"))
+			{
+				// Written this way round so H2 (used by the load test) accepts it too
+				statement.execute("ALTER TABLE `order` ADD COLUMN `status` VARCHAR(9) "
+						+ "DEFAULT 'created' NOT NULL");
+			}
+			statement.executeUpdate("UPDATE `order` SET `status` = 'shipped' "
+					+ "WHERE `shipped` IS NOT NULL AND `status` = 'created'");
+		}
+
+		// SQLOrderRepository.getOrdersByStatus
+		createIndex(con, "order", "status_created", "status", "created");
+	}
+}
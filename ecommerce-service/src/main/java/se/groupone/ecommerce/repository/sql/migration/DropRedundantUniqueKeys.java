@@ -0,0 +1,24 @@
+package se.groupone.ecommerce.repository.sql.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The original dump declares a UNIQUE key on every primary key column. These
+ * duplicate the primary key and only add write cost.
+ */
+class DropRedundantUniqueKeys extends Migration
+{
+	DropRedundantUniqueKeys()
+	{
+		super(1, "Drop unique keys duplicating primary keys");
+	}
+
+	@Override
+	public void migrate(Connection con) throws SQLException
+	{
+		dropIndex(con, "customer", "user_name_UNIQUE");
+		dropIndex(con, "order", "id_order_UNIQUE");
+		dropIndex(con, "product", "id_product");
+	}
+}
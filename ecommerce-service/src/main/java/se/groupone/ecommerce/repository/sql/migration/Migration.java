@@ -0,0 +1,108 @@
+package se.groupone.ecommerce.repository.sql.migration;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A single versioned schema change. Migrations must be safe to re-run on a
+ * schema that already contains their changes, since MySQL commits DDL
+ * implicitly and a crash can leave a migration applied but unrecorded.
+ */
+public abstract class Migration
+{
+	private final int version;
+	private final String description;
+
+	protected Migration(int version, String description)
+	{
+		this.version = version;
+		this.description = description;
+	}
+
+	public int getVersion()
+	{
+		return version;
+	}
+
+	public String getDescription()
+	{
+		return description;
+	}
+
+	public abstract void migrate(Connection con) throws SQLException;
+
+	protected static void createIndex(Connection con, String table, String index,
+			String... columns) throws SQLException
+	{
+		if (indexExists(con, table, index))
+		{
+			return;
+		}
+
+		try (Statement statement = con.createStatement())
+		{
+			statement.execute("CREATE INDEX `" + index + "` ON `" + table + "` (`"
+					+ String.join("`, `", columns) + "`)");
+		}
+	}
+
+	protected static void dropIndex(Connection con, String table, String index)
+			throws SQLException
+	{
+		if (!indexExists(con, table, index))
+		{
+			return;
+		}
+
+		// H2 (used by the load test) keeps index names per schema rather than per table
+		final boolean h2 = "H2".equals(con.getMetaData().getDatabaseProductName());
+		try (Statement statement = con.createStatement())
+		{
+			statement.execute(h2 ? "DROP INDEX `" + index + "`"
+					: "ALTER TABLE `" + table + "` DROP INDEX `" + index + "`");
+		}
+	}
+
+	protected static boolean indexExists(Connection con, String table, String index)
+			throws SQLException
+	{
+		final DatabaseMetaData metaData = con.getMetaData();
+		try (ResultSet indexes = metaData.getIndexInfo(con.getCatalog(), null, table, false, true))
+		{
+			while (indexes.next())
+			{
+				if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME")))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	protected static boolean columnExists(Connection con, String table, String column)
+			throws SQLException
+	{
+		final DatabaseMetaData metaData = con.getMetaData();
+		try (ResultSet columns = metaData.getColumns(con.getCatalog(), null, table, null))
+		{
+			while (columns.next())
+			{
+				if (column.equalsIgnoreCase(columns.getString("COLUMN_NAME")))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "V" + version + " " + description;
+	}
+}
@@ -0,0 +1,167 @@
+package se.groupone.ecommerce.repository.sql.migration;
+
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.repository.sql.SQLConnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Brings the database schema up to date by applying every migration newer
+ * than the version recorded in the schema_version table, in version order.
+ */
+public final class SchemaMigrator
+{
+	private static final Logger LOG = Logger.getLogger(SchemaMigrator.class.getName());
+
+	// Append new migrations at the end, never reorder or renumber
+	public static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+			new DropRedundantUniqueKeys(),
+			new AddLookupIndexes(),
+			new WidenPasswordColumn(),
+			new AddOrderStatus()));
+
+	private static final String SCHEMA_VERSION_TABLE = "schema_version";
+	private static final String LOCK_NAME = "ecommerce.schema_migration";
+	private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+	private final List<Migration> migrations;
+
+	public SchemaMigrator()
+	{
+		this(MIGRATIONS);
+	}
+
+	public SchemaMigrator(List<Migration> migrations)
+	{
+		this.migrations = migrations;
+	}
+
+	/**
+	 * @return the number of migrations that were applied
+	 */
+	public int migrate() throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection())
+		{
+			final boolean mysql = "MySQL".equals(con.getMetaData().getDatabaseProductName());
+
+			// Several web service instances may start at the same time
+			if (mysql)
+			{
+				acquireLock(con);
+			}
+			try
+			{
+				createVersionTable(con);
+				final int currentVersion = getCurrentVersion(con);
+				int applied = 0;
+
+				for (Migration migration : migrations)
+				{
+					if (migration.getVersion() <= currentVersion)
+					{
+						continue;
+					}
+
+					LOG.info("Applying schema migration " + migration);
+					migration.migrate(con);
+					recordVersion(con, migration);
+					applied++;
+				}
+				return applied;
+			}
+			finally
+			{
+				if (mysql)
+				{
+					releaseLock(con);
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not migrate database schema!", e);
+		}
+	}
+
+	public int getCurrentVersion() throws RepositoryException
+	{
+		try (Connection con = SQLConnector.getConnection())
+		{
+			createVersionTable(con);
+			return getCurrentVersion(con);
+		}
+		catch (SQLException e)
+		{
+			throw new RepositoryException("Could not read database schema version!", e);
+		}
+	}
+
+	private static void createVersionTable(Connection con) throws SQLException
+	{
+		try (Statement statement = con.createStatement())
+		{
+			statement.execute("CREATE TABLE IF NOT EXISTS " + SCHEMA_VERSION_TABLE + " ("
+					+ "version int NOT NULL, "
+					+ "description varchar(100) NOT NULL, "
+					+ "applied datetime NOT NULL, "
+					+ "PRIMARY KEY (version))");
+		}
+	}
+
+	private static int getCurrentVersion(Connection con) throws SQLException
+	{
+		try (Statement statement = con.createStatement();
+			 ResultSet resultSet = statement
+					 .executeQuery("SELECT MAX(version) FROM " + SCHEMA_VERSION_TABLE))
+		{
+			return resultSet.next() ? resultSet.getInt(1) : 0;
+		}
+	}
+
+	private static void recordVersion(Connection con, Migration migration) throws SQLException
+	{
+		try (PreparedStatement statement = con.prepareStatement("INSERT INTO "
+				+ SCHEMA_VERSION_TABLE + " (version, description, applied) VALUES (?, ?, ?)"))
+		{
+			statement.setInt(1, migration.getVersion());
+			statement.setString(2, migration.getDescription());
+			statement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+			statement.executeUpdate();
+		}
+	}
+
+	private static void acquireLock(Connection con) throws SQLException
+	{
+		try (PreparedStatement statement = con.prepareStatement("SELECT GET_LOCK(?, ?)"))
+		{
+			statement.setString(1, LOCK_NAME);
+			statement.setInt(2, LOCK_TIMEOUT_SECONDS);
+			try (ResultSet resultSet = statement.executeQuery())
+			{
+				if (!resultSet.next() || resultSet.getInt(1) != 1)
+				{
+					throw new SQLException("Timed out waiting for schema migration lock");
+				}
+			}
+		}
+	}
+
+	private static void releaseLock(Connection con) throws SQLException
+	{
+		try (PreparedStatement statement = con.prepareStatement("SELECT RELEASE_LOCK(?)"))
+		{
+			statement.setString(1, LOCK_NAME);
+			statement.executeQuery().close();
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package se.groupone.ecommerce.repository.sql.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Password hashes (pbkdf2-sha256$iterations$salt$hash) are about 90
+ * characters, the original column holds 45.
+ */
+class WidenPasswordColumn extends Migration
+{
+	WidenPasswordColumn()
+	{
+		super(3, "Widen customer.password to hold password hashes");
+	}
+
+	@Override
+	public void migrate(Connection con) throws SQLException
+	{
+		// H2 (used by the load test) does not know MySQL collations
+		final boolean h2 = "H2".equals(con.getMetaData().getDatabaseProductName());
+		try (Statement statement = con.createStatement())
+		{
+			statement.execute(h2
+					? "ALTER TABLE `customer` ALTER COLUMN `password` VARCHAR(128) DEFAULT '' NOT NULL"
+					: "ALTER TABLE `customer` MODIFY `password` VARCHAR(128) "
+							+ "COLLATE utf8_swedish_ci NOT NULL DEFAULT ''");
+		}
+	}
+}
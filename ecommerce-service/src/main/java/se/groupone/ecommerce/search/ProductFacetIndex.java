@@ -0,0 +1,314 @@
+package se.groupone.ecommerce.search;
+
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.model.ProductFacets;
+import se.groupone.ecommerce.service.ShopServiceListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps one ProductIdSet per category, manufacturer and price band, plus the
+ * set of products in stock. Filters are intersections of those sets. Counts
+ * under a filter take whichever of two ways is cheaper: a pass over the
+ * filtered ids that looks up each product's value by id, which costs in
+ * proportion to the products matching, or intersecting the filter with the
+ * set of every value, which costs in proportion to the catalogue times the
+ * number of values but runs word by word. Without a filter the counts are the
+ * sizes of the value sets.
+ */
+public final class ProductFacetIndex implements ShopServiceListener
+{
+	// Lower bounds of the price bands, the last band is open ended
+	private static final double[] PRICE_BAND_BOUNDS = { 0, 10, 25, 50, 100, 250 };
+	private static final String[] PRICE_BANDS;
+
+	static
+	{
+		PRICE_BANDS = new String[PRICE_BAND_BOUNDS.length];
+		for (int i = 0; i < PRICE_BAND_BOUNDS.length; i++)
+		{
+			PRICE_BANDS[i] = formatBound(PRICE_BAND_BOUNDS[i]) + "-"
+					+ (i + 1 < PRICE_BAND_BOUNDS.length ? formatBound(PRICE_BAND_BOUNDS[i + 1]) : "");
+		}
+	}
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<Integer, Integer> quantities = new HashMap<>();
+	private ProductIdSet all = new ProductIdSet();
+	private ProductIdSet inStock = new ProductIdSet();
+	private Facet categories = new Facet(true);
+	private Facet manufacturers = new Facet(true);
+	private Facet priceBands = priceBandFacet();
+
+	public static String priceBand(double price)
+	{
+		int band = 0;
+		while (band + 1 < PRICE_BAND_BOUNDS.length && price >= PRICE_BAND_BOUNDS[band + 1])
+		{
+			band++;
+		}
+		return PRICE_BANDS[band];
+	}
+
+	/**
+	 * Counts products matching the filters. Values within one filter are
+	 * alternatives, empty filters match everything.
+	 */
+	public ProductFacets count(Collection<String> categoryFilter,
+			Collection<String> manufacturerFilter,
+			Collection<String> priceBandFilter,
+			boolean inStockOnly)
+	{
+		lock.readLock().lock();
+		try
+		{
+			final ProductIdSet byCategory = categories.union(categoryFilter);
+			final ProductIdSet byManufacturer = manufacturers.union(manufacturerFilter);
+			final ProductIdSet byPriceBand = priceBands.union(priceBandFilter);
+			final ProductIdSet byStock = inStockOnly ? inStock : null;
+
+			// Partial intersections shared between the facets, null means no filter
+			final ProductIdSet categoryAndManufacturer = intersect(byCategory, byManufacturer);
+			final ProductIdSet priceBandAndStock = intersect(byPriceBand, byStock);
+			final ProductIdSet matching = intersect(categoryAndManufacturer, priceBandAndStock);
+
+			return new ProductFacets(
+					matching == null ? all.cardinality() : matching.cardinality(),
+					matching == null ? inStock.cardinality() : inStock.andCardinality(matching),
+					categories.counts(intersect(byManufacturer, priceBandAndStock), all),
+					manufacturers.counts(intersect(byCategory, priceBandAndStock), all),
+					priceBands.counts(intersect(categoryAndManufacturer, byStock), all));
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	public void clear()
+	{
+		lock.writeLock().lock();
+		try
+		{
+			quantities.clear();
+			all = new ProductIdSet();
+			inStock = new ProductIdSet();
+			categories = new Facet(true);
+			manufacturers = new Facet(true);
+			priceBands = priceBandFacet();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void productAdded(Product product)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			final int productId = product.getId();
+			remove(productId);
+
+			all.add(productId);
+			categories.add(productId, product.getCategory());
+			manufacturers.add(productId, product.getManufacturer());
+			priceBands.add(productId, priceBand(product.getPrice()));
+			quantities.put(productId, product.getQuantity());
+			if (product.getQuantity() > 0)
+			{
+				inStock.add(productId);
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void productUpdated(Product product)
+	{
+		productAdded(product);
+	}
+
+	@Override
+	public void productRemoved(int productId)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			remove(productId);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void orderCreated(Order order)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			for (int productId : order.getProductIds())
+			{
+				final Integer quantity = quantities.get(productId);
+				if (quantity != null)
+				{
+					quantities.put(productId, quantity - 1);
+					if (quantity - 1 <= 0)
+					{
+						inStock.remove(productId);
+					}
+				}
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void remove(int productId)
+	{
+		if (quantities.remove(productId) != null)
+		{
+			all.remove(productId);
+			inStock.remove(productId);
+			categories.remove(productId);
+			manufacturers.remove(productId);
+			priceBands.remove(productId);
+		}
+	}
+
+	private static ProductIdSet intersect(ProductIdSet a, ProductIdSet b)
+	{
+		if (a == null || b == null)
+		{
+			return a == null ? b : a;
+		}
+		return a.and(b);
+	}
+
+	private static Facet priceBandFacet()
+	{
+		// Registered up front so bands are listed cheapest first
+		final Facet facet = new Facet(false);
+		for (String band : PRICE_BANDS)
+		{
+			facet.ordinal(band);
+		}
+		return facet;
+	}
+
+	private static String formatBound(double bound)
+	{
+		return bound == Math.rint(bound) ? Long.toString((long) bound) : Double.toString(bound);
+	}
+
+	/**
+	 * One facet: the products per value, and the value of every product as an
+	 * ordinal indexed by product id.
+	 */
+	private static final class Facet
+	{
+		private final boolean sortByValue;
+		private final Map<String, Integer> ordinals = new HashMap<>();
+		private final List<String> values = new ArrayList<>();
+		private final List<ProductIdSet> products = new ArrayList<>();
+		private int[] ordinalByProductId = new int[1024];
+
+		private Facet(boolean sortByValue)
+		{
+			this.sortByValue = sortByValue;
+		}
+
+		private int ordinal(String value)
+		{
+			Integer ordinal = ordinals.get(value);
+			if (ordinal == null)
+			{
+				ordinal = values.size();
+				ordinals.put(value, ordinal);
+				values.add(value);
+				products.add(new ProductIdSet());
+			}
+			return ordinal;
+		}
+
+		private void add(int productId, String value)
+		{
+			final int ordinal = ordinal(value);
+			if (productId >= ordinalByProductId.length)
+			{
+				ordinalByProductId = Arrays.copyOf(ordinalByProductId,
+						Math.max(productId + 1, ordinalByProductId.length * 2));
+			}
+			ordinalByProductId[productId] = ordinal;
+			products.get(ordinal).add(productId);
+		}
+
+		private void remove(int productId)
+		{
+			products.get(ordinalByProductId[productId]).remove(productId);
+		}
+
+		// Null when there is no filter on this facet
+		private ProductIdSet union(Collection<String> filter)
+		{
+			if (filter == null || filter.isEmpty())
+			{
+				return null;
+			}
+			ProductIdSet union = null;
+			for (String value : filter)
+			{
+				final Integer ordinal = ordinals.get(value);
+				if (ordinal != null)
+				{
+					union = union == null ? products.get(ordinal) : union.or(products.get(ordinal));
+				}
+			}
+			return union == null ? new ProductIdSet() : union;
+		}
+
+		private Map<String, Integer> counts(ProductIdSet filter, ProductIdSet all)
+		{
+			final int[] counts = new int[values.size()];
+			final int filtered = filter == null ? 0 : filter.cardinality();
+
+			// Intersecting with every value costs about as much as looking up the value
+			// of one product in 512, so the pass over the filter only pays off for
+			// sparse filters or facets with many values
+			if (filter == null || filtered > (long) counts.length * all.cardinality() / 512)
+			{
+				for (int ordinal = 0; ordinal < counts.length; ordinal++)
+				{
+					counts[ordinal] = filter == null ? products.get(ordinal).cardinality()
+							: products.get(ordinal).andCardinality(filter);
+				}
+			}
+			else
+			{
+				final int[] ordinalByProductId = this.ordinalByProductId;
+				filter.forEach(productId -> counts[ordinalByProductId[productId]]++);
+			}
+
+			final Map<String, Integer> result = sortByValue ? new TreeMap<>() : new LinkedHashMap<>();
+			for (int ordinal = 0; ordinal < counts.length; ordinal++)
+			{
+				if (counts[ordinal] > 0)
+				{
+					result.put(values.get(ordinal), counts[ordinal]);
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,569 @@
+package se.groupone.ecommerce.search;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of product ids in the style of a roaring bitmap. Ids are
+ * split on their upper 16 bits into chunks; a chunk holds a sorted array of
+ * the lower 16 bits while it has at most 4096 members and a 65536 bit bitmap
+ * after that, so both sparse and dense sets stay small and intersect quickly.
+ * Not thread safe.
+ */
+public final class ProductIdSet
+{
+	// Beyond this many members a bitmap (8 KiB) is smaller than a sorted array
+	private static final int ARRAY_MAX = 4096;
+	private static final int SPARSE_INTERSECTION_MAX = 1024;
+	private static final int BITMAP_WORDS = (1 << 16) / Long.SIZE;
+
+	private char[] keys;
+	private Container[] containers;
+	private int size;
+
+	public ProductIdSet()
+	{
+		this(0);
+	}
+
+	private ProductIdSet(int chunks)
+	{
+		keys = new char[chunks];
+		containers = new Container[chunks];
+	}
+
+	public void add(int productId)
+	{
+		checkId(productId);
+		final char key = (char) (productId >>> 16);
+		final int i = indexOf(key);
+		if (i >= 0)
+		{
+			containers[i] = containers[i].add((char) productId);
+		}
+		else
+		{
+			insert(-i - 1, key, new ArrayContainer().add((char) productId));
+		}
+	}
+
+	public void remove(int productId)
+	{
+		checkId(productId);
+		final int i = indexOf((char) (productId >>> 16));
+		if (i >= 0)
+		{
+			final Container container = containers[i].remove((char) productId);
+			if (container.cardinality() == 0)
+			{
+				System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+				System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+				containers[--size] = null;
+			}
+			else
+			{
+				containers[i] = container;
+			}
+		}
+	}
+
+	public boolean contains(int productId)
+	{
+		final int i = productId < 0 ? -1 : indexOf((char) (productId >>> 16));
+		return i >= 0 && containers[i].contains((char) productId);
+	}
+
+	public int cardinality()
+	{
+		int cardinality = 0;
+		for (int i = 0; i < size; i++)
+		{
+			cardinality += containers[i].cardinality();
+		}
+		return cardinality;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Passes every id to the action in ascending order.
+	 */
+	public void forEach(IntConsumer action)
+	{
+		for (int i = 0; i < size; i++)
+		{
+			containers[i].forEach(keys[i] << 16, action);
+		}
+	}
+
+	public ProductIdSet and(ProductIdSet other)
+	{
+		final ProductIdSet result = new ProductIdSet(Math.min(size, other.size));
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size)
+		{
+			if (keys[i] < other.keys[j])
+			{
+				i++;
+			}
+			else if (keys[i] > other.keys[j])
+			{
+				j++;
+			}
+			else
+			{
+				final Container container = containers[i].and(other.containers[j]);
+				if (container.cardinality() > 0)
+				{
+					result.insert(result.size, keys[i], container);
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Size of the intersection without building it.
+	 */
+	public int andCardinality(ProductIdSet other)
+	{
+		int cardinality = 0;
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size)
+		{
+			if (keys[i] < other.keys[j])
+			{
+				i++;
+			}
+			else if (keys[i] > other.keys[j])
+			{
+				j++;
+			}
+			else
+			{
+				cardinality += containers[i].andCardinality(other.containers[j]);
+				i++;
+				j++;
+			}
+		}
+		return cardinality;
+	}
+
+	public ProductIdSet or(ProductIdSet other)
+	{
+		final ProductIdSet result = new ProductIdSet(size + other.size);
+		int i = 0;
+		int j = 0;
+		while (i < size || j < other.size)
+		{
+			if (j == other.size || i < size && keys[i] < other.keys[j])
+			{
+				result.insert(result.size, keys[i], containers[i].copy());
+				i++;
+			}
+			else if (i == size || keys[i] > other.keys[j])
+			{
+				result.insert(result.size, other.keys[j], other.containers[j].copy());
+				j++;
+			}
+			else
+			{
+				result.insert(result.size, keys[i], containers[i].or(other.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	private static void checkId(int productId)
+	{
+		if (productId < 0)
+		{
+			throw new IllegalArgumentException("Product id can not be negative: " + productId);
+		}
+	}
+
+	private int indexOf(char key)
+	{
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	private void insert(int i, char key, Container container)
+	{
+		if (size == keys.length)
+		{
+			keys = Arrays.copyOf(keys, Math.max(4, size * 2));
+			containers = Arrays.copyOf(containers, keys.length);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(containers, i, containers, i + 1, size - i);
+		keys[i] = key;
+		containers[i] = container;
+		size++;
+	}
+
+	/**
+	 * Lower 16 bits of the ids in one chunk. Mutators return the container to
+	 * use from then on, which may have changed representation.
+	 */
+	private interface Container
+	{
+		Container add(char value);
+
+		Container remove(char value);
+
+		boolean contains(char value);
+
+		int cardinality();
+
+		Container and(Container other);
+
+		int andCardinality(Container other);
+
+		Container or(Container other);
+
+		Container copy();
+
+		void forEach(int high, IntConsumer action);
+	}
+
+	private static final class ArrayContainer implements Container
+	{
+		private char[] values;
+		private int cardinality;
+
+		private ArrayContainer()
+		{
+			this(new char[4], 0);
+		}
+
+		private ArrayContainer(char[] values, int cardinality)
+		{
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		public Container add(char value)
+		{
+			final int i = Arrays.binarySearch(values, 0, cardinality, value);
+			if (i >= 0)
+			{
+				return this;
+			}
+			if (cardinality == ARRAY_MAX)
+			{
+				return toBitmap().add(value);
+			}
+			if (cardinality == values.length)
+			{
+				values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, cardinality * 2)));
+			}
+			final int insertAt = -i - 1;
+			System.arraycopy(values, insertAt, values, insertAt + 1, cardinality - insertAt);
+			values[insertAt] = value;
+			cardinality++;
+			return this;
+		}
+
+		@Override
+		public Container remove(char value)
+		{
+			final int i = Arrays.binarySearch(values, 0, cardinality, value);
+			if (i >= 0)
+			{
+				System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+				cardinality--;
+			}
+			return this;
+		}
+
+		@Override
+		public boolean contains(char value)
+		{
+			return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+		}
+
+		@Override
+		public int cardinality()
+		{
+			return cardinality;
+		}
+
+		@Override
+		public Container and(Container other)
+		{
+			final char[] result = new char[Math.min(cardinality, other.cardinality())];
+			int n = 0;
+			if (other instanceof ArrayContainer)
+			{
+				// Both sorted, a merge beats a binary search per value
+				final ArrayContainer array = (ArrayContainer) other;
+				int i = 0;
+				int j = 0;
+				while (i < cardinality && j < array.cardinality)
+				{
+					if (values[i] < array.values[j])
+					{
+						i++;
+					}
+					else if (values[i] > array.values[j])
+					{
+						j++;
+					}
+					else
+					{
+						result[n++] = values[i];
+						i++;
+						j++;
+					}
+				}
+			}
+			else
+			{
+				for (int i = 0; i < cardinality; i++)
+				{
+					if (other.contains(values[i]))
+					{
+						result[n++] = values[i];
+					}
+				}
+			}
+			return new ArrayContainer(result, n);
+		}
+
+		@Override
+		public int andCardinality(Container other)
+		{
+			if (other instanceof ArrayContainer)
+			{
+				return and(other).cardinality();
+			}
+			int n = 0;
+			for (int i = 0; i < cardinality; i++)
+			{
+				if (other.contains(values[i]))
+				{
+					n++;
+				}
+			}
+			return n;
+		}
+
+		@Override
+		public Container or(Container other)
+		{
+			if (!(other instanceof ArrayContainer))
+			{
+				final Container result = other.copy();
+				for (int i = 0; i < cardinality; i++)
+				{
+					result.add(values[i]);
+				}
+				return result;
+			}
+
+			final ArrayContainer array = (ArrayContainer) other;
+			final char[] merged = new char[cardinality + array.cardinality];
+			int n = 0;
+			int i = 0;
+			int j = 0;
+			while (i < cardinality || j < array.cardinality)
+			{
+				if (j == array.cardinality || i < cardinality && values[i] < array.values[j])
+				{
+					merged[n++] = values[i++];
+				}
+				else if (i == cardinality || values[i] > array.values[j])
+				{
+					merged[n++] = array.values[j++];
+				}
+				else
+				{
+					merged[n++] = values[i++];
+					j++;
+				}
+			}
+			final ArrayContainer result = new ArrayContainer(merged, n);
+			return n > ARRAY_MAX ? result.toBitmap() : result;
+		}
+
+		@Override
+		public Container copy()
+		{
+			return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+		}
+
+		@Override
+		public void forEach(int high, IntConsumer action)
+		{
+			for (int i = 0; i < cardinality; i++)
+			{
+				action.accept(high | values[i]);
+			}
+		}
+
+		private BitmapContainer toBitmap()
+		{
+			final BitmapContainer bitmap = new BitmapContainer(new long[BITMAP_WORDS], 0);
+			for (int i = 0; i < cardinality; i++)
+			{
+				bitmap.add(values[i]);
+			}
+			return bitmap;
+		}
+	}
+
+	private static final class BitmapContainer implements Container
+	{
+		private final long[] words;
+		private int cardinality;
+
+		private BitmapContainer(long[] words, int cardinality)
+		{
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		public Container add(char value)
+		{
+			final long word = words[value >>> 6];
+			final long updated = word | 1L << value;
+			if (updated != word)
+			{
+				words[value >>> 6] = updated;
+				cardinality++;
+			}
+			return this;
+		}
+
+		@Override
+		public Container remove(char value)
+		{
+			final long word = words[value >>> 6];
+			final long updated = word & ~(1L << value);
+			if (updated != word)
+			{
+				words[value >>> 6] = updated;
+				cardinality--;
+			}
+			return cardinality < ARRAY_MAX / 2 ? toArray() : this;
+		}
+
+		@Override
+		public boolean contains(char value)
+		{
+			return (words[value >>> 6] & 1L << value) != 0;
+		}
+
+		@Override
+		public int cardinality()
+		{
+			return cardinality;
+		}
+
+		@Override
+		public Container and(Container other)
+		{
+			if (other instanceof ArrayContainer)
+			{
+				return other.and(this);
+			}
+			final long[] otherWords = ((BitmapContainer) other).words;
+			final long[] result = new long[BITMAP_WORDS];
+			int n = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++)
+			{
+				result[i] = words[i] & otherWords[i];
+				n += Long.bitCount(result[i]);
+			}
+			// Intersections are mostly used as filters and intersected further, which is
+			// quicker for bitmaps, so only sparse results are converted to arrays
+			final BitmapContainer bitmap = new BitmapContainer(result, n);
+			if (n <= SPARSE_INTERSECTION_MAX)
+			{
+				return bitmap.toArray();
+			}
+			return bitmap;
+		}
+
+		@Override
+		public int andCardinality(Container other)
+		{
+			if (other instanceof ArrayContainer)
+			{
+				return other.andCardinality(this);
+			}
+			final long[] otherWords = ((BitmapContainer) other).words;
+			int n = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++)
+			{
+				n += Long.bitCount(words[i] & otherWords[i]);
+			}
+			return n;
+		}
+
+		@Override
+		public Container or(Container other)
+		{
+			if (other instanceof ArrayContainer)
+			{
+				return other.or(this);
+			}
+			final long[] otherWords = ((BitmapContainer) other).words;
+			final long[] result = new long[BITMAP_WORDS];
+			int n = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++)
+			{
+				result[i] = words[i] | otherWords[i];
+				n += Long.bitCount(result[i]);
+			}
+			return new BitmapContainer(result, n);
+		}
+
+		@Override
+		public Container copy()
+		{
+			return new BitmapContainer(words.clone(), cardinality);
+		}
+
+		@Override
+		public void forEach(int high, IntConsumer action)
+		{
+			for (int i = 0; i < BITMAP_WORDS; i++)
+			{
+				long word = words[i];
+				while (word != 0)
+				{
+					action.accept(high | i * Long.SIZE + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		private ArrayContainer toArray()
+		{
+			final char[] values = new char[cardinality];
+			int n = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++)
+			{
+				long word = words[i];
+				while (word != 0)
+				{
+					values[n++] = (char) (i * Long.SIZE + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer(values, n);
+		}
+	}
+}
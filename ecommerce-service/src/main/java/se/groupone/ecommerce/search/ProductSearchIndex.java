@@ -0,0 +1,598 @@
+package se.groupone.ecommerce.search;
+
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.model.ProductParameters;
+import se.groupone.ecommerce.service.ShopServiceListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over product title, category, manufacturer and
+ * description, ranked with BM25. Every query term must match; the last term
+ * also matches as a prefix so that "tom" finds "tomato" while the user is still
+ * typing.
+ * <p>
+ * Products get a dense document number when indexed. Updates remove the old
+ * document and add a new one, so postings only ever grow at the end and stay
+ * sorted by document. Removed documents are left as tombstones until they make
+ * up a fifth of the index, at which point the index is rebuilt.
+ */
+public final class ProductSearchIndex implements ShopServiceListener
+{
+	// BM25 parameters, the usual defaults
+	private static final float K1 = 1.2f;
+	private static final float B = 0.75f;
+
+	// A title hit counts as three description hits
+	private static final float TITLE_WEIGHT = 3f;
+	private static final float CATEGORY_WEIGHT = 1.5f;
+	private static final float MANUFACTURER_WEIGHT = 1.5f;
+	private static final float DESCRIPTION_WEIGHT = 1f;
+
+	// Weighted term frequencies are stored in quarter steps in the low byte of a posting
+	private static final int TF_BITS = 8;
+	private static final int TF_MASK = (1 << TF_BITS) - 1;
+	private static final float TF_SCALE = 4f;
+	private static final int MAX_DOCS = 1 << (Integer.SIZE - 1 - TF_BITS);
+
+	private static final int MIN_PREFIX_LENGTH = 2;
+	private static final int MAX_PREFIX_EXPANSIONS = 64;
+	private static final float PREFIX_PENALTY = 0.8f;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final TreeMap<String, Postings> terms = new TreeMap<>();
+	private final Map<Integer, Integer> docsByProductId = new HashMap<>();
+	private Product[] products = new Product[1024];
+	private float[] docLengths = new float[1024];
+	private int docCount;
+	private int deletedDocs;
+	private double totalDocLength;
+
+	public ProductSearchIndex()
+	{
+	}
+
+	public ProductSearchIndex(Collection<Product> products)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			for (Product product : products)
+			{
+				index(product);
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns at most limit products matching every word in the query, best
+	 * match first.
+	 */
+	public List<Product> search(String query, int limit)
+	{
+		final List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(Tokenizer.tokenize(query)));
+		if (queryTerms.isEmpty() || limit < 1)
+		{
+			return new ArrayList<>();
+		}
+
+		lock.readLock().lock();
+		try
+		{
+			final List<TermMatch> matches = new ArrayList<>(queryTerms.size());
+			for (int i = 0; i < queryTerms.size(); i++)
+			{
+				final TermMatch match = match(queryTerms.get(i), i == queryTerms.size() - 1);
+				if (match.documentFrequency == 0)
+				{
+					return new ArrayList<>();
+				}
+				matches.add(match);
+			}
+
+			// Start from the rarest term so the candidate set is as small as possible
+			matches.sort(Comparator.comparingInt(match -> match.documentFrequency));
+			final float averageDocLength = (float) (totalDocLength / liveDocs());
+
+			Candidates candidates = matches.get(0).collect(this, averageDocLength);
+			for (int i = 1; i < matches.size() && candidates.size > 0; i++)
+			{
+				candidates = matches.get(i).retain(this, candidates, averageDocLength);
+			}
+			return candidates.top(products, limit);
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	public int size()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return docsByProductId.size();
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	public void clear()
+	{
+		lock.writeLock().lock();
+		try
+		{
+			terms.clear();
+			docsByProductId.clear();
+			Arrays.fill(products, null);
+			docCount = 0;
+			deletedDocs = 0;
+			totalDocLength = 0;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void productAdded(Product product)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			index(product);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void productUpdated(Product product)
+	{
+		productAdded(product);
+	}
+
+	@Override
+	public void productRemoved(int productId)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			delete(productId);
+			compactIfNeeded();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Keeps the stock count of indexed products current, the text is unchanged
+	 * so no reindexing is needed.
+	 */
+	@Override
+	public void orderCreated(Order order)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			for (int productId : order.getProductIds())
+			{
+				final Integer doc = docsByProductId.get(productId);
+				if (doc != null)
+				{
+					products[doc] = withQuantity(products[doc], products[doc].getQuantity() - 1);
+				}
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void index(Product product)
+	{
+		delete(product.getId());
+		compactIfNeeded();
+		if (docCount == MAX_DOCS)
+		{
+			throw new IllegalStateException("Search index is full");
+		}
+
+		final Map<String, Float> termFrequencies = new HashMap<>();
+		float docLength = addField(termFrequencies, product.getTitle(), TITLE_WEIGHT);
+		docLength += addField(termFrequencies, product.getCategory(), CATEGORY_WEIGHT);
+		docLength += addField(termFrequencies, product.getManufacturer(), MANUFACTURER_WEIGHT);
+		docLength += addField(termFrequencies, product.getDescription(), DESCRIPTION_WEIGHT);
+
+		final int doc = docCount++;
+		if (doc == products.length)
+		{
+			products = Arrays.copyOf(products, doc * 2);
+			docLengths = Arrays.copyOf(docLengths, doc * 2);
+		}
+		products[doc] = product;
+		docLengths[doc] = docLength;
+		totalDocLength += docLength;
+		docsByProductId.put(product.getId(), doc);
+
+		for (Map.Entry<String, Float> termFrequency : termFrequencies.entrySet())
+		{
+			final int tf = Math.min(TF_MASK, Math.max(1, Math.round(termFrequency.getValue() * TF_SCALE)));
+			terms.computeIfAbsent(termFrequency.getKey(), term -> new Postings()).add(doc << TF_BITS | tf);
+		}
+	}
+
+	private static float addField(Map<String, Float> termFrequencies, String text, float weight)
+	{
+		final List<String> tokens = Tokenizer.tokenize(text);
+		for (String token : tokens)
+		{
+			termFrequencies.merge(token, weight, Float::sum);
+		}
+		return tokens.size() * weight;
+	}
+
+	private void delete(int productId)
+	{
+		final Integer doc = docsByProductId.remove(productId);
+		if (doc != null)
+		{
+			products[doc] = null;
+			totalDocLength -= docLengths[doc];
+			deletedDocs++;
+		}
+	}
+
+	private void compactIfNeeded()
+	{
+		if (deletedDocs > 1024 && deletedDocs > docsByProductId.size() / 4)
+		{
+			final List<Product> live = new ArrayList<>(docsByProductId.size());
+			for (int doc = 0; doc < docCount; doc++)
+			{
+				if (products[doc] != null)
+				{
+					live.add(products[doc]);
+				}
+			}
+
+			clear();
+			for (Product product : live)
+			{
+				index(product);
+			}
+		}
+	}
+
+	private int liveDocs()
+	{
+		return Math.max(1, docsByProductId.size());
+	}
+
+	private float idf(int documentFrequency)
+	{
+		final int n = liveDocs();
+		return (float) Math.log(1 + (n - documentFrequency + 0.5) / (documentFrequency + 0.5));
+	}
+
+	private float score(int posting, float idf, float averageDocLength)
+	{
+		final float tf = (posting & TF_MASK) / TF_SCALE;
+		final float norm = 1 - B + B * docLengths[posting >>> TF_BITS] / averageDocLength;
+		return idf * tf * (K1 + 1) / (tf + K1 * norm);
+	}
+
+	private TermMatch match(String term, boolean prefix)
+	{
+		final List<Postings> postings = new ArrayList<>();
+		final List<Float> weights = new ArrayList<>();
+		final Postings exact = terms.get(term);
+		if (exact != null)
+		{
+			postings.add(exact);
+			weights.add(1f);
+		}
+
+		if (prefix && term.length() >= MIN_PREFIX_LENGTH)
+		{
+			for (Map.Entry<String, Postings> expansion : terms.subMap(term, false, term + Character.MAX_VALUE, false).entrySet())
+			{
+				if (postings.size() == MAX_PREFIX_EXPANSIONS)
+				{
+					break;
+				}
+				postings.add(expansion.getValue());
+				weights.add(PREFIX_PENALTY);
+			}
+		}
+		return new TermMatch(postings, weights);
+	}
+
+	private static Product withQuantity(Product product, int quantity)
+	{
+		return new Product(product.getId(), new ProductParameters(product.getTitle(),
+				product.getCategory(), product.getManufacturer(), product.getDescription(),
+				product.getImg(), product.getPrice(), quantity));
+	}
+
+	/**
+	 * Postings of one term, each packed as document number and term frequency
+	 * in a single int.
+	 */
+	private static final class Postings
+	{
+		private int[] entries = new int[4];
+		private int size;
+
+		private void add(int posting)
+		{
+			if (size == entries.length)
+			{
+				entries = Arrays.copyOf(entries, size * 2);
+			}
+			entries[size++] = posting;
+		}
+
+		// Index of the posting for doc at or after from, or a negative value if absent
+		private int find(int doc, int from)
+		{
+			int low = from;
+			int high = size - 1;
+			while (low <= high)
+			{
+				final int mid = (low + high) >>> 1;
+				final int midDoc = entries[mid] >>> TF_BITS;
+				if (midDoc < doc)
+				{
+					low = mid + 1;
+				}
+				else if (midDoc > doc)
+				{
+					high = mid - 1;
+				}
+				else
+				{
+					return mid;
+				}
+			}
+			return -(low + 1);
+		}
+	}
+
+	/**
+	 * One query term: its exact postings plus, for the last term, the postings
+	 * of every term it is a prefix of. A document scores for its best matching
+	 * term only, so an exact hit is not outranked by a longer word.
+	 */
+	private static final class TermMatch
+	{
+		private final List<Postings> postings;
+		private final float[] weights;
+		private final int documentFrequency;
+
+		private TermMatch(List<Postings> postings, List<Float> weights)
+		{
+			this.postings = postings;
+			this.weights = new float[weights.size()];
+			int documentFrequency = 0;
+			for (int i = 0; i < postings.size(); i++)
+			{
+				this.weights[i] = weights.get(i);
+				documentFrequency += postings.get(i).size;
+			}
+			this.documentFrequency = documentFrequency;
+		}
+
+		private Candidates collect(ProductSearchIndex index, float averageDocLength)
+		{
+			final Candidates candidates = new Candidates(documentFrequency);
+			for (int i = 0; i < postings.size(); i++)
+			{
+				final Postings termPostings = postings.get(i);
+				final float idf = index.idf(termPostings.size) * weights[i];
+				for (int j = 0; j < termPostings.size; j++)
+				{
+					final int posting = termPostings.entries[j];
+					if (index.products[posting >>> TF_BITS] != null)
+					{
+						candidates.add(posting >>> TF_BITS, index.score(posting, idf, averageDocLength));
+					}
+				}
+			}
+			if (postings.size() > 1)
+			{
+				candidates.sortAndMerge();
+			}
+			return candidates;
+		}
+
+		private Candidates retain(ProductSearchIndex index, Candidates candidates, float averageDocLength)
+		{
+			final Candidates retained = new Candidates(candidates.size);
+			final int[] cursors = new int[postings.size()];
+			final float[] idfs = new float[postings.size()];
+			for (int i = 0; i < postings.size(); i++)
+			{
+				idfs[i] = index.idf(postings.get(i).size) * weights[i];
+			}
+
+			for (int c = 0; c < candidates.size; c++)
+			{
+				final int doc = candidates.docs[c];
+				float score = 0;
+				boolean found = false;
+				for (int i = 0; i < postings.size(); i++)
+				{
+					final Postings termPostings = postings.get(i);
+					if (cursors[i] >= termPostings.size)
+					{
+						continue;
+					}
+					final int position = termPostings.find(doc, cursors[i]);
+					if (position >= 0)
+					{
+						score = Math.max(score, index.score(termPostings.entries[position], idfs[i],
+								averageDocLength));
+						found = true;
+						cursors[i] = position + 1;
+					}
+					else
+					{
+						cursors[i] = -position - 1;
+					}
+				}
+				if (found)
+				{
+					retained.add(doc, candidates.scores[c] + score);
+				}
+			}
+			return retained;
+		}
+	}
+
+	/**
+	 * Matching documents in ascending order with their scores so far.
+	 */
+	private static final class Candidates
+	{
+		private int[] docs;
+		private float[] scores;
+		private int size;
+
+		private Candidates(int capacity)
+		{
+			docs = new int[capacity];
+			scores = new float[capacity];
+		}
+
+		private void add(int doc, float score)
+		{
+			docs[size] = doc;
+			scores[size] = score;
+			size++;
+		}
+
+		// Prefix expansions yield one run per term, merge them keeping the best score per document
+		private void sortAndMerge()
+		{
+			final long[] packed = new long[size];
+			for (int i = 0; i < size; i++)
+			{
+				packed[i] = (long) docs[i] << Integer.SIZE | Float.floatToRawIntBits(scores[i]) & 0xFFFFFFFFL;
+			}
+			Arrays.sort(packed);
+
+			int merged = -1;
+			for (int i = 0; i < packed.length; i++)
+			{
+				final int doc = (int) (packed[i] >>> Integer.SIZE);
+				final float score = Float.intBitsToFloat((int) packed[i]);
+				if (merged >= 0 && docs[merged] == doc)
+				{
+					scores[merged] = Math.max(scores[merged], score);
+				}
+				else
+				{
+					merged++;
+					docs[merged] = doc;
+					scores[merged] = score;
+				}
+			}
+			size = merged + 1;
+		}
+
+		private List<Product> top(Product[] products, int limit)
+		{
+			// Min-heap of candidate indexes, the weakest of the best so far at the root
+			final int[] heap = new int[Math.min(limit, size)];
+			int heapSize = 0;
+			for (int c = 0; c < size; c++)
+			{
+				if (heapSize < heap.length)
+				{
+					heap[heapSize++] = c;
+					siftUp(heap, heapSize - 1);
+				}
+				else if (compare(c, heap[0]) > 0)
+				{
+					heap[0] = c;
+					siftDown(heap, heapSize);
+				}
+			}
+
+			final Product[] result = new Product[heapSize];
+			while (heapSize > 0)
+			{
+				result[--heapSize] = products[docs[heap[0]]];
+				heap[0] = heap[heapSize];
+				siftDown(heap, heapSize);
+			}
+			return new ArrayList<>(Arrays.asList(result));
+		}
+
+		private void siftUp(int[] heap, int position)
+		{
+			while (position > 0)
+			{
+				final int parent = (position - 1) >>> 1;
+				if (compare(heap[position], heap[parent]) >= 0)
+				{
+					return;
+				}
+				swap(heap, position, parent);
+				position = parent;
+			}
+		}
+
+		private void siftDown(int[] heap, int heapSize)
+		{
+			int position = 0;
+			while (true)
+			{
+				final int left = 2 * position + 1;
+				if (left >= heapSize)
+				{
+					return;
+				}
+				final int right = left + 1;
+				final int smallest = right < heapSize && compare(heap[right], heap[left]) < 0
+						? right : left;
+				if (compare(heap[smallest], heap[position]) >= 0)
+				{
+					return;
+				}
+				swap(heap, position, smallest);
+				position = smallest;
+			}
+		}
+
+		private static void swap(int[] heap, int a, int b)
+		{
+			final int tmp = heap[a];
+			heap[a] = heap[b];
+			heap[b] = tmp;
+		}
+
+		// Higher score wins, ties go to the older document
+		private int compare(int a, int b)
+		{
+			final int byScore = Float.compare(scores[a], scores[b]);
+			return byScore != 0 ? byScore : Integer.compare(docs[b], docs[a]);
+		}
+	}
+}
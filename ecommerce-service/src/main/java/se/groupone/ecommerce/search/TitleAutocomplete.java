@@ -0,0 +1,701 @@
+package se.groupone.ecommerce.search;
+
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.service.ShopServiceListener;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Completes a prefix to the product titles with the most stock, case
+ * insensitively. Distinct titles are kept sorted and front coded in blocks of
+ * 16, each title storing only what differs from the one before it, which takes
+ * a fraction of the memory of the title strings. The highest score per block
+ * is kept in a segment tree so the top titles of a prefix range are found
+ * without visiting every title in it.
+ * <p>
+ * The encoded titles are immutable. Titles not seen before go to a small
+ * sorted delta that is merged into a new encoding once it fills up; products
+ * changing stock or disappearing only update scores.
+ */
+public final class TitleAutocomplete implements ShopServiceListener
+{
+	private static final int BLOCK_SIZE = 16;
+	// The delta is merged when it exceeds this or a 32nd of the encoded titles
+	private static final int MIN_DELTA_SIZE = 4096;
+
+	// Values of entryByProductId besides base entry + 1
+	private static final int NO_ENTRY = 0;
+	private static final int IN_DELTA = -1;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private Titles titles = Titles.encode(Collections.<String>emptyList());
+	// Per base title: total stock of its products, or -1 when no product has it any more
+	private long[] scores = new long[0];
+	private int[] productCounts = new int[0];
+	private BlockMaxTree blockMax = new BlockMaxTree(scores, 0);
+	private final TreeMap<String, DeltaEntry> delta = new TreeMap<>();
+	private final Map<Integer, DeltaEntry> deltaByProductId = new HashMap<>();
+	private int[] entryByProductId = new int[1024];
+	private int[] stockByProductId = new int[1024];
+
+	public TitleAutocomplete()
+	{
+	}
+
+	public TitleAutocomplete(Collection<Product> products)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			for (Product product : products)
+			{
+				remove(product.getId());
+				add(product.getId(), product.getTitle(), product.getQuantity());
+			}
+			merge();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns at most limit titles starting with the prefix, most stocked
+	 * first.
+	 */
+	public List<String> complete(String prefix, int limit)
+	{
+		final String key = prefix.toLowerCase(Locale.ROOT);
+		final List<String> completions = new ArrayList<>();
+		if (key.isEmpty() || limit < 1)
+		{
+			return completions;
+		}
+
+		lock.readLock().lock();
+		try
+		{
+			final int from = titles.lowerBound(key);
+			final int to = titles.lowerBound(key + Character.MAX_VALUE);
+			final int[] best = top(from, to, limit);
+
+			// Titles new since the last merge compete with the best encoded ones
+			final List<DeltaEntry> candidates = new ArrayList<>();
+			for (DeltaEntry entry : delta.subMap(key, key + Character.MAX_VALUE).values())
+			{
+				candidates.add(entry);
+			}
+			for (int i : best)
+			{
+				candidates.add(new DeltaEntry(titles.get(i), sortKey(titles.get(i)), scores[i]));
+			}
+			candidates.sort((a, b) -> a.score != b.score ? Long.compare(b.score, a.score)
+					: a.sortKey.compareTo(b.sortKey));
+
+			for (int i = 0; i < candidates.size() && i < limit; i++)
+			{
+				completions.add(candidates.get(i).title);
+			}
+			return completions;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Size of the encoded titles in bytes.
+	 */
+	public int getEncodedSize()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return titles.data.length;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	public void clear()
+	{
+		lock.writeLock().lock();
+		try
+		{
+			titles = Titles.encode(Collections.<String>emptyList());
+			scores = new long[0];
+			productCounts = new int[0];
+			blockMax = new BlockMaxTree(scores, 0);
+			delta.clear();
+			deltaByProductId.clear();
+			Arrays.fill(entryByProductId, NO_ENTRY);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void productAdded(Product product)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			remove(product.getId());
+			add(product.getId(), product.getTitle(), product.getQuantity());
+			if (delta.size() > Math.max(MIN_DELTA_SIZE, titles.size / 32))
+			{
+				merge();
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void productUpdated(Product product)
+	{
+		productAdded(product);
+	}
+
+	@Override
+	public void productRemoved(int productId)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			remove(productId);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void orderCreated(Order order)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			for (int productId : order.getProductIds())
+			{
+				if (productId < entryByProductId.length && entryByProductId[productId] != NO_ENTRY)
+				{
+					final int stock = stockByProductId[productId];
+					stockByProductId[productId] = stock - 1;
+					addScore(productId, stockScore(stock - 1) - stockScore(stock));
+				}
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void add(int productId, String title, int stock)
+	{
+		if (productId >= entryByProductId.length)
+		{
+			entryByProductId = Arrays.copyOf(entryByProductId,
+					Math.max(productId + 1, entryByProductId.length * 2));
+			stockByProductId = Arrays.copyOf(stockByProductId, entryByProductId.length);
+		}
+		stockByProductId[productId] = stock;
+
+		final int entry = titles.indexOf(title);
+		if (entry >= 0)
+		{
+			productCounts[entry]++;
+			entryByProductId[productId] = entry + 1;
+			if (scores[entry] < 0)
+			{
+				scores[entry] = 0;
+			}
+		}
+		else
+		{
+			final String sortKey = sortKey(title);
+			DeltaEntry deltaEntry = delta.get(sortKey);
+			if (deltaEntry == null)
+			{
+				deltaEntry = new DeltaEntry(title, sortKey, 0);
+				delta.put(sortKey, deltaEntry);
+			}
+			deltaEntry.productCount++;
+			deltaByProductId.put(productId, deltaEntry);
+			entryByProductId[productId] = IN_DELTA;
+		}
+		addScore(productId, stockScore(stock));
+	}
+
+	private void remove(int productId)
+	{
+		if (productId >= entryByProductId.length || entryByProductId[productId] == NO_ENTRY)
+		{
+			return;
+		}
+
+		addScore(productId, -stockScore(stockByProductId[productId]));
+		final int entry = entryByProductId[productId] - 1;
+		if (entry >= 0)
+		{
+			if (--productCounts[entry] == 0)
+			{
+				scores[entry] = -1;
+				blockMax.update(entry / BLOCK_SIZE);
+			}
+		}
+		else
+		{
+			final DeltaEntry deltaEntry = deltaByProductId.remove(productId);
+			if (--deltaEntry.productCount == 0)
+			{
+				delta.remove(deltaEntry.sortKey);
+			}
+		}
+		entryByProductId[productId] = NO_ENTRY;
+	}
+
+	private void addScore(int productId, long change)
+	{
+		final int entry = entryByProductId[productId] - 1;
+		if (entry >= 0)
+		{
+			scores[entry] += change;
+			blockMax.update(entry / BLOCK_SIZE);
+		}
+		else
+		{
+			deltaByProductId.get(productId).score += change;
+		}
+	}
+
+	private static long stockScore(int stock)
+	{
+		return Math.max(0, stock);
+	}
+
+	/**
+	 * Encodes the live base titles and the delta into a new dictionary.
+	 */
+	private void merge()
+	{
+		final List<String> merged = new ArrayList<>(titles.size + delta.size());
+		final List<Long> mergedScores = new ArrayList<>(titles.size + delta.size());
+		final List<Integer> mergedCounts = new ArrayList<>(titles.size + delta.size());
+		final int[] newIndexOfEntry = new int[titles.size];
+
+		final Iterator<String> base = titles.iterator();
+		final Iterator<DeltaEntry> added = delta.values().iterator();
+		int entry = 0;
+		String title = base.hasNext() ? base.next() : null;
+		DeltaEntry deltaEntry = added.hasNext() ? added.next() : null;
+		while (title != null || deltaEntry != null)
+		{
+			if (deltaEntry == null || title != null && sortKey(title).compareTo(deltaEntry.sortKey) < 0)
+			{
+				if (productCounts[entry] > 0)
+				{
+					newIndexOfEntry[entry] = merged.size();
+					merged.add(title);
+					mergedScores.add(scores[entry]);
+					mergedCounts.add(productCounts[entry]);
+				}
+				entry++;
+				title = base.hasNext() ? base.next() : null;
+			}
+			else
+			{
+				deltaEntry.mergedIndex = merged.size();
+				merged.add(deltaEntry.title);
+				mergedScores.add(deltaEntry.score);
+				mergedCounts.add(deltaEntry.productCount);
+				deltaEntry = added.hasNext() ? added.next() : null;
+			}
+		}
+
+		for (int productId = 0; productId < entryByProductId.length; productId++)
+		{
+			if (entryByProductId[productId] > 0)
+			{
+				entryByProductId[productId] = newIndexOfEntry[entryByProductId[productId] - 1] + 1;
+			}
+		}
+		for (Map.Entry<Integer, DeltaEntry> product : deltaByProductId.entrySet())
+		{
+			entryByProductId[product.getKey()] = product.getValue().mergedIndex + 1;
+		}
+
+		titles = Titles.encode(merged);
+		scores = new long[merged.size()];
+		productCounts = new int[merged.size()];
+		for (int i = 0; i < merged.size(); i++)
+		{
+			scores[i] = mergedScores.get(i);
+			productCounts[i] = mergedCounts.get(i);
+		}
+		blockMax = new BlockMaxTree(scores, merged.size());
+		delta.clear();
+		deltaByProductId.clear();
+	}
+
+	/**
+	 * Indexes of the highest scoring live base titles in [from, to).
+	 */
+	private int[] top(int from, int to, int limit)
+	{
+		// Candidates are single titles (block < 0) or ranges of whole blocks
+		final PriorityQueue<long[]> queue = new PriorityQueue<>(
+				(a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0]) : Long.compare(a[1], b[1]));
+		final int firstBlock = (from + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		final int endBlock = to / BLOCK_SIZE;
+		if (firstBlock >= endBlock)
+		{
+			offerTitles(queue, from, to);
+		}
+		else
+		{
+			offerTitles(queue, from, firstBlock * BLOCK_SIZE);
+			offerTitles(queue, endBlock * BLOCK_SIZE, to);
+			offerBlocks(queue, firstBlock, endBlock);
+		}
+
+		final int[] best = new int[limit];
+		int found = 0;
+		while (found < limit && !queue.isEmpty())
+		{
+			final long[] candidate = queue.poll();
+			if (candidate[0] < 0)
+			{
+				break;
+			}
+			if (candidate[2] < 0)
+			{
+				best[found++] = (int) candidate[1];
+			}
+			else
+			{
+				final int block = (int) candidate[1] / BLOCK_SIZE;
+				offerTitles(queue, block * BLOCK_SIZE, Math.min(titles.size, (block + 1) * BLOCK_SIZE));
+				offerBlocks(queue, (int) candidate[2], block);
+				offerBlocks(queue, block + 1, (int) candidate[3]);
+			}
+		}
+		return Arrays.copyOf(best, found);
+	}
+
+	private void offerTitles(PriorityQueue<long[]> queue, int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			if (scores[i] >= 0)
+			{
+				queue.add(new long[] { scores[i], i, -1, -1 });
+			}
+		}
+	}
+
+	// A block range is ranked by its best block, index 1 is the first title of that block
+	private void offerBlocks(PriorityQueue<long[]> queue, int fromBlock, int toBlock)
+	{
+		if (fromBlock < toBlock)
+		{
+			final int block = blockMax.argMax(fromBlock, toBlock);
+			queue.add(new long[] { blockMax.max(block), (long) block * BLOCK_SIZE, fromBlock, toBlock });
+		}
+	}
+
+	private static String sortKey(String title)
+	{
+		return title.toLowerCase(Locale.ROOT) + '\u0000' + title;
+	}
+
+	private static final class DeltaEntry
+	{
+		private final String title;
+		private final String sortKey;
+		private long score;
+		private int productCount;
+		private int mergedIndex;
+
+		private DeltaEntry(String title, String sortKey, long score)
+		{
+			this.title = title;
+			this.sortKey = sortKey;
+			this.score = score;
+		}
+	}
+
+	/**
+	 * Sorted, front coded UTF-8 titles. Every block starts with a complete
+	 * title, the rest store the length shared with the previous title and the
+	 * remaining bytes.
+	 */
+	private static final class Titles
+	{
+		private final byte[] data;
+		private final int[] blockOffsets;
+		private final int size;
+		private final int maxLength;
+
+		private Titles(byte[] data, int[] blockOffsets, int size, int maxLength)
+		{
+			this.data = data;
+			this.blockOffsets = blockOffsets;
+			this.size = size;
+			this.maxLength = maxLength;
+		}
+
+		private static Titles encode(List<String> sortedTitles)
+		{
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final int[] blockOffsets = new int[(sortedTitles.size() + BLOCK_SIZE - 1) / BLOCK_SIZE];
+			byte[] previous = new byte[0];
+			int maxLength = 0;
+			for (int i = 0; i < sortedTitles.size(); i++)
+			{
+				final byte[] bytes = sortedTitles.get(i).getBytes(StandardCharsets.UTF_8);
+				int shared = 0;
+				if (i % BLOCK_SIZE == 0)
+				{
+					blockOffsets[i / BLOCK_SIZE] = out.size();
+				}
+				else
+				{
+					while (shared < bytes.length && shared < previous.length
+							&& bytes[shared] == previous[shared])
+					{
+						shared++;
+					}
+				}
+				writeVarInt(out, shared);
+				writeVarInt(out, bytes.length - shared);
+				out.write(bytes, shared, bytes.length - shared);
+				previous = bytes;
+				maxLength = Math.max(maxLength, bytes.length);
+			}
+			return new Titles(out.toByteArray(), blockOffsets, sortedTitles.size(), maxLength);
+		}
+
+		private String get(int index)
+		{
+			final byte[] buffer = new byte[maxLength];
+			int position = blockOffsets[index / BLOCK_SIZE];
+			int length = 0;
+			for (int i = index - index % BLOCK_SIZE; i <= index; i++)
+			{
+				final int[] next = decode(position, buffer, length);
+				position = next[0];
+				length = next[1];
+			}
+			return new String(buffer, 0, length, StandardCharsets.UTF_8);
+		}
+
+		// Index of the first title whose sort key is not less than key
+		private int lowerBound(String key)
+		{
+			int low = 0;
+			int high = blockOffsets.length;
+			while (low < high)
+			{
+				final int mid = (low + high) >>> 1;
+				if (sortKey(get(mid * BLOCK_SIZE)).compareTo(key) < 0)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid;
+				}
+			}
+			// Block low starts at or after key, the answer is in the block before it
+			if (low == 0)
+			{
+				return 0;
+			}
+			final int blockStart = (low - 1) * BLOCK_SIZE;
+			final byte[] buffer = new byte[maxLength];
+			int position = blockOffsets[low - 1];
+			int length = 0;
+			for (int i = blockStart; i < Math.min(size, blockStart + BLOCK_SIZE); i++)
+			{
+				final int[] next = decode(position, buffer, length);
+				position = next[0];
+				length = next[1];
+				if (sortKey(new String(buffer, 0, length, StandardCharsets.UTF_8)).compareTo(key) >= 0)
+				{
+					return i;
+				}
+			}
+			return Math.min(size, blockStart + BLOCK_SIZE);
+		}
+
+		// Index of the title, or -1
+		private int indexOf(String title)
+		{
+			final String key = sortKey(title);
+			final int index = lowerBound(key);
+			return index < size && get(index).equals(title) ? index : -1;
+		}
+
+		private Iterator<String> iterator()
+		{
+			return new Iterator<String>()
+			{
+				private final byte[] buffer = new byte[maxLength];
+				private int position;
+				private int length;
+				private int next;
+
+				@Override
+				public boolean hasNext()
+				{
+					return next < size;
+				}
+
+				@Override
+				public String next()
+				{
+					if (next % BLOCK_SIZE == 0)
+					{
+						position = blockOffsets[next / BLOCK_SIZE];
+						length = 0;
+					}
+					final int[] decoded = decode(position, buffer, length);
+					position = decoded[0];
+					length = decoded[1];
+					next++;
+					return new String(buffer, 0, length, StandardCharsets.UTF_8);
+				}
+			};
+		}
+
+		// Decodes the title at position over the previous one in buffer, returns the next position and length
+		private int[] decode(int position, byte[] buffer, int previousLength)
+		{
+			final int[] shared = readVarInt(position);
+			final int[] suffix = readVarInt(shared[1]);
+			System.arraycopy(data, suffix[1], buffer, shared[0], suffix[0]);
+			return new int[] { suffix[1] + suffix[0], shared[0] + suffix[0] };
+		}
+
+		// Returns the value and the position after it
+		private int[] readVarInt(int position)
+		{
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do
+			{
+				b = data[position++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			}
+			while (b < 0);
+			return new int[] { value, position };
+		}
+
+		private static void writeVarInt(ByteArrayOutputStream out, int value)
+		{
+			while ((value & ~0x7F) != 0)
+			{
+				out.write(value & 0x7F | 0x80);
+				value >>>= 7;
+			}
+			out.write(value);
+		}
+	}
+
+	/**
+	 * Segment tree over the highest score of each block of titles.
+	 */
+	private static final class BlockMaxTree
+	{
+		private final long[] scores;
+		private final int titleCount;
+		private final int blocks;
+		private final long[] maxByBlock;
+		// Leaves at blocks + block, every inner node holds the best block below it
+		private final int[] tree;
+
+		private BlockMaxTree(long[] scores, int titleCount)
+		{
+			this.scores = scores;
+			this.titleCount = titleCount;
+			this.blocks = (titleCount + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			this.maxByBlock = new long[blocks];
+			this.tree = new int[2 * Math.max(1, blocks)];
+			for (int block = 0; block < blocks; block++)
+			{
+				maxByBlock[block] = scanMax(block);
+				tree[blocks + block] = block;
+			}
+			for (int node = blocks - 1; node > 0; node--)
+			{
+				tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+			}
+		}
+
+		private long max(int block)
+		{
+			return maxByBlock[block];
+		}
+
+		private void update(int block)
+		{
+			maxByBlock[block] = scanMax(block);
+			for (int node = (blocks + block) / 2; node > 0; node /= 2)
+			{
+				tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+			}
+		}
+
+		// Block with the highest score in [from, to)
+		private int argMax(int from, int to)
+		{
+			int best = -1;
+			for (int low = from + blocks, high = to + blocks; low < high; low /= 2, high /= 2)
+			{
+				if ((low & 1) == 1)
+				{
+					best = best < 0 ? tree[low] : better(best, tree[low]);
+					low++;
+				}
+				if ((high & 1) == 1)
+				{
+					high--;
+					best = best < 0 ? tree[high] : better(best, tree[high]);
+				}
+			}
+			return best;
+		}
+
+		private long scanMax(int block)
+		{
+			long max = -1;
+			for (int i = block * BLOCK_SIZE; i < Math.min(titleCount, (block + 1) * BLOCK_SIZE); i++)
+			{
+				max = Math.max(max, scores[i]);
+			}
+			return max;
+		}
+
+		private int better(int a, int b)
+		{
+			return maxByBlock[a] > maxByBlock[b] || maxByBlock[a] == maxByBlock[b] && a < b ? a : b;
+		}
+	}
+}
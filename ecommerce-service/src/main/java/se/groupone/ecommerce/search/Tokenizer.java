@@ -0,0 +1,49 @@
+package se.groupone.ecommerce.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits text into lower case tokens on anything that is not a letter or a
+ * digit. There is no stemming or stop word removal; BM25 already discounts
+ * words that occur in most products.
+ */
+public final class Tokenizer
+{
+	private Tokenizer()
+	{
+	}
+
+	public static List<String> tokenize(String text)
+	{
+		final List<String> tokens = new ArrayList<>();
+		if (text == null)
+		{
+			return tokens;
+		}
+
+		final String lowerCase = text.toLowerCase(Locale.ROOT);
+		int start = -1;
+		for (int i = 0; i < lowerCase.length(); i++)
+		{
+			if (Character.isLetterOrDigit(lowerCase.charAt(i)))
+			{
+				if (start < 0)
+				{
+					start = i;
+				}
+			}
+			else if (start >= 0)
+			{
+				tokens.add(lowerCase.substring(start, i));
+				start = -1;
+			}
+		}
+		if (start >= 0)
+		{
+			tokens.add(lowerCase.substring(start));
+		}
+		return tokens;
+	}
+}
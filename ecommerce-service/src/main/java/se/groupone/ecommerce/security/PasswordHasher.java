@@ -0,0 +1,291 @@
+package se.groupone.ecommerce.security;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashes, stored as
+ * pbkdf2-sha256$iterations$salt$hash. The iteration count is the cost factor;
+ * hashes made with fewer iterations than the current setting still verify and
+ * report that they need rehashing. Hashes claiming more iterations than the
+ * configured maximum are refused without being computed, so a forged value
+ * can not tie up the pool.
+ * <p>
+ * Hashing runs on a small pool of its own with a bounded queue, so a burst of
+ * logins queues there instead of taking every request thread, and a full queue
+ * rejects the caller with a RejectedExecutionException. A successful
+ * verification is remembered for a short while as an HMAC of the password
+ * under a key that never leaves this instance, so repeated logins skip the
+ * slow hash without the password itself being kept.
+ */
+public final class PasswordHasher
+{
+	public static final int DEFAULT_ITERATIONS = 100_000;
+	public static final int DEFAULT_MAX_ITERATIONS = 1_000_000;
+	public static final long DEFAULT_CACHE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	public static final int DEFAULT_QUEUE_SIZE = 256;
+
+	private static final String PREFIX = "pbkdf2-sha256$";
+	private static final String KDF_ALGORITHM = "PBKDF2WithHmacSHA256";
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+	private static final int SALT_BYTES = 16;
+	private static final int HASH_BITS = 256;
+	private static final int MAX_CACHE_ENTRIES = 100_000;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+	private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+	private final ThreadPoolExecutor executor;
+	// Successful verifications by stored hash, so a changed password misses
+	private final ConcurrentHashMap<String, CachedVerification> verified = new ConcurrentHashMap<>();
+	private final SecretKeySpec cacheKey;
+	private final ThreadLocal<Mac> cacheMacs;
+	private volatile int iterations;
+	private volatile int maxIterations = DEFAULT_MAX_ITERATIONS;
+	private volatile long cacheMillis;
+
+	public PasswordHasher()
+	{
+		this(DEFAULT_ITERATIONS, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_SIZE,
+				DEFAULT_CACHE_MILLIS);
+	}
+
+	public PasswordHasher(int iterations, int threads, int queueSize, long cacheMillis)
+	{
+		setIterations(iterations);
+		setCacheMillis(cacheMillis);
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueSize), runnable ->
+				{
+					final Thread thread = new Thread(runnable, "password-hasher-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+
+		final byte[] key = new byte[32];
+		RANDOM.nextBytes(key);
+		cacheKey = new SecretKeySpec(key, MAC_ALGORITHM);
+		cacheMacs = ThreadLocal.withInitial(this::newCacheMac);
+	}
+
+	/**
+	 * Applies to hashes made from now on.
+	 */
+	public void setIterations(int iterations)
+	{
+		if (iterations < 1)
+		{
+			throw new IllegalArgumentException("Iterations must be positive");
+		}
+		this.iterations = iterations;
+	}
+
+	/**
+	 * The most iterations a stored hash may claim and still be checked. Hashes
+	 * at the current cost are always checked.
+	 */
+	public void setMaxIterations(int maxIterations)
+	{
+		if (maxIterations < 1)
+		{
+			throw new IllegalArgumentException("Maximum iterations must be positive");
+		}
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * How long a successful verification is remembered, 0 turns the cache off.
+	 */
+	public void setCacheMillis(long cacheMillis)
+	{
+		if (cacheMillis < 0)
+		{
+			throw new IllegalArgumentException("Cache time can not be negative");
+		}
+		this.cacheMillis = cacheMillis;
+		if (cacheMillis == 0)
+		{
+			verified.clear();
+		}
+	}
+
+	/**
+	 * @throws RejectedExecutionException if too many hashes are already waiting
+	 */
+	public String hash(String password)
+	{
+		final int cost = iterations;
+		final byte[] salt = new byte[SALT_BYTES];
+		RANDOM.nextBytes(salt);
+		final byte[] hash = compute(() -> pbkdf2(password, salt, cost));
+		return PREFIX + cost + "$" + ENCODER.encodeToString(salt) + "$" + ENCODER.encodeToString(hash);
+	}
+
+	/**
+	 * Checks a password against a stored hash. A stored value that is not a
+	 * hash is taken to be a password saved before hashing was introduced and
+	 * compared as it is.
+	 *
+	 * @throws RejectedExecutionException if too many hashes are already waiting
+	 */
+	public boolean verify(String password, String stored)
+	{
+		if (!isHash(stored))
+		{
+			return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+					stored.getBytes(StandardCharsets.UTF_8));
+		}
+
+		final long now = System.currentTimeMillis();
+		final CachedVerification cached = verified.get(stored);
+		if (cached != null && cached.expires >= now
+				&& MessageDigest.isEqual(cached.derivedKey, deriveCacheKey(password)))
+		{
+			return true;
+		}
+
+		final String[] parts = stored.substring(PREFIX.length()).split("\\$");
+		final int cost;
+		final byte[] salt;
+		final byte[] expected;
+		try
+		{
+			cost = Integer.parseInt(parts[0]);
+			salt = DECODER.decode(parts[1]);
+			expected = DECODER.decode(parts[2]);
+		}
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e)
+		{
+			return false;
+		}
+		if (cost < 1 || cost > Math.max(maxIterations, iterations))
+		{
+			return false;
+		}
+
+		final boolean matches = MessageDigest.isEqual(expected, compute(() -> pbkdf2(password, salt, cost)));
+		if (matches && cacheMillis > 0)
+		{
+			if (verified.size() >= MAX_CACHE_ENTRIES)
+			{
+				verified.values().removeIf(entry -> entry.expires < now);
+				if (verified.size() >= MAX_CACHE_ENTRIES)
+				{
+					verified.clear();
+				}
+			}
+			verified.put(stored, new CachedVerification(deriveCacheKey(password), now + cacheMillis));
+		}
+		return matches;
+	}
+
+	public boolean isHash(String stored)
+	{
+		return stored.startsWith(PREFIX);
+	}
+
+	/**
+	 * Whether the stored value is plain text or hashed at a lower cost than
+	 * the current one.
+	 */
+	public boolean needsRehash(String stored)
+	{
+		if (!isHash(stored))
+		{
+			return true;
+		}
+		final int costEnd = stored.indexOf('$', PREFIX.length());
+		try
+		{
+			return costEnd < 0 || Integer.parseInt(stored.substring(PREFIX.length(), costEnd)) < iterations;
+		}
+		catch (NumberFormatException e)
+		{
+			return true;
+		}
+	}
+
+	private <T> T compute(Callable<T> task)
+	{
+		final Future<T> result = executor.submit(task);
+		try
+		{
+			return result.get();
+		}
+		catch (InterruptedException e)
+		{
+			result.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting for password hashing", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Password hashing failed", e.getCause());
+		}
+	}
+
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations)
+			throws GeneralSecurityException
+	{
+		final PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+		try
+		{
+			return SecretKeyFactory.getInstance(KDF_ALGORITHM).generateSecret(spec).getEncoded();
+		}
+		finally
+		{
+			spec.clearPassword();
+		}
+	}
+
+	private byte[] deriveCacheKey(String password)
+	{
+		return cacheMacs.get().doFinal(password.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private Mac newCacheMac()
+	{
+		try
+		{
+			final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(cacheKey);
+			return mac;
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new IllegalStateException("HMAC-SHA256 is not available", e);
+		}
+	}
+
+	private static final class CachedVerification
+	{
+		private final byte[] derivedKey;
+		private final long expires;
+
+		private CachedVerification(byte[] derivedKey, long expires)
+		{
+			this.derivedKey = derivedKey;
+			this.expires = expires;
+		}
+	}
+}
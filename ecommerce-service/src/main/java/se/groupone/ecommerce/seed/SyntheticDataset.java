@@ -0,0 +1,262 @@
+package se.groupone.ecommerce.seed;
+
+import se.groupone.ecommerce.model.Customer;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.OrderStatus;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.model.ProductParameters;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A generated shop of the specified number of customers, products and orders.
+ * Every row is derived from the seed and its own index alone, so rows can be
+ * generated in any order, by several threads, without holding the dataset in
+ * memory. The same seed gives the same rows, except that order dates count
+ * back from the day they are generated.
+ * <p>
+ * Some products sell far more than others, most orders hold one to five
+ * products with a long tail up to {@link #MAX_CART_SIZE}, and one customer in
+ * ten has products left in the shopping cart.
+ */
+public final class SyntheticDataset
+{
+	public static final long DEFAULT_SEED = 42;
+	public static final int MAX_CART_SIZE = 20;
+
+	// Large enough that checkout traffic never runs a product dry
+	private static final int STOCK = 1_000_000;
+	private static final int DAYS_OF_HISTORY = 365;
+	private static final long CUSTOMER_STREAM = 1L << 40;
+	private static final long PRODUCT_STREAM = 2L << 40;
+	private static final long ORDER_STREAM = 3L << 40;
+
+	private static final String[] CATEGORIES = { "Vegetables", "Fruit", "Dairy", "Bakery",
+			"Beverages", "Frozen", "Pantry", "Household" };
+	private static final String[] MANUFACTURERS = { "Spain", "France", "Sweden", "Italy",
+			"Arla", "Felix", "Findus", "Zeta", "Eldorado" };
+	private static final String[] ADJECTIVES = { "organic", "fresh", "smoked", "dried", "large",
+			"small", "sweet", "spicy", "classic", "crispy", "creamy", "whole", "sliced", "frozen",
+			"premium", "light", "red", "green", "golden", "wild" };
+	private static final String[] NOUNS = { "tomato", "tomatillo", "lettuce", "apple", "apricot",
+			"banana", "bread", "baguette", "butter", "cheese", "cheddar", "coffee", "cola", "cookie",
+			"cucumber", "juice", "milk", "mango", "pasta", "pepper", "pizza", "potato", "rice",
+			"salmon", "sausage", "soup", "strawberry", "tea", "yoghurt", "detergent" };
+	private static final String[] DESCRIPTION_WORDS = { "the", "a", "and", "with", "for",
+			"perfect", "everyday", "family", "pack", "taste", "quality", "sourced", "locally",
+			"grown", "harvested", "recipe", "traditional", "rich", "flavour", "natural" };
+
+	private final int customers;
+	private final int products;
+	private final int orders;
+	private final long seed;
+	private final long today;
+
+	public SyntheticDataset(int customers, int products, int orders, long seed)
+	{
+		if (customers < 0 || products < 0 || orders < 0)
+		{
+			throw new IllegalArgumentException("Row counts can not be negative");
+		}
+		if (orders > 0 && (customers == 0 || products == 0))
+		{
+			throw new IllegalArgumentException("Orders need customers and products");
+		}
+		this.customers = customers;
+		this.products = products;
+		this.orders = orders;
+		this.seed = seed;
+		final long now = System.currentTimeMillis();
+		this.today = now - now % TimeUnit.DAYS.toMillis(1);
+	}
+
+	/**
+	 * Reads a dataset from space separated settings, for example
+	 * "customers=1000 products=500 orders=5000 seed=42". Left out counts are
+	 * zero.
+	 *
+	 * @throws IllegalArgumentException on anything else
+	 */
+	public static SyntheticDataset parse(String settings)
+	{
+		int customers = 0;
+		int products = 0;
+		int orders = 0;
+		long seed = DEFAULT_SEED;
+		for (String setting : settings.trim().split("\\s+"))
+		{
+			if (setting.isEmpty())
+			{
+				continue;
+			}
+			final int separator = setting.indexOf('=');
+			if (separator < 0)
+			{
+				throw new IllegalArgumentException("Expected name=value, got: " + setting);
+			}
+			final String name = setting.substring(0, separator);
+			final String value = setting.substring(separator + 1);
+			try
+			{
+				switch (name)
+				{
+					case "customers":
+						customers = Integer.parseInt(value);
+						break;
+					case "products":
+						products = Integer.parseInt(value);
+						break;
+					case "orders":
+						orders = Integer.parseInt(value);
+						break;
+					case "seed":
+						seed = Long.parseLong(value);
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown setting: " + name);
+				}
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IllegalArgumentException("Not a number: " + setting, e);
+			}
+		}
+		return new SyntheticDataset(customers, products, orders, seed);
+	}
+
+	public static String username(int index)
+	{
+		return "loadtest" + index;
+	}
+
+	public int getCustomers()
+	{
+		return customers;
+	}
+
+	public int getProducts()
+	{
+		return products;
+	}
+
+	public int getOrders()
+	{
+		return orders;
+	}
+
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	/**
+	 * The customer with the specified index, from 0, with its shopping cart.
+	 * The password is "password" followed by the index, stored in plain text
+	 * until the first login hashes it.
+	 */
+	public Customer customer(int index)
+	{
+		final SplittableRandom random = random(CUSTOMER_STREAM, index);
+		final Customer customer = new Customer(username(index), "password" + index,
+				username(index) + "@example.com", "First" + index, "Last" + index,
+				"Street " + random.nextInt(1000), "070" + (1_000_000 + random.nextInt(9_000_000)));
+		if (products > 0 && random.nextInt(10) == 0)
+		{
+			final int cartSize = 1 + random.nextInt(3);
+			for (int i = 0; i < cartSize; i++)
+			{
+				customer.addProductToShoppingCart(popularProduct(random));
+			}
+		}
+		return customer;
+	}
+
+	/**
+	 * The product with the specified id, from 1.
+	 */
+	public Product product(int id)
+	{
+		final SplittableRandom random = random(PRODUCT_STREAM, id);
+		final String noun = NOUNS[random.nextInt(NOUNS.length)];
+		final StringBuilder description = new StringBuilder();
+		// Seven words at most fill the 100 characters of the description column
+		for (int i = 0; i < 7; i++)
+		{
+			// Skewed towards the first words, like natural language
+			final double skewed = random.nextDouble();
+			description.append(DESCRIPTION_WORDS[(int) (DESCRIPTION_WORDS.length * skewed * skewed)])
+					.append(' ');
+		}
+		description.append(noun);
+
+		return new Product(id, new ProductParameters(
+				ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + noun + " " + id,
+				CATEGORIES[random.nextInt(CATEGORIES.length)],
+				MANUFACTURERS[random.nextInt(MANUFACTURERS.length)],
+				description.toString(),
+				"http://example.com/img/" + id + ".jpg",
+				1 + random.nextInt(10_000) / 100.0,
+				STOCK));
+	}
+
+	/**
+	 * The order with the specified id, from 1, created within the last year.
+	 * Orders from the last two days are still waiting to be paid or shipped.
+	 */
+	public Order order(int id)
+	{
+		final SplittableRandom random = random(ORDER_STREAM, id);
+		// Regular customers place more orders
+		final double skewed = random.nextDouble();
+		final int customer = (int) (customers * skewed * skewed);
+
+		final int size = cartSize(random);
+		final ArrayList<Integer> productIds = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+		{
+			productIds.add(popularProduct(random));
+		}
+		final int age = random.nextInt(DAYS_OF_HISTORY);
+		final long created = today - TimeUnit.DAYS.toMillis(age);
+
+		// Cancelled now and then, otherwise shipped a day after it was paid unless that is still to come
+		final OrderStatus status;
+		Date shipped = null;
+		if (random.nextInt(50) == 0)
+		{
+			status = OrderStatus.CANCELLED;
+		}
+		else if (age > 1)
+		{
+			status = OrderStatus.SHIPPED;
+			shipped = new Date(created + TimeUnit.DAYS.toMillis(1));
+		}
+		else
+		{
+			status = random.nextBoolean() ? OrderStatus.PAID : OrderStatus.CREATED;
+		}
+		return new Order(id, username(customer), productIds, new Date(created), status, shipped);
+	}
+
+	// Mostly 1 to 5, rarely up to MAX_CART_SIZE
+	private static int cartSize(SplittableRandom random)
+	{
+		final int size = 1 + (int) (-Math.log(1 - random.nextDouble()) * 2);
+		return Math.min(size, MAX_CART_SIZE);
+	}
+
+	// Low ids sell the most, the first fifth of the products make up over half of the sales
+	private int popularProduct(SplittableRandom random)
+	{
+		final double skewed = random.nextDouble();
+		return 1 + (int) (products * skewed * skewed * skewed);
+	}
+
+	private SplittableRandom random(long stream, int index)
+	{
+		return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + stream + index);
+	}
+}
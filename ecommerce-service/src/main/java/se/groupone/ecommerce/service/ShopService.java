@@ -4,28 +4,78 @@ import se.groupone.ecommerce.exception.RepositoryException;
 import se.groupone.ecommerce.exception.ShopServiceException;
 import se.groupone.ecommerce.model.Customer;
 import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.OrderStatus;
+import se.groupone.ecommerce.model.PickList;
 import se.groupone.ecommerce.model.Product;
 import se.groupone.ecommerce.model.ProductParameters;
 import se.groupone.ecommerce.repository.CustomerRepository;
+import se.groupone.ecommerce.repository.IdempotencyRepository;
 import se.groupone.ecommerce.repository.OrderRepository;
 import se.groupone.ecommerce.repository.ProductRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryIdempotencyRepository;
+import se.groupone.ecommerce.security.PasswordHasher;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public final class ShopService
 {
 	private final CustomerRepository customerRepository;
 	private final ProductRepository productRepository;
 	private final OrderRepository orderRepository;
+	private final IdempotencyRepository idempotencyRepository;
+	private final PasswordHasher passwordHasher;
+
+	// Orders currently being created, by idempotency key
+	private final ConcurrentHashMap<String, CompletableFuture<Integer>> pendingOrders =
+			new ConcurrentHashMap<>();
+	private final List<ShopServiceListener> listeners = new CopyOnWriteArrayList<>();
+
+	// Shared by every service built without a hasher, since each hasher runs threads of its own
+	private static final class DefaultHasher
+	{
+		private static final PasswordHasher INSTANCE = new PasswordHasher();
+	}
 
 	public ShopService(CustomerRepository customerRepository,
 			ProductRepository productRepository,
 			OrderRepository orderRepository)
+	{
+		this(customerRepository, productRepository, orderRepository,
+				new InMemoryIdempotencyRepository());
+	}
+
+	public ShopService(CustomerRepository customerRepository,
+			ProductRepository productRepository,
+			OrderRepository orderRepository,
+			IdempotencyRepository idempotencyRepository)
+	{
+		this(customerRepository, productRepository, orderRepository, idempotencyRepository,
+				DefaultHasher.INSTANCE);
+	}
+
+	public ShopService(CustomerRepository customerRepository,
+			ProductRepository productRepository,
+			OrderRepository orderRepository,
+			IdempotencyRepository idempotencyRepository,
+			PasswordHasher passwordHasher)
 	{
 		this.customerRepository = customerRepository;
 		this.productRepository = productRepository;
 		this.orderRepository = orderRepository;
+		this.idempotencyRepository = idempotencyRepository;
+		this.passwordHasher = passwordHasher;
+	}
+
+	public void addListener(ShopServiceListener listener)
+	{
+		listeners.add(listener);
 	}
 
 	public Product addProduct(ProductParameters productParams)
@@ -43,6 +93,10 @@ public final class ShopService
 					+ e.getMessage(), e);
 		}
 
+		for (ShopServiceListener listener : listeners)
+		{
+			listener.productAdded(newProduct);
+		}
 		return newProduct;
 	}
 
@@ -109,25 +163,44 @@ public final class ShopService
 		{
 			throw new ShopServiceException("Could not remove product: " + e.getMessage(), e);
 		}
+
+		for (ShopServiceListener listener : listeners)
+		{
+			listener.productRemoved(productId);
+		}
 	}
 
 	public void updateProduct(int productId, ProductParameters productParams)
 	{
+		final Product product = new Product(productId, productParams);
 		try
 		{
-			productRepository.updateProduct(new Product(productId, productParams));
+			productRepository.updateProduct(product);
 		}
 		catch (RepositoryException e)
 		{
 			throw new ShopServiceException("Could not updateProduct: " + e.getMessage(), e);
 		}
+
+		for (ShopServiceListener listener : listeners)
+		{
+			listener.productUpdated(product);
+		}
 	}
 
+	/**
+	 * Stores the customer with its password hashed, the customer passed in is
+	 * left as it is.
+	 */
 	public void addCustomer(Customer customer)
 	{
+		if (customer.getPassword() == null)
+		{
+			throw new ShopServiceException("Could not add customer: a password is required");
+		}
 		try
 		{
-			customerRepository.addCustomer(customer);
+			customerRepository.addCustomer(withPassword(customer, passwordHasher.hash(customer.getPassword())));
 		}
 		catch (RepositoryException e)
 		{
@@ -147,11 +220,54 @@ public final class ShopService
 		}
 	}
 
-	public void updateCustomer(Customer customer)
+	/**
+	 * Checks a password against the one stored for the customer, without
+	 * loading the rest of the customer. Passwords stored in plain text or
+	 * hashed at a lower cost are rehashed once they have been verified.
+	 *
+	 * @throws ShopServiceException if there is no such customer
+	 * @throws java.util.concurrent.RejectedExecutionException if too many
+	 *         passwords are being checked already
+	 */
+	public boolean verifyPassword(String customerUsername, String password)
 	{
 		try
 		{
-			customerRepository.updateCustomer(customer);
+			final String stored = customerRepository.getPassword(customerUsername);
+			if (!passwordHasher.verify(password, stored))
+			{
+				return false;
+			}
+			if (passwordHasher.needsRehash(stored))
+			{
+				customerRepository.setPassword(customerUsername, passwordHasher.hash(password));
+			}
+			return true;
+		}
+		catch (RepositoryException e)
+		{
+			throw new ShopServiceException("Could not get customer: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Updates the customer, hashing the new password. A customer without a
+	 * password keeps the stored one.
+	 *
+	 * @return whether the password changed
+	 */
+	public boolean updateCustomer(Customer customer)
+	{
+		try
+		{
+			if (customer.getPassword() == null)
+			{
+				customerRepository.updateCustomer(withPassword(customer,
+						customerRepository.getPassword(customer.getUsername())));
+				return false;
+			}
+			customerRepository.updateCustomer(withPassword(customer, passwordHasher.hash(customer.getPassword())));
+			return true;
 		}
 		catch (RepositoryException e)
 		{
@@ -159,6 +275,19 @@ public final class ShopService
 		}
 	}
 
+	// A copy, so the caller's customer keeps what was sent
+	private static Customer withPassword(Customer customer, String password)
+	{
+		final Customer copy = new Customer(customer.getUsername(), password, customer.getEmail(),
+				customer.getFirstName(), customer.getLastName(), customer.getAddress(),
+				customer.getPhoneNumber());
+		for (int productId : customer.getShoppingCart())
+		{
+			copy.addProductToShoppingCart(productId);
+		}
+		return copy;
+	}
+
 	public void removeCustomer(String customerUsername)
 	{
 		try
@@ -195,9 +324,84 @@ public final class ShopService
 		{
 			throw new ShopServiceException("Could not create order: " + e.getMessage(), e);
 		}
+
+		for (ShopServiceListener listener : listeners)
+		{
+			listener.orderCreated(newOrder);
+		}
 		return newOrder;
 	}
 
+	/**
+	 * Creates an order at most once per customer and idempotency key. Retries
+	 * with a key that has already been used return the id of the original
+	 * order, and concurrent retries wait for the first attempt to finish.
+	 *
+	 * @param customerUsername
+	 * @param idempotencyKey
+	 * @return the id of the created order
+	 */
+	public int createOrderIdempotently(String customerUsername, String idempotencyKey)
+	{
+		if (idempotencyKey.isEmpty() || idempotencyKey.length() > 64)
+		{
+			throw new ShopServiceException("Idempotency key must be between 1 and 64 characters");
+		}
+		final String scopedKey = customerUsername + "/" + idempotencyKey;
+
+		try
+		{
+			Integer existingOrderId = idempotencyRepository.getResult(scopedKey);
+			if (existingOrderId != null)
+			{
+				return existingOrderId;
+			}
+
+			final CompletableFuture<Integer> pendingOrder = new CompletableFuture<>();
+			final CompletableFuture<Integer> otherPendingOrder =
+					pendingOrders.putIfAbsent(scopedKey, pendingOrder);
+			if (otherPendingOrder != null)
+			{
+				return otherPendingOrder.join();
+			}
+
+			try
+			{
+				// The first attempt may have finished since the lookup above
+				existingOrderId = idempotencyRepository.getResult(scopedKey);
+				final int orderId = existingOrderId != null
+						? existingOrderId
+						: createOrder(customerUsername).getId();
+
+				idempotencyRepository.addResult(scopedKey, orderId);
+				pendingOrder.complete(orderId);
+				return orderId;
+			}
+			catch (RepositoryException | RuntimeException e)
+			{
+				pendingOrder.completeExceptionally(e);
+				throw e;
+			}
+			finally
+			{
+				pendingOrders.remove(scopedKey, pendingOrder);
+			}
+		}
+		catch (RepositoryException e)
+		{
+			throw new ShopServiceException("Could not create order: " + e.getMessage(), e);
+		}
+		catch (CompletionException e)
+		{
+			if (e.getCause() instanceof ShopServiceException)
+			{
+				throw (ShopServiceException) e.getCause();
+			}
+			throw new ShopServiceException("Could not create order: " + e.getCause().getMessage(),
+					e.getCause());
+		}
+	}
+
 	public Order getOrder(int orderId)
 	{
 		try
@@ -226,10 +430,106 @@ public final class ShopService
 		}
 	}
 
+	/**
+	 * The product ids of every order, one array per order.
+	 */
+	public int[][] getOrderBaskets()
+	{
+		try
+		{
+			return orderRepository.getOrderBaskets();
+		}
+		catch (RepositoryException e)
+		{
+			throw new ShopServiceException("Could not get order baskets: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * A page of orders with the given status, see
+	 * {@link OrderRepository#getOrdersByStatus(OrderStatus, Date, int, Date, int)}.
+	 */
+	public List<Order> getOrdersByStatus(OrderStatus status, Date fromDate, int afterId, Date toDate, int limit)
+	{
+		try
+		{
+			return orderRepository.getOrdersByStatus(status, fromDate, afterId, toDate, limit);
+		}
+		catch (RepositoryException e)
+		{
+			throw new ShopServiceException("Could not get orders: " + e.getMessage(), e);
+		}
+	}
+
+	public void updateOrderStatus(int orderId, OrderStatus status)
+	{
+		try
+		{
+			final OrderStatus current = orderRepository.getOrder(orderId).getStatus();
+			if (!current.canChangeTo(status))
+			{
+				throw new ShopServiceException("Order " + orderId + " is " + current.getName()
+						+ " and cannot be " + status.getName());
+			}
+			orderRepository.updateOrderStatus(orderId, current, status);
+		}
+		catch (RepositoryException e)
+		{
+			throw new ShopServiceException("Could not update order status: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * The oldest paid orders in a date range, at most limit of them, and the
+	 * quantity of every product they hold.
+	 */
+	public PickList getPickList(Date fromDate, Date toDate, int limit)
+	{
+		try
+		{
+			return orderRepository.getPickList(fromDate, toDate, limit);
+		}
+		catch (RepositoryException e)
+		{
+			throw new ShopServiceException("Could not get pick list: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Ships every order in one transaction. Fails without shipping any if one
+	 * of them is not paid.
+	 */
+	public void shipOrders(List<Integer> orderIds)
+	{
+		if (orderIds.isEmpty())
+		{
+			throw new ShopServiceException("Could not ship orders: no orders given");
+		}
+		try
+		{
+			orderRepository.updateOrderStatuses(new ArrayList<>(new LinkedHashSet<>(orderIds)),
+					OrderStatus.PAID, OrderStatus.SHIPPED);
+		}
+		catch (RepositoryException e)
+		{
+			throw new ShopServiceException("Could not ship orders: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Replaces an order, status and shipped date included. A status that
+	 * differs from the stored one must be a change the order may make.
+	 */
 	public void updateOrder(Order order)
 	{
 		try
 		{
+			final OrderStatus current = orderRepository.getOrder(order.getId()).getStatus();
+			if (order.getStatus() != current && !current.canChangeTo(order.getStatus()))
+			{
+				throw new ShopServiceException("Order " + order.getId() + " is " + current.getName()
+						+ " and cannot be " + order.getStatus().getName());
+			}
 			orderRepository.updateOrder(order);
 		}
 		catch (RepositoryException e)
@@ -0,0 +1,29 @@
+package se.groupone.ecommerce.service;
+
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+
+/**
+ * Notified after ShopService has successfully written a change to its
+ * repositories. Used to keep in-process read models such as search indexes in
+ * step with the catalogue. Callbacks run on the request thread and must not
+ * throw.
+ */
+public interface ShopServiceListener
+{
+	public default void productAdded(Product product)
+	{
+	}
+
+	public default void productUpdated(Product product)
+	{
+	}
+
+	public default void productRemoved(int productId)
+	{
+	}
+
+	public default void orderCreated(Order order)
+	{
+	}
+}
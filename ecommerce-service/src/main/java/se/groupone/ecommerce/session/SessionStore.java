@@ -0,0 +1,244 @@
+package se.groupone.ecommerce.session;
+
+import se.groupone.ecommerce.config.Configuration;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Logged in customers, held in memory. A session is identified by a token of
+ * the form id.expiry.signature, signed with HMAC-SHA256, so forged or expired
+ * tokens are turned away before the store is even consulted, and a valid one
+ * costs a map lookup instead of a database round trip. Sessions are lost on
+ * restart and customers have to log in again.
+ * <p>
+ * Every session has the same time to live, so insertion order is expiry
+ * order and eviction only looks at the oldest sessions.
+ */
+public final class SessionStore
+{
+	public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+	public static final int DEFAULT_MAX_SESSIONS = 100_000;
+
+	private static final String TTL_MILLIS_KEY = "ecommerce.session.ttlMillis";
+	private static final String SECRET_KEY = "ecommerce.session.secret";
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+	private static final int ID_BYTES = 16;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+	private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+	private static volatile SessionStore instance;
+
+	private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+	private final Queue<Session> insertionOrder = new ConcurrentLinkedQueue<>();
+	private final SecretKeySpec key;
+	private final ThreadLocal<Mac> macs;
+	private final int maxSessions;
+	private final LongSupplier clock;
+	private volatile long ttlMillis;
+
+	public SessionStore(byte[] secret, int maxSessions, long ttlMillis, LongSupplier clock)
+	{
+		this.key = new SecretKeySpec(secret.clone(), MAC_ALGORITHM);
+		this.maxSessions = maxSessions;
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+		this.macs = ThreadLocal.withInitial(this::newMac);
+	}
+
+	/**
+	 * The store used by the web service. Signed with ecommerce.session.secret
+	 * when set, otherwise with a random key, which is enough as long as there
+	 * is a single instance.
+	 */
+	public static SessionStore getInstance()
+	{
+		if (instance == null)
+		{
+			synchronized (SessionStore.class)
+			{
+				if (instance == null)
+				{
+					final Configuration config = Configuration.getInstance();
+					final String configuredSecret = config.getString(SECRET_KEY, null);
+					final byte[] secret;
+					if (configuredSecret != null)
+					{
+						secret = configuredSecret.getBytes(StandardCharsets.UTF_8);
+					}
+					else
+					{
+						secret = new byte[32];
+						RANDOM.nextBytes(secret);
+					}
+
+					final SessionStore store = new SessionStore(secret, DEFAULT_MAX_SESSIONS,
+							config.getLong(TTL_MILLIS_KEY, DEFAULT_TTL_MILLIS), System::currentTimeMillis);
+					config.addListener(TTL_MILLIS_KEY, key -> store.setTtlMillis(
+							config.getLong(key, DEFAULT_TTL_MILLIS)));
+					instance = store;
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Applies to sessions opened from now on, open sessions keep their expiry.
+	 */
+	public void setTtlMillis(long ttlMillis)
+	{
+		if (ttlMillis < 0)
+		{
+			throw new IllegalArgumentException("TTL can not be negative");
+		}
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Opens a session for an authenticated customer.
+	 *
+	 * @return the token identifying the session
+	 */
+	public String open(String username)
+	{
+		final long now = clock.getAsLong();
+		final byte[] idBytes = new byte[ID_BYTES];
+		RANDOM.nextBytes(idBytes);
+		final String id = ENCODER.encodeToString(idBytes);
+		final long expires = now + ttlMillis;
+
+		final Session session = new Session(id, username, expires);
+		sessions.put(id, session);
+		insertionOrder.add(session);
+		evict(now);
+
+		final String payload = id + "." + Long.toString(expires, 36);
+		return payload + "." + ENCODER.encodeToString(sign(payload));
+	}
+
+	/**
+	 * @return the customer the token was issued to, or null if it is not a
+	 *         valid token of an open session
+	 */
+	public String getUsername(String token)
+	{
+		final int idEnd = token.indexOf('.');
+		final int payloadEnd = token.lastIndexOf('.');
+		if (idEnd <= 0 || payloadEnd <= idEnd)
+		{
+			return null;
+		}
+
+		final String payload = token.substring(0, payloadEnd);
+		final long expires;
+		final byte[] signature;
+		try
+		{
+			expires = Long.parseLong(token.substring(idEnd + 1, payloadEnd), 36);
+			signature = DECODER.decode(token.substring(payloadEnd + 1));
+		}
+		catch (IllegalArgumentException e)
+		{
+			return null;
+		}
+		if (!MessageDigest.isEqual(signature, sign(payload)) || expires < clock.getAsLong())
+		{
+			return null;
+		}
+
+		final Session session = sessions.get(token.substring(0, idEnd));
+		return session == null ? null : session.username;
+	}
+
+	public void close(String token)
+	{
+		final int idEnd = token.indexOf('.');
+		if (idEnd > 0 && getUsername(token) != null)
+		{
+			sessions.remove(token.substring(0, idEnd));
+		}
+	}
+
+	/**
+	 * Closes every session of a customer, for when the password changes or
+	 * the customer is removed.
+	 */
+	public void closeAll(String username)
+	{
+		sessions.values().removeIf(session -> session.username.equals(username));
+	}
+
+	/**
+	 * Closes every session, for when every customer is removed.
+	 */
+	public void clear()
+	{
+		sessions.clear();
+		insertionOrder.clear();
+	}
+
+	public int size()
+	{
+		return sessions.size();
+	}
+
+	private void evict(long now)
+	{
+		Session oldest;
+		while ((oldest = insertionOrder.peek()) != null
+				&& (oldest.expires < now || sessions.size() > maxSessions))
+		{
+			oldest = insertionOrder.poll();
+			if (oldest != null)
+			{
+				sessions.remove(oldest.id, oldest);
+			}
+		}
+	}
+
+	private byte[] sign(String payload)
+	{
+		return macs.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private Mac newMac()
+	{
+		try
+		{
+			final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(key);
+			return mac;
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new IllegalStateException("HMAC-SHA256 is not available", e);
+		}
+	}
+
+	private static final class Session
+	{
+		private final String id;
+		private final String username;
+		private final long expires;
+
+		private Session(String id, String username, long expires)
+		{
+			this.id = id;
+			this.username = username;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.model.ProductParameters;
+import se.groupone.ecommerce.repository.cache.CachingProductRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryProductRepository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CachingProductRepositoryTest
+{
+	private long now;
+	private InMemoryProductRepository repository;
+	private CachingProductRepository cache;
+
+	@Before
+	public void init() throws RepositoryException
+	{
+		now = 1_000_000;
+		repository = new InMemoryProductRepository();
+		repository.addProduct(product(1, "Tomato"));
+		cache = new CachingProductRepository(repository, 100, 1000, () -> now);
+	}
+
+	@Test
+	public void servesCachedProductsUntilTheyExpire() throws RepositoryException
+	{
+		final Product cached = cache.getProduct(1);
+		assertEquals(1, cache.getProducts().size());
+
+		// Written behind the back of the cache
+		repository.updateProduct(product(1, "Potato"));
+		repository.addProduct(product(2, "Onion"));
+		assertSame(cached, cache.getProduct(1));
+		assertEquals(1, cache.getProducts().size());
+
+		now += 1000;
+		assertEquals("Potato", cache.getProduct(1).getTitle());
+		assertEquals(2, cache.getProducts().size());
+	}
+
+	@Test
+	public void writesThroughTheCacheAreSeenAtOnce() throws RepositoryException
+	{
+		cache.getProduct(1);
+		cache.getProducts();
+
+		cache.updateProduct(product(1, "Potato"));
+		cache.addProduct(product(2, "Onion"));
+		assertEquals("Potato", cache.getProduct(1).getTitle());
+		assertEquals(2, cache.getProducts().size());
+		assertEquals(2, cache.getHighestId());
+
+		cache.removeProduct(2);
+		assertEquals(1, cache.getProducts().size());
+	}
+
+	private static Product product(int id, String title)
+	{
+		return new Product(id, new ProductParameters(title, "Vegetables", "Farm", "Fresh",
+				"vegetable.png", 10.0, 5));
+	}
+}
@@ -0,0 +1,63 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Test;
+import se.groupone.ecommerce.analytics.CoPurchaseRecommender;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.model.ProductParameters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CoPurchaseRecommenderTest
+{
+	@Test
+	public void ranksProductsByOrdersInCommon()
+	{
+		final CoPurchaseRecommender recommender = new CoPurchaseRecommender(new int[][] {
+				{ 1, 2, 3 }, { 1, 3 }, { 1, 3, 3 }, { 2, 4 }, { 5 } });
+
+		assertEquals(Arrays.asList(3, 2), recommender.getRelated(1, 10));
+		assertEquals(Arrays.asList(1, 2), recommender.getRelated(3, 10));
+		assertEquals(Arrays.asList(1, 3), recommender.getRelated(2, 2));
+		assertTrue(recommender.getRelated(5, 10).isEmpty());
+	}
+
+	@Test
+	public void followsNewOrdersAndRemovedProducts()
+	{
+		final CoPurchaseRecommender recommender = new CoPurchaseRecommender(new int[][] { { 1, 2 } });
+		order(recommender, 1, 3);
+		order(recommender, 1, 3);
+
+		assertEquals(Arrays.asList(3, 2), recommender.getRelated(1, 10));
+		assertEquals(Arrays.asList(1), recommender.getRelated(3, 10));
+
+		recommender.productRemoved(3);
+		assertEquals(Arrays.asList(2), recommender.getRelated(1, 10));
+	}
+
+	@Test
+	public void reusedIdsStartWithoutHistory()
+	{
+		final CoPurchaseRecommender recommender = new CoPurchaseRecommender(new int[][] {
+				{ 1, 2 }, { 1, 2 }, { 1, 3 } });
+		recommender.productRemoved(2);
+		recommender.productAdded(new Product(2, new ProductParameters("New", "c", "m", "d", "i", 1.0, 1)));
+
+		assertTrue(recommender.getRelated(2, 10).isEmpty());
+		assertEquals(Arrays.asList(3), recommender.getRelated(1, 10));
+
+		order(recommender, 1, 2);
+		assertEquals(Arrays.asList(2, 3), recommender.getRelated(1, 10));
+		assertEquals(Arrays.asList(1), recommender.getRelated(2, 10));
+	}
+
+	private static void order(CoPurchaseRecommender recommender, Integer... productIds)
+	{
+		recommender.orderCreated(new Order(1, "alex", new ArrayList<>(Arrays.asList(productIds))));
+	}
+}
@@ -0,0 +1,154 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import se.groupone.ecommerce.repository.sql.ConnectionPool;
+import se.groupone.ecommerce.repository.sql.ConnectionRouter;
+import se.groupone.ecommerce.repository.sql.DBConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeNoException;
+
+/**
+ * Uses two independent local MySQL instances as primary and "replica". Since
+ * nothing replicates between them, a row written to the primary is only seen
+ * by reads that were routed to the primary. Skipped unless both are running,
+ * by default on ports 3306 and 3307 (-Decommerce.test.primary.url and
+ * -Decommerce.test.replica.url override).
+ */
+public class ConnectionRouterTest
+{
+	private static final String PRIMARY_URL = System.getProperty("ecommerce.test.primary.url",
+			"jdbc:mysql://localhost:3306/ecomm");
+	private static final String REPLICA_URL = System.getProperty("ecommerce.test.replica.url",
+			"jdbc:mysql://localhost:3307/ecomm");
+	private static final long STICKY_MILLIS = 300;
+
+	private static final String PROBE_TABLE = "routing_probe";
+	private static final String FIND_PROBE_QUERY =
+			"SELECT marker FROM " + PROBE_TABLE + " WHERE id = ?";
+
+	private ConnectionRouter router;
+
+	@Before
+	public void init() throws SQLException
+	{
+		try
+		{
+			for (String url : new String[] { PRIMARY_URL, REPLICA_URL })
+			{
+				try (Connection con = DriverManager.getConnection(url, DBConfig.USERNAME,
+						DBConfig.PASSWORD);
+					 Statement statement = con.createStatement())
+				{
+					statement.execute("DROP TABLE IF EXISTS " + PROBE_TABLE);
+					statement.execute("CREATE TABLE " + PROBE_TABLE
+							+ " (id int NOT NULL, marker varchar(45) NOT NULL, PRIMARY KEY (id))");
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			assumeNoException(e);
+		}
+
+		router = new ConnectionRouter(
+				new ConnectionPool("primary", PRIMARY_URL, DBConfig.USERNAME, DBConfig.PASSWORD,
+						4, 8, 1000),
+				new ConnectionPool("replica", REPLICA_URL, DBConfig.USERNAME, DBConfig.PASSWORD,
+						4, 8, 1000),
+				STICKY_MILLIS);
+	}
+
+	@After
+	public void tearDown()
+	{
+		ConnectionRouter.setSession(null);
+		ConnectionRouter.setPrimaryReads(false);
+	}
+
+	@Test
+	public void readsGoToReplicaWithoutSession() throws SQLException
+	{
+		writeProbe(1, "primary");
+
+		ConnectionRouter.setSession(null);
+		assertNull(readProbe(1));
+	}
+
+	@Test
+	public void sessionReadsOwnWriteFromPrimaryUntilStickinessExpires() throws Exception
+	{
+		ConnectionRouter.setSession("alice");
+		writeProbe(1, "primary");
+		assertEquals("primary", readProbe(1));
+
+		// Other sessions are unaffected
+		ConnectionRouter.setSession("bob");
+		assertNull(readProbe(1));
+
+		Thread.sleep(STICKY_MILLIS + 100);
+		ConnectionRouter.setSession("alice");
+		assertNull(readProbe(1));
+	}
+
+	@Test
+	public void primaryReadsSeeWritesOfOtherSessions() throws SQLException
+	{
+		ConnectionRouter.setSession("alice");
+		writeProbe(1, "primary");
+
+		ConnectionRouter.setSession("bob");
+		ConnectionRouter.setPrimaryReads(true);
+		assertEquals("primary", readProbe(1));
+	}
+
+	@Test
+	public void lookupMissingOnReplicaIsRetriedOnPrimary() throws SQLException
+	{
+		writeProbe(1, "primary");
+
+		assertEquals("primary", router.read(con -> findProbe(con, 1)));
+	}
+
+	private void writeProbe(int id, String marker) throws SQLException
+	{
+		try (Connection con = router.getWriteConnection();
+			 PreparedStatement statement = con.prepareStatement(
+					 "INSERT INTO " + PROBE_TABLE + " (id, marker) VALUES (?, ?)"))
+		{
+			statement.setInt(1, id);
+			statement.setString(2, marker);
+			statement.executeUpdate();
+		}
+	}
+
+	private String readProbe(int id) throws SQLException
+	{
+		try (Connection con = router.getReadConnection())
+		{
+			return findProbe(con, id);
+		}
+	}
+
+	private static String findProbe(Connection con, int id) throws SQLException
+	{
+		try (PreparedStatement statement = con.prepareStatement(FIND_PROBE_QUERY))
+		{
+			statement.setInt(1, id);
+			try (ResultSet resultSet = statement.executeQuery())
+			{
+				return resultSet.next() ? resultSet.getString(1) : null;
+			}
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.exception.ShopServiceException;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.OrderStatus;
+import se.groupone.ecommerce.model.PickList;
+import se.groupone.ecommerce.repository.memory.InMemoryCustomerRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryOrderRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryProductRepository;
+import se.groupone.ecommerce.service.ShopService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OrderStatusTest
+{
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+	private final long today = System.currentTimeMillis();
+	private InMemoryOrderRepository orderRepository;
+	private ShopService shopService;
+
+	@Before
+	public void setUp() throws RepositoryException
+	{
+		orderRepository = new InMemoryOrderRepository();
+		shopService = new ShopService(new InMemoryCustomerRepository(), new InMemoryProductRepository(),
+				orderRepository);
+		// Three orders a day for five days, the newest ids first each day
+		int id = 1;
+		for (int age = 0; age < 5; age++)
+		{
+			for (int i = 0; i < 3; i++)
+			{
+				orderRepository.addOrder(new Order(id++, "alex", new ArrayList<>(Arrays.asList(1, 2)),
+						new Date(today - age * DAY)));
+			}
+		}
+	}
+
+	@Test
+	public void pagesThroughOrdersOldestFirst() throws RepositoryException
+	{
+		final List<Integer> seen = new ArrayList<>();
+		Date from = new Date(today - 10 * DAY);
+		int afterId = 0;
+		List<Order> page;
+		do
+		{
+			page = orderRepository.getOrdersByStatus(OrderStatus.CREATED, from, afterId, new Date(today), 4);
+			for (Order order : page)
+			{
+				seen.add(order.getId());
+			}
+			if (!page.isEmpty())
+			{
+				from = page.get(page.size() - 1).getDateCreated();
+				afterId = page.get(page.size() - 1).getId();
+			}
+		}
+		while (page.size() == 4);
+
+		assertEquals(Arrays.asList(13, 14, 15, 10, 11, 12, 7, 8, 9, 4, 5, 6, 1, 2, 3), seen);
+	}
+
+	@Test
+	public void limitsToDateRange() throws RepositoryException
+	{
+		final List<Order> orders = orderRepository.getOrdersByStatus(OrderStatus.CREATED,
+				new Date(today - 2 * DAY), 0, new Date(today - DAY), 100);
+
+		assertEquals(6, orders.size());
+		assertEquals(7, orders.get(0).getId());
+		assertEquals(6, orders.get(5).getId());
+	}
+
+	@Test
+	public void statusChangesMoveOrdersBetweenLists() throws RepositoryException
+	{
+		shopService.updateOrderStatus(2, OrderStatus.PAID);
+		shopService.updateOrderStatus(2, OrderStatus.SHIPPED);
+		shopService.updateOrderStatus(3, OrderStatus.CANCELLED);
+
+		final Date from = new Date(today - 10 * DAY);
+		final Date to = new Date(today);
+		assertEquals(13, orderRepository.getOrdersByStatus(OrderStatus.CREATED, from, 0, to, 100).size());
+		final List<Order> shipped = orderRepository.getOrdersByStatus(OrderStatus.SHIPPED, from, 0, to, 100);
+		assertEquals(1, shipped.size());
+		assertEquals(OrderStatus.SHIPPED, orderRepository.getOrder(2).getStatus());
+		assertNotNull(orderRepository.getOrder(2).getDateShipped());
+		assertEquals(Arrays.asList(1, 2), orderRepository.getOrder(2).getProductIds());
+		assertTrue(orderRepository.getOrdersByStatus(OrderStatus.PAID, from, 0, to, 100).isEmpty());
+	}
+
+	@Test(expected = ShopServiceException.class)
+	public void refusesToShipUnpaidOrder()
+	{
+		shopService.updateOrderStatus(1, OrderStatus.SHIPPED);
+	}
+
+	@Test
+	public void pickListCountsProductsOfOldestPaidOrders() throws RepositoryException
+	{
+		orderRepository.addOrder(new Order(16, "alex", new ArrayList<>(Arrays.asList(2, 3, 3)),
+				new Date(today - 20 * DAY)));
+		for (int id : Arrays.asList(1, 13, 16))
+		{
+			shopService.updateOrderStatus(id, OrderStatus.PAID);
+		}
+
+		final PickList pickList = shopService.getPickList(new Date(today - 30 * DAY), new Date(today), 2);
+
+		assertEquals(Arrays.asList(16, 13), pickList.getOrderIds());
+		assertEquals(Integer.valueOf(1), pickList.getQuantities().get(1));
+		assertEquals(Integer.valueOf(2), pickList.getQuantities().get(2));
+		assertEquals(Integer.valueOf(2), pickList.getQuantities().get(3));
+		assertEquals(3, pickList.getQuantities().size());
+	}
+
+	@Test
+	public void shipsAllOrdersOrNone() throws RepositoryException
+	{
+		shopService.updateOrderStatus(1, OrderStatus.PAID);
+		shopService.updateOrderStatus(2, OrderStatus.PAID);
+		try
+		{
+			shopService.shipOrders(Arrays.asList(1, 2, 3));
+			fail("Shipped an unpaid order");
+		}
+		catch (ShopServiceException e)
+		{
+			assertEquals(OrderStatus.PAID, orderRepository.getOrder(1).getStatus());
+		}
+
+		shopService.shipOrders(Arrays.asList(1, 2, 2));
+		assertEquals(OrderStatus.SHIPPED, orderRepository.getOrder(1).getStatus());
+		assertEquals(OrderStatus.SHIPPED, orderRepository.getOrder(2).getStatus());
+	}
+
+	@Test
+	public void updateWritesStatusAndShippedDate() throws RepositoryException
+	{
+		shopService.updateOrderStatus(1, OrderStatus.PAID);
+		final Order order = orderRepository.getOrder(1);
+		order.shipIt();
+		shopService.updateOrder(order);
+
+		assertEquals(OrderStatus.SHIPPED, orderRepository.getOrder(1).getStatus());
+		assertNotNull(orderRepository.getOrder(1).getDateShipped());
+		assertTrue(orderRepository.getOrdersByStatus(OrderStatus.PAID, new Date(today), 0,
+				new Date(today), 100).isEmpty());
+		assertEquals(1, orderRepository.getOrdersByStatus(OrderStatus.SHIPPED, new Date(today), 0,
+				new Date(today), 100).size());
+	}
+
+	@Test(expected = ShopServiceException.class)
+	public void updateRefusesToSkipAStatus()
+	{
+		final Order order = new Order(1, "alex", new ArrayList<>(Arrays.asList(1, 2)), new Date(today));
+		order.shipIt();
+		shopService.updateOrder(order);
+	}
+}
@@ -0,0 +1,54 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Test;
+import se.groupone.ecommerce.security.PasswordHasher;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PasswordHasherTest
+{
+	private final PasswordHasher hasher = new PasswordHasher(1000, 1, 4, TimeUnit.MINUTES.toMillis(1));
+
+	@Test
+	public void verifiesHashedPasswords()
+	{
+		final String hash = hasher.hash("password");
+
+		assertTrue(hasher.isHash(hash));
+		assertNotEquals(hash, hasher.hash("password"));
+		assertTrue(hasher.verify("password", hash));
+		// Second time from the cache
+		assertTrue(hasher.verify("password", hash));
+		assertFalse(hasher.verify("Password", hash));
+		assertFalse(hasher.verify("password", hasher.hash("other")));
+	}
+
+	@Test
+	public void plainTextAndCheaperHashesNeedRehashing()
+	{
+		assertTrue(hasher.verify("password", "password"));
+		assertTrue(hasher.needsRehash("password"));
+
+		final String hash = hasher.hash("password");
+		assertFalse(hasher.needsRehash(hash));
+		hasher.setIterations(2000);
+		assertTrue(hasher.needsRehash(hash));
+		assertTrue(hasher.verify("password", hash));
+	}
+
+	@Test
+	public void refusesHashesAboveTheMaximumCost()
+	{
+		hasher.setMaxIterations(5000);
+		final String hash = hasher.hash("password");
+		final String forged = hash.replace("$1000$", "$" + Integer.MAX_VALUE + "$");
+
+		assertFalse(hasher.verify("password", forged));
+		assertFalse(hasher.verify("password", hash.replace("$1000$", "$0$")));
+		assertTrue(hasher.verify("password", hash));
+	}
+}
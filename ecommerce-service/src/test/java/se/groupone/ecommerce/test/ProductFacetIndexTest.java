@@ -0,0 +1,75 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.model.ProductFacets;
+import se.groupone.ecommerce.model.ProductParameters;
+import se.groupone.ecommerce.search.ProductFacetIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProductFacetIndexTest
+{
+	private static final List<String> NONE = Collections.emptyList();
+
+	private ProductFacetIndex index;
+
+	@Before
+	public void init()
+	{
+		index = new ProductFacetIndex();
+		index.productAdded(product(1, "Vegetables", "Spain", 5, 1));
+		index.productAdded(product(2, "Vegetables", "France", 30, 10));
+		index.productAdded(product(3, "Pantry", "Spain", 30, 10));
+	}
+
+	@Test
+	public void eachFacetIsCountedWithoutItsOwnFilter()
+	{
+		final ProductFacets facets = index.count(Collections.singletonList("Vegetables"),
+				Collections.singletonList("Spain"), NONE, false);
+
+		assertEquals(1, facets.getTotal());
+		assertEquals(counts("Pantry", 1, "Vegetables", 1), facets.getCategories());
+		assertEquals(counts("France", 1, "Spain", 1), facets.getManufacturers());
+		assertEquals(Collections.singletonMap("0-10", 1), facets.getPriceBands());
+	}
+
+	@Test
+	public void followsStockUpdatesAndRemovals()
+	{
+		index.orderCreated(new Order(1, "alex", new ArrayList<>(Arrays.asList(1))));
+		assertEquals(2, index.count(NONE, NONE, NONE, true).getTotal());
+
+		index.productUpdated(product(2, "Pantry", "France", 300, 10));
+		index.productRemoved(3);
+		final ProductFacets facets = index.count(NONE, NONE, Collections.singletonList("250-"), false);
+		assertEquals(1, facets.getTotal());
+		assertEquals(Collections.singletonMap("Pantry", 1), facets.getCategories());
+	}
+
+	private static Map<String, Integer> counts(String first, int firstCount, String second,
+			int secondCount)
+	{
+		final Map<String, Integer> counts = new HashMap<>();
+		counts.put(first, firstCount);
+		counts.put(second, secondCount);
+		return counts;
+	}
+
+	private static Product product(int id, String category, String manufacturer, double price,
+			int quantity)
+	{
+		return new Product(id, new ProductParameters("Product " + id, category, manufacturer,
+				"Description", "http://example.com/" + id + ".jpg", price, quantity));
+	}
+}
@@ -0,0 +1,63 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Test;
+import se.groupone.ecommerce.search.ProductIdSet;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProductIdSetTest
+{
+	// Spans several chunks and crosses the array/bitmap threshold both ways
+	private static final int MAX_ID = 300_000;
+
+	@Test
+	public void matchesTreeSetUnderRandomAddsAndRemoves()
+	{
+		final Random random = new Random(42);
+		final ProductIdSet a = new ProductIdSet();
+		final ProductIdSet b = new ProductIdSet();
+		final TreeSet<Integer> expectedA = new TreeSet<>();
+		final TreeSet<Integer> expectedB = new TreeSet<>();
+
+		for (int round = 0; round < 4; round++)
+		{
+			for (int i = 0; i < 100_000; i++)
+			{
+				// Dense in the first chunk, sparse elsewhere
+				final int id = random.nextBoolean() ? random.nextInt(1 << 16) : random.nextInt(MAX_ID);
+				if (round % 2 == 0)
+				{
+					a.add(id);
+					expectedA.add(id);
+				}
+				else
+				{
+					a.remove(id);
+					expectedA.remove(id);
+				}
+				final int other = random.nextInt(MAX_ID);
+				b.add(other);
+				expectedB.add(other);
+			}
+
+			assertEquals(expectedA.size(), a.cardinality());
+			final TreeSet<Integer> intersection = new TreeSet<>(expectedA);
+			intersection.retainAll(expectedB);
+			final TreeSet<Integer> union = new TreeSet<>(expectedA);
+			union.addAll(expectedB);
+
+			assertEquals(intersection.size(), a.andCardinality(b));
+			final ProductIdSet and = a.and(b);
+			assertEquals(intersection.size(), and.cardinality());
+			assertEquals(union.size(), a.or(b).cardinality());
+			for (int id = 0; id < MAX_ID; id += 7)
+			{
+				assertEquals(expectedA.contains(id), a.contains(id));
+				assertEquals(intersection.contains(id), and.contains(id));
+			}
+		}
+	}
+}
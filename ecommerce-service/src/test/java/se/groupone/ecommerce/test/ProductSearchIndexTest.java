@@ -0,0 +1,73 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.model.ProductParameters;
+import se.groupone.ecommerce.search.ProductSearchIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProductSearchIndexTest
+{
+	private ProductSearchIndex index;
+
+	@Before
+	public void init()
+	{
+		index = new ProductSearchIndex();
+		index.productAdded(product(1, "Tomato", "Vegetables", "Spain", "A beautiful tomato"));
+		index.productAdded(product(2, "Lettuce", "Vegetables", "France", "A mound of lettuce"));
+		index.productAdded(product(3, "Tomato soup", "Pantry", "Findus", "Soup made of tomatoes"));
+	}
+
+	@Test
+	public void exactMatchRanksAboveLongerWord()
+	{
+		assertEquals(Arrays.asList(1, 3), ids(index.search("Tomato", 10)));
+	}
+
+	@Test
+	public void everyTermMustMatchAndLastTermMatchesPrefix()
+	{
+		assertEquals(Arrays.asList(1), ids(index.search("vegetables tom", 10)));
+		assertEquals(Arrays.asList(2), ids(index.search("lett", 10)));
+		assertTrue(index.search("lettuce spain", 10).isEmpty());
+	}
+
+	@Test
+	public void followsProductUpdatesRemovalsAndOrders()
+	{
+		index.productUpdated(product(2, "Iceberg", "Vegetables", "France", "Crisp"));
+		index.productRemoved(3);
+		index.orderCreated(new Order(1, "alex", new ArrayList<>(Arrays.asList(1, 1))));
+
+		assertTrue(index.search("lettuce", 10).isEmpty());
+		assertEquals(Arrays.asList(2), ids(index.search("iceberg", 10)));
+		assertEquals(Arrays.asList(1), ids(index.search("tomato", 10)));
+		assertEquals(8, index.search("tomato", 10).get(0).getQuantity());
+	}
+
+	private static Product product(int id, String title, String category, String manufacturer,
+			String description)
+	{
+		return new Product(id, new ProductParameters(title, category, manufacturer, description,
+				"http://example.com/" + id + ".jpg", 10, 10));
+	}
+
+	private static List<Integer> ids(List<Product> products)
+	{
+		final List<Integer> ids = new ArrayList<>();
+		for (Product product : products)
+		{
+			ids.add(product.getId());
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,145 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.model.Customer;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.OrderStatus;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.model.ProductParameters;
+import se.groupone.ecommerce.repository.sql.QueryStatistics;
+import se.groupone.ecommerce.repository.sql.SQLConnector;
+import se.groupone.ecommerce.repository.sql.SQLCustomerRepository;
+import se.groupone.ecommerce.repository.sql.SQLOrderRepository;
+import se.groupone.ecommerce.repository.sql.SQLProductRepository;
+import se.groupone.ecommerce.repository.sql.migration.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+/**
+ * Runs the SQL repositories against the database configured in DBConfig,
+ * then EXPLAINs every statement they issued and fails if a filtered query
+ * scans a whole table or index. Skipped when no database is reachable.
+ */
+public class QueryPlanTest
+{
+	private static final List<String> FULL_SCAN_TYPES = Arrays.asList("ALL", "index");
+
+	@BeforeClass
+	public static void migrate()
+	{
+		try
+		{
+			SQLConnector.getConnection().close();
+			new SchemaMigrator().migrate();
+		}
+		catch (RepositoryException | SQLException e)
+		{
+			assumeNoException(e);
+		}
+	}
+
+	@Test
+	public void repositoryQueriesUseIndexes() throws Exception
+	{
+		exerciseRepositories();
+
+		final List<String> fullScans = new ArrayList<>();
+		try (Connection con = SQLConnector.getConnection())
+		{
+			for (QueryStatistics.TemplateStatistics template : QueryStatistics.getInstance()
+					.getTemplates())
+			{
+				final String sql = template.getSql().trim();
+				if (sql.startsWith("INSERT") || !sql.contains(" WHERE "))
+				{
+					continue;
+				}
+
+				for (String type : explain(con, sql))
+				{
+					if (FULL_SCAN_TYPES.contains(type))
+					{
+						fullScans.add(type + ": " + sql);
+					}
+				}
+			}
+		}
+
+		assertTrue("Queries doing a full scan: " + fullScans, fullScans.isEmpty());
+	}
+
+	private static void exerciseRepositories() throws RepositoryException
+	{
+		final SQLCustomerRepository customerRepository = new SQLCustomerRepository();
+		final SQLProductRepository productRepository = new SQLProductRepository();
+		final SQLOrderRepository orderRepository = new SQLOrderRepository();
+
+		final String username = "queryplan" + System.nanoTime() % 1_000_000;
+		final Customer customer = new Customer(username, "password", "queryplan@email.com",
+				"Query", "Plan", "Indexgatan 1", "123456");
+		customerRepository.addCustomer(customer);
+
+		final int productId = productRepository.getHighestId() + 1;
+		productRepository.addProduct(new Product(productId, new ProductParameters("Tomato",
+				"Vegetables", "Spain", "A beautiful tomato", "http://google.com/tomato.jpg",
+				45, 500)));
+
+		customer.addProductToShoppingCart(productId);
+		customerRepository.updateCustomer(customer);
+		customerRepository.getCustomer(username);
+
+		final int orderId = orderRepository.getHighestId() + 1;
+		orderRepository.addOrder(new Order(orderId, username,
+				new ArrayList<>(Arrays.asList(productId))));
+		orderRepository.getOrder(orderId);
+		orderRepository.getOrders(username);
+		orderRepository.updateOrderStatus(orderId, OrderStatus.CREATED, OrderStatus.PAID);
+		orderRepository.getOrdersByStatus(OrderStatus.PAID, new Date(0), 0, new Date(), 100);
+		orderRepository.getPickList(new Date(0), new Date(), 100);
+		orderRepository.updateOrderStatuses(Arrays.asList(orderId), OrderStatus.PAID, OrderStatus.SHIPPED);
+
+		orderRepository.removeOrder(orderId);
+		productRepository.removeProduct(productId);
+		customerRepository.removeCustomer(username);
+	}
+
+	private static List<String> explain(Connection con, String sql) throws SQLException
+	{
+		final List<String> types = new ArrayList<>();
+		try (PreparedStatement statement = con.prepareStatement("EXPLAIN " + sql))
+		{
+			// The value does not matter for the plan, only that the parameter is bound
+			final int parameters = sql.length() - sql.replace("?", "").length();
+			for (int i = 1; i <= parameters; i++)
+			{
+				statement.setString(i, "1");
+			}
+			// MySQL does not take a quoted row count
+			if (sql.matches("(?s).*LIMIT \\?;?"))
+			{
+				statement.setInt(parameters, 1);
+			}
+
+			try (ResultSet resultSet = statement.executeQuery())
+			{
+				while (resultSet.next())
+				{
+					types.add(resultSet.getString("type"));
+				}
+			}
+		}
+		return types;
+	}
+}
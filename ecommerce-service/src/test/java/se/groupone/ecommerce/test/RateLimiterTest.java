@@ -0,0 +1,54 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import se.groupone.ecommerce.ratelimit.RateLimiter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest
+{
+	private long now;
+	private RateLimiter limiter;
+
+	@Before
+	public void init()
+	{
+		now = 1_000_000;
+		limiter = new RateLimiter(64, () -> now);
+	}
+
+	@Test
+	public void admitsABurstThenTheRate()
+	{
+		for (int i = 0; i < 5; i++)
+		{
+			assertEquals(0, limiter.tryAcquire(1, 10, 5));
+		}
+		assertEquals(100, limiter.tryAcquire(1, 10, 5));
+
+		now += 100;
+		assertEquals(0, limiter.tryAcquire(1, 10, 5));
+		assertTrue(limiter.tryAcquire(1, 10, 5) > 0);
+
+		now += 10_000;
+		for (int i = 0; i < 5; i++)
+		{
+			assertEquals(0, limiter.tryAcquire(1, 10, 5));
+		}
+	}
+
+	@Test
+	public void keysDoNotShareBuckets()
+	{
+		assertEquals(0, limiter.tryAcquire(1, 1, 1));
+		assertTrue(limiter.tryAcquire(1, 1, 1) > 0);
+
+		// Far more keys than slots, each still gets its own burst
+		for (long key = 2; key < 1000; key++)
+		{
+			assertEquals(0, limiter.tryAcquire(key, 1, 1));
+		}
+	}
+}
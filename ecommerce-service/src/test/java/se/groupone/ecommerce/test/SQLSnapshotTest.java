@@ -0,0 +1,69 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Test;
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.repository.sql.SQLSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+// Only snapshots without rows, which are checked without reaching the database
+public class SQLSnapshotTest
+{
+	private static final String FORMAT_LINE = "{\"format\":\"" + SQLSnapshot.FORMAT + "\"}\n";
+	private static final String CUSTOMER_LINE = "{\"table\":\"customer\",\"columns\":[\"username\",\"password\"]}\n";
+
+	@Test
+	public void readsEmptySnapshot() throws Exception
+	{
+		assertEquals(0, new SQLSnapshot().importFrom(gzip(FORMAT_LINE + CUSTOMER_LINE + "{\"rows\":0}\n")));
+	}
+
+	@Test(expected = RepositoryException.class)
+	public void refusesOtherFormats() throws Exception
+	{
+		new SQLSnapshot().importFrom(gzip("{\"format\":\"ecommerce-snapshot-0\"}\n{\"rows\":0}\n"));
+	}
+
+	@Test(expected = RepositoryException.class)
+	public void refusesUnknownTables() throws Exception
+	{
+		new SQLSnapshot().importFrom(gzip(FORMAT_LINE + "{\"table\":\"schema_version\",\"columns\":[\"version\"]}\n"
+				+ "{\"rows\":0}\n"));
+	}
+
+	@Test(expected = RepositoryException.class)
+	public void refusesQuotedColumns() throws Exception
+	{
+		new SQLSnapshot().importFrom(gzip(FORMAT_LINE + "{\"table\":\"customer\",\"columns\":[\"a`; DROP\"]}\n"
+				+ "{\"rows\":0}\n"));
+	}
+
+	@Test(expected = RepositoryException.class)
+	public void refusesTruncatedSnapshot() throws Exception
+	{
+		new SQLSnapshot().importFrom(gzip(FORMAT_LINE + CUSTOMER_LINE));
+	}
+
+	@Test(expected = RepositoryException.class)
+	public void refusesWrongRowCount() throws Exception
+	{
+		new SQLSnapshot().importFrom(gzip(FORMAT_LINE + CUSTOMER_LINE + "{\"rows\":3}\n"));
+	}
+
+	private static InputStream gzip(String lines) throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes))
+		{
+			out.write(lines.getBytes(StandardCharsets.UTF_8));
+		}
+		return new ByteArrayInputStream(bytes.toByteArray());
+	}
+}
@@ -0,0 +1,74 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import se.groupone.ecommerce.analytics.SalesTracker;
+import se.groupone.ecommerce.model.Order;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SalesTrackerTest
+{
+	private long now;
+	private SalesTracker tracker;
+
+	@Before
+	public void init()
+	{
+		now = TimeUnit.DAYS.toMillis(1000);
+		tracker = new SalesTracker(() -> now);
+		tracker.setRefreshMillis(0);
+	}
+
+	@Test
+	public void ranksProductsByUnitsSold()
+	{
+		order(1, 2, 2, 3, 3, 3);
+		order(3);
+
+		assertEquals(Arrays.asList(3, 2, 1), tracker.getTopSellers(10));
+		assertEquals(Arrays.asList(3, 2), tracker.getTopSellers(2));
+	}
+
+	@Test
+	public void trendingComparesTheLastHourWithTheWeek()
+	{
+		for (int i = 0; i < 50; i++)
+		{
+			order(1);
+		}
+		now += TimeUnit.HOURS.toMillis(2);
+		order(2, 2);
+
+		assertEquals(Arrays.asList(1, 2), tracker.getTopSellers(10));
+		assertEquals(Arrays.asList(2), tracker.getTrending(10));
+
+		now += TimeUnit.DAYS.toMillis(8);
+		assertTrue(tracker.getTopSellers(10).isEmpty());
+		assertTrue(tracker.getTrending(10).isEmpty());
+	}
+
+	@Test
+	public void servesTheCachedListUntilRefreshed()
+	{
+		tracker.setRefreshMillis(TimeUnit.SECONDS.toMillis(10));
+		order(1);
+		assertEquals(Arrays.asList(1), tracker.getTopSellers(10));
+
+		order(2, 2);
+		assertEquals(Arrays.asList(1), tracker.getTopSellers(10));
+
+		now += TimeUnit.SECONDS.toMillis(10);
+		assertEquals(Arrays.asList(2, 1), tracker.getTopSellers(10));
+	}
+
+	private void order(Integer... productIds)
+	{
+		tracker.orderCreated(new Order(1, "alex", new ArrayList<>(Arrays.asList(productIds))));
+	}
+}
@@ -0,0 +1,67 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import se.groupone.ecommerce.session.SessionStore;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SessionStoreTest
+{
+	private long now;
+	private SessionStore sessions;
+
+	@Before
+	public void init()
+	{
+		now = 1_000_000;
+		sessions = new SessionStore("secret".getBytes(StandardCharsets.UTF_8), 2, 1000, () -> now);
+	}
+
+	@Test
+	public void tokensIdentifyTheCustomerUntilTheyExpire()
+	{
+		final String token = sessions.open("alex");
+		assertEquals("alex", sessions.getUsername(token));
+
+		now += 1001;
+		assertNull(sessions.getUsername(token));
+	}
+
+	@Test
+	public void rejectsTamperedAndForeignTokens()
+	{
+		final String token = sessions.open("alex");
+		final String[] parts = token.split("\\.");
+		final String extended = parts[0] + "." + Long.toString(now + 1_000_000, 36) + "." + parts[2];
+
+		assertNull(sessions.getUsername(extended));
+		assertNull(sessions.getUsername("garbage"));
+		assertNull(new SessionStore("other".getBytes(StandardCharsets.UTF_8), 2, 1000, () -> now)
+				.getUsername(token));
+	}
+
+	@Test
+	public void closedAndEvictedSessionsAreGone()
+	{
+		final String first = sessions.open("alex");
+		final String second = sessions.open("alex");
+		sessions.close(second);
+		assertNull(sessions.getUsername(second));
+		assertEquals("alex", sessions.getUsername(first));
+
+		sessions.open("kim");
+		sessions.open("kim");
+		assertNull(sessions.getUsername(first));
+
+		sessions.closeAll("kim");
+		assertEquals(0, sessions.size());
+
+		final String third = sessions.open("alex");
+		sessions.clear();
+		assertNull(sessions.getUsername(third));
+	}
+}
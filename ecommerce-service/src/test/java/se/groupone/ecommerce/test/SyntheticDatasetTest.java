@@ -0,0 +1,62 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Test;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.seed.SyntheticDataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticDatasetTest
+{
+	@Test
+	public void sameSeedGivesSameRows()
+	{
+		final SyntheticDataset first = SyntheticDataset.parse("customers=100 products=50 orders=200 seed=7");
+		final SyntheticDataset second = new SyntheticDataset(100, 50, 200, 7);
+
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(first.customer(i), second.customer(i));
+		}
+		for (int id = 1; id <= 50; id++)
+		{
+			assertEquals(first.product(id), second.product(id));
+		}
+		for (int id = 1; id <= 200; id++)
+		{
+			assertEquals(first.order(id), second.order(id));
+		}
+		assertNotEquals(first.product(1), new SyntheticDataset(100, 50, 200, 8).product(1));
+	}
+
+	@Test
+	public void ordersReferToGeneratedRows()
+	{
+		final SyntheticDataset dataset = new SyntheticDataset(100, 50, 1000, 42);
+		int items = 0;
+		for (int id = 1; id <= dataset.getOrders(); id++)
+		{
+			final Order order = dataset.order(id);
+			assertTrue(order.getUsername().startsWith("loadtest"));
+			assertTrue(Integer.parseInt(order.getUsername().substring(8)) < dataset.getCustomers());
+
+			final int size = order.getProductIds().size();
+			assertTrue(size >= 1 && size <= SyntheticDataset.MAX_CART_SIZE);
+			for (int productId : order.getProductIds())
+			{
+				assertTrue(productId >= 1 && productId <= dataset.getProducts());
+			}
+			items += size;
+		}
+		final double averageSize = items / (double) dataset.getOrders();
+		assertTrue("Average order size " + averageSize, averageSize > 2 && averageSize < 4);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void refusesUnknownSettings()
+	{
+		SyntheticDataset.parse("customers=10 users=10");
+	}
+}
@@ -0,0 +1,70 @@
+package se.groupone.ecommerce.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.model.ProductParameters;
+import se.groupone.ecommerce.search.TitleAutocomplete;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TitleAutocompleteTest
+{
+	private TitleAutocomplete autocomplete;
+
+	@Before
+	public void init()
+	{
+		autocomplete = new TitleAutocomplete(Arrays.asList(
+				product(1, "Tomato", 5),
+				product(2, "Tomato soup", 50),
+				product(3, "tomatillo", 20),
+				product(4, "Lettuce", 20)));
+	}
+
+	@Test
+	public void completesCaseInsensitivelyMostStockedFirst()
+	{
+		assertEquals(Arrays.asList("Tomato soup", "tomatillo", "Tomato"), autocomplete.complete("tom", 10));
+		assertEquals(Arrays.asList("Tomato soup", "Tomato"), autocomplete.complete("TOMATO", 10));
+		assertEquals(Arrays.asList("Tomato soup"), autocomplete.complete("tom", 1));
+		assertTrue(autocomplete.complete("x", 10).isEmpty());
+	}
+
+	@Test
+	public void followsProductWritesAndOrders()
+	{
+		autocomplete.productRemoved(2);
+		autocomplete.productAdded(product(5, "Tomato", 30));
+		autocomplete.productUpdated(product(4, "Tomatoes on the vine", 1));
+		autocomplete.orderCreated(new Order(1, "alex", new ArrayList<>(Collections.nCopies(20, 3))));
+
+		assertEquals(Arrays.asList("Tomato", "Tomatoes on the vine", "tomatillo"), autocomplete.complete("tom", 10));
+		assertTrue(autocomplete.complete("lett", 10).isEmpty());
+	}
+
+	@Test
+	public void keepsResultsAcrossDeltaMerges()
+	{
+		for (int i = 1; i <= 10000; i++)
+		{
+			autocomplete.productAdded(product(100 + i, "Bread " + i, i));
+		}
+		autocomplete.productAdded(product(20000, "Bread rolls", 100000));
+
+		assertEquals(Arrays.asList("Bread rolls", "Bread 10000", "Bread 9999"), autocomplete.complete("bread", 3));
+		assertEquals(Arrays.asList("Tomato soup", "tomatillo", "Tomato"), autocomplete.complete("tom", 10));
+	}
+
+	private static Product product(int id, String title, int quantity)
+	{
+		return new Product(id, new ProductParameters(title, "Vegetables", "Spain", "Fresh",
+				"http://example.com/" + id + ".jpg", 10, quantity));
+	}
+}
@@ -1,18 +1,32 @@
 package se.groupone.ecommerce.webservice;
 
 import se.groupone.ecommerce.exception.RepositoryException;
-import se.groupone.ecommerce.repository.sql.SQLConnector;
+import se.groupone.ecommerce.seed.SyntheticDataset;
+import se.groupone.ecommerce.webservice.util.AdminToken;
 
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.sql.Statement;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 @Path("admin")
 public class AdminService extends WebShopService
 {
+	private static final String SNAPSHOT_TYPE = "application/gzip";
+
+	@Inject
+	private ShopComponents components;
+
 	public AdminService() throws RepositoryException
 	{
 		super();
@@ -23,33 +37,86 @@ public class AdminService extends WebShopService
 	{
 		if (command.equals("reset-repo"))
 		{
-			try (Connection con = SQLConnector.getConnection();
-				 Statement statement = con.createStatement())
+			components.reset();
+			return Response.ok("Repository has been reset (" + components.getStack() + ")").build();
+		}
+		// Ersätt allt med genererad data, t.ex. "seed customers=1000 products=500 orders=5000 seed=42"
+		if (command.startsWith("seed"))
+		{
+			final SyntheticDataset dataset;
+			try
 			{
-				statement.addBatch("SET FOREIGN_KEY_CHECKS = 0");
-				statement.addBatch("TRUNCATE TABLE customer_cart");
-				statement.addBatch("TRUNCATE TABLE product_order");
-				statement.addBatch("TRUNCATE TABLE `order`");
-				statement.addBatch("TRUNCATE TABLE product");
-				statement.addBatch("TRUNCATE TABLE customer");
-				statement.addBatch("SET FOREIGN_KEY_CHECKS = 1");
-				statement.executeBatch();
-
+				dataset = SyntheticDataset.parse(command.substring("seed".length()));
 			}
-			catch (SQLException e)
+			catch (IllegalArgumentException e)
 			{
-				throw new RepositoryException("Failed to reset database tables", e);
+				return Response.status(400).entity(e.getMessage()).build();
 			}
+			final long start = System.nanoTime();
+			final long rows = components.seed(dataset);
+			final long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			return Response.ok(String.format(Locale.ROOT,
+					"Seeded %d customers, %d products and %d orders (%s): %d rows in %d ms, %d rows/s",
+					dataset.getCustomers(), dataset.getProducts(), dataset.getOrders(),
+					components.getStack(), rows, millis, rows * 1000 / millis)).build();
+		}
+		return Response.status(400).entity("Invalid command received").build();
+	}
 
-			return Response.ok("SQLRepo has been reset").build();
+	// Hämta hela databasen som en komprimerad ögonblicksbild
+	@GET
+	@Path("export")
+	@Produces(SNAPSHOT_TYPE)
+	public Response exportSnapshot(@HeaderParam(AdminToken.HEADER) final String token)
+	{
+		final Response refused = AdminToken.check(token);
+		if (refused != null)
+		{
+			return refused;
+		}
+		if (!components.usesDatabase())
+		{
+			return Response.status(400).type(MediaType.TEXT_PLAIN)
+					.entity("Nothing to export: the " + components.getStack() + " stack has no database").build();
+		}
+		final StreamingOutput snapshot = out ->
+		{
+			try
+			{
+				components.exportSnapshot(out);
+			}
+			catch (RepositoryException e)
+			{
+				// Headers are sent by now, so the client sees a cut-off snapshot
+				throw new IOException("Export failed: " + e.getMessage(), e);
+			}
+		};
+		return Response.ok(snapshot)
+				.header("Content-Disposition", "attachment; filename=\"ecommerce-snapshot.ndjson.gz\"")
+				.build();
+	}
 
-			//			 Code below is for InMemory Repo reset
-			//			 shopService = new ShopService(new
-			//			 InMemoryCustomerRepository(),
-			//			 new InMemoryProductRepository(), new InMemoryOrderRepository());
-			//
-			//			 return Response.ok("InMemoryRepo has been reset").build();
+	// Ersätt allt med en ögonblicksbild från admin/export
+	@POST
+	@Path("import")
+	@Consumes({ SNAPSHOT_TYPE, MediaType.APPLICATION_OCTET_STREAM })
+	public Response importSnapshot(@HeaderParam(AdminToken.HEADER) final String token, InputStream in)
+			throws RepositoryException, IOException
+	{
+		final Response refused = AdminToken.check(token);
+		if (refused != null)
+		{
+			return refused;
 		}
-		return Response.status(400).entity("Invalid command received").build();
+		if (!components.usesDatabase())
+		{
+			return Response.status(400)
+					.entity("Nothing to import into: the " + components.getStack() + " stack has no database").build();
+		}
+		final long start = System.nanoTime();
+		final long rows = components.importSnapshot(in);
+		final long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		return Response.ok(String.format(Locale.ROOT, "Imported %d rows in %d ms, %d rows/s",
+				rows, millis, rows * 1000 / millis)).build();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+package se.groupone.ecommerce.webservice;
+
+import se.groupone.ecommerce.config.Configuration;
+import se.groupone.ecommerce.webservice.util.AdminToken;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.Map;
+
+/**
+ * Shows the effective configuration and changes reloadable settings without a
+ * restart. Overrides made here are kept in memory only. Not a WebShopService,
+ * so settings can be changed while the shop service is warming up or failing.
+ * Settings can turn off sessions and rate limits or lower the password hashing
+ * cost, so every request needs the admin token.
+ */
+@Path("admin/config")
+@Produces(MediaType.TEXT_PLAIN)
+public class ConfigService
+{
+	private final Configuration config = Configuration.getInstance();
+
+	@GET
+	public Response getConfiguration(@HeaderParam(AdminToken.HEADER) final String token)
+	{
+		final Response refused = AdminToken.check(token);
+		if (refused != null)
+		{
+			return refused;
+		}
+		final StringBuilder reloadable = new StringBuilder("# Reloadable\n");
+		final StringBuilder restart = new StringBuilder("# Requires restart\n");
+		for (Map.Entry<String, String> setting : config.getValues().entrySet())
+		{
+			(config.isReloadable(setting.getKey()) ? reloadable : restart)
+					.append(setting.getKey()).append('=').append(setting.getValue()).append('\n');
+		}
+		return Response.ok(reloadable.append('\n').append(restart).toString()).build();
+	}
+
+	@GET
+	@Path("{key}")
+	public Response getSetting(@HeaderParam(AdminToken.HEADER) final String token,
+			@PathParam("key") final String key)
+	{
+		final Response refused = AdminToken.check(token);
+		if (refused != null)
+		{
+			return refused;
+		}
+		final String value = config.getValues().get(key);
+		if (value == null)
+		{
+			return Response.status(404).entity("Unknown setting: " + key).build();
+		}
+		return Response.ok(value).build();
+	}
+
+	@PUT
+	@Path("{key}")
+	public Response putSetting(@HeaderParam(AdminToken.HEADER) final String token,
+			@PathParam("key") final String key, final String value)
+	{
+		final Response refused = AdminToken.check(token);
+		if (refused != null)
+		{
+			return refused;
+		}
+		try
+		{
+			config.set(key, value.trim());
+		}
+		catch (IllegalArgumentException e)
+		{
+			return Response.status(400).entity(e.getMessage()).build();
+		}
+		return Response.ok(key + "=" + config.getValues().get(key)).build();
+	}
+
+	@DELETE
+	@Path("{key}")
+	public Response removeOverride(@HeaderParam(AdminToken.HEADER) final String token,
+			@PathParam("key") final String key)
+	{
+		final Response refused = AdminToken.check(token);
+		if (refused != null)
+		{
+			return refused;
+		}
+		try
+		{
+			config.set(key, null);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return Response.status(400).entity(e.getMessage()).build();
+		}
+		return Response.noContent().build();
+	}
+
+	@POST
+	public Response readConfigCommand(@HeaderParam(AdminToken.HEADER) final String token,
+			final String command)
+	{
+		final Response refused = AdminToken.check(token);
+		if (refused != null)
+		{
+			return refused;
+		}
+		if (command.trim().equals("reload"))
+		{
+			return Response.ok("Reloaded: " + config.reload()).build();
+		}
+		return Response.status(400).entity("Invalid command received").build();
+	}
+}
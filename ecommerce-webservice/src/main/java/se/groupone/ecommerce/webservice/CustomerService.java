@@ -3,6 +3,7 @@ package se.groupone.ecommerce.webservice;
 import se.groupone.ecommerce.exception.RepositoryException;
 import se.groupone.ecommerce.model.Customer;
 import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.session.SessionStore;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -43,7 +44,10 @@ public final class CustomerService extends WebShopService
 	public Response getCustomer(@PathParam("username") final String username)
 	{
 		Customer customer = shopService.getCustomer(username);
-		return Response.ok(customer).build();
+		// The stored password hash never leaves the service
+		final Customer withoutPassword = new Customer(customer.getUsername(), null, customer.getEmail(),
+				customer.getFirstName(), customer.getLastName(), customer.getAddress(), customer.getPhoneNumber());
+		return Response.ok(withoutPassword).build();
 	}
 
 	//  Skapa en ny användare – detta ska returnera en länk till den skapade
@@ -66,7 +70,11 @@ public final class CustomerService extends WebShopService
 		// repository
 		if (username.equals(customer.getUsername()))
 		{
-			shopService.updateCustomer(customer);
+			// Sessions opened with the old password end with it
+			if (shopService.updateCustomer(customer))
+			{
+				SessionStore.getInstance().closeAll(username);
+			}
 			return Response.status(Status.NO_CONTENT).build();
 		}
 		// otherwise send error code
@@ -79,6 +87,7 @@ public final class CustomerService extends WebShopService
 	public Response deleteCustomer(@PathParam("username") final String username)
 	{
 		shopService.removeCustomer(username);
+		SessionStore.getInstance().closeAll(username);
 
 		return Response.noContent().build();
 	}
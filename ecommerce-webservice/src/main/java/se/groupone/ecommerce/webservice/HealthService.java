@@ -0,0 +1,45 @@
+package se.groupone.ecommerce.webservice;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+/**
+ * Probes for load balancers and orchestrators. Deliberately not a
+ * WebShopService, so answering them never waits for the shop service.
+ */
+@Path("admin/health")
+@Produces(MediaType.TEXT_PLAIN)
+public class HealthService
+{
+	// Svarar så länge processen lever
+	@GET
+	@Path("live")
+	public Response isLive()
+	{
+		return Response.ok("Live").build();
+	}
+
+	// Svarar 200 först när uppvärmningen är klar
+	@GET
+	@Path("ready")
+	public Response isReady()
+	{
+		if (WarmUp.isReady())
+		{
+			return Response.ok("Ready").build();
+		}
+		return Response.status(Status.SERVICE_UNAVAILABLE).entity("Warming up").build();
+	}
+
+	// Hur lång tid uppstarten tog, steg för steg
+	@GET
+	@Path("startup")
+	public Response getStartupReport()
+	{
+		return Response.ok(StartupReport.format()).build();
+	}
+}
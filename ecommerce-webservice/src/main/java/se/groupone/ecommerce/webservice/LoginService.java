@@ -1,34 +1,53 @@
 package se.groupone.ecommerce.webservice;
 
 import se.groupone.ecommerce.exception.RepositoryException;
-import se.groupone.ecommerce.model.Customer;
+import se.groupone.ecommerce.session.SessionStore;
 import se.groupone.ecommerce.webservice.exception.BadLoginException;
 
+import javax.ws.rs.DELETE;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 @Path("login")
+@Produces(MediaType.TEXT_PLAIN)
 public class LoginService extends WebShopService
 {
+	private static final String BEARER = "Bearer ";
+
+	private final SessionStore sessions = SessionStore.getInstance();
+
 	public LoginService() throws RepositoryException
 	{
 		super();
 	}
 
+	// Logga in, svaret är en token att skicka som "Authorization: Bearer <token>"
 	@PUT
 	public Response verifyUser(@HeaderParam("username") final String username, @HeaderParam("password") final String password)
 	{
-		Customer customerToBeVerified = shopService.getCustomer(username);
-
-		if(customerToBeVerified.getPassword().equals(password))
+		if(password != null && shopService.verifyPassword(username, password))
 		{
-			return Response.ok().build();
+			return Response.ok(sessions.open(username)).build();
 		}
 		else
 		{
 			throw new BadLoginException("No matching username and password combination, sorry");
 		}
 	}
+
+	// Logga ut
+	@DELETE
+	public Response logout(@HeaderParam(HttpHeaders.AUTHORIZATION) final String authorization)
+	{
+		if (authorization != null && authorization.startsWith(BEARER))
+		{
+			sessions.close(authorization.substring(BEARER.length()).trim());
+		}
+		return Response.noContent().build();
+	}
 }
@@ -2,20 +2,35 @@ package se.groupone.ecommerce.webservice;
 
 import se.groupone.ecommerce.exception.RepositoryException;
 import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.OrderStatus;
+import se.groupone.ecommerce.model.PickList;
+import se.groupone.ecommerce.repository.sql.ConnectionRouter;
+import se.groupone.ecommerce.webservice.util.AdminToken;
+import se.groupone.ecommerce.webservice.util.SessionFilter;
 
 import java.net.URI;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
 
 @Path("orders")
@@ -23,6 +38,10 @@ import javax.ws.rs.core.UriInfo;
 @Consumes(MediaType.APPLICATION_JSON)
 public final class OrderService extends WebShopService
 {
+	private static final int MAX_PAGE_SIZE = 1000;
+	private static final String FIRST_DATE = "1970-01-01";
+	private static final String LAST_DATE = "9999-12-31";
+
 	public OrderService() throws RepositoryException
 	{
 		super();
@@ -30,6 +49,9 @@ public final class OrderService extends WebShopService
 
 	@Context
 	private UriInfo uriInfo;
+	// Holds the customer of the session, see SessionFilter
+	@Context
+	private ContainerRequestContext requestContext;
 
 	//  Hämta en viss order för en användare
 	@GET
@@ -37,23 +59,224 @@ public final class OrderService extends WebShopService
 	public Response getOrder(@PathParam("orderId") final int orderId)
 	{
 		Order order = shopService.getOrder(orderId);
+		final Response refused = SessionFilter.checkCustomer(requestContext, order.getUsername());
+		if (refused != null)
+		{
+			return refused;
+		}
 		return Response.ok(order).build();
 	}
 
+	// Lista ordrar med en viss status, äldst först, t.ex. "orders?status=paid&from=2015-05-01&to=2015-05-31"
+	// Nästa sida finns i Link-headern
+	@GET
+	public Response getOrdersByStatus(@HeaderParam(AdminToken.HEADER) final String token,
+			@QueryParam("status") final String status,
+			@QueryParam("from") @DefaultValue(FIRST_DATE) final String from,
+			@QueryParam("to") @DefaultValue(LAST_DATE) final String to,
+			@QueryParam("after") @DefaultValue("0") final int afterId,
+			@QueryParam("limit") @DefaultValue("100") final int limit)
+	{
+		// Every customer's orders, so for staff only
+		final Response refused = AdminToken.check(token);
+		if (refused != null)
+		{
+			return refused;
+		}
+		if (status == null)
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Query parameter status is required.").build();
+		}
+		if (limit < 1 || limit > MAX_PAGE_SIZE)
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Limit must be between 1 and " + MAX_PAGE_SIZE + ".").build();
+		}
+
+		final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+		dateFormat.setLenient(false);
+		final OrderStatus orderStatus;
+		final Date fromDate;
+		final Date toDate;
+		try
+		{
+			orderStatus = OrderStatus.parse(status);
+			fromDate = dateFormat.parse(from);
+			toDate = dateFormat.parse(to);
+		}
+		catch (IllegalArgumentException | ParseException e)
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Invalid status or date (yyyy-MM-dd): " + e.getMessage()).build();
+		}
+
+		final ArrayList<Order> orders = new ArrayList<>(
+				shopService.getOrdersByStatus(orderStatus, fromDate, Math.max(0, afterId), toDate, limit));
+
+		// GenericEntity is created for OrderListMapper generic handling
+		final Response.ResponseBuilder response = Response.ok(new GenericEntity<ArrayList<Order>>(orders)
+		{
+		});
+		if (orders.size() == limit)
+		{
+			final Order last = orders.get(orders.size() - 1);
+			final URI next = uriInfo.getRequestUriBuilder()
+					.replaceQueryParam("from", dateFormat.format(last.getDateCreated()))
+					.replaceQueryParam("after", last.getId())
+					.build();
+			response.header("Link", "<" + next + ">; rel=\"next\"");
+		}
+		return response.build();
+	}
+
+	// Plocklista för de äldsta betalda ordrarna: antal av varje produkt
+	@GET
+	@Path("picklist")
+	public Response getPickList(@HeaderParam(AdminToken.HEADER) final String token,
+			@QueryParam("from") @DefaultValue(FIRST_DATE) final String from,
+			@QueryParam("to") @DefaultValue(LAST_DATE) final String to,
+			@QueryParam("limit") @DefaultValue("100") final int limit)
+	{
+		final Response refused = AdminToken.check(token);
+		if (refused != null)
+		{
+			return refused;
+		}
+		if (limit < 1 || limit > MAX_PAGE_SIZE)
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Limit must be between 1 and " + MAX_PAGE_SIZE + ".").build();
+		}
+
+		final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+		dateFormat.setLenient(false);
+		final PickList pickList;
+		try
+		{
+			pickList = shopService.getPickList(dateFormat.parse(from), dateFormat.parse(to), limit);
+		}
+		catch (ParseException e)
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Invalid date (yyyy-MM-dd): " + e.getMessage()).build();
+		}
+		return Response.ok(pickList).build();
+	}
+
+	// Skicka många betalda ordrar på en gång, alla eller ingen
+	@POST
+	@Path("shipments")
+	public Response shipOrders(@HeaderParam(AdminToken.HEADER) final String token,
+			final ArrayList<Integer> orderIds)
+	{
+		final Response refused = AdminToken.check(token);
+		if (refused != null)
+		{
+			return refused;
+		}
+		if (orderIds == null || orderIds.isEmpty() || orderIds.size() > MAX_PAGE_SIZE)
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Between 1 and " + MAX_PAGE_SIZE + " orders can be shipped at once.").build();
+		}
+		shopService.shipOrders(orderIds);
+		return Response.noContent().build();
+	}
+
+	// Ändra status på en order, t.ex. "paid"
+	// Kunder kan bara avbryta sina egna ordrar, allt annat kräver X-Admin-Token
+	@PUT
+	@Path("{orderId}/status")
+	public Response updateOrderStatus(@HeaderParam(AdminToken.HEADER) final String token,
+			@PathParam("orderId") final int orderId, final String status)
+	{
+		final OrderStatus orderStatus;
+		try
+		{
+			orderStatus = OrderStatus.parse(status);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+		}
+
+		final Response refused;
+		if (token == null && orderStatus == OrderStatus.CANCELLED)
+		{
+			refused = SessionFilter.checkCustomer(requestContext, shopService.getOrder(orderId).getUsername());
+		}
+		else
+		{
+			refused = AdminToken.check(token);
+		}
+		if (refused != null)
+		{
+			return refused;
+		}
+		shopService.updateOrderStatus(orderId, orderStatus);
+		return Response.noContent().build();
+	}
+
 	//  Skapa en order för en användare
+	// Retries carrying the same Idempotency-Key get the Location of the original order
 	@POST
-	public Response createOrder(final String username)
+	public Response createOrder(@HeaderParam("Idempotency-Key") final String idempotencyKey,
+			final String username)
 	{
-		Order newOrder = shopService.createOrder(username);
+		// The customer is in the body rather than the path, see ReadRoutingFilter
+		final Response refused = SessionFilter.checkCustomer(requestContext, username);
+		if (refused != null)
+		{
+			return refused;
+		}
+		ConnectionRouter.setSession(username);
+
+		final int newOrderId;
+		if (idempotencyKey == null)
+		{
+			newOrderId = shopService.createOrder(username).getId();
+		}
+		else
+		{
+			newOrderId = shopService.createOrderIdempotently(username, idempotencyKey);
+		}
 
-		final URI location = uriInfo.getAbsolutePathBuilder().path(Integer.toString(newOrder.getId())).build();
+		final URI location = uriInfo.getAbsolutePathBuilder().path(Integer.toString(newOrderId)).build();
 		return Response.created(location).build();
 	}
 
 	//  Uppdatera en order för en användare
+	// Status och leveransdatum kan bara ändras med X-Admin-Token
 	@PUT
-	public Response updateOrder(final Order order)
+	public Response updateOrder(@HeaderParam(AdminToken.HEADER) final String token, final Order order)
 	{
+		final Order existing = shopService.getOrder(order.getId());
+		Response refused;
+		if (token != null)
+		{
+			refused = AdminToken.check(token);
+		}
+		else if (order.getStatus() != existing.getStatus()
+				|| !sameDay(order.getDateShipped(), existing.getDateShipped()))
+		{
+			refused = Response.status(Status.FORBIDDEN)
+					.entity("Only staff can change the status of an order, customers can cancel theirs "
+							+ "with PUT orders/" + order.getId() + "/status").build();
+		}
+		else
+		{
+			// Both the customer the order belongs to and the one it is said to belong to
+			refused = SessionFilter.checkCustomer(requestContext, existing.getUsername());
+			if (refused == null)
+			{
+				refused = SessionFilter.checkCustomer(requestContext, order.getUsername());
+			}
+		}
+		if (refused != null)
+		{
+			return refused;
+		}
 		shopService.updateOrder(order);
 		return Response.ok().build();
 	}
@@ -63,7 +286,24 @@ public final class OrderService extends WebShopService
 	@Path("{orderId}")
 	public Response removeOrder(@PathParam("orderId") final Integer orderId)
 	{
+		final Response refused = SessionFilter.checkCustomer(requestContext,
+				shopService.getOrder(orderId).getUsername());
+		if (refused != null)
+		{
+			return refused;
+		}
 		shopService.removeOrder(orderId);
 		return Response.noContent().build();
 	}
+
+	// Shipped dates are stored without the time of day
+	private static boolean sameDay(final Date first, final Date second)
+	{
+		if (first == null || second == null)
+		{
+			return first == second;
+		}
+		final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+		return dateFormat.format(first).equals(dateFormat.format(second));
+	}
 }
\ No newline at end of file
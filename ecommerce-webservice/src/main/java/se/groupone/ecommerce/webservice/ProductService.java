@@ -1,5 +1,7 @@
 package se.groupone.ecommerce.webservice;
 
+import se.groupone.ecommerce.analytics.CoPurchaseRecommender;
+import se.groupone.ecommerce.analytics.SalesTracker;
 import se.groupone.ecommerce.exception.RepositoryException;
 import se.groupone.ecommerce.model.Product;
 import se.groupone.ecommerce.model.ProductParameters;
@@ -9,12 +11,16 @@ import javax.ws.rs.core.*;
 import javax.ws.rs.core.Response.Status;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.List;
 
 @Path("products")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class ProductService extends WebShopService
 {
+	private static final int MAX_SEARCH_LIMIT = 100;
+	private static final int MAX_AUTOCOMPLETE_LIMIT = 20;
+
 	public ProductService() throws RepositoryException
 	{
 		super();
@@ -47,6 +53,105 @@ public class ProductService extends WebShopService
 		}).build();
 	}
 
+	// Sök produkter, bästa träff först
+	@GET
+	@Path("search")
+	public Response searchProducts(@QueryParam("q") final String query,
+			@QueryParam("limit") @DefaultValue("20") final int limit)
+	{
+		if (query == null || query.trim().isEmpty())
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Query parameter q is required.").build();
+		}
+		if (limit < 1 || limit > MAX_SEARCH_LIMIT)
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Limit must be between 1 and " + MAX_SEARCH_LIMIT + ".").build();
+		}
+
+		ArrayList<Product> products = new ArrayList<>(productSearchIndex.search(query, limit));
+
+		// GenericEntity is created for ProductListMapper generic handling
+		return Response.ok(new GenericEntity<ArrayList<Product>>(products)
+		{
+		}).build();
+	}
+
+	// Antal produkter per kategori, tillverkare och prisklass
+	@GET
+	@Path("facets")
+	public Response getProductFacets(@QueryParam("category") final List<String> categories,
+			@QueryParam("manufacturer") final List<String> manufacturers,
+			@QueryParam("price") final List<String> priceBands,
+			@QueryParam("inStock") @DefaultValue("false") final boolean inStock)
+	{
+		return Response.ok(productFacetIndex.count(categories, manufacturers, priceBands, inStock)).build();
+	}
+
+	// Produkttitlar som börjar med q, flest i lager först
+	@GET
+	@Path("autocomplete")
+	public Response autocompleteTitles(@QueryParam("q") final String prefix,
+			@QueryParam("limit") @DefaultValue("10") final int limit)
+	{
+		if (prefix == null || prefix.isEmpty())
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Query parameter q is required.").build();
+		}
+		if (limit < 1 || limit > MAX_AUTOCOMPLETE_LIMIT)
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Limit must be between 1 and " + MAX_AUTOCOMPLETE_LIMIT + ".").build();
+		}
+
+		ArrayList<String> titles = new ArrayList<>(titleAutocomplete.complete(prefix, limit));
+
+		// GenericEntity is created for StringListMapper generic handling
+		return Response.ok(new GenericEntity<ArrayList<String>>(titles)
+		{
+		}).build();
+	}
+
+	// Mest sålda produkter senaste veckan
+	@GET
+	@Path("bestsellers")
+	public Response getBestSellers(@QueryParam("limit") @DefaultValue("10") final int limit)
+	{
+		if (limit < 1 || limit > SalesTracker.MAX_LIST_SIZE)
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Limit must be between 1 and " + SalesTracker.MAX_LIST_SIZE + ".").build();
+		}
+
+		ArrayList<Integer> productIds = new ArrayList<>(salesTracker.getTopSellers(limit));
+
+		// GenericEntity is created for IntegerListMapper generic handling
+		return Response.ok(new GenericEntity<ArrayList<Integer>>(productIds)
+		{
+		}).build();
+	}
+
+	// Produkter som säljer mer än vanligt senaste timmen
+	@GET
+	@Path("trending")
+	public Response getTrending(@QueryParam("limit") @DefaultValue("10") final int limit)
+	{
+		if (limit < 1 || limit > SalesTracker.MAX_LIST_SIZE)
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Limit must be between 1 and " + SalesTracker.MAX_LIST_SIZE + ".").build();
+		}
+
+		ArrayList<Integer> productIds = new ArrayList<>(salesTracker.getTrending(limit));
+
+		// GenericEntity is created for IntegerListMapper generic handling
+		return Response.ok(new GenericEntity<ArrayList<Integer>>(productIds)
+		{
+		}).build();
+	}
+
 	//  Hämta en produkt med ett visst id
 	@GET
 	@Path("{productId}")
@@ -66,6 +171,36 @@ public class ProductService extends WebShopService
 		}
 	}
 
+	// Produkter som ofta köps tillsammans med en viss produkt
+	@GET
+	@Path("{productId}/related")
+	public Response getRelatedProducts(@PathParam("productId") final String productId,
+			@QueryParam("limit") @DefaultValue("10") final int limit)
+	{
+		if (limit < 1 || limit > CoPurchaseRecommender.MAX_NEIGHBOURS)
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Limit must be between 1 and " + CoPurchaseRecommender.MAX_NEIGHBOURS + ".")
+					.build();
+		}
+		try
+		{
+			int productIdInt = Integer.parseInt(productId);
+			ArrayList<Integer> productIds =
+					new ArrayList<>(coPurchaseRecommender.getRelated(productIdInt, limit));
+
+			// GenericEntity is created for IntegerListMapper generic handling
+			return Response.ok(new GenericEntity<ArrayList<Integer>>(productIds)
+			{
+			}).build();
+		}
+		catch (NumberFormatException e)
+		{
+			return Response.status(Status.BAD_REQUEST)
+					.entity("Product id must be parsable to an integer.").build();
+		}
+	}
+
 	//  Uppdatera en produkt
 	@PUT
 	@Path("{productId}")
@@ -0,0 +1,220 @@
+package se.groupone.ecommerce.webservice;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import se.groupone.ecommerce.config.Configuration;
+import se.groupone.ecommerce.repository.sql.DBConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the web service on an embedded Grizzly server instead of a servlet
+ * container, at the same URLs as the WAR. Sized with the ecommerce.server.*
+ * settings, all read once at startup:
+ * <ul>
+ * <li>host, port and contextPath: where to listen, by default
+ * 0.0.0.0:8080/ecommerce-webservice</li>
+ * <li>selectorThreads: threads accepting connections and reading requests,
+ * by default one per core</li>
+ * <li>workerThreads: threads running resource methods, by default twice the
+ * database pool size since most of their time is spent waiting on it</li>
+ * <li>backlog: connections the operating system queues before they are
+ * accepted</li>
+ * <li>keepAliveSeconds and maxKeepAliveRequests: how long and for how many
+ * requests an idle connection is kept open</li>
+ * <li>maxHeaderBytes, readBufferBytes and writeBufferBytes: request header
+ * limit and socket buffer sizes</li>
+ * <li>shutdownGraceSeconds: how long in-flight requests may take to finish on
+ * shutdown</li>
+ * </ul>
+ * On SIGTERM the readiness endpoint starts failing, the server stops accepting
+ * connections and waits for in-flight requests before the JVM exits.
+ * <p>
+ * With ecommerce.startup.trainingRequests set, the launcher sends that many
+ * requests to itself once ready, prints the startup report, writes it to
+ * ecommerce.startup.reportFile if set, and exits.
+ */
+public final class ServerLauncher
+{
+	private static final Logger LOG = Logger.getLogger(ServerLauncher.class.getName());
+	private static final String PREFIX = "ecommerce.server.";
+	private static final String TRUSTED_PROXIES_KEY = "ecommerce.ratelimit.trustedProxies";
+	private static final String[] TRAINING_PATHS = {
+			"products",
+			"products/{id}",
+			"products/{id}/related",
+			"products/search?q=a",
+			"products/facets?inStock=true",
+			"products/autocomplete?q=a",
+			"products/bestsellers",
+			"products/trending",
+			"customers/training-{id}",
+			"orders/{id}",
+			"admin/metrics" };
+
+	private ServerLauncher()
+	{
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		StartupReport.recordJvmStart();
+		final long startNanos = System.nanoTime();
+		final Configuration config = Configuration.getInstance();
+		final int cores = Runtime.getRuntime().availableProcessors();
+
+		final URI baseUri = URI.create("http://" + config.getString(PREFIX + "host", "0.0.0.0") + ":"
+				+ config.getInt(PREFIX + "port", 8080) + "/"
+				+ config.getString(PREFIX + "contextPath", "ecommerce-webservice") + "/");
+		// Training requests come from here as customers of their own, see train
+		final int trainingRequests = config.getInt("ecommerce.startup.trainingRequests", -1);
+		if (trainingRequests >= 0 && System.getProperty(TRUSTED_PROXIES_KEY) == null)
+		{
+			System.setProperty(TRUSTED_PROXIES_KEY, "127.0.0.1,0:0:0:0:0:0:0:1");
+		}
+
+		long stepStart = System.nanoTime();
+		final ShopApplication application = new ShopApplication();
+		stepStart = step("Resources and mappers", stepStart);
+		final HttpServer server = GrizzlyHttpServerFactory.createHttpServer(baseUri, application, false);
+		stepStart = step("Jersey init", stepStart);
+
+		final int workerThreads = config.getInt(PREFIX + "workerThreads",
+				2 * DBConfig.getPoolSize());
+		for (NetworkListener listener : server.getListeners())
+		{
+			listener.getKeepAlive().setIdleTimeoutInSeconds(config.getInt(PREFIX + "keepAliveSeconds", 30));
+			listener.getKeepAlive().setMaxRequestsCount(config.getInt(PREFIX + "maxKeepAliveRequests", 1000));
+			listener.setMaxHttpHeaderSize(config.getInt(PREFIX + "maxHeaderBytes", 8192));
+
+			final TCPNIOTransport transport = listener.getTransport();
+			transport.setSelectorRunnersCount(config.getInt(PREFIX + "selectorThreads", cores));
+			transport.setWorkerThreadPoolConfig(ThreadPoolConfig.defaultConfig().copy()
+					.setPoolName("http-worker")
+					.setCorePoolSize(workerThreads)
+					.setMaxPoolSize(workerThreads));
+			transport.setServerConnectionBackLog(config.getInt(PREFIX + "backlog", 1024));
+			transport.setReadBufferSize(config.getInt(PREFIX + "readBufferBytes", 16 * 1024));
+			transport.setWriteBufferSize(config.getInt(PREFIX + "writeBufferBytes", 16 * 1024));
+			transport.setTcpNoDelay(true);
+		}
+
+		final long graceSeconds = config.getLong(PREFIX + "shutdownGraceSeconds", 30);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(server, graceSeconds),
+				"server-shutdown"));
+
+		server.start();
+		step("Server start", stepStart);
+		LOG.info(String.format("Listening on %s after %d ms, %d worker threads", baseUri,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), workerThreads));
+
+		// Training runs for the class data sharing archive exit once done, see the appcds profile
+		if (trainingRequests >= 0)
+		{
+			train(baseUri, trainingRequests);
+			final String report = StartupReport.format();
+			System.out.print(report);
+			final String reportFile = config.getString("ecommerce.startup.reportFile", null);
+			if (reportFile != null)
+			{
+				Files.write(Paths.get(reportFile), report.getBytes(StandardCharsets.UTF_8));
+			}
+			System.exit(0);
+		}
+
+		// The server threads are daemons, so keep the JVM alive until shutdown
+		Thread.currentThread().join();
+	}
+
+	/**
+	 * Waits until the service is ready, then sends it a mix of the read
+	 * requests customers make, so that the classes behind them are loaded.
+	 */
+	private static void train(URI baseUri, int requests) throws IOException, InterruptedException
+	{
+		final long readyDeadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+		while (status(baseUri + "admin/health/ready", "127.0.0.1") != 200)
+		{
+			if (System.nanoTime() > readyDeadline)
+			{
+				throw new IOException("The service did not get ready within 5 minutes");
+			}
+			Thread.sleep(10);
+		}
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < requests; i++)
+		{
+			final int productId = 1 + i % 50;
+			final String path = TRAINING_PATHS[i % TRAINING_PATHS.length].replace("{id}",
+					Integer.toString(productId));
+			// A client address of its own per request, believed from the loopback, keeps the rate limiter out of the way
+			status(baseUri + path, "10.0." + (i >>> 8 & 0xff) + "." + (i & 0xff));
+		}
+		step("Training requests", start);
+	}
+
+	private static int status(String url, String client) throws IOException
+	{
+		final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestProperty("Accept", "application/json");
+		connection.setRequestProperty("X-Forwarded-For", client);
+		final int status = connection.getResponseCode();
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream())
+		{
+			if (in != null)
+			{
+				final byte[] buffer = new byte[8192];
+				while (in.read(buffer) != -1)
+				{
+					// Drain so that the connection can be reused
+				}
+			}
+		}
+		return status;
+	}
+
+	private static long step(String step, long start)
+	{
+		final long end = System.nanoTime();
+		StartupReport.record(step, end - start);
+		return end;
+	}
+
+	private static void shutdown(HttpServer server, long graceSeconds)
+	{
+		WarmUp.stopping();
+		LOG.info("Shutting down, waiting up to " + graceSeconds + " s for in-flight requests");
+		try
+		{
+			server.shutdown(graceSeconds, TimeUnit.SECONDS).get(graceSeconds + 1, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException | TimeoutException e)
+		{
+			LOG.log(Level.WARNING, "Requests were still in flight at shutdown", e);
+		}
+		finally
+		{
+			server.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package se.groupone.ecommerce.webservice;
+
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.ServerProperties;
+import se.groupone.ecommerce.config.Configuration;
+import se.groupone.ecommerce.webservice.exception.RejectedExecutionExceptionMapper;
+import se.groupone.ecommerce.webservice.exception.ShopServiceExceptionMapper;
+import se.groupone.ecommerce.webservice.metrics.MetricsFilter;
+import se.groupone.ecommerce.webservice.metrics.MetricsService;
+import se.groupone.ecommerce.webservice.util.CustomerMapper;
+import se.groupone.ecommerce.webservice.util.IntegerListMapper;
+import se.groupone.ecommerce.webservice.util.OrderListMapper;
+import se.groupone.ecommerce.webservice.util.OrderMapper;
+import se.groupone.ecommerce.webservice.util.PickListMapper;
+import se.groupone.ecommerce.webservice.util.ProductFacetsMapper;
+import se.groupone.ecommerce.webservice.util.ProductListMapper;
+import se.groupone.ecommerce.webservice.util.ProductMapper;
+import se.groupone.ecommerce.webservice.util.ProductParamMapper;
+import se.groupone.ecommerce.webservice.util.RateLimitFilter;
+import se.groupone.ecommerce.webservice.util.ReadRoutingFilter;
+import se.groupone.ecommerce.webservice.util.SessionFilter;
+import se.groupone.ecommerce.webservice.util.StringListMapper;
+
+import java.util.function.Supplier;
+
+/**
+ * The web service with every resource and provider registered by hand, so
+ * Jersey does not have to scan the classpath at startup. Anything added to the
+ * web service must be registered here. The mappers are registered as instances
+ * so that the warm-up exercises the very objects that serve requests, and their
+ * construction is timed for the startup report. The shop service and its
+ * repositories are injected from the {@link ShopComponents} through the
+ * {@link ShopBinder}.
+ */
+public final class ShopApplication extends ResourceConfig
+{
+	public ShopApplication()
+	{
+		this(new ShopComponents(Configuration.getInstance()));
+	}
+
+	public ShopApplication(ShopComponents components)
+	{
+		register(new ShopBinder(components));
+
+		// Resources
+		register(AdminService.class);
+		register(ConfigService.class);
+		register(CustomerService.class);
+		register(HealthService.class);
+		register(LoginService.class);
+		register(MetricsService.class);
+		register(OrderService.class);
+		register(ProductService.class);
+
+		// Filters and exception mappers
+		register(MetricsFilter.class);
+		register(SessionFilter.class);
+		register(RateLimitFilter.class);
+		register(ReadRoutingFilter.class);
+		register(ShopServiceExceptionMapper.class);
+		register(RejectedExecutionExceptionMapper.class);
+
+		// Entity mappers
+		final WarmUp warmUp = new WarmUp(components,
+				registerMapper(CustomerMapper::new),
+				registerMapper(IntegerListMapper::new),
+				registerMapper(OrderListMapper::new),
+				registerMapper(OrderMapper::new),
+				registerMapper(ProductFacetsMapper::new),
+				registerMapper(ProductListMapper::new),
+				registerMapper(ProductMapper::new),
+				registerMapper(ProductParamMapper::new),
+				registerMapper(StringListMapper::new));
+		// Only used by the warehouse, not worth warming up
+		registerMapper(PickListMapper::new);
+
+		// WADL generation is never used and adds to the first request
+		property(ServerProperties.WADL_FEATURE_DISABLE, true);
+
+		warmUp.start();
+	}
+
+	// Building the Gson instance is most of what constructing a mapper costs
+	private <T> T registerMapper(Supplier<T> constructor)
+	{
+		final long start = System.nanoTime();
+		final T mapper = constructor.get();
+		StartupReport.record("Mapper " + mapper.getClass().getSimpleName(), System.nanoTime() - start);
+		register(mapper);
+		return mapper;
+	}
+}
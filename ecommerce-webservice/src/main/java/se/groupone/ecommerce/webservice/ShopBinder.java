@@ -0,0 +1,97 @@
+package se.groupone.ecommerce.webservice;
+
+import org.glassfish.hk2.api.Factory;
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import se.groupone.ecommerce.analytics.CoPurchaseRecommender;
+import se.groupone.ecommerce.analytics.SalesTracker;
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.repository.CustomerRepository;
+import se.groupone.ecommerce.repository.OrderRepository;
+import se.groupone.ecommerce.repository.ProductRepository;
+import se.groupone.ecommerce.search.ProductFacetIndex;
+import se.groupone.ecommerce.search.ProductSearchIndex;
+import se.groupone.ecommerce.search.TitleAutocomplete;
+import se.groupone.ecommerce.service.ShopService;
+
+import javax.inject.Singleton;
+
+/**
+ * Makes the shop service, its repositories and indexes injectable, one of each
+ * for the whole application. Each is taken from the components the first time
+ * it is injected, which builds them unless the warm-up already has.
+ */
+public final class ShopBinder extends AbstractBinder
+{
+	private final ShopComponents components;
+
+	public ShopBinder(ShopComponents components)
+	{
+		this.components = components;
+	}
+
+	@Override
+	protected void configure()
+	{
+		bind(components).to(ShopComponents.class);
+		bindComponent(new ComponentFactory<ShopService>(components::getShopService) {}, ShopService.class);
+		bindComponent(new ComponentFactory<CustomerRepository>(components::getCustomerRepository) {},
+				CustomerRepository.class);
+		bindComponent(new ComponentFactory<ProductRepository>(components::getProductRepository) {},
+				ProductRepository.class);
+		bindComponent(new ComponentFactory<OrderRepository>(components::getOrderRepository) {},
+				OrderRepository.class);
+		bindComponent(new ComponentFactory<ProductSearchIndex>(components::getProductSearchIndex) {},
+				ProductSearchIndex.class);
+		bindComponent(new ComponentFactory<ProductFacetIndex>(components::getProductFacetIndex) {},
+				ProductFacetIndex.class);
+		bindComponent(new ComponentFactory<TitleAutocomplete>(components::getTitleAutocomplete) {},
+				TitleAutocomplete.class);
+		bindComponent(new ComponentFactory<SalesTracker>(components::getSalesTracker) {}, SalesTracker.class);
+		bindComponent(new ComponentFactory<CoPurchaseRecommender>(components::getCoPurchaseRecommender) {},
+				CoPurchaseRecommender.class);
+	}
+
+	private <T> void bindComponent(ComponentFactory<T> factory, Class<T> type)
+	{
+		bindFactory(factory).to(type).in(Singleton.class);
+	}
+
+	private interface Component<T>
+	{
+		T get() throws RepositoryException;
+	}
+
+	/**
+	 * Takes one component from the components. HK2 reads the provided type
+	 * from the type argument, so each binding subclasses it with an empty body
+	 * to keep that argument.
+	 */
+	private abstract static class ComponentFactory<T> implements Factory<T>
+	{
+		private final Component<T> component;
+
+		private ComponentFactory(Component<T> component)
+		{
+			this.component = component;
+		}
+
+		@Override
+		public T provide()
+		{
+			try
+			{
+				return component.get();
+			}
+			catch (RepositoryException e)
+			{
+				throw new IllegalStateException("The shop service could not be started", e);
+			}
+		}
+
+		@Override
+		public void dispose(T instance)
+		{
+			// Lives as long as the application
+		}
+	}
+}
@@ -0,0 +1,583 @@
+package se.groupone.ecommerce.webservice;
+
+import se.groupone.ecommerce.analytics.CoPurchaseRecommender;
+import se.groupone.ecommerce.analytics.SalesTracker;
+import se.groupone.ecommerce.config.Configuration;
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.model.Customer;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.repository.CustomerRepository;
+import se.groupone.ecommerce.repository.IdempotencyRepository;
+import se.groupone.ecommerce.repository.OrderRepository;
+import se.groupone.ecommerce.repository.ProductRepository;
+import se.groupone.ecommerce.repository.cache.CachingProductRepository;
+import se.groupone.ecommerce.repository.cache.WriteThroughCustomerRepository;
+import se.groupone.ecommerce.repository.cache.WriteThroughOrderRepository;
+import se.groupone.ecommerce.repository.cache.WriteThroughProductRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryCustomerRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryIdempotencyRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryOrderRepository;
+import se.groupone.ecommerce.repository.memory.InMemoryProductRepository;
+import se.groupone.ecommerce.repository.sql.SQLBulkLoader;
+import se.groupone.ecommerce.repository.sql.SQLConnector;
+import se.groupone.ecommerce.repository.sql.SQLCustomerRepository;
+import se.groupone.ecommerce.repository.sql.SQLIdempotencyRepository;
+import se.groupone.ecommerce.repository.sql.SQLOrderRepository;
+import se.groupone.ecommerce.repository.sql.SQLProductRepository;
+import se.groupone.ecommerce.repository.sql.SQLSnapshot;
+import se.groupone.ecommerce.repository.sql.migration.SchemaMigrator;
+import se.groupone.ecommerce.search.ProductFacetIndex;
+import se.groupone.ecommerce.search.ProductSearchIndex;
+import se.groupone.ecommerce.search.TitleAutocomplete;
+import se.groupone.ecommerce.security.PasswordHasher;
+import se.groupone.ecommerce.seed.SyntheticDataset;
+import se.groupone.ecommerce.service.ShopService;
+import se.groupone.ecommerce.session.SessionStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builds the shop service, its repositories and the in-memory indexes on top
+ * of it, once for the whole application. The repositories are chosen with
+ * ecommerce.repository.stack, read when the service is built:
+ * <ul>
+ * <li>sql: every read and write goes to the database (the default)</li>
+ * <li>sql-cached: as sql, but products are read through a cache kept for
+ * ecommerce.repository.productCacheMillis</li>
+ * <li>memory-durable: everything is read into memory at startup and served
+ * from there, writes go to the database first</li>
+ * <li>memory: nothing is kept beyond the life of the process, and no database
+ * is needed</li>
+ * </ul>
+ * Built by the warm-up at startup, or by the first request if that comes
+ * earlier.
+ */
+public final class ShopComponents
+{
+	public enum Stack
+	{
+		SQL, SQL_CACHED, MEMORY_DURABLE, MEMORY;
+
+		static Stack parse(String name)
+		{
+			try
+			{
+				return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException("Unknown repository stack: " + name, e);
+			}
+		}
+
+		boolean usesDatabase()
+		{
+			return this != MEMORY;
+		}
+	}
+
+	private static final String IDEMPOTENCY_TTL_MILLIS_KEY = "ecommerce.idempotency.ttlMillis";
+	private static final String IDEMPOTENCY_PURGE_INTERVAL_KEY =
+			"ecommerce.idempotency.purgeInterval";
+	private static final String SALES_REFRESH_MILLIS_KEY = "ecommerce.sales.refreshMillis";
+	private static final String PASSWORD_ITERATIONS_KEY = "ecommerce.password.iterations";
+	private static final String PASSWORD_MAX_ITERATIONS_KEY = "ecommerce.password.maxIterations";
+	private static final String PASSWORD_CACHE_MILLIS_KEY = "ecommerce.password.cacheMillis";
+	private static final String PRODUCT_CACHE_MILLIS_KEY = "ecommerce.repository.productCacheMillis";
+	private static final String SEED_ROWS_PER_STATEMENT_KEY = "ecommerce.seed.rowsPerStatement";
+	private static final String SEED_THREADS_KEY = "ecommerce.seed.threads";
+
+	private final Configuration config;
+	private final Stack stack;
+	// Made once with the listeners that reload their settings, so a build tried again adds no listeners
+	private final PasswordHasher passwordHasher;
+	private final IdempotencyRepository idempotencyRepository;
+	private final SalesTracker salesTracker;
+	private final CachingProductRepository productCache;
+
+	private volatile ShopService shopService;
+	private CustomerRepository customerRepository;
+	private ProductRepository productRepository;
+	private OrderRepository orderRepository;
+	private ProductSearchIndex productSearchIndex;
+	private ProductFacetIndex productFacetIndex;
+	private TitleAutocomplete titleAutocomplete;
+	private CoPurchaseRecommender coPurchaseRecommender;
+
+	// Only what reset and seed have to reach
+	private final List<InMemoryCustomerRepository> memoryCustomers = new ArrayList<>();
+	private final List<InMemoryProductRepository> memoryProducts = new ArrayList<>();
+	private final List<InMemoryOrderRepository> memoryOrders = new ArrayList<>();
+	private WriteThroughCustomerRepository writeThroughCustomers;
+	private WriteThroughProductRepository writeThroughProducts;
+	private WriteThroughOrderRepository writeThroughOrders;
+	private SQLCustomerRepository durableCustomers;
+
+	public ShopComponents(Configuration config)
+	{
+		this.config = config;
+		this.stack = Stack.parse(config.getString("ecommerce.repository.stack", "sql"));
+		watchBatchSize(SEED_ROWS_PER_STATEMENT_KEY, SQLBulkLoader.DEFAULT_ROWS_PER_STATEMENT);
+		watchBatchSize(SEED_THREADS_KEY, SQLBulkLoader.TABLES);
+		this.passwordHasher = buildPasswordHasher();
+		this.idempotencyRepository = buildIdempotencyRepository();
+		this.salesTracker = buildSalesTracker();
+		this.productCache = stack == Stack.SQL_CACHED ? buildProductCache() : null;
+	}
+
+	public Stack getStack()
+	{
+		return stack;
+	}
+
+	public boolean usesDatabase()
+	{
+		return stack.usesDatabase();
+	}
+
+	public ShopService getShopService() throws RepositoryException
+	{
+		start();
+		return shopService;
+	}
+
+	public CustomerRepository getCustomerRepository() throws RepositoryException
+	{
+		start();
+		return customerRepository;
+	}
+
+	public ProductRepository getProductRepository() throws RepositoryException
+	{
+		start();
+		return productRepository;
+	}
+
+	public OrderRepository getOrderRepository() throws RepositoryException
+	{
+		start();
+		return orderRepository;
+	}
+
+	public ProductSearchIndex getProductSearchIndex() throws RepositoryException
+	{
+		start();
+		return productSearchIndex;
+	}
+
+	public ProductFacetIndex getProductFacetIndex() throws RepositoryException
+	{
+		start();
+		return productFacetIndex;
+	}
+
+	public TitleAutocomplete getTitleAutocomplete() throws RepositoryException
+	{
+		start();
+		return titleAutocomplete;
+	}
+
+	public SalesTracker getSalesTracker() throws RepositoryException
+	{
+		start();
+		return salesTracker;
+	}
+
+	public CoPurchaseRecommender getCoPurchaseRecommender() throws RepositoryException
+	{
+		start();
+		return coPurchaseRecommender;
+	}
+
+	/**
+	 * Builds everything, unless that is already done. Safe to call again after
+	 * it failed.
+	 */
+	public void start() throws RepositoryException
+	{
+		if (shopService == null)
+		{
+			build();
+		}
+	}
+
+	/**
+	 * Removes every customer, product and order, and empties the indexes.
+	 * Idempotency keys go too, since order ids start over, and so do sessions,
+	 * which would otherwise let in whoever takes a removed customer's name.
+	 */
+	public synchronized void reset() throws RepositoryException
+	{
+		start();
+		if (stack.usesDatabase())
+		{
+			try (Connection con = SQLConnector.getConnection();
+				 Statement statement = con.createStatement())
+			{
+				statement.addBatch("SET FOREIGN_KEY_CHECKS = 0");
+				statement.addBatch("TRUNCATE TABLE customer_cart");
+				statement.addBatch("TRUNCATE TABLE product_order");
+				statement.addBatch("TRUNCATE TABLE `order`");
+				statement.addBatch("TRUNCATE TABLE product");
+				statement.addBatch("TRUNCATE TABLE customer");
+				statement.addBatch("SET FOREIGN_KEY_CHECKS = 1");
+				statement.executeBatch();
+			}
+			catch (SQLException e)
+			{
+				throw new RepositoryException("Failed to reset database tables", e);
+			}
+		}
+		idempotencyRepository.clear();
+		SessionStore.getInstance().clear();
+		for (InMemoryCustomerRepository repository : memoryCustomers)
+		{
+			repository.clear();
+		}
+		for (InMemoryProductRepository repository : memoryProducts)
+		{
+			repository.clear();
+		}
+		for (InMemoryOrderRepository repository : memoryOrders)
+		{
+			repository.clear();
+		}
+		if (productCache != null)
+		{
+			productCache.clear();
+		}
+		productSearchIndex.clear();
+		productFacetIndex.clear();
+		titleAutocomplete.clear();
+		salesTracker.clear();
+		coPurchaseRecommender.clear();
+	}
+
+	/**
+	 * Replaces everything with a generated dataset, loaded in bulk rather than
+	 * through the shop service, and rebuilds the indexes from it.
+	 *
+	 * @return the number of rows written, counting cart and order lines
+	 */
+	public synchronized long seed(SyntheticDataset dataset) throws RepositoryException
+	{
+		reset();
+		final long rows;
+		if (stack.usesDatabase())
+		{
+			rows = new SQLBulkLoader(
+					config.getInt(SEED_ROWS_PER_STATEMENT_KEY, SQLBulkLoader.DEFAULT_ROWS_PER_STATEMENT),
+					config.getInt(SEED_THREADS_KEY, SQLBulkLoader.TABLES)).load(dataset);
+			reloadFromDatabase();
+		}
+		else
+		{
+			rows = seedMemory(dataset);
+		}
+
+		// Orders are history here, so they must not take from the indexed stock
+		for (int id = 1; id <= dataset.getProducts(); id++)
+		{
+			final Product product = dataset.product(id);
+			productSearchIndex.productAdded(product);
+			productFacetIndex.productAdded(product);
+			titleAutocomplete.productAdded(product);
+		}
+		for (int id = 1; id <= dataset.getOrders(); id++)
+		{
+			coPurchaseRecommender.orderCreated(dataset.order(id));
+		}
+		return rows;
+	}
+
+	/**
+	 * Writes every customer, product and order to the stream as a snapshot
+	 * read in one transaction. The stream is left open.
+	 *
+	 * @return the number of rows written, counting cart and order lines
+	 */
+	public long exportSnapshot(OutputStream out) throws RepositoryException, IOException
+	{
+		requireDatabase();
+		return new SQLSnapshot().exportTo(out);
+	}
+
+	/**
+	 * Replaces everything with a snapshot written by
+	 * {@link #exportSnapshot(OutputStream)} and rebuilds the indexes from it.
+	 *
+	 * @return the number of rows read, counting cart and order lines
+	 */
+	public synchronized long importSnapshot(InputStream in) throws RepositoryException, IOException
+	{
+		requireDatabase();
+		reset();
+		final long rows = new SQLSnapshot(
+				config.getInt(SEED_ROWS_PER_STATEMENT_KEY, SQLBulkLoader.DEFAULT_ROWS_PER_STATEMENT),
+				config.getInt(SEED_THREADS_KEY, SQLSnapshot.DEFAULT_THREADS)).importFrom(in);
+		reloadFromDatabase();
+
+		for (Product product : loadCatalogue())
+		{
+			productSearchIndex.productAdded(product);
+			productFacetIndex.productAdded(product);
+			titleAutocomplete.productAdded(product);
+		}
+		for (int[] basket : orderRepository.getOrderBaskets())
+		{
+			coPurchaseRecommender.addBasket(basket);
+		}
+		return rows;
+	}
+
+	// Read at every seed and import, so a listener only has to check the new value
+	private void watchBatchSize(String key, int defaultValue)
+	{
+		config.getInt(key, defaultValue);
+		config.addListener(key, changed ->
+		{
+			if (config.getInt(changed, defaultValue) < 1)
+			{
+				throw new IllegalArgumentException(changed + " must be at least 1");
+			}
+		});
+	}
+
+	// The SQL repository reports an empty catalogue as an error, any other failure must stop the caller
+	private List<Product> loadCatalogue() throws RepositoryException
+	{
+		try
+		{
+			return productRepository.getProducts();
+		}
+		catch (RepositoryException e)
+		{
+			if (productRepository.getHighestId() == 0)
+			{
+				return new ArrayList<>();
+			}
+			throw e;
+		}
+	}
+
+	private void requireDatabase() throws RepositoryException
+	{
+		if (!stack.usesDatabase())
+		{
+			throw new RepositoryException("The " + stack.name().toLowerCase(Locale.ROOT).replace('_', '-')
+					+ " repository stack has no database");
+		}
+	}
+
+	// After the tables were written behind the repositories' backs
+	private void reloadFromDatabase() throws RepositoryException
+	{
+		if (writeThroughCustomers != null)
+		{
+			writeThroughCustomers.load();
+			writeThroughProducts.load();
+			writeThroughOrders.load(durableCustomers);
+		}
+		if (productCache != null)
+		{
+			productCache.clear();
+		}
+	}
+
+	private long seedMemory(SyntheticDataset dataset) throws RepositoryException
+	{
+		long rows = 0;
+		for (int i = 0; i < dataset.getCustomers(); i++)
+		{
+			final Customer customer = dataset.customer(i);
+			customerRepository.addCustomer(customer);
+			rows += 1 + customer.getShoppingCart().size();
+		}
+		for (int id = 1; id <= dataset.getProducts(); id++)
+		{
+			productRepository.addProduct(dataset.product(id));
+			rows++;
+		}
+		for (int id = 1; id <= dataset.getOrders(); id++)
+		{
+			final Order order = dataset.order(id);
+			orderRepository.addOrder(order);
+			rows += 1 + order.getProductIds().size();
+		}
+		return rows;
+	}
+
+	private synchronized void build() throws RepositoryException
+	{
+		if (shopService != null)
+		{
+			return;
+		}
+
+		// Can be turned off when the database user lacks DDL privileges
+		if (stack.usesDatabase() && config.getBoolean("ecommerce.schema.migrate", true))
+		{
+			new SchemaMigrator().migrate();
+		}
+		buildRepositories();
+
+		final ShopService service = new ShopService(
+				customerRepository,
+				productRepository,
+				orderRepository,
+				idempotencyRepository,
+				passwordHasher);
+
+		// Built before the service is published so no product change can slip past them
+		final List<Product> products = loadCatalogue();
+		productSearchIndex = new ProductSearchIndex(products);
+		productFacetIndex = new ProductFacetIndex();
+		for (Product product : products)
+		{
+			productFacetIndex.productAdded(product);
+		}
+		titleAutocomplete = new TitleAutocomplete(products);
+		service.addListener(productSearchIndex);
+		service.addListener(productFacetIndex);
+		service.addListener(titleAutocomplete);
+
+		service.addListener(salesTracker);
+
+		coPurchaseRecommender = new CoPurchaseRecommender(service.getOrderBaskets());
+		service.addListener(coPurchaseRecommender);
+		shopService = service;
+	}
+
+	private void buildRepositories() throws RepositoryException
+	{
+		// Left over from an attempt that failed
+		memoryCustomers.clear();
+		memoryProducts.clear();
+		memoryOrders.clear();
+		writeThroughCustomers = null;
+		writeThroughProducts = null;
+		writeThroughOrders = null;
+
+		switch (stack)
+		{
+			case SQL_CACHED:
+				productCache.clear();
+				customerRepository = new SQLCustomerRepository();
+				productRepository = productCache;
+				orderRepository = new SQLOrderRepository();
+				break;
+
+			case MEMORY_DURABLE:
+				final SQLCustomerRepository sqlCustomers = new SQLCustomerRepository();
+				final WriteThroughCustomerRepository customers = new WriteThroughCustomerRepository(
+						memory(new InMemoryCustomerRepository(), memoryCustomers), sqlCustomers);
+				final WriteThroughProductRepository products = new WriteThroughProductRepository(
+						memory(new InMemoryProductRepository(), memoryProducts), new SQLProductRepository());
+				final WriteThroughOrderRepository orders = new WriteThroughOrderRepository(
+						memory(new InMemoryOrderRepository(), memoryOrders), new SQLOrderRepository());
+				customers.load();
+				products.load();
+				orders.load(sqlCustomers);
+				durableCustomers = sqlCustomers;
+				writeThroughCustomers = customers;
+				writeThroughProducts = products;
+				writeThroughOrders = orders;
+				customerRepository = customers;
+				productRepository = products;
+				orderRepository = orders;
+				break;
+
+			case MEMORY:
+				customerRepository = memory(new InMemoryCustomerRepository(), memoryCustomers);
+				productRepository = memory(new InMemoryProductRepository(), memoryProducts);
+				orderRepository = memory(new InMemoryOrderRepository(), memoryOrders);
+				break;
+
+			default:
+				customerRepository = new SQLCustomerRepository();
+				productRepository = new SQLProductRepository();
+				orderRepository = new SQLOrderRepository();
+		}
+	}
+
+	private static <T> T memory(T repository, List<T> repositories)
+	{
+		repositories.add(repository);
+		return repository;
+	}
+
+	// Idempotency keys only survive restarts when kept in the database
+	private IdempotencyRepository buildIdempotencyRepository()
+	{
+		if (stack.usesDatabase() && config.getBoolean("ecommerce.idempotency.sql", false))
+		{
+			final SQLIdempotencyRepository repository = new SQLIdempotencyRepository(
+					config.getLong(IDEMPOTENCY_TTL_MILLIS_KEY,
+							InMemoryIdempotencyRepository.DEFAULT_TTL_MILLIS));
+			repository.setPurgeInterval(config.getInt(IDEMPOTENCY_PURGE_INTERVAL_KEY,
+					SQLIdempotencyRepository.DEFAULT_PURGE_INTERVAL));
+			config.addListener(IDEMPOTENCY_TTL_MILLIS_KEY, key -> repository.setTtlMillis(
+					config.getLong(key, InMemoryIdempotencyRepository.DEFAULT_TTL_MILLIS)));
+			config.addListener(IDEMPOTENCY_PURGE_INTERVAL_KEY, key -> repository
+					.setPurgeInterval(config.getInt(key,
+							SQLIdempotencyRepository.DEFAULT_PURGE_INTERVAL)));
+			return repository;
+		}
+
+		final InMemoryIdempotencyRepository repository = new InMemoryIdempotencyRepository(
+				InMemoryIdempotencyRepository.DEFAULT_MAX_ENTRIES,
+				config.getLong(IDEMPOTENCY_TTL_MILLIS_KEY,
+						InMemoryIdempotencyRepository.DEFAULT_TTL_MILLIS));
+		config.addListener(IDEMPOTENCY_TTL_MILLIS_KEY, key -> repository.setTtlMillis(
+				config.getLong(key, InMemoryIdempotencyRepository.DEFAULT_TTL_MILLIS)));
+		return repository;
+	}
+
+	private SalesTracker buildSalesTracker()
+	{
+		final SalesTracker tracker = new SalesTracker();
+		tracker.setRefreshMillis(config.getLong(SALES_REFRESH_MILLIS_KEY,
+				SalesTracker.DEFAULT_REFRESH_MILLIS));
+		config.addListener(SALES_REFRESH_MILLIS_KEY, key -> tracker.setRefreshMillis(
+				config.getLong(key, SalesTracker.DEFAULT_REFRESH_MILLIS)));
+		return tracker;
+	}
+
+	private CachingProductRepository buildProductCache()
+	{
+		final CachingProductRepository cache = new CachingProductRepository(new SQLProductRepository());
+		cache.setTtlMillis(config.getLong(PRODUCT_CACHE_MILLIS_KEY,
+				CachingProductRepository.DEFAULT_TTL_MILLIS));
+		config.addListener(PRODUCT_CACHE_MILLIS_KEY, key -> cache.setTtlMillis(
+				config.getLong(key, CachingProductRepository.DEFAULT_TTL_MILLIS)));
+		return cache;
+	}
+
+	// Password checks get their own threads, by default one per core
+	private PasswordHasher buildPasswordHasher()
+	{
+		final PasswordHasher passwordHasher = new PasswordHasher(
+				config.getInt(PASSWORD_ITERATIONS_KEY, PasswordHasher.DEFAULT_ITERATIONS),
+				config.getInt("ecommerce.password.threads", Runtime.getRuntime().availableProcessors()),
+				config.getInt("ecommerce.password.queueSize", PasswordHasher.DEFAULT_QUEUE_SIZE),
+				config.getLong(PASSWORD_CACHE_MILLIS_KEY, PasswordHasher.DEFAULT_CACHE_MILLIS));
+		passwordHasher.setMaxIterations(config.getInt(PASSWORD_MAX_ITERATIONS_KEY,
+				PasswordHasher.DEFAULT_MAX_ITERATIONS));
+		config.addListener(PASSWORD_ITERATIONS_KEY, key -> passwordHasher.setIterations(
+				config.getInt(key, PasswordHasher.DEFAULT_ITERATIONS)));
+		config.addListener(PASSWORD_MAX_ITERATIONS_KEY, key -> passwordHasher.setMaxIterations(
+				config.getInt(key, PasswordHasher.DEFAULT_MAX_ITERATIONS)));
+		config.addListener(PASSWORD_CACHE_MILLIS_KEY, key -> passwordHasher.setCacheMillis(
+				config.getLong(key, PasswordHasher.DEFAULT_CACHE_MILLIS)));
+		return passwordHasher;
+	}
+}
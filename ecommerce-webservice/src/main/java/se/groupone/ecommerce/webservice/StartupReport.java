@@ -0,0 +1,61 @@
+package se.groupone.ecommerce.webservice;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the steps of starting the web service, so that a slower start shows up
+ * in the log and on admin/health/startup. Every step also notes how many
+ * classes were loaded by the time it ended, since loading classes is most of
+ * what a cold start spends its time on and what a class data sharing archive
+ * saves.
+ */
+final class StartupReport
+{
+	private static final List<String> steps = new CopyOnWriteArrayList<>();
+
+	private StartupReport()
+	{
+	}
+
+	static void record(String step, long nanos)
+	{
+		steps.add(String.format(Locale.ROOT, "%-40s %7d ms %7d classes", step,
+				TimeUnit.NANOSECONDS.toMillis(nanos), loadedClasses()));
+	}
+
+	// The JVM itself, up to the first line of our code
+	static void recordJvmStart()
+	{
+		steps.add(String.format(Locale.ROOT, "%-40s %7d ms %7d classes", "JVM start",
+				ManagementFactory.getRuntimeMXBean().getUptime(), loadedClasses()));
+	}
+
+	static void recordReady()
+	{
+		final CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+		steps.add(String.format(Locale.ROOT, "%-40s %7d ms %7d classes, %d ms compiling",
+				"Ready, since JVM start", ManagementFactory.getRuntimeMXBean().getUptime(),
+				loadedClasses(), compilation != null && compilation.isCompilationTimeMonitoringSupported()
+						? compilation.getTotalCompilationTime() : -1));
+	}
+
+	static String format()
+	{
+		final StringBuilder report = new StringBuilder("Startup\n");
+		for (String step : steps)
+		{
+			report.append(step).append('\n');
+		}
+		return report.toString();
+	}
+
+	private static int loadedClasses()
+	{
+		return ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+	}
+}
@@ -0,0 +1,324 @@
+package se.groupone.ecommerce.webservice;
+
+import se.groupone.ecommerce.config.Configuration;
+import se.groupone.ecommerce.exception.RepositoryException;
+import se.groupone.ecommerce.model.Customer;
+import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.Product;
+import se.groupone.ecommerce.model.ProductParameters;
+import se.groupone.ecommerce.repository.sql.ConnectionPool;
+import se.groupone.ecommerce.repository.sql.DBConfig;
+import se.groupone.ecommerce.repository.sql.SQLConnector;
+import se.groupone.ecommerce.search.ProductFacetIndex;
+import se.groupone.ecommerce.service.ShopService;
+import se.groupone.ecommerce.webservice.util.CustomerMapper;
+import se.groupone.ecommerce.webservice.util.IntegerListMapper;
+import se.groupone.ecommerce.webservice.util.OrderListMapper;
+import se.groupone.ecommerce.webservice.util.OrderMapper;
+import se.groupone.ecommerce.webservice.util.ProductFacetsMapper;
+import se.groupone.ecommerce.webservice.util.ProductListMapper;
+import se.groupone.ecommerce.webservice.util.ProductMapper;
+import se.groupone.ecommerce.webservice.util.ProductParamMapper;
+import se.groupone.ecommerce.webservice.util.StringListMapper;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Gets the web service ready before the first customer arrives: builds the
+ * shop service and its indexes, opens the pooled connections, runs the product
+ * lookups once per connection so their statements are cached, and runs every
+ * mapper often enough for the JIT to compile it. The readiness endpoint
+ * reports ready once this is done.
+ * <p>
+ * Runs on a background thread so the server can accept health checks in the
+ * meantime. Turned off with ecommerce.warmup.enabled=false, in which case the
+ * first request builds the service as before.
+ */
+final class WarmUp implements Runnable
+{
+	private static final Logger LOG = Logger.getLogger(WarmUp.class.getName());
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+	private static final int SAMPLE_SIZE = 20;
+	private static final long RETRY_MILLIS = 1000;
+
+	private static volatile boolean ready;
+
+	private final ShopComponents components;
+	private final CustomerMapper customerMapper;
+	private final IntegerListMapper integerListMapper;
+	private final OrderListMapper orderListMapper;
+	private final OrderMapper orderMapper;
+	private final ProductFacetsMapper productFacetsMapper;
+	private final ProductListMapper productListMapper;
+	private final ProductMapper productMapper;
+	private final ProductParamMapper productParamMapper;
+	private final StringListMapper stringListMapper;
+	private final Configuration config = Configuration.getInstance();
+
+	WarmUp(ShopComponents components,
+			CustomerMapper customerMapper,
+			IntegerListMapper integerListMapper,
+			OrderListMapper orderListMapper,
+			OrderMapper orderMapper,
+			ProductFacetsMapper productFacetsMapper,
+			ProductListMapper productListMapper,
+			ProductMapper productMapper,
+			ProductParamMapper productParamMapper,
+			StringListMapper stringListMapper)
+	{
+		this.components = components;
+		this.customerMapper = customerMapper;
+		this.integerListMapper = integerListMapper;
+		this.orderListMapper = orderListMapper;
+		this.orderMapper = orderMapper;
+		this.productFacetsMapper = productFacetsMapper;
+		this.productListMapper = productListMapper;
+		this.productMapper = productMapper;
+		this.productParamMapper = productParamMapper;
+		this.stringListMapper = stringListMapper;
+	}
+
+	static boolean isReady()
+	{
+		return ready;
+	}
+
+	// Called on shutdown so that load balancers stop sending requests
+	static void stopping()
+	{
+		ready = false;
+	}
+
+	void start()
+	{
+		if (!config.getBoolean("ecommerce.warmup.enabled", true))
+		{
+			ready = true;
+			return;
+		}
+		final Thread thread = new Thread(this, "warm-up");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void run()
+	{
+		long start = System.nanoTime();
+		if (components.usesDatabase())
+		{
+			openFirstConnection();
+			start = step("First database connection", start);
+		}
+		initializeService();
+		start = step("Shop service and indexes (" + components.getStack() + ")", start);
+		if (components.usesDatabase())
+		{
+			openConnections();
+			start = step("Connection pool", start);
+		}
+		final List<Product> sample = sampleProducts();
+		start = step("Product lookups", start);
+		warmMappers(sample, config.getInt("ecommerce.warmup.iterations", 2_000));
+		step("Mapper warm-up", start);
+
+		ready = true;
+		StartupReport.recordReady();
+		LOG.info(StartupReport.format());
+	}
+
+	/**
+	 * Serializes and parses the sample through every mapper the specified
+	 * number of times. Falls back to made up products for an empty catalogue.
+	 */
+	void warmMappers(List<Product> sample, int iterations)
+	{
+		if (sample.isEmpty())
+		{
+			sample = Collections.singletonList(new Product(1, new ProductParameters(
+					"Warm-up", "Warm-up", "Warm-up", "Warm-up", "warm-up.png", 1.0, 1)));
+		}
+		final ArrayList<Product> products = new ArrayList<>(sample);
+		final ArrayList<Integer> productIds = new ArrayList<>();
+		final ArrayList<String> titles = new ArrayList<>();
+		for (Product product : products)
+		{
+			productIds.add(product.getId());
+			titles.add(product.getTitle());
+		}
+		final Product product = products.get(0);
+		final ProductParameters parameters = new ProductParameters(product.getTitle(),
+				product.getCategory(), product.getManufacturer(), product.getDescription(),
+				product.getImg(), product.getPrice(), product.getQuantity());
+		ProductFacetIndex facetIndex = null;
+		try
+		{
+			facetIndex = components.getProductFacetIndex();
+		}
+		catch (RepositoryException | RuntimeException e)
+		{
+			LOG.log(Level.FINE, "No facet index to warm up", e);
+		}
+		final Customer customer = new Customer("warm-up", "warm-up", "warm-up@example.com",
+				"Warm", "Up", "Warm-up street 1", "0701234567");
+		final ArrayList<Order> orders = new ArrayList<>();
+		orders.add(new Order(1, customer.getUsername(), productIds));
+
+		try
+		{
+			for (int i = 0; i < iterations; i++)
+			{
+				read(productMapper, Product.class, write(productMapper, product));
+				read(productListMapper, arrayListOf(Product.class), write(productListMapper, products));
+				read(productParamMapper, ProductParameters.class, write(productParamMapper, parameters));
+				read(customerMapper, Customer.class, write(customerMapper, customer));
+				write(orderMapper, orders.get(0));
+				write(orderListMapper, orders);
+				write(integerListMapper, productIds);
+				write(stringListMapper, titles);
+				if (facetIndex != null)
+				{
+					write(productFacetsMapper, facetIndex.count(null, null, null, false));
+				}
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			LOG.log(Level.WARNING, "Could not warm up the mappers", e);
+		}
+	}
+
+	private static long step(String step, long start)
+	{
+		final long end = System.nanoTime();
+		StartupReport.record(step, end - start);
+		return end;
+	}
+
+	// Loads the driver and connects, which the first request would otherwise pay for
+	private void openFirstConnection()
+	{
+		try (Connection connection = SQLConnector.getConnection())
+		{
+			connection.isValid(1);
+		}
+		catch (RepositoryException | SQLException e)
+		{
+			LOG.log(Level.WARNING, "Could not connect to the database", e);
+		}
+	}
+
+	private void initializeService()
+	{
+		while (true)
+		{
+			try
+			{
+				components.start();
+				return;
+			}
+			catch (RepositoryException | RuntimeException e)
+			{
+				LOG.log(Level.WARNING, "Could not start the shop service, retrying", e);
+			}
+			try
+			{
+				TimeUnit.MILLISECONDS.sleep(RETRY_MILLIS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	// Holds as many connections at once as the pool will be asked for, so they are all opened now
+	private void openConnections()
+	{
+		final int connections = config.getInt("ecommerce.warmup.connections", DBConfig.getPoolSize());
+		for (ConnectionPool pool : SQLConnector.getPools())
+		{
+			final List<Connection> opened = new ArrayList<>();
+			try
+			{
+				while (opened.size() < Math.min(connections, pool.getMaxSize()))
+				{
+					opened.add(pool.getConnection());
+				}
+			}
+			catch (SQLException e)
+			{
+				LOG.log(Level.WARNING, "Could only open " + opened.size()
+						+ " connections to pool " + pool.getName(), e);
+			}
+			for (Connection connection : opened)
+			{
+				try
+				{
+					connection.close();
+				}
+				catch (SQLException e)
+				{
+					LOG.log(Level.FINE, "Could not return a connection to the pool", e);
+				}
+			}
+		}
+	}
+
+	// Looks up a few products, once per opened connection, so the lookup is prepared on each
+	private List<Product> sampleProducts()
+	{
+		final List<Product> sample = new ArrayList<>();
+		try
+		{
+			final ShopService shopService = components.getShopService();
+			final List<Product> products = shopService.getProducts();
+			sample.addAll(products.subList(0, Math.min(SAMPLE_SIZE, products.size())));
+			final int lookups = Math.max(sample.size(), DBConfig.getPoolSize());
+			for (int i = 0; i < lookups && !sample.isEmpty(); i++)
+			{
+				shopService.getProductWithId(sample.get(i % sample.size()).getId());
+			}
+		}
+		catch (RepositoryException | RuntimeException e)
+		{
+			LOG.log(Level.WARNING, "Could not look up products during warm-up", e);
+		}
+		return sample;
+	}
+
+	private static <T> byte[] write(MessageBodyWriter<T> writer, T entity) throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+		writer.writeTo(entity, entity.getClass(), entity.getClass(), NO_ANNOTATIONS,
+				MediaType.APPLICATION_JSON_TYPE, null, out);
+		return out.toByteArray();
+	}
+
+	private static <T> T read(MessageBodyReader<T> reader, Class<T> type, byte[] json) throws IOException
+	{
+		return reader.readFrom(type, type, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, null,
+				new ByteArrayInputStream(json));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Class<ArrayList<T>> arrayListOf(Class<T> elementType)
+	{
+		return (Class<ArrayList<T>>) (Class<?>) ArrayList.class;
+	}
+}
@@ -1,22 +1,30 @@
 package se.groupone.ecommerce.webservice;
 
-import se.groupone.ecommerce.exception.RepositoryException;
-import se.groupone.ecommerce.repository.sql.SQLCustomerRepository;
-import se.groupone.ecommerce.repository.sql.SQLOrderRepository;
-import se.groupone.ecommerce.repository.sql.SQLProductRepository;
+import se.groupone.ecommerce.analytics.CoPurchaseRecommender;
+import se.groupone.ecommerce.analytics.SalesTracker;
+import se.groupone.ecommerce.search.ProductFacetIndex;
+import se.groupone.ecommerce.search.ProductSearchIndex;
+import se.groupone.ecommerce.search.TitleAutocomplete;
 import se.groupone.ecommerce.service.ShopService;
 
+import javax.inject.Inject;
+
+/**
+ * Base of the resources using the shop service. Everything is injected by the
+ * {@link ShopBinder}, and is the same for every request.
+ */
 public abstract class WebShopService
 {
-	static ShopService shopService;
-
-	WebShopService() throws RepositoryException
-	{
-		if(shopService == null){
-			shopService = new ShopService(
-					new SQLCustomerRepository(),
-					new SQLProductRepository(),
-					new SQLOrderRepository());
-		}
-	}
+	@Inject
+	ShopService shopService;
+	@Inject
+	ProductSearchIndex productSearchIndex;
+	@Inject
+	ProductFacetIndex productFacetIndex;
+	@Inject
+	TitleAutocomplete titleAutocomplete;
+	@Inject
+	SalesTracker salesTracker;
+	@Inject
+	CoPurchaseRecommender coPurchaseRecommender;
 }
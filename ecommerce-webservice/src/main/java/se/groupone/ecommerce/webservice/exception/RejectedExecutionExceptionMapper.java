@@ -0,0 +1,29 @@
+package se.groupone.ecommerce.webservice.exception;
+
+import se.groupone.ecommerce.webservice.metrics.MetricsRegistry;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A bounded pool, such as the one checking passwords, is full. The request
+ * is fine and can be retried shortly.
+ */
+@Provider
+public final class RejectedExecutionExceptionMapper implements ExceptionMapper<RejectedExecutionException>
+{
+	private static final int RETRY_AFTER_SECONDS = 1;
+
+	@Override
+	public Response toResponse(RejectedExecutionException e)
+	{
+		MetricsRegistry.getInstance().markErrorMapped(RejectedExecutionExceptionMapper.class);
+		return Response.status(Status.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+				.entity("Server busy, try again later").build();
+	}
+}
@@ -1,6 +1,7 @@
 package se.groupone.ecommerce.webservice.exception;
 
 import se.groupone.ecommerce.exception.ShopServiceException;
+import se.groupone.ecommerce.webservice.metrics.MetricsRegistry;
 
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -14,6 +15,7 @@ public final class ShopServiceExceptionMapper implements ExceptionMapper<ShopSer
 	public Response toResponse(ShopServiceException e)
 	{
 		e.printStackTrace();
+		MetricsRegistry.getInstance().markErrorMapped(ShopServiceExceptionMapper.class);
 		return Response.status(Status.BAD_REQUEST).entity(e.getMessage())
 				.build();
 	}
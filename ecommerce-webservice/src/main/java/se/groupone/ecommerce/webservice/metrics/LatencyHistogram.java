@@ -0,0 +1,132 @@
+package se.groupone.ecommerce.webservice.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear histogram in the style of HdrHistogram. Every power of two is
+ * split into 32 linear sub-buckets, which keeps the relative error of a
+ * reported percentile below about 3%. Recording is a single atomic increment
+ * and never allocates.
+ */
+public final class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	// Values above 2^40 ns (about 18 minutes) are clamped into the last bucket
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos)
+	{
+		if (nanos < 0)
+		{
+			nanos = 0;
+		}
+		buckets.incrementAndGet(bucketIndex(nanos));
+		count.increment();
+		sum.add(nanos);
+
+		long currentMax;
+		while (nanos > (currentMax = max.get()))
+		{
+			if (max.compareAndSet(currentMax, nanos))
+			{
+				break;
+			}
+		}
+	}
+
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	public long getSumNanos()
+	{
+		return sum.sum();
+	}
+
+	public long getMaxNanos()
+	{
+		return max.get();
+	}
+
+	/**
+	 * Returns the upper bound of the bucket holding the specified quantile.
+	 *
+	 * @param quantile between 0 and 1
+	 * @return latency in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getValueAtQuantile(double quantile)
+	{
+		return getValuesAtQuantiles(quantile)[0];
+	}
+
+	/**
+	 * Computes several quantiles from one consistent pass over the buckets.
+	 *
+	 * @param quantiles in ascending order, each between 0 and 1
+	 * @return latencies in nanoseconds, in the same order as the quantiles
+	 */
+	public long[] getValuesAtQuantiles(double... quantiles)
+	{
+		final long[] counts = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+
+		final long[] values = new long[quantiles.length];
+		if (total == 0)
+		{
+			return values;
+		}
+
+		int q = 0;
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT && q < quantiles.length; i++)
+		{
+			seen += counts[i];
+			while (q < quantiles.length && seen >= Math.ceil(quantiles[q] * total) && seen > 0)
+			{
+				values[q++] = Math.min(bucketUpperBound(i), max.get());
+			}
+		}
+		return values;
+	}
+
+	static int bucketIndex(long value)
+	{
+		if (value < SUB_BUCKET_COUNT)
+		{
+			return (int) value;
+		}
+		if (value >= 1L << (MAX_EXPONENT + 1))
+		{
+			return BUCKET_COUNT - 1;
+		}
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		final int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+		return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	static long bucketUpperBound(int index)
+	{
+		if (index < SUB_BUCKET_COUNT)
+		{
+			return index;
+		}
+		final int shift = index / SUB_BUCKET_COUNT - 1;
+		final long subBucket = index % SUB_BUCKET_COUNT;
+		return ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,64 @@
+package se.groupone.ecommerce.webservice.metrics;
+
+import se.groupone.ecommerce.config.Configuration;
+import se.groupone.ecommerce.repository.sql.QueryStatistics;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+
+/**
+ * Times every matched request from the first request filter to the last
+ * response filter and records it against the route of the resource method.
+ * In debug mode (ecommerce.debug=true, reloadable) the number of database round trips
+ * made by the request is returned in the X-DB-Round-Trips header.
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION - 100)
+public final class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter
+{
+	public static final String ROUND_TRIPS_HEADER = "X-DB-Round-Trips";
+
+	private final MetricsRegistry registry = MetricsRegistry.getInstance();
+	private final QueryStatistics queryStatistics = QueryStatistics.getInstance();
+	private static final String DEBUG_KEY = "ecommerce.debug";
+
+	private static volatile boolean debug =
+			Configuration.getInstance().getBoolean(DEBUG_KEY, false);
+
+	static
+	{
+		Configuration.getInstance().addListener(DEBUG_KEY,
+				key -> debug = Configuration.getInstance().getBoolean(key, false));
+	}
+
+	@Context
+	private ResourceInfo resourceInfo;
+
+	@Override
+	public void filter(ContainerRequestContext requestContext) throws IOException
+	{
+		queryStatistics.resetRoundTrips();
+		registry.requestStarted(resourceInfo.getResourceMethod(), resourceInfo.getResourceClass(),
+				requestContext.getMethod());
+	}
+
+	@Override
+	public void filter(ContainerRequestContext requestContext,
+			ContainerResponseContext responseContext) throws IOException
+	{
+		registry.requestFinished(responseContext.getStatus());
+		if (debug)
+		{
+			responseContext.getHeaders().putSingle(ROUND_TRIPS_HEADER,
+					queryStatistics.getRoundTrips());
+		}
+	}
+}
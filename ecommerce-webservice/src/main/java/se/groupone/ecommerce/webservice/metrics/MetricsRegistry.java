@@ -0,0 +1,141 @@
+package se.groupone.ecommerce.webservice.metrics;
+
+import javax.ws.rs.Path;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the per-route request metrics. Routes are looked up by resource
+ * method, so after the first request to a route no further objects are
+ * created on the request path.
+ */
+public final class MetricsRegistry
+{
+	// Errors that were not turned into a response by one of our exception mappers
+	public static final String UNMAPPED_ERROR = "none";
+
+	private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+	private final ConcurrentHashMap<Method, RouteMetrics> routesByMethod = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, RouteMetrics> routesByName = new ConcurrentHashMap<>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final ThreadLocal<RequestTiming> currentRequest = new ThreadLocal<RequestTiming>()
+	{
+		@Override
+		protected RequestTiming initialValue()
+		{
+			return new RequestTiming();
+		}
+	};
+
+	private MetricsRegistry()
+	{
+	}
+
+	public static MetricsRegistry getInstance()
+	{
+		return INSTANCE;
+	}
+
+	public Collection<RouteMetrics> getRoutes()
+	{
+		return routesByName.values();
+	}
+
+	/**
+	 * @return number of requests currently being processed across all routes
+	 */
+	public int getInFlight()
+	{
+		return inFlight.get();
+	}
+
+	/**
+	 * Called by exception mappers so that the error is attributed to the mapper
+	 * that produced the response for the current request.
+	 *
+	 * @param mapper
+	 */
+	public void markErrorMapped(Class<?> mapper)
+	{
+		currentRequest.get().mapper = mapper.getSimpleName();
+	}
+
+	void requestStarted(Method resourceMethod, Class<?> resourceClass, String httpMethod)
+	{
+		final RequestTiming timing = currentRequest.get();
+		if (timing.route != null)
+		{
+			// The previous request on this thread never reached the response filter
+			timing.route.requestAbandoned();
+			inFlight.decrementAndGet();
+		}
+
+		RouteMetrics route = routesByMethod.get(resourceMethod);
+		if (route == null)
+		{
+			route = registerRoute(resourceMethod, resourceClass, httpMethod);
+		}
+
+		timing.route = route;
+		timing.mapper = null;
+		timing.startNanos = System.nanoTime();
+		inFlight.incrementAndGet();
+		route.requestStarted();
+	}
+
+	void requestFinished(int status)
+	{
+		final RequestTiming timing = currentRequest.get();
+		final RouteMetrics route = timing.route;
+		if (route == null)
+		{
+			// Request was never matched to a resource method
+			timing.mapper = null;
+			return;
+		}
+
+		route.requestFinished(System.nanoTime() - timing.startNanos);
+		if (status >= 400)
+		{
+			route.errorMapped(timing.mapper != null ? timing.mapper : UNMAPPED_ERROR);
+		}
+		inFlight.decrementAndGet();
+		timing.route = null;
+		timing.mapper = null;
+	}
+
+	private RouteMetrics registerRoute(Method resourceMethod, Class<?> resourceClass,
+			String httpMethod)
+	{
+		final StringBuilder routeName = new StringBuilder(httpMethod).append(' ');
+		final Path classPath = resourceClass.getAnnotation(Path.class);
+		if (classPath != null)
+		{
+			routeName.append('/').append(classPath.value());
+		}
+		final Path methodPath = resourceMethod.getAnnotation(Path.class);
+		if (methodPath != null)
+		{
+			routeName.append('/').append(methodPath.value());
+		}
+
+		final RouteMetrics newRoute = new RouteMetrics(routeName.toString());
+		RouteMetrics route = routesByName.putIfAbsent(newRoute.getRoute(), newRoute);
+		if (route == null)
+		{
+			route = newRoute;
+		}
+		routesByMethod.putIfAbsent(resourceMethod, route);
+		return route;
+	}
+
+	private static final class RequestTiming
+	{
+		private RouteMetrics route;
+		private String mapper;
+		private long startNanos;
+	}
+}
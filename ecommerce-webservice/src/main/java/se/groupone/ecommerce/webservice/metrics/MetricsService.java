@@ -0,0 +1,197 @@
+package se.groupone.ecommerce.webservice.metrics;
+
+import se.groupone.ecommerce.repository.sql.ConnectionPool;
+import se.groupone.ecommerce.repository.sql.QueryStatistics;
+import se.groupone.ecommerce.repository.sql.SQLConnector;
+import se.groupone.ecommerce.repository.sql.SlowQueryLog;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exposes the request metrics in the Prometheus text exposition format.
+ */
+@Path("admin/metrics")
+public final class MetricsService
+{
+	private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	private final MetricsRegistry registry = MetricsRegistry.getInstance();
+	private final QueryStatistics queryStatistics = QueryStatistics.getInstance();
+
+	@GET
+	@Produces("text/plain; version=0.0.4")
+	public Response getMetrics()
+	{
+		final StringBuilder out = new StringBuilder(4096);
+
+		out.append("# HELP http_request_duration_seconds Request latency by route.\n");
+		out.append("# TYPE http_request_duration_seconds summary\n");
+		for (RouteMetrics route : registry.getRoutes())
+		{
+			final long[] values = route.getLatency().getValuesAtQuantiles(QUANTILES);
+			for (int i = 0; i < QUANTILES.length; i++)
+			{
+				out.append("http_request_duration_seconds{route=\"").append(route.getRoute())
+						.append("\",quantile=\"").append(QUANTILES[i]).append("\"} ")
+						.append(seconds(values[i])).append('\n');
+			}
+			out.append("http_request_duration_seconds_sum{route=\"").append(route.getRoute())
+					.append("\"} ").append(seconds(route.getLatency().getSumNanos())).append('\n');
+			out.append("http_request_duration_seconds_count{route=\"").append(route.getRoute())
+					.append("\"} ").append(route.getLatency().getCount()).append('\n');
+		}
+
+		out.append("# HELP http_requests_total Completed requests by route.\n");
+		out.append("# TYPE http_requests_total counter\n");
+		for (RouteMetrics route : registry.getRoutes())
+		{
+			out.append("http_requests_total{route=\"").append(route.getRoute()).append("\"} ")
+					.append(route.getRequests()).append('\n');
+		}
+
+		out.append("# HELP http_request_errors_total Error responses by route and exception mapper.\n");
+		out.append("# TYPE http_request_errors_total counter\n");
+		for (RouteMetrics route : registry.getRoutes())
+		{
+			for (Map.Entry<String, LongAdder> errors : route.getErrorsByMapper().entrySet())
+			{
+				out.append("http_request_errors_total{route=\"").append(route.getRoute())
+						.append("\",mapper=\"").append(errors.getKey()).append("\"} ")
+						.append(errors.getValue().sum()).append('\n');
+			}
+		}
+
+		out.append("# HELP http_requests_in_flight Requests currently being processed.\n");
+		out.append("# TYPE http_requests_in_flight gauge\n");
+		for (RouteMetrics route : registry.getRoutes())
+		{
+			out.append("http_requests_in_flight{route=\"").append(route.getRoute()).append("\"} ")
+					.append(route.getInFlight()).append('\n');
+		}
+
+		appendQueryStatistics(out);
+
+		return Response.ok(out.toString()).build();
+	}
+
+	private void appendQueryStatistics(StringBuilder out)
+	{
+		out.append("# HELP db_connection_acquire_seconds Time spent opening database connections.\n");
+		out.append("# TYPE db_connection_acquire_seconds summary\n");
+		out.append("db_connection_acquire_seconds_sum ")
+				.append(seconds(queryStatistics.getConnectionAcquireNanos())).append('\n');
+		out.append("db_connection_acquire_seconds_count ")
+				.append(queryStatistics.getConnectionAcquisitions()).append('\n');
+		out.append("# HELP db_connection_acquire_max_seconds Longest time spent opening a database connection.\n");
+		out.append("# TYPE db_connection_acquire_max_seconds gauge\n");
+		out.append("db_connection_acquire_max_seconds ")
+				.append(seconds(queryStatistics.getMaxConnectionAcquireNanos())).append('\n');
+
+		out.append("# HELP db_query_execute_seconds Statement execution time by template.\n");
+		out.append("# TYPE db_query_execute_seconds summary\n");
+		for (QueryStatistics.TemplateStatistics template : queryStatistics.getTemplates())
+		{
+			final String label = "{template=\"" + escapeLabel(template.getSql()) + "\"} ";
+			out.append("db_query_execute_seconds_sum").append(label)
+					.append(seconds(template.getExecuteNanos())).append('\n');
+			out.append("db_query_execute_seconds_count").append(label)
+					.append(template.getExecutions()).append('\n');
+		}
+
+		out.append("# HELP db_query_execute_max_seconds Longest statement execution by template.\n");
+		out.append("# TYPE db_query_execute_max_seconds gauge\n");
+		for (QueryStatistics.TemplateStatistics template : queryStatistics.getTemplates())
+		{
+			out.append("db_query_execute_max_seconds{template=\"").append(escapeLabel(template.getSql()))
+					.append("\"} ").append(seconds(template.getMaxExecuteNanos())).append('\n');
+		}
+
+		out.append("# HELP db_result_set_seconds_total Result set iteration time by template.\n");
+		out.append("# TYPE db_result_set_seconds_total counter\n");
+		for (QueryStatistics.TemplateStatistics template : queryStatistics.getTemplates())
+		{
+			out.append("db_result_set_seconds_total{template=\"").append(escapeLabel(template.getSql()))
+					.append("\"} ").append(seconds(template.getResultSetNanos())).append('\n');
+		}
+
+		out.append("# HELP db_rows_read_total Rows read by template.\n");
+		out.append("# TYPE db_rows_read_total counter\n");
+		for (QueryStatistics.TemplateStatistics template : queryStatistics.getTemplates())
+		{
+			out.append("db_rows_read_total{template=\"").append(escapeLabel(template.getSql()))
+					.append("\"} ").append(template.getRowsRead()).append('\n');
+		}
+
+		out.append("# HELP db_slow_queries_total Statements slower than the slow query threshold.\n");
+		out.append("# TYPE db_slow_queries_total counter\n");
+		out.append("db_slow_queries_total ").append(SlowQueryLog.getSlowQueries()).append('\n');
+
+		final long hits = queryStatistics.getStatementCacheHits();
+		final long misses = queryStatistics.getStatementCacheMisses();
+		out.append("# HELP db_statement_cache_requests_total Prepared statement cache lookups.\n");
+		out.append("# TYPE db_statement_cache_requests_total counter\n");
+		out.append("db_statement_cache_requests_total{result=\"hit\"} ").append(hits).append('\n');
+		out.append("db_statement_cache_requests_total{result=\"miss\"} ").append(misses).append('\n');
+		out.append("# HELP db_statement_cache_hit_ratio Share of prepares served from the cache.\n");
+		out.append("# TYPE db_statement_cache_hit_ratio gauge\n");
+		out.append("db_statement_cache_hit_ratio ")
+				.append(String.format(Locale.ROOT, "%.4f",
+						hits + misses == 0 ? 0.0 : (double) hits / (hits + misses)))
+				.append('\n');
+		out.append("# HELP db_statement_cache_evictions_total Statements evicted from the cache.\n");
+		out.append("# TYPE db_statement_cache_evictions_total counter\n");
+		out.append("db_statement_cache_evictions_total ")
+				.append(queryStatistics.getStatementCacheEvictions()).append('\n');
+
+		out.append("# HELP db_pool_connections Pooled connections by state.\n");
+		out.append("# TYPE db_pool_connections gauge\n");
+		for (ConnectionPool pool : SQLConnector.getPools())
+		{
+			out.append("db_pool_connections{pool=\"").append(pool.getName())
+					.append("\",state=\"active\"} ").append(pool.getActive()).append('\n');
+			out.append("db_pool_connections{pool=\"").append(pool.getName())
+					.append("\",state=\"idle\"} ").append(pool.getIdle()).append('\n');
+			out.append("db_pool_connections{pool=\"").append(pool.getName())
+					.append("\",state=\"max\"} ").append(pool.getMaxSize()).append('\n');
+		}
+		out.append("# HELP db_pool_waits_total Connection requests that had to wait.\n");
+		out.append("# TYPE db_pool_waits_total counter\n");
+		for (ConnectionPool pool : SQLConnector.getPools())
+		{
+			out.append("db_pool_waits_total{pool=\"").append(pool.getName()).append("\"} ")
+					.append(pool.getWaits()).append('\n');
+		}
+		out.append("# HELP db_pool_recent_wait_seconds Average wait for a connection over recent requests.\n");
+		out.append("# TYPE db_pool_recent_wait_seconds gauge\n");
+		for (ConnectionPool pool : SQLConnector.getPools())
+		{
+			out.append("db_pool_recent_wait_seconds{pool=\"").append(pool.getName()).append("\"} ")
+					.append(String.format(Locale.ROOT, "%.6f", pool.getRecentWaitMillis() / 1000))
+					.append('\n');
+		}
+		out.append("# HELP db_pool_timeouts_total Connection requests that timed out.\n");
+		out.append("# TYPE db_pool_timeouts_total counter\n");
+		for (ConnectionPool pool : SQLConnector.getPools())
+		{
+			out.append("db_pool_timeouts_total{pool=\"").append(pool.getName()).append("\"} ")
+					.append(pool.getTimeouts()).append('\n');
+		}
+	}
+
+	private static String escapeLabel(String value)
+	{
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	private static String seconds(long nanos)
+	{
+		return String.format(Locale.ROOT, "%.6f", nanos / NANOS_PER_SECOND);
+	}
+}
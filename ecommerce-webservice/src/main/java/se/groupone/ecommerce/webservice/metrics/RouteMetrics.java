@@ -0,0 +1,76 @@
+package se.groupone.ecommerce.webservice.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class RouteMetrics
+{
+	private final String route;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder inFlight = new LongAdder();
+	private final ConcurrentHashMap<String, LongAdder> errorsByMapper = new ConcurrentHashMap<>();
+
+	RouteMetrics(String route)
+	{
+		this.route = route;
+	}
+
+	void requestStarted()
+	{
+		inFlight.increment();
+	}
+
+	void requestFinished(long nanos)
+	{
+		inFlight.decrement();
+		requests.increment();
+		latency.record(nanos);
+	}
+
+	void requestAbandoned()
+	{
+		inFlight.decrement();
+	}
+
+	void errorMapped(String mapper)
+	{
+		LongAdder errors = errorsByMapper.get(mapper);
+		if (errors == null)
+		{
+			final LongAdder newErrors = new LongAdder();
+			errors = errorsByMapper.putIfAbsent(mapper, newErrors);
+			if (errors == null)
+			{
+				errors = newErrors;
+			}
+		}
+		errors.increment();
+	}
+
+	public String getRoute()
+	{
+		return route;
+	}
+
+	public LatencyHistogram getLatency()
+	{
+		return latency;
+	}
+
+	public long getRequests()
+	{
+		return requests.sum();
+	}
+
+	public long getInFlight()
+	{
+		return inFlight.sum();
+	}
+
+	public Map<String, LongAdder> getErrorsByMapper()
+	{
+		return errorsByMapper;
+	}
+}
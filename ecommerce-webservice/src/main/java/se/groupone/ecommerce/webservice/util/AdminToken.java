@@ -0,0 +1,46 @@
+package se.groupone.ecommerce.webservice.util;
+
+import se.groupone.ecommerce.config.Configuration;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * The check for staff and admin requests: the X-Admin-Token header must hold
+ * ecommerce.admin.token. The token is read at every request and deliberately
+ * not reloadable, so admin/config can not change it, and until it is set
+ * every request needing it is refused. Admin routes are not rate limited,
+ * which leaves the token as the only guard.
+ */
+public final class AdminToken
+{
+	public static final String HEADER = "X-Admin-Token";
+	public static final String KEY = "ecommerce.admin.token";
+
+	private AdminToken()
+	{
+	}
+
+	/**
+	 * @return the response refusing the request, or null if it may go on
+	 */
+	public static Response check(String token)
+	{
+		final String expected = Configuration.getInstance().getString(KEY, null);
+		if (expected == null || expected.isEmpty())
+		{
+			return Response.status(Status.FORBIDDEN).type(MediaType.TEXT_PLAIN)
+					.entity("Admin requests are turned off, set " + KEY + " to turn them on").build();
+		}
+		if (token == null || !MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+				token.getBytes(StandardCharsets.UTF_8)))
+		{
+			return Response.status(Status.UNAUTHORIZED).type(MediaType.TEXT_PLAIN)
+					.entity("Bad login: admin requests need the " + HEADER + " header").build();
+		}
+		return null;
+	}
+}
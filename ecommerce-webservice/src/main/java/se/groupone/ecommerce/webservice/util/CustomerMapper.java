@@ -89,7 +89,11 @@ public final class CustomerMapper implements MessageBodyReader<Customer>, Messag
 		{
 			final JsonObject customerJson = new JsonObject();
 			customerJson.add("username", new JsonPrimitive(customer.getUsername()));
-			customerJson.add("password", new JsonPrimitive(customer.getPassword()));
+			// Left out of responses, see CustomerService
+			if (customer.getPassword() != null)
+			{
+				customerJson.add("password", new JsonPrimitive(customer.getPassword()));
+			}
 			customerJson.add("email", new JsonPrimitive(customer.getEmail()));
 			customerJson.add("firstName", new JsonPrimitive(customer.getFirstName()));
 			customerJson.add("lastName", new JsonPrimitive(customer.getLastName()));
@@ -104,7 +108,8 @@ public final class CustomerMapper implements MessageBodyReader<Customer>, Messag
 		{
 			final JsonObject customerJson = json.getAsJsonObject();
 			final String username = customerJson.get("username").getAsString();
-			final String password = customerJson.get("password").getAsString();
+			// Optional when updating, where leaving it out keeps the password
+			final String password = customerJson.has("password") ? customerJson.get("password").getAsString() : null;
 			final String email = customerJson.get("email").getAsString();
 			final String firstName = customerJson.get("firstName").getAsString();
 			final String lastName = customerJson.get("lastName").getAsString();
@@ -1,6 +1,8 @@
 package se.groupone.ecommerce.webservice.util;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.lang.annotation.Annotation;
@@ -11,14 +13,18 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
@@ -27,7 +33,8 @@ import com.google.gson.stream.JsonWriter;
 
 @Provider
 @Consumes(MediaType.APPLICATION_JSON)
-public final class IntegerListMapper implements MessageBodyWriter<ArrayList<Integer>>
+public final class IntegerListMapper implements MessageBodyWriter<ArrayList<Integer>>,
+		MessageBodyReader<ArrayList<Integer>>
 {
 	private Gson gson;
 	private Type listOfIntegerType = new TypeToken<ArrayList<Integer>>(){}.getType();
@@ -62,7 +69,23 @@ public final class IntegerListMapper implements MessageBodyWriter<ArrayList<Inte
 		}
 	}
 
-	public static final class IntegerListAdapter implements JsonSerializer<ArrayList<Integer>>
+	// MessageBodyReader
+	@Override
+	public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+	{
+		return genericType.equals(listOfIntegerType);
+	}
+
+	@Override
+	public ArrayList<Integer> readFrom(Class<ArrayList<Integer>> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType, MultivaluedMap<String, String> httpHeaders,
+			InputStream entityStream) throws IOException, WebApplicationException
+	{
+		return gson.fromJson(new InputStreamReader(entityStream), listOfIntegerType);
+	}
+
+	public static final class IntegerListAdapter implements JsonSerializer<ArrayList<Integer>>,
+			JsonDeserializer<ArrayList<Integer>>
 	{
 		@Override
 		public JsonElement serialize(ArrayList<Integer> integerList, Type typeOfSrc, JsonSerializationContext context)
@@ -77,5 +100,23 @@ public final class IntegerListMapper implements MessageBodyWriter<ArrayList<Inte
 			integerListJson.add("integerArray", jsonArray);
 			return integerListJson;
 		}
+
+		// Takes what serialize writes as well as a bare array
+		@Override
+		public ArrayList<Integer> deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
+				throws JsonParseException
+		{
+			final JsonElement jsonArray = json.isJsonObject() ? json.getAsJsonObject().get("integerArray") : json;
+			if (jsonArray == null || !jsonArray.isJsonArray())
+			{
+				throw new JsonParseException("Incorrect Json format, integerArray array missing");
+			}
+			final ArrayList<Integer> integerList = new ArrayList<>();
+			for (JsonElement jsonElement : jsonArray.getAsJsonArray())
+			{
+				integerList.add(jsonElement.getAsInt());
+			}
+			return integerList;
+		}
 	}
 }
\ No newline at end of file
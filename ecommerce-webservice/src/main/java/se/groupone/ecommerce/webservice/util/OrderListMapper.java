@@ -93,6 +93,8 @@ public final class OrderListMapper implements MessageBodyWriter<ArrayList<Order>
 				productIdsJsonArray.add(new JsonPrimitive(productId));
 			}
 			orderJson.add("productIds", productIdsJsonArray);
+			orderJson.add("dateCreated", new JsonPrimitive(String.valueOf(order.getDateCreated())));
+			orderJson.add("status", new JsonPrimitive(order.getStatus().getName()));
 			return orderJson;
 		}
 	}
@@ -3,6 +3,7 @@ package se.groupone.ecommerce.webservice.util;
 import com.google.gson.*;
 import com.google.gson.stream.JsonWriter;
 import se.groupone.ecommerce.model.Order;
+import se.groupone.ecommerce.model.OrderStatus;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
@@ -15,7 +16,10 @@ import javax.ws.rs.ext.Provider;
 import java.io.*;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 
 @Provider
 @Produces(MediaType.APPLICATION_JSON)
@@ -85,6 +89,11 @@ public final class OrderMapper implements MessageBodyWriter<Order>, MessageBodyR
 			}
 			orderJson.add("productIds", productIdsJsonArray);
 			orderJson.add("dateCreated", new JsonPrimitive(String.valueOf(order.getDateCreated())));
+			orderJson.add("status", new JsonPrimitive(order.getStatus().getName()));
+			if (order.getDateShipped() != null)
+			{
+				orderJson.add("dateShipped", new JsonPrimitive(dateFormat().format(order.getDateShipped())));
+			}
 			return orderJson;
 		}
 
@@ -109,7 +118,36 @@ public final class OrderMapper implements MessageBodyWriter<Order>, MessageBodyR
 			{
 				throw new JsonParseException("Incorrect Json format, productIds array missing");
 			}
-			return new Order(orderId, username, productIds);
+
+			// Orders sent without a status are new ones
+			final Order order = new Order(orderId, username, productIds);
+			if (!productJson.has("status"))
+			{
+				return order;
+			}
+			final OrderStatus status;
+			Date dateShipped = null;
+			try
+			{
+				status = OrderStatus.parse(productJson.get("status").getAsString());
+				if (productJson.has("dateShipped"))
+				{
+					dateShipped = dateFormat().parse(productJson.get("dateShipped").getAsString());
+				}
+			}
+			catch (IllegalArgumentException | ParseException e)
+			{
+				throw new JsonParseException("Incorrect Json format, " + e.getMessage(), e);
+			}
+			return new Order(orderId, username, productIds, order.getDateCreated(), status, dateShipped);
+		}
+
+		// Not thread safe, so one per use
+		private static SimpleDateFormat dateFormat()
+		{
+			final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+			dateFormat.setLenient(false);
+			return dateFormat;
 		}
 	}
 }
@@ -0,0 +1,89 @@
+package se.groupone.ecommerce.webservice.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import se.groupone.ecommerce.model.PickList;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
+
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public final class PickListMapper implements MessageBodyWriter<PickList>
+{
+	private Gson gson;
+
+	public PickListMapper()
+	{
+		gson = new GsonBuilder().registerTypeAdapter(PickList.class, new PickListAdapter()).create();
+	}
+
+	// MessageBodyWriter
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+	{
+		return type.isAssignableFrom(PickList.class);
+	}
+
+	@Override
+	public long getSize(PickList t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+	{
+		return -1;
+	}
+
+	@Override
+	public void writeTo(PickList pickList, Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+			OutputStream entityStream) throws IOException, WebApplicationException
+	{
+		try (final JsonWriter writer = new JsonWriter(new OutputStreamWriter(entityStream)))
+		{
+			gson.toJson(pickList, PickList.class, writer);
+		}
+	}
+
+	public static final class PickListAdapter implements JsonSerializer<PickList>
+	{
+		@Override
+		public JsonElement serialize(PickList pickList, Type typeOfSrc, JsonSerializationContext context)
+		{
+			final JsonObject pickListJson = new JsonObject();
+			final JsonArray orderIdsJsonArray = new JsonArray();
+			final JsonArray productsJsonArray = new JsonArray();
+
+			for (int orderId : pickList.getOrderIds())
+			{
+				orderIdsJsonArray.add(new JsonPrimitive(orderId));
+			}
+			for (Map.Entry<Integer, Integer> quantity : pickList.getQuantities().entrySet())
+			{
+				final JsonObject productJson = new JsonObject();
+				productJson.add("productId", new JsonPrimitive(quantity.getKey()));
+				productJson.add("quantity", new JsonPrimitive(quantity.getValue()));
+				productsJsonArray.add(productJson);
+			}
+			pickListJson.add("orderIds", orderIdsJsonArray);
+			pickListJson.add("products", productsJsonArray);
+			return pickListJson;
+		}
+	}
+}
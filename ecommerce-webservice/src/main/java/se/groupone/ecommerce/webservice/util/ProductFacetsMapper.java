@@ -0,0 +1,88 @@
+package se.groupone.ecommerce.webservice.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import se.groupone.ecommerce.model.ProductFacets;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
+
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public final class ProductFacetsMapper implements MessageBodyWriter<ProductFacets>
+{
+	private Gson gson;
+
+	public ProductFacetsMapper()
+	{
+		gson = new GsonBuilder().registerTypeAdapter(ProductFacets.class, new ProductFacetsAdapter()).create();
+	}
+
+	// MessageBodyWriter
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+	{
+		return type.isAssignableFrom(ProductFacets.class);
+	}
+
+	@Override
+	public long getSize(ProductFacets t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+	{
+		return -1;
+	}
+
+	@Override
+	public void writeTo(ProductFacets facets, Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+			OutputStream entityStream) throws IOException, WebApplicationException
+	{
+		try (final JsonWriter writer = new JsonWriter(new OutputStreamWriter(entityStream)))
+		{
+			gson.toJson(facets, ProductFacets.class, writer);
+		}
+	}
+
+	public static final class ProductFacetsAdapter implements JsonSerializer<ProductFacets>
+	{
+		@Override
+		public JsonElement serialize(ProductFacets facets, Type typeOfSrc, JsonSerializationContext context)
+		{
+			final JsonObject facetsJson = new JsonObject();
+			facetsJson.add("total", new JsonPrimitive(facets.getTotal()));
+			facetsJson.add("inStock", new JsonPrimitive(facets.getInStock()));
+			facetsJson.add("categories", toJson(facets.getCategories()));
+			facetsJson.add("manufacturers", toJson(facets.getManufacturers()));
+			facetsJson.add("priceBands", toJson(facets.getPriceBands()));
+
+			return facetsJson;
+		}
+
+		private static JsonObject toJson(Map<String, Integer> counts)
+		{
+			final JsonObject countsJson = new JsonObject();
+			for (Map.Entry<String, Integer> count : counts.entrySet())
+			{
+				countsJson.add(count.getKey(), new JsonPrimitive(count.getValue()));
+			}
+			return countsJson;
+		}
+	}
+}
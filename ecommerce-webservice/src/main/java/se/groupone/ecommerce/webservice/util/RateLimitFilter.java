@@ -0,0 +1,233 @@
+package se.groupone.ecommerce.webservice.util;
+
+import org.glassfish.grizzly.http.server.Request;
+import se.groupone.ecommerce.config.Configuration;
+import se.groupone.ecommerce.ratelimit.RateLimiter;
+import se.groupone.ecommerce.repository.sql.ConnectionPool;
+import se.groupone.ecommerce.repository.sql.SQLConnector;
+import se.groupone.ecommerce.webservice.metrics.MetricsRegistry;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Limits every client to ecommerce.ratelimit.readsPerSecond GET requests and
+ * ecommerce.ratelimit.writesPerSecond other requests per route, each with a
+ * burst of ecommerce.ratelimit.burst, answering 429 beyond that. A client is
+ * the customer of a valid session, else the address the request came from.
+ * Only when that address is one of ecommerce.ratelimit.trustedProxies is the
+ * ecommerce.ratelimit.clientHeader header (X-Forwarded-For) believed, and the
+ * client is the last address in it that is not a trusted proxy itself, since
+ * anything before that may be made up by the client.
+ * <p>
+ * Independently of clients, requests are shed with 503 while more than
+ * ecommerce.shed.maxInFlight are being processed, and a growing share of them
+ * while recent waits for a database connection exceed
+ * ecommerce.shed.maxPoolWaitMillis. Admin routes are never limited. All
+ * settings except the client header are reloadable.
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION + 100)
+public final class RateLimitFilter implements ContainerRequestFilter
+{
+	private static final String RETRY_AFTER = "Retry-After";
+	private static final int TOO_MANY_REQUESTS = 429;
+	private static final String ADMIN_PATH = "admin";
+	private static final String ANONYMOUS = "";
+
+	private static final String ENABLED_KEY = "ecommerce.ratelimit.enabled";
+	private static final String READS_PER_SECOND_KEY = "ecommerce.ratelimit.readsPerSecond";
+	private static final String WRITES_PER_SECOND_KEY = "ecommerce.ratelimit.writesPerSecond";
+	private static final String BURST_KEY = "ecommerce.ratelimit.burst";
+	private static final String SLOTS_KEY = "ecommerce.ratelimit.slots";
+	private static final String CLIENT_HEADER_KEY = "ecommerce.ratelimit.clientHeader";
+	private static final String TRUSTED_PROXIES_KEY = "ecommerce.ratelimit.trustedProxies";
+	private static final String MAX_IN_FLIGHT_KEY = "ecommerce.shed.maxInFlight";
+	private static final String MAX_POOL_WAIT_MILLIS_KEY = "ecommerce.shed.maxPoolWaitMillis";
+
+	private static final Configuration config = Configuration.getInstance();
+	private static final RateLimiter limiter =
+			new RateLimiter(config.getInt(SLOTS_KEY, RateLimiter.DEFAULT_SLOTS), System::currentTimeMillis);
+	private static final String clientHeader = config.getString(CLIENT_HEADER_KEY, "X-Forwarded-For");
+	private static final ConcurrentHashMap<Method, Route> routes = new ConcurrentHashMap<>();
+
+	private static volatile Set<String> trustedProxies;
+	private static volatile boolean enabled;
+	private static volatile double readsPerSecond;
+	private static volatile double writesPerSecond;
+	private static volatile int burst;
+	private static volatile int maxInFlight;
+	private static volatile long maxPoolWaitMillis;
+
+	static
+	{
+		loadSettings(null);
+		for (String key : new String[] { ENABLED_KEY, READS_PER_SECOND_KEY, WRITES_PER_SECOND_KEY,
+				BURST_KEY, TRUSTED_PROXIES_KEY, MAX_IN_FLIGHT_KEY, MAX_POOL_WAIT_MILLIS_KEY })
+		{
+			config.addListener(key, RateLimitFilter::loadSettings);
+		}
+	}
+
+	@Context
+	private ResourceInfo resourceInfo;
+	// Only the one for the container the service runs in is bound, the other gives null
+	@Inject
+	private javax.inject.Provider<HttpServletRequest> servletRequest;
+	@Inject
+	private javax.inject.Provider<Request> grizzlyRequest;
+
+	@Override
+	public void filter(ContainerRequestContext requestContext) throws IOException
+	{
+		final Method resourceMethod = resourceInfo.getResourceMethod();
+		if (resourceMethod == null)
+		{
+			return;
+		}
+		Route route = routes.get(resourceMethod);
+		if (route == null)
+		{
+			route = new Route(resourceMethod, resourceInfo.getResourceClass());
+			routes.putIfAbsent(resourceMethod, route);
+		}
+		if (route.admin)
+		{
+			return;
+		}
+
+		if (shed())
+		{
+			requestContext.abortWith(Response.status(Status.SERVICE_UNAVAILABLE)
+					.header(RETRY_AFTER, 1)
+					.entity("Server busy, try again later").build());
+			return;
+		}
+
+		if (enabled)
+		{
+			final String client = client(requestContext);
+			final long waitMillis = limiter.tryAcquire((long) client.hashCode() << 32 | route.hash & 0xffffffffL,
+					route.write ? writesPerSecond : readsPerSecond, burst);
+			if (waitMillis > 0)
+			{
+				requestContext.abortWith(Response.status(TOO_MANY_REQUESTS)
+						.header(RETRY_AFTER, (waitMillis + 999) / 1000)
+						.entity("Too many requests, try again later").build());
+			}
+		}
+	}
+
+	private static boolean shed()
+	{
+		if (maxInFlight > 0 && MetricsRegistry.getInstance().getInFlight() > maxInFlight)
+		{
+			return true;
+		}
+		if (maxPoolWaitMillis > 0)
+		{
+			double waitMillis = 0;
+			for (ConnectionPool pool : SQLConnector.getPools())
+			{
+				waitMillis = Math.max(waitMillis, pool.getRecentWaitMillis());
+			}
+			// Shed a share that grows with the excess, so some requests still measure the pool
+			final double excess = (waitMillis - maxPoolWaitMillis) / maxPoolWaitMillis;
+			return excess > 0 && ThreadLocalRandom.current().nextDouble() < excess;
+		}
+		return false;
+	}
+
+	private String client(ContainerRequestContext requestContext)
+	{
+		final Object username = requestContext.getProperty(SessionFilter.USERNAME_PROPERTY);
+		if (username != null)
+		{
+			return (String) username;
+		}
+		final String address = remoteAddress();
+		if (address == null)
+		{
+			return ANONYMOUS;
+		}
+
+		final Set<String> proxies = trustedProxies;
+		final String forwardedFor = requestContext.getHeaderString(clientHeader);
+		if (proxies.contains(address) && forwardedFor != null)
+		{
+			// Each proxy appends the address it got the request from
+			final String[] hops = forwardedFor.split(",");
+			for (int i = hops.length - 1; i >= 0; i--)
+			{
+				final String hop = hops[i].trim();
+				if (!hop.isEmpty() && !proxies.contains(hop))
+				{
+					return hop;
+				}
+			}
+		}
+		return address;
+	}
+
+	private String remoteAddress()
+	{
+		final HttpServletRequest servlet = servletRequest.get();
+		if (servlet != null)
+		{
+			return servlet.getRemoteAddr();
+		}
+		final Request grizzly = grizzlyRequest.get();
+		return grizzly != null ? grizzly.getRemoteAddr() : null;
+	}
+
+	private static void loadSettings(String key)
+	{
+		enabled = config.getBoolean(ENABLED_KEY, true);
+		readsPerSecond = config.getInt(READS_PER_SECOND_KEY, 20);
+		writesPerSecond = config.getInt(WRITES_PER_SECOND_KEY, 5);
+		burst = config.getInt(BURST_KEY, 20);
+		final Set<String> proxies = new HashSet<>();
+		for (String proxy : config.getString(TRUSTED_PROXIES_KEY, "").split(","))
+		{
+			if (!proxy.trim().isEmpty())
+			{
+				proxies.add(proxy.trim());
+			}
+		}
+		trustedProxies = proxies;
+		maxInFlight = config.getInt(MAX_IN_FLIGHT_KEY, 256);
+		maxPoolWaitMillis = config.getLong(MAX_POOL_WAIT_MILLIS_KEY, 100);
+	}
+
+	private static final class Route
+	{
+		private final int hash;
+		private final boolean write;
+		private final boolean admin;
+
+		private Route(Method resourceMethod, Class<?> resourceClass)
+		{
+			final Path classPath = resourceClass.getAnnotation(Path.class);
+			this.hash = resourceClass.getName().hashCode() * 31 + resourceMethod.toGenericString().hashCode();
+			this.write = resourceMethod.getAnnotation(GET.class) == null;
+			this.admin = classPath != null && classPath.value().startsWith(ADMIN_PATH);
+		}
+	}
+}
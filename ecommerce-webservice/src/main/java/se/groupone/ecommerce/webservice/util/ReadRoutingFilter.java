@@ -0,0 +1,41 @@
+package se.groupone.ecommerce.webservice.util;
+
+import se.groupone.ecommerce.repository.sql.ConnectionRouter;
+
+import javax.annotation.Priority;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+
+/**
+ * Ties database reads to the customer named in the request path, so that
+ * customers read their own writes from the primary while replicas catch up.
+ * Requests other than GET and HEAD read everything from the primary, since
+ * what they read is what they change.
+ */
+@Provider
+@Priority(Priorities.USER)
+public final class ReadRoutingFilter implements ContainerRequestFilter, ContainerResponseFilter
+{
+	@Override
+	public void filter(ContainerRequestContext requestContext) throws IOException
+	{
+		ConnectionRouter.setSession(
+				requestContext.getUriInfo().getPathParameters().getFirst("username"));
+		final String method = requestContext.getMethod();
+		ConnectionRouter.setPrimaryReads(!method.equals(HttpMethod.GET) && !method.equals(HttpMethod.HEAD));
+	}
+
+	@Override
+	public void filter(ContainerRequestContext requestContext,
+			ContainerResponseContext responseContext) throws IOException
+	{
+		ConnectionRouter.setSession(null);
+		ConnectionRouter.setPrimaryReads(false);
+	}
+}
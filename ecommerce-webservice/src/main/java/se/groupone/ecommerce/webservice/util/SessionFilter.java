@@ -0,0 +1,99 @@
+package se.groupone.ecommerce.webservice.util;
+
+import se.groupone.ecommerce.config.Configuration;
+import se.groupone.ecommerce.session.SessionStore;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+
+/**
+ * Checks the session token in the Authorization header, "Bearer " followed by
+ * the token returned from login, without touching the database. A request
+ * carrying a token must carry a valid one, and may only act on the customer it
+ * was issued to. Requests without a token are let through unless
+ * ecommerce.session.required (reloadable) is set, in which case requests on a
+ * customer's resources are refused. Resources that name the customer somewhere
+ * else than the path check it with {@link #checkCustomer}.
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION)
+public final class SessionFilter implements ContainerRequestFilter
+{
+	// Request property holding the customer of a valid session
+	public static final String USERNAME_PROPERTY = "ecommerce.session.username";
+
+	private static final String BEARER = "Bearer ";
+	private static final String REQUIRED_KEY = "ecommerce.session.required";
+
+	private static volatile boolean required =
+			Configuration.getInstance().getBoolean(REQUIRED_KEY, false);
+
+	static
+	{
+		Configuration.getInstance().addListener(REQUIRED_KEY,
+				key -> required = Configuration.getInstance().getBoolean(key, false));
+	}
+
+	private final SessionStore sessions = SessionStore.getInstance();
+
+	@Override
+	public void filter(ContainerRequestContext requestContext) throws IOException
+	{
+		final String pathUsername = requestContext.getUriInfo().getPathParameters().getFirst("username");
+		final String authorization = requestContext.getHeaderString(HttpHeaders.AUTHORIZATION);
+
+		if (authorization == null || !authorization.startsWith(BEARER))
+		{
+			if (required && pathUsername != null)
+			{
+				requestContext.abortWith(Response.status(Status.UNAUTHORIZED)
+						.entity("Bad login: a session token is required").build());
+			}
+			return;
+		}
+
+		final String username = sessions.getUsername(authorization.substring(BEARER.length()).trim());
+		if (username == null)
+		{
+			requestContext.abortWith(Response.status(Status.UNAUTHORIZED)
+					.entity("Bad login: the session has expired or is not valid").build());
+		}
+		else if (pathUsername != null && !pathUsername.equals(username))
+		{
+			requestContext.abortWith(Response.status(Status.FORBIDDEN)
+					.entity("The session belongs to another customer").build());
+		}
+		else
+		{
+			requestContext.setProperty(USERNAME_PROPERTY, username);
+		}
+	}
+
+	/**
+	 * The check made for a customer in the path, for resources that find the
+	 * customer in the body or in what the request acts on.
+	 *
+	 * @return the response refusing the request, or null if it may go on
+	 */
+	public static Response checkCustomer(ContainerRequestContext requestContext, String username)
+	{
+		final Object sessionUsername = requestContext.getProperty(USERNAME_PROPERTY);
+		if (sessionUsername == null)
+		{
+			return required ? Response.status(Status.UNAUTHORIZED)
+					.entity("Bad login: a session token is required").build() : null;
+		}
+		if (!sessionUsername.equals(username))
+		{
+			return Response.status(Status.FORBIDDEN).entity("The session belongs to another customer").build();
+		}
+		return null;
+	}
+}
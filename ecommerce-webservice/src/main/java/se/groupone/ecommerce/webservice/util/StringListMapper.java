@@ -0,0 +1,81 @@
+package se.groupone.ecommerce.webservice.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public final class StringListMapper implements MessageBodyWriter<ArrayList<String>>
+{
+	private Gson gson;
+	private Type listOfStringType = new TypeToken<ArrayList<String>>(){}.getType();
+
+	public StringListMapper()
+	{
+		gson = new GsonBuilder().registerTypeAdapter(listOfStringType, new StringListAdapter()).create();
+	}
+
+	// MessageBodyWriter
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+	{
+		return genericType.equals(listOfStringType);
+	}
+
+	@Override
+	public long getSize(ArrayList<String> t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+	{
+		return -1;
+	}
+
+	@Override
+	public void writeTo(ArrayList<String> stringList, Class<?> type, Type genericType, Annotation[] annotations,
+			MediaType mediaType,
+			MultivaluedMap<String, Object> httpHeaders,
+			OutputStream entityStream) throws IOException, WebApplicationException
+	{
+		try (final JsonWriter writer = new JsonWriter(new OutputStreamWriter(entityStream)))
+		{
+			gson.toJson(stringList, listOfStringType, writer);
+		}
+	}
+
+	public static final class StringListAdapter implements JsonSerializer<ArrayList<String>>
+	{
+		@Override
+		public JsonElement serialize(ArrayList<String> stringList, Type typeOfSrc, JsonSerializationContext context)
+		{
+			final JsonObject stringListJson = new JsonObject();
+			final JsonArray jsonArray = new JsonArray();
+
+			for (String s : stringList)
+			{
+				jsonArray.add(new JsonPrimitive(s));
+			}
+			stringListJson.add("stringArray", jsonArray);
+			return stringListJson;
+		}
+	}
+}
\ No newline at end of file
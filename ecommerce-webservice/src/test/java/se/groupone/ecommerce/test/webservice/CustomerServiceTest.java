@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static se.groupone.ecommerce.test.webservice.ConnectionConfig.*;
 
@@ -85,6 +86,11 @@ public class CustomerServiceTest
 		Customer createdCustomer = CUSTOMERS_TARGET.path(CUSTOMER_ALEX.getUsername())
 				.request(MediaType.APPLICATION_JSON)
 				.get(Customer.class);
+
+		// The password is never sent back, so it is checked by logging in
+		assertNull(createdCustomer.getPassword());
+		assertEquals(200, login(CUSTOMER_ALEX.getUsername(), CUSTOMER_ALEX.getPassword()));
+		createdCustomer.setPassword(CUSTOMER_ALEX.getPassword());
 		assertEquals(createdCustomer, CUSTOMER_ALEX);
 	}
 
@@ -132,9 +138,34 @@ public class CustomerServiceTest
 		Customer updatedCustomer2FromRepo = CUSTOMERS_TARGET.path(CUSTOMER_ALEX.getUsername())
 				.request(MediaType.APPLICATION_JSON)
 				.get(Customer.class);
+		assertEquals(200, login(CUSTOMER_ALEX.getUsername(), "secret"));
+		assertEquals(401, login(CUSTOMER_ALEX.getUsername(), CUSTOMER_ALEX.getPassword()));
+		updatedCustomer2FromRepo.setPassword("secret");
 		assertEquals(updatedCustomer2, updatedCustomer2FromRepo);
 	}
 
+	@Test
+	public void updateWithoutPasswordKeepsIt()
+	{
+		Response postResponse = CUSTOMERS_TARGET.request(MediaType.APPLICATION_JSON)
+				.buildPost(Entity.entity(CUSTOMER_ALEX, MediaType.APPLICATION_JSON))
+				.invoke();
+		assertEquals(201, postResponse.getStatus());
+
+		Customer withoutPassword = new Customer(CUSTOMER_ALEX.getUsername(), null, "alex@example.com",
+				CUSTOMER_ALEX.getFirstName(), CUSTOMER_ALEX.getLastName(),
+				CUSTOMER_ALEX.getAddress(), CUSTOMER_ALEX.getPhoneNumber());
+		Response putResponse = CUSTOMERS_TARGET.path(CUSTOMER_ALEX.getUsername())
+				.request(MediaType.APPLICATION_JSON)
+				.buildPut(Entity.entity(withoutPassword, MediaType.APPLICATION_JSON))
+				.invoke();
+		assertEquals(204, putResponse.getStatus());
+
+		assertEquals(200, login(CUSTOMER_ALEX.getUsername(), CUSTOMER_ALEX.getPassword()));
+		assertEquals("alex@example.com", CUSTOMERS_TARGET.path(CUSTOMER_ALEX.getUsername())
+				.request(MediaType.APPLICATION_JSON)
+				.get(Customer.class).getEmail());
+	}
 	//  Ta bort en användare (eller sätta den som inaktiv)
 	@Test
 	public void canRemoveCustomer()
@@ -252,6 +283,16 @@ public class CustomerServiceTest
 		assertEquals(orderToBeChecked3, orderFromRepo3);
 	}
 
+	private static int login(String username, String password)
+	{
+		return client.target(URL_BASE + "/login")
+				.request()
+				.header("username", username)
+				.header("password", password)
+				.put(Entity.text(""))
+				.getStatus();
+	}
+
 	private HashMap<Integer, Order> parseOrderJsonArrayList(String ordersJson)
 	{
 		// Create gson parser that uses adapter from OrderMapper
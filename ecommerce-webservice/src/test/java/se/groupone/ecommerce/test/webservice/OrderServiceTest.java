@@ -17,6 +17,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
 import static se.groupone.ecommerce.test.webservice.ConnectionConfig.*;
@@ -145,6 +146,48 @@ public class OrderServiceTest
 				updatedProductFromRepo.getQuantity());
 	}
 
+	@Test
+	public void retriedCreateOrderWithIdempotencyKeyReturnsOriginalOrder()
+	{
+		final String idempotencyKey = UUID.randomUUID().toString();
+		final Product PRODUCT_TOMATO = client.target(createProductTomatoResponse.getLocation())
+				.request(MediaType.APPLICATION_JSON)
+				.get(Product.class);
+
+		// POST - Add products to cart
+		final Response addProductsToCartResponse = CUSTOMERS_TARGET
+				.path(CUSTOMER_ALEX.getUsername())
+				.path("cart")
+				.request()
+				.buildPost(Entity.entity(Integer.toString(PRODUCT_TOMATO.getId()),
+						MediaType.APPLICATION_JSON))
+				.invoke();
+		assertEquals(201, addProductsToCartResponse.getStatus());
+
+		// POST - Create order, then retry it with the same key
+		final Response createOrderResponse = ORDERS_TARGET
+				.request()
+				.header("Idempotency-Key", idempotencyKey)
+				.buildPost(Entity.entity(CUSTOMER_ALEX.getUsername(), MediaType.APPLICATION_JSON))
+				.invoke();
+		assertEquals(201, createOrderResponse.getStatus());
+
+		final Response retriedCreateOrderResponse = ORDERS_TARGET
+				.request()
+				.header("Idempotency-Key", idempotencyKey)
+				.buildPost(Entity.entity(CUSTOMER_ALEX.getUsername(), MediaType.APPLICATION_JSON))
+				.invoke();
+		assertEquals(201, retriedCreateOrderResponse.getStatus());
+		assertEquals(createOrderResponse.getLocation(), retriedCreateOrderResponse.getLocation());
+
+		// GET - Stock should only have been decreased once
+		final Product updatedProductFromRepo = client
+				.target(createProductTomatoResponse.getLocation())
+				.request(MediaType.APPLICATION_JSON)
+				.get(Product.class);
+		assertEquals(PRODUCT_TOMATO.getQuantity() - 1, updatedProductFromRepo.getQuantity());
+	}
+
 	//  Uppdatera en order för en användare
 	@Test
 	public void canUpdateCustomerOrder()
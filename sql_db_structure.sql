@@ -53,6 +53,19 @@ CREATE TABLE `customer_cart` (
 
 
 
+# Dump of table idempotency_key
+# ------------------------------------------------------------
+
+CREATE TABLE `idempotency_key` (
+  `idem_key` varchar(150) COLLATE utf8_swedish_ci NOT NULL,
+  `id_result` int(11) NOT NULL,
+  `created` datetime NOT NULL,
+  PRIMARY KEY (`idem_key`),
+  KEY `created` (`created`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_swedish_ci;
+
+
+
 # Dump of table order
 # ------------------------------------------------------------
 